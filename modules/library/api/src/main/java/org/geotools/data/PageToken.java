@@ -0,0 +1,94 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data;
+
+import org.geotools.factory.Hints;
+
+/**
+ * Carries the position reached reading a page of features over to the query of the next page,
+ * so that the data stores supporting it can continue from there instead of skipping all the
+ * features of the previous pages.
+ * <p>
+ * To use it, put the same token in the {@link Hints#PAGE_TOKEN} hint of the queries of all the
+ * pages. The position is only meaningful to the data store that recorded it, and is used only
+ * when the next query asks for the features right after the last one read, with the same
+ * filter and sorting. Otherwise the data store pages as usual.
+ * </p>
+ *
+ * <pre>
+ * PageToken token = new PageToken();
+ * Query query = new Query(typeName, filter);
+ * query.setSortBy(new SortBy[] { SortBy.NATURAL_ORDER });
+ * query.getHints().put(Hints.PAGE_TOKEN, token);
+ * query.setMaxFeatures(pageSize);
+ * for (int start = 0; ; start += pageSize) {
+ *     query.setStartIndex(start);
+ *     // read the page
+ * }
+ * </pre>
+ *
+ * @source $URL$
+ */
+public class PageToken {
+
+    private String signature;
+
+    private int nextIndex = -1;
+
+    private Object position;
+
+    /**
+     * Records the position reached by a query.
+     *
+     * @param signature Identifies the data store, type, filter and sorting of the query
+     * @param nextIndex The index of the feature following the position
+     * @param position The data store specific position, e.g. the last key read
+     */
+    public synchronized void update(String signature, int nextIndex, Object position) {
+        this.signature = signature;
+        this.nextIndex = nextIndex;
+        this.position = position;
+    }
+
+    /**
+     * Returns the position recorded for a query, if the query starts right after it.
+     *
+     * @param signature Identifies the data store, type, filter and sorting of the query
+     * @param startIndex The index of the first feature the query returns
+     * @return The position, or <code>null</code> if the token holds no position for the query
+     */
+    public synchronized Object getPosition(String signature, int startIndex) {
+        if (position == null || startIndex != nextIndex || !signature.equals(this.signature)) {
+            return null;
+        }
+        return position;
+    }
+
+    /**
+     * Forgets the recorded position.
+     */
+    public synchronized void reset() {
+        signature = null;
+        nextIndex = -1;
+        position = null;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PageToken[" + nextIndex + "]";
+    }
+}
@@ -0,0 +1,560 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.coverage.grid.io;
+
+import it.geosolutions.jaiext.range.NoDataContainer;
+import it.geosolutions.jaiext.range.Range;
+
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FilenameUtils;
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridEnvelope2D;
+import org.geotools.coverage.grid.GridGeometry2D;
+import org.geotools.data.DataUtilities;
+import org.geotools.factory.Hints;
+import org.geotools.geometry.GeneralEnvelope;
+import org.geotools.resources.coverage.CoverageUtilities;
+import org.geotools.util.SoftValueHashMap;
+import org.geotools.util.logging.Logging;
+import org.opengis.coverage.grid.GridEnvelope;
+import org.opengis.parameter.GeneralParameterValue;
+import org.opengis.parameter.ParameterValue;
+
+/**
+ * Precomputed per band statistics (minimum, maximum and histogram) for each resolution level of a
+ * coverage, stored as a properties file living beside the coverage source.
+ * <p>
+ * For a single file coverage like <code>/data/dem.tif</code> the statistics are looked up in
+ * <code>/data/dem.stats</code>, for a directory based source (e.g., an image mosaic) in
+ * <code>/data/mosaic/mosaic.stats</code>. The file can be generated with
+ * {@link #compute(GridCoverage2DReader, int)} followed by {@link #write(File)}, and is used by
+ * the contrast enhancement code in the renderer, if present, to avoid scanning the pixels on each
+ * request.
+ * <p>
+ * The file layout is as follows:
+ *
+ * <pre>
+ * levels=2
+ * level.0.resolution=10.0,10.0
+ * level.0.bands=1
+ * level.0.band.0.min=-12.5
+ * level.0.band.0.max=2830.0
+ * level.0.band.0.histogram.low=-12.5
+ * level.0.band.0.histogram.high=2830.0
+ * level.0.band.0.histogram.counts=12,0,5,...
+ * ...
+ * </pre>
+ */
+public class CoverageStatistics {
+
+    static final Logger LOGGER = Logging.getLogger(CoverageStatistics.class);
+
+    /** The extension of the statistics sidecar file */
+    public static final String EXTENSION = "stats";
+
+    /**
+     * Hint used to pass down the {@link LevelStatistics} matching the resolution of the coverage
+     * being processed
+     */
+    public static final Hints.Key LEVEL_STATISTICS = new Hints.Key(LevelStatistics.class);
+
+    /** Default number of bins used when computing the histograms of non byte data */
+    public static final int DEFAULT_BINS = 256;
+
+    /** Cache of the statistics parsed from the file system, reloaded when the file changes */
+    static final SoftValueHashMap<File, CoverageStatistics> CACHE = new SoftValueHashMap<File, CoverageStatistics>();
+
+    /**
+     * The statistics of a single band
+     */
+    public static class BandStatistics {
+        final double minimum;
+
+        final double maximum;
+
+        final double histogramLow;
+
+        final double histogramHigh;
+
+        final long[] counts;
+
+        public BandStatistics(double minimum, double maximum, double histogramLow,
+                double histogramHigh, long[] counts) {
+            this.minimum = minimum;
+            this.maximum = maximum;
+            this.histogramLow = histogramLow;
+            this.histogramHigh = histogramHigh;
+            this.counts = counts;
+        }
+
+        /** The minimum value found in the band */
+        public double getMinimum() {
+            return minimum;
+        }
+
+        /** The maximum value found in the band */
+        public double getMaximum() {
+            return maximum;
+        }
+
+        /** The lower bound of the first histogram bin (inclusive) */
+        public double getHistogramLow() {
+            return histogramLow;
+        }
+
+        /** The upper bound of the last histogram bin (exclusive) */
+        public double getHistogramHigh() {
+            return histogramHigh;
+        }
+
+        /** The histogram counts, the bins are evenly spaced between low and high */
+        public long[] getCounts() {
+            return counts;
+        }
+
+        @Override
+        public String toString() {
+            return "BandStatistics [minimum=" + minimum + ", maximum=" + maximum
+                    + ", histogramLow=" + histogramLow + ", histogramHigh=" + histogramHigh
+                    + ", bins=" + (counts == null ? 0 : counts.length) + "]";
+        }
+    }
+
+    /**
+     * The statistics of all the bands at a given resolution level
+     */
+    public static class LevelStatistics {
+        final double[] resolution;
+
+        final BandStatistics[] bands;
+
+        public LevelStatistics(double[] resolution, BandStatistics[] bands) {
+            this.resolution = resolution;
+            this.bands = bands;
+        }
+
+        /** The resolution of this level, in the coverage native CRS */
+        public double[] getResolution() {
+            return resolution;
+        }
+
+        /** Returns the number of bands */
+        public int getNumBands() {
+            return bands.length;
+        }
+
+        /** Returns the statistics for the specified band (zero based) */
+        public BandStatistics getBand(int band) {
+            if (band < 0 || band >= bands.length) {
+                return null;
+            }
+            return bands[band];
+        }
+
+        /**
+         * Returns a new level statistics containing only the specified bands (zero based), in
+         * the given order. Used when the reader has been asked to perform band selection.
+         */
+        public LevelStatistics selectBands(int[] indexes) {
+            BandStatistics[] selected = new BandStatistics[indexes.length];
+            for (int i = 0; i < indexes.length; i++) {
+                selected[i] = getBand(indexes[i]);
+            }
+            return new LevelStatistics(resolution, selected);
+        }
+
+        @Override
+        public String toString() {
+            return "LevelStatistics [resolution=" + Arrays.toString(resolution) + ", bands="
+                    + Arrays.toString(bands) + "]";
+        }
+    }
+
+    final List<LevelStatistics> levels;
+
+    /** Last modification time of the file the statistics have been read from */
+    long lastModified;
+
+    public CoverageStatistics(List<LevelStatistics> levels) {
+        if (levels == null || levels.isEmpty()) {
+            throw new IllegalArgumentException("At least one level of statistics is required");
+        }
+        this.levels = Collections.unmodifiableList(new ArrayList<LevelStatistics>(levels));
+    }
+
+    /**
+     * The statistics for each level, from the highest resolution to the lowest
+     */
+    public List<LevelStatistics> getLevels() {
+        return levels;
+    }
+
+    /**
+     * Returns the statistics of the level whose resolution is the closest to the specified one
+     *
+     * @param resolution The resolution, or null to get the highest resolution level
+     */
+    public LevelStatistics getLevel(double[] resolution) {
+        if (resolution == null) {
+            return levels.get(0);
+        }
+        LevelStatistics result = levels.get(0);
+        double best = Double.POSITIVE_INFINITY;
+        for (LevelStatistics level : levels) {
+            double distance = Math.abs(Math.log(level.resolution[0] / resolution[0]));
+            if (distance < best) {
+                best = distance;
+                result = level;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the sidecar statistics file for the given coverage source, which can be either a
+     * {@link File}, a {@link URL} or a path. The file is not guaranteed to exist, null is
+     * returned if the source cannot be turned into a file.
+     */
+    public static File getStatisticsFile(Object source) {
+        File file = null;
+        if (source instanceof File) {
+            file = (File) source;
+        } else if (source instanceof URL) {
+            file = DataUtilities.urlToFile((URL) source);
+        } else if (source instanceof String) {
+            file = new File((String) source);
+        }
+        if (file == null) {
+            return null;
+        }
+
+        if (file.isDirectory()) {
+            return new File(file, file.getName() + "." + EXTENSION);
+        } else {
+            return new File(file.getParentFile(), FilenameUtils.getBaseName(file.getName()) + "."
+                    + EXTENSION);
+        }
+    }
+
+    /**
+     * Looks up the statistics sidecar file of the given coverage source, returning the parsed
+     * statistics, or null if the file cannot be found or cannot be parsed. Parsed statistics are
+     * cached and reloaded only if the file gets modified.
+     */
+    public static CoverageStatistics lookup(Object source) {
+        File file = getStatisticsFile(source);
+        if (file == null || !file.exists()) {
+            return null;
+        }
+
+        synchronized (CACHE) {
+            CoverageStatistics stats = CACHE.get(file);
+            if (stats != null && stats.lastModified == file.lastModified()) {
+                return stats;
+            }
+            try {
+                stats = read(file);
+                CACHE.put(file, stats);
+                return stats;
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to parse the coverage statistics file " + file
+                        + ", skipping it", e);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Parses the statistics from the specified file
+     */
+    public static CoverageStatistics read(File file) throws IOException {
+        Properties props = new Properties();
+        long lastModified = file.lastModified();
+        InputStream is = new FileInputStream(file);
+        try {
+            props.load(is);
+        } finally {
+            is.close();
+        }
+
+        int numLevels = Integer.parseInt(getRequired(props, "levels"));
+        List<LevelStatistics> levels = new ArrayList<LevelStatistics>(numLevels);
+        for (int l = 0; l < numLevels; l++) {
+            String prefix = "level." + l + ".";
+            double[] resolution = parseDoubles(getRequired(props, prefix + "resolution"));
+            int numBands = Integer.parseInt(getRequired(props, prefix + "bands"));
+            BandStatistics[] bands = new BandStatistics[numBands];
+            for (int b = 0; b < numBands; b++) {
+                String bp = prefix + "band." + b + ".";
+                double min = Double.parseDouble(getRequired(props, bp + "min"));
+                double max = Double.parseDouble(getRequired(props, bp + "max"));
+                double low = min;
+                double high = max;
+                long[] counts = null;
+                String countsSpec = props.getProperty(bp + "histogram.counts");
+                if (countsSpec != null) {
+                    low = Double.parseDouble(getRequired(props, bp + "histogram.low"));
+                    high = Double.parseDouble(getRequired(props, bp + "histogram.high"));
+                    String[] values = countsSpec.split(",");
+                    counts = new long[values.length];
+                    for (int i = 0; i < values.length; i++) {
+                        counts[i] = Long.parseLong(values[i].trim());
+                    }
+                }
+                bands[b] = new BandStatistics(min, max, low, high, counts);
+            }
+            levels.add(new LevelStatistics(resolution, bands));
+        }
+
+        CoverageStatistics result = new CoverageStatistics(levels);
+        result.lastModified = lastModified;
+        return result;
+    }
+
+    /**
+     * Writes the statistics in the specified file
+     */
+    public void write(File file) throws IOException {
+        Properties props = new Properties();
+        props.put("levels", String.valueOf(levels.size()));
+        for (int l = 0; l < levels.size(); l++) {
+            LevelStatistics level = levels.get(l);
+            String prefix = "level." + l + ".";
+            props.put(prefix + "resolution", toString(level.resolution));
+            props.put(prefix + "bands", String.valueOf(level.bands.length));
+            for (int b = 0; b < level.bands.length; b++) {
+                BandStatistics band = level.bands[b];
+                String bp = prefix + "band." + b + ".";
+                props.put(bp + "min", String.valueOf(band.minimum));
+                props.put(bp + "max", String.valueOf(band.maximum));
+                if (band.counts != null) {
+                    props.put(bp + "histogram.low", String.valueOf(band.histogramLow));
+                    props.put(bp + "histogram.high", String.valueOf(band.histogramHigh));
+                    StringBuilder sb = new StringBuilder();
+                    for (int i = 0; i < band.counts.length; i++) {
+                        if (i > 0) {
+                            sb.append(",");
+                        }
+                        sb.append(band.counts[i]);
+                    }
+                    props.put(bp + "histogram.counts", sb.toString());
+                }
+            }
+        }
+
+        OutputStream os = new FileOutputStream(file);
+        try {
+            props.store(os, "Coverage statistics");
+        } finally {
+            os.close();
+        }
+    }
+
+    /**
+     * Computes the statistics of all the resolution levels exposed by the reader. Each level is
+     * read fully, but scanned one tile at a time, so the memory usage depends on the reader tile
+     * size.
+     *
+     * @param reader The reader
+     * @param bins The number of histogram bins for non byte data (byte data always uses 256 bins
+     *        mapping each value)
+     */
+    public static CoverageStatistics compute(GridCoverage2DReader reader, int bins)
+            throws IOException {
+        double[][] resolutions = reader.getResolutionLevels();
+        GeneralEnvelope envelope = reader.getOriginalEnvelope();
+        GridEnvelope gridRange = reader.getOriginalGridRange();
+        List<LevelStatistics> levels = new ArrayList<LevelStatistics>();
+        for (double[] resolution : resolutions) {
+            int width = (int) Math.max(1,
+                    Math.round(gridRange.getSpan(0) * resolutions[0][0] / resolution[0]));
+            int height = (int) Math.max(1,
+                    Math.round(gridRange.getSpan(1) * resolutions[0][1] / resolution[1]));
+            GridGeometry2D gg = new GridGeometry2D(new GridEnvelope2D(0, 0, width, height),
+                    envelope);
+            ParameterValue<GridGeometry2D> readGG = AbstractGridFormat.READ_GRIDGEOMETRY2D
+                    .createValue();
+            readGG.setValue(gg);
+            GridCoverage2D coverage = reader.read(new GeneralParameterValue[] { readGG });
+            if (coverage == null) {
+                continue;
+            }
+            try {
+                NoDataContainer nodata = CoverageUtilities.getNoDataProperty(coverage);
+                BandStatistics[] bands = compute(coverage.getRenderedImage(),
+                        nodata != null ? nodata.getAsRange() : null, bins);
+                levels.add(new LevelStatistics(resolution.clone(), bands));
+            } finally {
+                coverage.dispose(true);
+            }
+        }
+
+        return new CoverageStatistics(levels);
+    }
+
+    /**
+     * Computes the statistics of each band of the image, skipping NaN and nodata values
+     *
+     * @param image The image to be scanned
+     * @param nodata The nodata range, or null if not available
+     * @param bins The number of bins for non byte images
+     */
+    public static BandStatistics[] compute(RenderedImage image, Range nodata, int bins) {
+        final int numBands = image.getSampleModel().getNumBands();
+        final boolean bytes = image.getSampleModel().getDataType() == DataBuffer.TYPE_BYTE;
+        final double[] minimums = new double[numBands];
+        final double[] maximums = new double[numBands];
+        Arrays.fill(minimums, Double.POSITIVE_INFINITY);
+        Arrays.fill(maximums, Double.NEGATIVE_INFINITY);
+
+        // first pass, extrema (not needed for bytes, we know the histogram range already)
+        if (!bytes) {
+            scan(image, nodata, new SampleVisitor() {
+
+                @Override
+                public void visit(int band, double value) {
+                    if (value < minimums[band]) {
+                        minimums[band] = value;
+                    }
+                    if (value > maximums[band]) {
+                        maximums[band] = value;
+                    }
+                }
+            });
+        }
+
+        // second pass, histogram
+        final double[] lows = new double[numBands];
+        final double[] highs = new double[numBands];
+        final long[][] counts = new long[numBands][bytes ? 256 : bins];
+        for (int b = 0; b < numBands; b++) {
+            if (bytes) {
+                lows[b] = 0;
+                highs[b] = 256;
+            } else {
+                lows[b] = minimums[b];
+                // make the last bin include the maximum
+                highs[b] = maximums[b] > minimums[b] ? Math.nextUp(maximums[b]) : minimums[b] + 1;
+            }
+        }
+        scan(image, nodata, new SampleVisitor() {
+
+            @Override
+            public void visit(int band, double value) {
+                long[] bandCounts = counts[band];
+                int bin = (int) ((value - lows[band]) / (highs[band] - lows[band]) * bandCounts.length);
+                if (bin >= 0 && bin < bandCounts.length) {
+                    bandCounts[bin]++;
+                }
+                if (bytes) {
+                    if (value < minimums[band]) {
+                        minimums[band] = value;
+                    }
+                    if (value > maximums[band]) {
+                        maximums[band] = value;
+                    }
+                }
+            }
+        });
+
+        BandStatistics[] result = new BandStatistics[numBands];
+        for (int b = 0; b < numBands; b++) {
+            result[b] = new BandStatistics(minimums[b], maximums[b], lows[b], highs[b], counts[b]);
+        }
+        return result;
+    }
+
+    interface SampleVisitor {
+        void visit(int band, double value);
+    }
+
+    static void scan(RenderedImage image, Range nodata, SampleVisitor visitor) {
+        final int numBands = image.getSampleModel().getNumBands();
+        final Rectangle bounds = new Rectangle(image.getMinX(), image.getMinY(),
+                image.getWidth(), image.getHeight());
+        double[] samples = null;
+        for (int ty = image.getMinTileY(); ty < image.getMinTileY() + image.getNumYTiles(); ty++) {
+            for (int tx = image.getMinTileX(); tx < image.getMinTileX()
+                    + image.getNumXTiles(); tx++) {
+                Raster tile = image.getTile(tx, ty);
+                Rectangle area = tile.getBounds().intersection(bounds);
+                if (area.isEmpty()) {
+                    continue;
+                }
+                for (int b = 0; b < numBands; b++) {
+                    for (int y = area.y; y < area.y + area.height; y++) {
+                        samples = tile.getSamples(area.x, y, area.width, 1, b, samples);
+                        for (int i = 0; i < area.width; i++) {
+                            double value = samples[i];
+                            if (Double.isNaN(value) || (nodata != null && nodata.contains(value))) {
+                                continue;
+                            }
+                            visitor.visit(b, value);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    static String getRequired(Properties props, String key) throws IOException {
+        String value = props.getProperty(key);
+        if (value == null) {
+            throw new IOException("Missing required key " + key + " in coverage statistics");
+        }
+        return value;
+    }
+
+    static double[] parseDoubles(String spec) {
+        String[] values = spec.split(",");
+        double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = Double.parseDouble(values[i].trim());
+        }
+        return result;
+    }
+
+    static String toString(double[] values) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(",");
+            }
+            sb.append(values[i]);
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.coverage.grid.io;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.util.Arrays;
+
+import javax.media.jai.RasterFactory;
+import javax.media.jai.TiledImage;
+
+import org.geotools.coverage.grid.io.CoverageStatistics.BandStatistics;
+import org.geotools.coverage.grid.io.CoverageStatistics.LevelStatistics;
+import org.junit.Test;
+
+public class CoverageStatisticsTest {
+
+    @Test
+    public void testByteStatistics() {
+        BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_BYTE_GRAY);
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < 16; y++) {
+            for (int x = 0; x < 16; x++) {
+                raster.setSample(x, y, 0, 10 + x);
+            }
+        }
+
+        BandStatistics[] stats = CoverageStatistics.compute(image, null, 10);
+        assertEquals(1, stats.length);
+        assertEquals(10, stats[0].getMinimum(), 0d);
+        assertEquals(25, stats[0].getMaximum(), 0d);
+        // bytes always use a 256 bins histogram
+        assertEquals(256, stats[0].getCounts().length);
+        assertEquals(0, stats[0].getHistogramLow(), 0d);
+        assertEquals(256, stats[0].getHistogramHigh(), 0d);
+        assertEquals(0, stats[0].getCounts()[9]);
+        assertEquals(16, stats[0].getCounts()[10]);
+        assertEquals(16, stats[0].getCounts()[25]);
+    }
+
+    @Test
+    public void testFloatStatisticsWithNaN() {
+        TiledImage image = new TiledImage(0, 0, 10, 10, 0, 0,
+                RasterFactory.createBandedSampleModel(DataBuffer.TYPE_FLOAT, 10, 10, 1), null);
+        for (int y = 0; y < 10; y++) {
+            for (int x = 0; x < 10; x++) {
+                image.setSample(x, y, 0, x == 0 ? Float.NaN : x * 10f);
+            }
+        }
+
+        BandStatistics[] stats = CoverageStatistics.compute(image, null, 9);
+        assertEquals(10, stats[0].getMinimum(), 0d);
+        assertEquals(90, stats[0].getMaximum(), 0d);
+        long[] counts = stats[0].getCounts();
+        assertEquals(9, counts.length);
+        // each bin gets a column, the NaN one is skipped
+        long[] expected = new long[9];
+        Arrays.fill(expected, 10);
+        assertArrayEquals(expected, counts);
+    }
+
+    @Test
+    public void testWriteRead() throws Exception {
+        BandStatistics b0 = new BandStatistics(0, 100, 0, 101, new long[] { 1, 2, 3 });
+        BandStatistics b1 = new BandStatistics(-5, 5, -5, 5, null);
+        LevelStatistics l0 = new LevelStatistics(new double[] { 1, 1 },
+                new BandStatistics[] { b0, b1 });
+        LevelStatistics l1 = new LevelStatistics(new double[] { 4, 4 },
+                new BandStatistics[] { b0, b1 });
+        CoverageStatistics stats = new CoverageStatistics(Arrays.asList(l0, l1));
+
+        File file = File.createTempFile("coverage", "." + CoverageStatistics.EXTENSION);
+        try {
+            stats.write(file);
+            CoverageStatistics read = CoverageStatistics.read(file);
+            assertEquals(2, read.getLevels().size());
+            LevelStatistics level = read.getLevels().get(1);
+            assertArrayEquals(new double[] { 4, 4 }, level.getResolution(), 0d);
+            assertEquals(2, level.getNumBands());
+            assertEquals(100, level.getBand(0).getMaximum(), 0d);
+            assertEquals(101, level.getBand(0).getHistogramHigh(), 0d);
+            assertArrayEquals(new long[] { 1, 2, 3 }, level.getBand(0).getCounts());
+            assertEquals(-5, level.getBand(1).getMinimum(), 0d);
+            assertNull(level.getBand(1).getCounts());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testLevelSelection() {
+        BandStatistics b0 = new BandStatistics(0, 1, 0, 1, null);
+        BandStatistics b1 = new BandStatistics(2, 3, 2, 3, null);
+        BandStatistics[] bands = new BandStatistics[] { b0, b1 };
+        LevelStatistics l0 = new LevelStatistics(new double[] { 1, 1 }, bands);
+        LevelStatistics l1 = new LevelStatistics(new double[] { 4, 4 }, bands);
+        LevelStatistics l2 = new LevelStatistics(new double[] { 16, 16 }, bands);
+        CoverageStatistics stats = new CoverageStatistics(Arrays.asList(l0, l1, l2));
+
+        assertSame(l0, stats.getLevel(null));
+        assertSame(l0, stats.getLevel(new double[] { 0.5, 0.5 }));
+        assertSame(l1, stats.getLevel(new double[] { 3, 3 }));
+        assertSame(l2, stats.getLevel(new double[] { 100, 100 }));
+
+        LevelStatistics selected = l0.selectBands(new int[] { 1 });
+        assertEquals(1, selected.getNumBands());
+        assertSame(b1, selected.getBand(0));
+    }
+
+    @Test
+    public void testStatisticsFile() {
+        File tiff = new File("/data/dem.tif");
+        assertEquals(new File("/data/dem.stats"), CoverageStatistics.getStatisticsFile(tiff));
+        assertNull(CoverageStatistics.getStatisticsFile(Integer.valueOf(1)));
+        assertNull(CoverageStatistics.lookup(new File("/not/there/dem.tif")));
+    }
+}
@@ -0,0 +1,664 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.factory.Hints;
+import org.geotools.feature.collection.AbstractFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.filter.visitor.ExtractBoundsFilterVisitor;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.CRS;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.Name;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * A caching feature source keeping the features of a wrapped source in memory, organized in a
+ * grid of spatial tiles.
+ * <p>
+ * The grid covers the bounds of the wrapped source at creation time. Each request loads the
+ * tiles it needs that are not cached yet, in a single query to the wrapped source, and is then
+ * answered from memory. Panning over an area only fetches the newly uncovered tiles. The cache
+ * is bounded by an estimate of the memory used by the cached features, when it is exceeded the
+ * least recently used tiles are evicted. Tiles are invalidated when the wrapped source reports
+ * changes in their area through {@link FeatureEvent}s.
+ * </p>
+ * <p>
+ * Queries that cannot be answered from the tiles, because they require sorting, paging or
+ * reprojection, are delegated to the wrapped source. Counts and bounds are always delegated as
+ * well.
+ * </p>
+ * <p>
+ * Tiles are loaded outside of the cache lock, concurrent requests needing a tile that is being
+ * loaded wait for it, while requests touching other tiles proceed independently.
+ * </p>
+ *
+ * @source $URL$
+ */
+public class TileCachingFeatureSource implements SimpleFeatureSource {
+
+    static final Logger LOGGER = Logging.getLogger(TileCachingFeatureSource.class);
+
+    /**
+     * Default number of tiles along each side of the grid
+     */
+    public static final int DEFAULT_TILES = 16;
+
+    /**
+     * Default memory budget, 64MB
+     */
+    public static final long DEFAULT_MAX_MEMORY = 64 * 1024 * 1024;
+
+    static final FilterFactory ff = CommonFactoryFinder.getFilterFactory(null);
+
+    final SimpleFeatureSource wrapped;
+
+    final Envelope gridBounds;
+
+    final int tiles;
+
+    final long maxMemory;
+
+    /**
+     * The cached tiles, in access order
+     */
+    final LinkedHashMap<Long, Tile> cache = new LinkedHashMap<Long, Tile>(16, 0.75f, true);
+
+    long memory;
+
+    long hits;
+
+    long misses;
+
+    final FeatureListener invalidator = new FeatureListener() {
+        @Override
+        public void changed(FeatureEvent event) {
+            invalidate(event.getBounds());
+        }
+    };
+
+    /**
+     * A cached tile, all the features intersecting the area it was loaded for. The features can
+     * be accessed only once the tile is ready.
+     */
+    static final class Tile {
+        final List<SimpleFeature> features = new ArrayList<SimpleFeature>();
+
+        final CompletableFuture<Tile> ready = new CompletableFuture<Tile>();
+
+        /**
+         * The area the tile has been loaded for, border tiles cover only part of their envelope
+         */
+        final Envelope covered;
+
+        long size;
+
+        /**
+         * Whether the size is accounted in the cache memory usage
+         */
+        boolean accounted;
+
+        Tile(Envelope covered) {
+            this.covered = covered;
+        }
+    }
+
+    /**
+     * Builds a cache with the default grid size and memory budget.
+     */
+    public TileCachingFeatureSource(SimpleFeatureSource wrapped) throws IOException {
+        this(wrapped, DEFAULT_TILES, DEFAULT_MAX_MEMORY);
+    }
+
+    /**
+     * Builds a cache.
+     *
+     * @param wrapped The feature source to cache
+     * @param tiles Number of tiles along each side of the grid covering the source bounds
+     * @param maxMemory Estimated memory, in bytes, the cached features are allowed to use
+     */
+    public TileCachingFeatureSource(SimpleFeatureSource wrapped, int tiles, long maxMemory)
+            throws IOException {
+        if (tiles < 1) {
+            throw new IllegalArgumentException("The grid must have at least one tile per side");
+        }
+        if (wrapped.getSchema().getGeometryDescriptor() == null) {
+            throw new IllegalArgumentException("The cached source must have a geometry");
+        }
+        this.wrapped = wrapped;
+        this.tiles = tiles;
+        this.maxMemory = maxMemory;
+        ReferencedEnvelope bounds = wrapped.getBounds();
+        if (bounds == null || bounds.isNull()) {
+            bounds = wrapped.getFeatures().getBounds();
+        }
+        this.gridBounds = bounds == null || bounds.isNull() ? new Envelope(0, 0, 0, 0)
+                : new Envelope(bounds);
+        if (gridBounds.getWidth() == 0 || gridBounds.getHeight() == 0) {
+            gridBounds.expandBy(1);
+        }
+        wrapped.addFeatureListener(invalidator);
+    }
+
+    /**
+     * Stops listening to the wrapped source and empties the cache.
+     */
+    public void dispose() {
+        wrapped.removeFeatureListener(invalidator);
+        invalidate(null);
+    }
+
+    public SimpleFeatureCollection getFeatures(Query query) throws IOException {
+        String schemaName = wrapped.getSchema().getName().getLocalPart();
+        if (query.getTypeName() != null && !schemaName.equals(query.getTypeName())) {
+            throw new DataSourceException("Typename mismatch, query asks for '"
+                    + query.getTypeName() + " but this feature source provides '" + schemaName
+                    + "'");
+        }
+        if (!isCacheable(query)) {
+            return wrapped.getFeatures(query);
+        }
+
+        SimpleFeatureType schema = wrapped.getSchema();
+        if (query.getPropertyNames() != Query.ALL_NAMES) {
+            schema = SimpleFeatureTypeBuilder.retype(schema, query.getPropertyNames());
+        }
+        return new TileFeatureCollection(schema, query);
+    }
+
+    public SimpleFeatureCollection getFeatures(Filter filter) throws IOException {
+        return getFeatures(new Query(wrapped.getSchema().getName().getLocalPart(), filter));
+    }
+
+    public SimpleFeatureCollection getFeatures() throws IOException {
+        return getFeatures(Filter.INCLUDE);
+    }
+
+    boolean isCacheable(Query query) {
+        return (query.getSortBy() == null || query.getSortBy().length == 0)
+                && query.getStartIndex() == null && query.getFilter() != Filter.EXCLUDE
+                && isNativeCRS(query.getCoordinateSystem())
+                && isNativeCRS(query.getCoordinateSystemReproject());
+    }
+
+    /**
+     * The tiles hold the features in their native CRS, queries forcing or reprojecting to another
+     * CRS cannot be answered from them
+     */
+    boolean isNativeCRS(CoordinateReferenceSystem crs) {
+        return crs == null
+                || CRS.equalsIgnoreMetadata(crs, wrapped.getSchema().getCoordinateReferenceSystem());
+    }
+
+    /**
+     * Returns the features matching the query, loading the missing tiles
+     */
+    List<SimpleFeature> getFeatureList(Query query, SimpleFeatureType target) throws IOException {
+        Filter filter = query.getFilter() != null ? query.getFilter() : Filter.INCLUDE;
+        Envelope envelope = (Envelope) filter.accept(ExtractBoundsFilterVisitor.BOUNDS_VISITOR,
+                new Envelope());
+        List<SimpleFeature> result = new ArrayList<SimpleFeature>();
+        if (envelope == null || envelope.isNull()) {
+            return result;
+        }
+
+        // border tiles are loaded only within the grid bounds and the requested area
+        Envelope area = loadArea(envelope);
+        Map<Long, Tile> available = new LinkedHashMap<Long, Tile>();
+        Map<Long, Tile> missing = new LinkedHashMap<Long, Tile>();
+        synchronized (this) {
+            for (int c = col(envelope.getMinX()); c <= col(envelope.getMaxX()); c++) {
+                for (int r = row(envelope.getMinY()); r <= row(envelope.getMaxY()); r++) {
+                    long key = key(c, r);
+                    Envelope needed = tileEnvelope(key).intersection(area);
+                    Tile tile = cache.get(key);
+                    if (tile != null && tile.covered.contains(needed)) {
+                        hits++;
+                        available.put(key, tile);
+                    } else {
+                        misses++;
+                        if (tile != null) {
+                            remove(key);
+                        }
+                        tile = new Tile(needed);
+                        cache.put(key, tile);
+                        missing.put(key, tile);
+                    }
+                }
+            }
+        }
+
+        // load the missing tiles, then wait for the ones other requests are loading
+        Map<String, SimpleFeature> candidates = new LinkedHashMap<String, SimpleFeature>();
+        if (!missing.isEmpty()) {
+            for (Tile tile : load(missing, query.getHints())) {
+                collect(tile, envelope, candidates);
+            }
+        }
+        for (Tile tile : available.values()) {
+            collect(await(tile), envelope, candidates);
+        }
+
+        int max = query.getMaxFeatures();
+        for (SimpleFeature feature : candidates.values()) {
+            if (result.size() >= max) {
+                break;
+            }
+            if (filter.evaluate(feature)) {
+                result.add(target == wrapped.getSchema() ? SimpleFeatureBuilder.copy(feature)
+                        : SimpleFeatureBuilder.retype(feature, target));
+            }
+        }
+        return result;
+    }
+
+    void collect(Tile tile, Envelope envelope, Map<String, SimpleFeature> candidates) {
+        for (SimpleFeature feature : tile.features) {
+            if (!candidates.containsKey(feature.getID())
+                    && envelope.intersects(ReferencedEnvelope.reference(feature.getBounds()))) {
+                candidates.put(feature.getID(), feature);
+            }
+        }
+    }
+
+    /**
+     * Returns the area border tiles should be loaded for, the grid bounds extended to the finite
+     * part of the requested area. Features added outside of the grid bounds are found only by
+     * requests explicitly covering them.
+     */
+    Envelope loadArea(Envelope request) {
+        Envelope area = new Envelope(gridBounds);
+        if (isFinite(request.getMinX()) && isFinite(request.getMinY())) {
+            area.expandToInclude(request.getMinX(), request.getMinY());
+        }
+        if (isFinite(request.getMaxX()) && isFinite(request.getMaxY())) {
+            area.expandToInclude(request.getMaxX(), request.getMaxY());
+        }
+        return area;
+    }
+
+    static boolean isFinite(double ordinate) {
+        return !Double.isInfinite(ordinate) && !Double.isNaN(ordinate)
+                && Math.abs(ordinate) != Double.MAX_VALUE;
+    }
+
+    /**
+     * Waits for a tile being loaded by another request
+     */
+    Tile await(Tile tile) throws IOException {
+        try {
+            return tile.ready.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a tile to be loaded", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to load a tile", e.getCause());
+        }
+    }
+
+    /**
+     * Loads the specified tiles with a single query against the wrapped source, the tiles have
+     * already been registered in the cache, and are made available to the other requests once
+     * loaded. On failure they are removed from the cache instead.
+     */
+    List<Tile> load(Map<Long, Tile> tiles, Hints hints) throws IOException {
+        try {
+            fill(tiles, hints);
+        } catch (IOException | RuntimeException | Error e) {
+            synchronized (this) {
+                for (Map.Entry<Long, Tile> entry : tiles.entrySet()) {
+                    if (cache.get(entry.getKey()) == entry.getValue()) {
+                        cache.remove(entry.getKey());
+                    }
+                }
+            }
+            for (Tile tile : tiles.values()) {
+                tile.ready.completeExceptionally(e);
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            // tiles invalidated while loading are still used for this request, but not cached
+            for (Map.Entry<Long, Tile> entry : tiles.entrySet()) {
+                Tile tile = entry.getValue();
+                if (cache.get(entry.getKey()) == tile) {
+                    tile.accounted = true;
+                    memory += tile.size;
+                }
+            }
+            evict(tiles.keySet());
+        }
+        for (Tile tile : tiles.values()) {
+            tile.ready.complete(tile);
+        }
+        return new ArrayList<Tile>(tiles.values());
+    }
+
+    void fill(Map<Long, Tile> tiles, Hints hints) throws IOException {
+        String geometry = wrapped.getSchema().getGeometryDescriptor().getLocalName();
+        List<Filter> filters = new ArrayList<Filter>();
+        for (Tile tile : tiles.values()) {
+            Envelope e = tile.covered;
+            filters.add(ff.bbox(geometry, e.getMinX(), e.getMinY(), e.getMaxX(), e.getMaxY(),
+                    null));
+        }
+        Query query = new Query(wrapped.getSchema().getName().getLocalPart(),
+                filters.size() == 1 ? filters.get(0) : ff.or(filters));
+        if (hints != null) {
+            // the cached features must be usable for any scale
+            Hints cleaned = new Hints(hints);
+            cleaned.remove(Hints.GEOMETRY_DISTANCE);
+            cleaned.remove(Hints.GEOMETRY_GENERALIZATION);
+            cleaned.remove(Hints.GEOMETRY_SIMPLIFICATION);
+            cleaned.remove(Hints.SCREENMAP);
+            query.setHints(cleaned);
+        }
+
+        SimpleFeatureIterator it = wrapped.getFeatures(query).features();
+        try {
+            while (it.hasNext()) {
+                SimpleFeature feature = it.next();
+                Envelope e = ReferencedEnvelope.reference(feature.getBounds());
+                if (e == null || e.isNull()) {
+                    continue;
+                }
+                long size = estimateSize(feature);
+                for (int c = col(e.getMinX()); c <= col(e.getMaxX()); c++) {
+                    for (int r = row(e.getMinY()); r <= row(e.getMaxY()); r++) {
+                        Tile tile = tiles.get(key(c, r));
+                        if (tile != null && tile.covered.intersects(e)) {
+                            tile.features.add(feature);
+                            tile.size += size;
+                        }
+                    }
+                }
+            }
+        } finally {
+            it.close();
+        }
+    }
+
+    /**
+     * Evicts the least recently used tiles until the memory budget is respected, the tiles
+     * just loaded are kept anyways as they are needed to answer the current request, and so
+     * are the ones still being loaded
+     */
+    void evict(Set<Long> loaded) {
+        Iterator<Map.Entry<Long, Tile>> it = cache.entrySet().iterator();
+        while (memory > maxMemory && it.hasNext()) {
+            Map.Entry<Long, Tile> entry = it.next();
+            Tile tile = entry.getValue();
+            if (!loaded.contains(entry.getKey()) && tile.accounted) {
+                memory -= tile.size;
+                it.remove();
+            }
+        }
+        if (memory > maxMemory && LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Features of the last request exceed the cache memory budget: "
+                    + memory + " > " + maxMemory);
+        }
+    }
+
+    /**
+     * Removes a tile from the cache, releasing its memory
+     */
+    void remove(long key) {
+        Tile tile = cache.remove(key);
+        if (tile != null && tile.accounted) {
+            memory -= tile.size;
+        }
+    }
+
+    /**
+     * Drops the tiles intersecting the given bounds, or all of them if the bounds are not known
+     */
+    synchronized void invalidate(Envelope bounds) {
+        if (bounds == null || bounds.isNull()) {
+            cache.clear();
+            memory = 0;
+            return;
+        }
+        Iterator<Map.Entry<Long, Tile>> it = cache.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Tile> entry = it.next();
+            if (tileEnvelope(entry.getKey()).intersects(bounds)) {
+                if (entry.getValue().accounted) {
+                    memory -= entry.getValue().size;
+                }
+                it.remove();
+            }
+        }
+    }
+
+    int col(double x) {
+        return index(x, gridBounds.getMinX(), gridBounds.getWidth());
+    }
+
+    int row(double y) {
+        return index(y, gridBounds.getMinY(), gridBounds.getHeight());
+    }
+
+    int index(double ordinate, double min, double span) {
+        if (span <= 0) {
+            return 0;
+        }
+        int index = (int) Math.floor((ordinate - min) / span * tiles);
+        return Math.max(0, Math.min(tiles - 1, index));
+    }
+
+    static long key(int col, int row) {
+        return ((long) col << 32) | row;
+    }
+
+    /**
+     * The area covered by a tile. Features outside of the grid bounds, added after the cache was
+     * created, are assigned to the border tiles, so these extend indefinitely outwards. The
+     * queries against the wrapped source are limited to the area actually needed, see
+     * {@link #loadArea(Envelope)}.
+     */
+    Envelope tileEnvelope(long key) {
+        int col = (int) (key >>> 32);
+        int row = (int) key;
+        double w = gridBounds.getWidth() / tiles;
+        double h = gridBounds.getHeight() / tiles;
+        double minX = col == 0 ? -Double.MAX_VALUE : gridBounds.getMinX() + col * w;
+        double maxX = col == tiles - 1 ? Double.MAX_VALUE : gridBounds.getMinX() + (col + 1) * w;
+        double minY = row == 0 ? -Double.MAX_VALUE : gridBounds.getMinY() + row * h;
+        double maxY = row == tiles - 1 ? Double.MAX_VALUE : gridBounds.getMinY() + (row + 1) * h;
+        return new Envelope(minX, maxX, minY, maxY);
+    }
+
+    /**
+     * Rough estimate of the memory used by a feature
+     */
+    static long estimateSize(SimpleFeature feature) {
+        long size = 64;
+        for (Object value : feature.getAttributes()) {
+            if (value instanceof Geometry) {
+                size += 80 + ((Geometry) value).getNumPoints() * 40L;
+            } else if (value instanceof CharSequence) {
+                size += 40 + ((CharSequence) value).length() * 2L;
+            } else {
+                size += 24;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Estimated memory used by the cached features, in bytes.
+     */
+    public synchronized long getMemoryUsage() {
+        return memory;
+    }
+
+    /**
+     * Number of tiles currently in the cache.
+     */
+    public synchronized int getCachedTiles() {
+        return cache.size();
+    }
+
+    /**
+     * Number of tile lookups answered from the cache.
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Number of tile lookups that required loading from the wrapped source.
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public void addFeatureListener(FeatureListener listener) {
+        wrapped.addFeatureListener(listener);
+    }
+
+    public void removeFeatureListener(FeatureListener listener) {
+        wrapped.removeFeatureListener(listener);
+    }
+
+    public DataAccess<SimpleFeatureType, SimpleFeature> getDataStore() {
+        return wrapped.getDataStore();
+    }
+
+    public ReferencedEnvelope getBounds() throws IOException {
+        return wrapped.getBounds();
+    }
+
+    public ReferencedEnvelope getBounds(Query query) throws IOException {
+        return wrapped.getBounds(query);
+    }
+
+    public int getCount(Query query) throws IOException {
+        return wrapped.getCount(query);
+    }
+
+    public SimpleFeatureType getSchema() {
+        return wrapped.getSchema();
+    }
+
+    public ResourceInfo getInfo() {
+        return wrapped.getInfo();
+    }
+
+    public Name getName() {
+        return wrapped.getName();
+    }
+
+    public QueryCapabilities getQueryCapabilities() {
+        return wrapped.getQueryCapabilities();
+    }
+
+    public Set<java.awt.RenderingHints.Key> getSupportedHints() {
+        Set<java.awt.RenderingHints.Key> hints = new HashSet<java.awt.RenderingHints.Key>(
+                wrapped.getSupportedHints());
+        hints.remove(Hints.FEATURE_DETACHED);
+        hints.remove(Hints.GEOMETRY_DISTANCE);
+        hints.remove(Hints.GEOMETRY_GENERALIZATION);
+        hints.remove(Hints.GEOMETRY_SIMPLIFICATION);
+        hints.remove(Hints.SCREENMAP);
+        return hints;
+    }
+
+    /**
+     * Collection answering the query from the tiles when iterated
+     */
+    final class TileFeatureCollection extends AbstractFeatureCollection {
+
+        final Query query;
+
+        TileFeatureCollection(SimpleFeatureType schema, Query query) {
+            super(schema);
+            this.query = query;
+        }
+
+        /**
+         * The features, computed on first access and then reused, so that iterating, counting
+         * and computing the bounds hit the tiles only once
+         */
+        List<SimpleFeature> features;
+
+        synchronized List<SimpleFeature> list() throws IOException {
+            if (features == null) {
+                features = getFeatureList(query, getSchema());
+            }
+            return features;
+        }
+
+        @Override
+        protected Iterator<SimpleFeature> openIterator() {
+            try {
+                return list().iterator();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to get data", e);
+            }
+        }
+
+        @Override
+        public int size() {
+            try {
+                return list().size();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to count features", e);
+            }
+        }
+
+        @Override
+        public ReferencedEnvelope getBounds() {
+            ReferencedEnvelope bounds = new ReferencedEnvelope(getSchema()
+                    .getCoordinateReferenceSystem());
+            try {
+                for (SimpleFeature feature : list()) {
+                    bounds.include(feature.getBounds());
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to compute bounds", e);
+            }
+            return bounds;
+        }
+    }
+}
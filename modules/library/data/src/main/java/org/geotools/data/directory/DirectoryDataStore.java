@@ -50,7 +50,15 @@ import org.opengis.feature.type.Name;
 import org.opengis.filter.Filter;
 
 /**
- * 
+ * A data store exposing the feature types of all the files in a directory.
+ * <p>
+ * The directory is watched for changes, when the file system supports it only
+ * the files that changed are looked at again. The feature types of each file,
+ * and the count and bounds of each feature type once computed, can be
+ * persisted in a metadata file so that a restart does not need to open every
+ * file again, see {@link #setMetadataFile(File)}. The number of stores kept
+ * open at the same time can be limited with {@link #setMaxOpenStores(int)}.
+ * </p>
  *
  * @source $URL$
  */
@@ -63,6 +71,39 @@ public class DirectoryDataStore implements DataStore {
         cache = new DirectoryTypeCache(directory, dialect);
     }
 
+    /**
+     * Sets the file where the feature types of each file, along with their
+     * count and bounds, are persisted. Files that did not change since are not
+     * opened again after a restart. The file should not be modified by other
+     * stores, and is best set before the store is first used.
+     *
+     * @param metadataFile the metadata file, or null to keep the metadata in
+     *        memory only
+     */
+    public void setMetadataFile(File metadataFile) {
+        cache.setMetadataFile(metadataFile);
+    }
+
+    public File getMetadataFile() {
+        return cache.metadataFile;
+    }
+
+    /**
+     * Sets the maximum number of stores kept open at the same time, the least
+     * recently used ones are disposed when the limit is exceeded, and opened
+     * again when needed.
+     *
+     * @param maxOpenStores the maximum number of open stores, zero or less to
+     *        only release them when the memory runs low
+     */
+    public void setMaxOpenStores(int maxOpenStores) {
+        cache.setMaxOpenStores(maxOpenStores);
+    }
+
+    public int getMaxOpenStores() {
+        return cache.maxOpenStores;
+    }
+
     public FeatureReader<SimpleFeatureType, SimpleFeature> getFeatureReader(
             Query query, Transaction transaction) throws IOException {
         String typeName = query.getTypeName();
@@ -72,13 +113,16 @@ public class DirectoryDataStore implements DataStore {
     public SimpleFeatureSource getFeatureSource(
             String typeName) throws IOException {
         SimpleFeatureSource fs = getDataStore(typeName).getFeatureSource(typeName);
+        DirectoryFeatureSource result;
         if(fs instanceof SimpleFeatureLocking) {
-            return new DirectoryFeatureLocking((SimpleFeatureLocking) fs);
+            result = new DirectoryFeatureLocking((SimpleFeatureLocking) fs);
         } else if(fs instanceof FeatureStore) {
-            return new DirectoryFeatureStore((SimpleFeatureStore) fs);
+            result = new DirectoryFeatureStore((SimpleFeatureStore) fs);
         } else {
-            return new DirectoryFeatureSource((SimpleFeatureSource) fs);
+            result = new DirectoryFeatureSource((SimpleFeatureSource) fs);
         }
+        result.cache = cache;
+        return result;
     }
 
     public FeatureWriter<SimpleFeatureType, SimpleFeature> getFeatureWriter(
@@ -105,7 +149,7 @@ public class DirectoryDataStore implements DataStore {
     }
 
     public SimpleFeatureType getSchema(String typeName) throws IOException {
-        return getDataStore(typeName).getSchema(typeName);
+        return cache.getSchema(typeName);
     }
 
     public String[] getTypeNames() throws IOException {
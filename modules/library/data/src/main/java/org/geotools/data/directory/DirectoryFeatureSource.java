@@ -41,6 +41,11 @@ import org.opengis.filter.Filter;
 public class DirectoryFeatureSource implements SimpleFeatureSource {
     SimpleFeatureSource fsource;
     
+    /**
+     * Remembers the count and bounds of the whole feature type, when set
+     */
+    DirectoryTypeCache cache;
+    
     public DirectoryFeatureSource(
             SimpleFeatureSource delegate) {
         this.fsource = delegate;
@@ -51,15 +56,50 @@ public class DirectoryFeatureSource implements SimpleFeatureSource {
     }
 
     public ReferencedEnvelope getBounds() throws IOException {
-        return fsource.getBounds();
+        return getBounds(Query.ALL);
     }
 
     public ReferencedEnvelope getBounds(Query query) throws IOException {
-        return fsource.getBounds(query);
+        if (!isWholeType(query) || !query.retrieveAllProperties()) {
+            return fsource.getBounds(query);
+        }
+        String typeName = fsource.getSchema().getTypeName();
+        ReferencedEnvelope bounds = cache.getBounds(typeName);
+        if (bounds == null) {
+            bounds = query == Query.ALL ? fsource.getBounds() : fsource.getBounds(query);
+            if (bounds != null) {
+                cache.setBounds(typeName, bounds);
+            }
+        }
+        return bounds;
     }
 
     public int getCount(Query query) throws IOException {
-        return fsource.getCount(query);
+        if (!isWholeType(query)) {
+            return fsource.getCount(query);
+        }
+        String typeName = fsource.getSchema().getTypeName();
+        Integer count = cache.getCount(typeName);
+        if (count == null) {
+            count = fsource.getCount(query);
+            if (count >= 0) {
+                cache.setCount(typeName, count);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns true if the query asks for all the features, as they are
+     * stored, so that the cached statistics can be used
+     */
+    boolean isWholeType(Query query) {
+        return cache != null
+                && (query.getFilter() == null || query.getFilter() == Filter.INCLUDE)
+                && query.isMaxFeaturesUnlimited()
+                && (query.getStartIndex() == null || query.getStartIndex() == 0)
+                && query.getCoordinateSystem() == null
+                && query.getCoordinateSystemReproject() == null;
     }
 
     public DataAccess<SimpleFeatureType, SimpleFeature> getDataStore() {
@@ -22,6 +22,7 @@ import java.util.List;
 import org.geotools.data.FeatureListener;
 import org.geotools.data.FeatureReader;
 import org.geotools.data.FeatureStore;
+import org.geotools.data.Query;
 import org.geotools.data.Transaction;
 import org.geotools.data.simple.SimpleFeatureStore;
 import org.geotools.feature.FeatureCollection;
@@ -51,6 +52,12 @@ public class DirectoryFeatureStore extends DirectoryFeatureSource implements
         return fstore.getTransaction();
     }
 
+    @Override
+    boolean isWholeType(Query query) {
+        // pending changes are not reflected in the cached statistics
+        return getTransaction() == Transaction.AUTO_COMMIT && super.isWholeType(query);
+    }
+
     public void modifyFeatures(Name attributeName, Object attributeValue, Filter filter)
             throws IOException {
         fstore.modifyFeatures(attributeName, attributeValue, filter);
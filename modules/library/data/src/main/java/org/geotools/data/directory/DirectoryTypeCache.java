@@ -17,9 +17,15 @@
 
 package org.geotools.data.directory;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.lang.ref.SoftReference;
 import java.net.URI;
 import java.net.URL;
@@ -28,6 +34,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -42,7 +49,11 @@ import org.geotools.data.DataStore;
 import org.geotools.data.DataStoreFactorySpi;
 import org.geotools.data.DataStoreFinder;
 import org.geotools.data.DataAccessFactory.Param;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.CRS;
 import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 /**
  * <p>Handles all of the data stores that a directory data store relies onto,
@@ -60,6 +71,51 @@ class DirectoryTypeCache {
      */
     Map<String, FileEntry> ftCache = new ConcurrentHashMap<String, FileEntry>();
 
+    /**
+     * The entries of the files providing feature types, used for incremental
+     * updates
+     */
+    Map<File, FileEntry> fileCache = new ConcurrentHashMap<File, FileEntry>();
+
+    /**
+     * The metadata of the files no store can read, so that they are not tried
+     * again until they change
+     */
+    Map<File, FileMetadata> ignoredFiles = new ConcurrentHashMap<File, FileMetadata>();
+
+    /**
+     * Whether the last full scan found the same type name in more than one
+     * file, in which case removals need a full scan to pick the replacement
+     */
+    boolean duplicateTypes;
+
+    /**
+     * Where the file metadata is persisted, if anywhere
+     */
+    File metadataFile;
+
+    /**
+     * Metadata loaded from {@link #metadataFile}, used by the first scan
+     */
+    Map<String, FileMetadata> persisted;
+
+    /**
+     * Whether the metadata changed since it was last persisted
+     */
+    volatile boolean metadataChanged;
+
+    /**
+     * The maximum number of open stores, zero or less for no limit other than
+     * the memory available
+     */
+    int maxOpenStores;
+
+    /**
+     * The entries with an open store, in least recently used order
+     */
+    LinkedHashMap<FileEntry, Boolean> openStores = new LinkedHashMap<FileEntry, Boolean>(16,
+            0.75f, true);
+
     /**
      * The directory we're gathering data from
      */
@@ -109,7 +165,22 @@ class DirectoryTypeCache {
         this.directory = directory;
         this.factory = factory;
 
-        this.watcher = new ImmediateDirectoryWatcher(directory);
+        this.watcher = createWatcher(directory);
+    }
+
+    /**
+     * Uses a watch service based watcher when the file system supports it, so
+     * that changes can be applied incrementally, the last modified time based
+     * one otherwise
+     */
+    static DirectoryWatcher createWatcher(File directory) {
+        try {
+            return new WatchServiceDirectoryWatcher(directory);
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Cannot watch " + directory
+                    + " for changes, will scan it on modification", e);
+            return new ImmediateDirectoryWatcher(directory);
+        }
     }
 
     /**
@@ -136,6 +207,62 @@ class DirectoryTypeCache {
             lock.readLock().unlock();
         }
     }
+
+    /**
+     * Returns the schema of a feature type, without opening its store if the
+     * schema is already known and the file did not change since
+     */
+    SimpleFeatureType getSchema(String typeName) throws IOException {
+        lock.readLock().lock();
+        try {
+            updateCache();
+            FileEntry fileEntry = ftCache.get(typeName);
+            if (fileEntry == null) {
+                throw new IOException("Not available: " + typeName);
+            }
+            return fileEntry.getSchema(typeName);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the known count of all the features of a type, or null if not
+     * known
+     */
+    Integer getCount(String typeName) {
+        FileEntry fileEntry = ftCache.get(typeName);
+        return fileEntry != null ? fileEntry.getCount(typeName) : null;
+    }
+
+    /**
+     * Remembers the count of all the features of a type
+     */
+    void setCount(String typeName, int count) {
+        FileEntry fileEntry = ftCache.get(typeName);
+        if (fileEntry != null) {
+            fileEntry.setCount(typeName, count);
+        }
+    }
+
+    /**
+     * Returns the known bounds of all the features of a type, or null if not
+     * known
+     */
+    ReferencedEnvelope getBounds(String typeName) {
+        FileEntry fileEntry = ftCache.get(typeName);
+        return fileEntry != null ? fileEntry.getBounds(typeName) : null;
+    }
+
+    /**
+     * Remembers the bounds of all the features of a type
+     */
+    void setBounds(String typeName, ReferencedEnvelope bounds) {
+        FileEntry fileEntry = ftCache.get(typeName);
+        if (fileEntry != null) {
+            fileEntry.setBounds(typeName, bounds);
+        }
+    }
     
     /**
      * Returns all the type names known
@@ -192,8 +319,13 @@ class DirectoryTypeCache {
             try {
                 // still stale?
                 if(watcher.isStale()) {
+                    Set<File> changes = watcher.getChanges();
                     watcher.mark();
-                    refreshCacheContents();
+                    if (changes == null) {
+                        refreshCacheContents();
+                    } else {
+                        refreshFiles(changes);
+                    }
                 }
             } finally {
                 // downgrade lock
@@ -225,18 +357,18 @@ class DirectoryTypeCache {
         // prepare the replacement ft cache
         Map<String, FileEntry> result = new TreeMap<String, FileEntry>();
 
-        // build support structure used to quickly find files that need updating
-        Map<File, FileEntry> fileCache = new HashMap<File, FileEntry>();
-        for (FileEntry entry : ftCache.values()) {
-            fileCache.put(entry.file, entry);
-        }
+        // the entries of the files still there, either kept or new
+        Map<File, FileEntry> files = new HashMap<File, FileEntry>();
+        Set<File> seen = new HashSet<File>();
+        boolean duplicates = false;
         
         // grab all the candidate files
         for (File file : directory.listFiles()) {
             // skip over directories, we don't recurse
-            if(file.isDirectory()) {
+            if(file.isDirectory() || isMetadataFile(file)) {
                 continue;
             }
+            seen.add(file);
             
             // do we have the same datastore in the current cache? If so keep it, we don't
             // want to rebuild over and over the same stores
@@ -244,19 +376,18 @@ class DirectoryTypeCache {
             
             // if missing build a new one
             if(entry == null) {
-                DataStore store = factory.getDataStore(file);
-                if(store != null) {
-                    entry = new FileEntry(file, store);
-                }
+                entry = createEntry(file);
             }
             
             // if we managed to build an entry collect its feature types
             if(entry != null) {
-                for (String typeName : entry.getStore(true).getTypeNames()) {
+                files.put(file, entry);
+                for (String typeName : entry.getTypeNames()) {
                     // don't override existing entries
                     if (!result.containsKey(typeName))
                         result.put(typeName, entry);
                     else {
+                        duplicates = true;
                         LOGGER.log(Level.WARNING, "Type name " + typeName
                                 + " is available from multiple datastores");
                     }
@@ -273,27 +404,266 @@ class DirectoryTypeCache {
         // remove should be not working anyways)
         Set<String> removedFTs = new HashSet<String>(ftCache.keySet());
         removedFTs.removeAll(result.keySet());
-        
-        // collect all data stores that are referred by a feature type that we 
-        // are going to remove, but are not referred by any feature type we're
-        // going to keep. Clean the ftCache from removed feature types at the same
-        // time.
-        Set<FileEntry> disposable = new HashSet<FileEntry>(); 
         for (String removedFT : removedFTs) {
-            disposable.add(ftCache.remove(removedFT));
-        }
-        for (FileEntry entry : result.values()) {
-            disposable.remove(entry);
+            ftCache.remove(removedFT);
         }
-        for (FileEntry entry : disposable) {
-            entry.dispose();
+        
+        // dispose the data stores of the files that are gone
+        for (FileEntry entry : new ArrayList<FileEntry>(fileCache.values())) {
+            if (files.get(entry.file) != entry) {
+                fileCache.remove(entry.file);
+                entry.dispose();
+                metadataChanged = true;
+            }
         }
         
         // now let's add all the new ones
-        Set<String> added = new HashSet<String>(result.keySet());
-        added.removeAll(ftCache.keySet());
-        for (String newFeatureType : added) {
-            ftCache.put(newFeatureType, result.get(newFeatureType));
+        ftCache.putAll(result);
+        fileCache.putAll(files);
+        if (ignoredFiles.keySet().retainAll(seen)) {
+            metadataChanged = true;
+        }
+        duplicateTypes = duplicates;
+        
+        // the persisted metadata is now held by the entries
+        persisted = null;
+        saveMetadata();
+    }
+
+    /**
+     * Applies the changes of a few files to the feature type cache, without
+     * looking at the other files in the directory.
+     * <p>
+     * Entries of removed files are disposed, entries of new files are built,
+     * and entries of modified files are kept, since we assume a properly
+     * written datastore will notice the changes on its own, but their feature
+     * type names are refreshed. Files that cannot be read yet, for example
+     * because they are still being copied, are tried again on their next
+     * modification.
+     * </p>
+     *
+     * @throws IOException
+     */
+    void refreshFiles(Set<File> changes) throws IOException {
+        for (File file : changes) {
+            if (isMetadataFile(file)) {
+                continue;
+            }
+            FileEntry entry = fileCache.get(file);
+            if (!file.isFile()) {
+                if (ignoredFiles.remove(file) != null) {
+                    metadataChanged = true;
+                }
+                if (entry != null) {
+                    if (duplicateTypes) {
+                        // another file might provide the same types
+                        refreshCacheContents();
+                        return;
+                    }
+                    for (String typeName : entry.metadata.typeNames) {
+                        ftCache.remove(typeName, entry);
+                    }
+                    fileCache.remove(file);
+                    entry.dispose();
+                    metadataChanged = true;
+                }
+                continue;
+            }
+
+            if (entry != null) {
+                String[] previous = entry.metadata.typeNames;
+                List<String> typeNames = Arrays.asList(entry.getTypeNames());
+                for (String typeName : previous) {
+                    if (!typeNames.contains(typeName)) {
+                        ftCache.remove(typeName, entry);
+                    }
+                }
+            } else {
+                try {
+                    entry = createEntry(file);
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Could not read " + file
+                            + " yet, will try again on its next modification", e);
+                    continue;
+                }
+                if (entry == null) {
+                    continue;
+                }
+                fileCache.put(file, entry);
+            }
+            for (String typeName : entry.getTypeNames()) {
+                FileEntry existing = ftCache.get(typeName);
+                if (existing == null) {
+                    ftCache.put(typeName, entry);
+                } else if (existing != entry) {
+                    duplicateTypes = true;
+                    LOGGER.log(Level.WARNING, "Type name " + typeName
+                            + " is available from multiple datastores");
+                }
+            }
+        }
+        saveMetadata();
+    }
+
+    /**
+     * Builds the entry of a file not in the cache, using the persisted
+     * metadata when the file did not change since, or opening a store on it
+     * otherwise.
+     *
+     * @return the entry, or null if no store can read the file
+     */
+    FileEntry createEntry(File file) throws IOException {
+        FileMetadata metadata = ignoredFiles.get(file);
+        if (metadata != null && metadata.isCurrent(file)) {
+            return null;
+        }
+        metadata = persisted != null ? persisted.get(file.getName()) : null;
+        if (metadata != null && metadata.isCurrent(file)) {
+            if (metadata.typeNames.length == 0) {
+                ignoredFiles.put(file, metadata);
+                return null;
+            }
+            return new FileEntry(file, metadata);
+        }
+
+        metadataChanged = true;
+        DataStore store = factory.getDataStore(file);
+        if (store == null) {
+            ignoredFiles.put(file, new FileMetadata(file, new String[0]));
+            return null;
+        }
+        FileEntry entry = new FileEntry(file, store);
+        storeUsed(entry);
+        return entry;
+    }
+
+    /**
+     * Records an entry store has been used, closing the least recently used
+     * stores when there are too many open
+     */
+    void storeUsed(FileEntry entry) {
+        if (maxOpenStores <= 0) {
+            return;
+        }
+        List<FileEntry> evicted = null;
+        synchronized (openStores) {
+            openStores.put(entry, Boolean.TRUE);
+            Iterator<FileEntry> it = openStores.keySet().iterator();
+            while (openStores.size() > maxOpenStores && it.hasNext()) {
+                FileEntry eldest = it.next();
+                if (eldest != entry) {
+                    it.remove();
+                    if (evicted == null) {
+                        evicted = new ArrayList<FileEntry>();
+                    }
+                    evicted.add(eldest);
+                }
+            }
+        }
+        // close outside of the pool lock, the entries have their own
+        if (evicted != null) {
+            for (FileEntry closing : evicted) {
+                LOGGER.log(Level.FINE, "Closing the store of " + closing.file);
+                closing.close();
+            }
+        }
+    }
+
+    /**
+     * Sets the maximum number of stores kept open at the same time, zero or
+     * less to let them be released only when memory runs low
+     */
+    void setMaxOpenStores(int maxOpenStores) {
+        this.maxOpenStores = maxOpenStores;
+        if (maxOpenStores <= 0) {
+            synchronized (openStores) {
+                openStores.clear();
+            }
+        }
+    }
+
+    /**
+     * Sets the file used to persist the file metadata across restarts, and
+     * loads the metadata it contains
+     */
+    void setMetadataFile(File metadataFile) {
+        lock.writeLock().lock();
+        try {
+            this.metadataFile = metadataFile;
+            this.persisted = null;
+            if (metadataFile != null && metadataFile.exists()) {
+                ObjectInputStream in = null;
+                try {
+                    in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(
+                            metadataFile)));
+                    @SuppressWarnings("unchecked")
+                    Map<String, FileMetadata> read = (Map<String, FileMetadata>) in.readObject();
+                    persisted = read;
+                } catch (Exception e) {
+                    LOGGER.log(Level.WARNING, "Could not read the directory metadata from "
+                            + metadataFile + ", the files will be scanned again", e);
+                } finally {
+                    if (in != null) {
+                        try {
+                            in.close();
+                        } catch (IOException e) {
+                            // nothing to do
+                        }
+                    }
+                }
+            }
+            metadataChanged = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    boolean isMetadataFile(File file) {
+        return metadataFile != null
+                && file.getName().startsWith(metadataFile.getName())
+                && file.getAbsoluteFile().getParentFile()
+                        .equals(metadataFile.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Persists the file metadata, if a file has been configured and the
+     * metadata changed
+     */
+    void saveMetadata() {
+        if (metadataFile == null || !metadataChanged) {
+            return;
+        }
+        metadataChanged = false;
+        HashMap<String, FileMetadata> metadata = new HashMap<String, FileMetadata>();
+        for (Map.Entry<File, FileMetadata> entry : ignoredFiles.entrySet()) {
+            metadata.put(entry.getKey().getName(), entry.getValue());
+        }
+        for (FileEntry entry : fileCache.values()) {
+            metadata.put(entry.file.getName(), entry.snapshot());
+        }
+        File temp = null;
+        try {
+            File parent = metadataFile.getAbsoluteFile().getParentFile();
+            temp = File.createTempFile(metadataFile.getName(), ".tmp", parent);
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(temp)));
+            try {
+                out.writeObject(metadata);
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(metadataFile)) {
+                metadataFile.delete();
+                if (!temp.renameTo(metadataFile)) {
+                    throw new IOException("Could not rename " + temp + " to " + metadataFile);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not save the directory metadata to "
+                    + metadataFile, e);
+            if (temp != null) {
+                temp.delete();
+            }
         }
     }
 
@@ -342,13 +712,13 @@ class DirectoryTypeCache {
      * Disposes of the file cache and all the cached data stores
      */
     void dispose() {
-        // dispose all of the entries, they can be disposed more than
-        // once so just scanning the values is ok (generally speaking we'll
-        // find the same entry more than once among the values, once per
-        // registered feature type in the same data store in general)
-        for (FileEntry entry : ftCache.values()) {
+        saveMetadata();
+        // dispose all of the entries, including the ones whose feature types
+        // are all shadowed by other files
+        for (FileEntry entry : fileCache.values()) {
             entry.dispose();
         }
+        watcher.dispose();
     }
 
     /**
@@ -369,26 +739,189 @@ class DirectoryTypeCache {
         File file;
 
         SoftReference<DataStore> ref;
+
+        /**
+         * The feature types of the file and their statistics
+         */
+        volatile FileMetadata metadata;
+
+        /**
+         * The schemas already looked up, so that they can be returned without
+         * opening the store again
+         */
+        Map<String, SimpleFeatureType> schemas = new ConcurrentHashMap<String, SimpleFeatureType>();
+
+        /**
+         * The bounds in {@link #metadata}, with their coordinate reference
+         * system parsed
+         */
+        Map<String, ReferencedEnvelope> bounds = new HashMap<String, ReferencedEnvelope>();
         
-        public FileEntry(File file, DataStore store) {
+        public FileEntry(File file, DataStore store) throws IOException {
             this.file = file;
             ref = new DataStoreSoftReference(store);
+            metadata = new FileMetadata(file, store.getTypeNames());
+        }
+
+        /**
+         * Builds an entry from persisted metadata, the store will be opened
+         * on first use
+         */
+        FileEntry(File file, FileMetadata metadata) {
+            this.file = file;
+            this.metadata = metadata;
         }
         
         DataStore getStore(boolean force) throws IOException {
-            DataStore store = ref != null ? ref.get() : null;
-            if(store == null && force) {
-                store = factory.getDataStore(file);
-                ref = new DataStoreSoftReference(store);
-            } 
+            DataStore store;
+            synchronized (this) {
+                store = ref != null ? ref.get() : null;
+                if(store == null && force) {
+                    store = factory.getDataStore(file);
+                    ref = new DataStoreSoftReference(store);
+                }
+            }
+            if (store != null && force) {
+                storeUsed(this);
+            }
             return store;
         }
+
+        /**
+         * Returns the feature types of the file, asking the store again only
+         * if the file changed
+         */
+        String[] getTypeNames() throws IOException {
+            FileMetadata current = metadata;
+            if (current.isCurrent(file)) {
+                return current.typeNames;
+            }
+            DataStore store = getStore(true);
+            String[] typeNames = store != null ? store.getTypeNames() : new String[0];
+            synchronized (this) {
+                metadata = new FileMetadata(file, typeNames);
+                schemas.clear();
+                bounds.clear();
+            }
+            metadataChanged = true;
+            return typeNames;
+        }
+
+        SimpleFeatureType getSchema(String typeName) throws IOException {
+            synchronized (this) {
+                current();
+                SimpleFeatureType schema = schemas.get(typeName);
+                if (schema != null) {
+                    return schema;
+                }
+            }
+            DataStore store = getStore(true);
+            if (store == null) {
+                throw new IOException("Not available: " + typeName);
+            }
+            SimpleFeatureType schema = store.getSchema(typeName);
+            schemas.put(typeName, schema);
+            return schema;
+        }
+
+        synchronized Integer getCount(String typeName) {
+            return current().counts.get(typeName);
+        }
+
+        synchronized void setCount(String typeName, int count) {
+            current().counts.put(typeName, count);
+            metadataChanged = true;
+        }
+
+        synchronized ReferencedEnvelope getBounds(String typeName) {
+            FileMetadata current = current();
+            ReferencedEnvelope envelope = bounds.get(typeName);
+            if (envelope == null) {
+                double[] values = current.bounds.get(typeName);
+                if (values == null) {
+                    return null;
+                }
+                CoordinateReferenceSystem crs = null;
+                String wkt = current.crs.get(typeName);
+                if (wkt != null) {
+                    try {
+                        crs = CRS.parseWKT(wkt);
+                    } catch (Exception e) {
+                        LOGGER.log(Level.FINE, "Could not parse the CRS of " + typeName, e);
+                    }
+                }
+                if (values.length == 0) {
+                    envelope = new ReferencedEnvelope(crs);
+                } else {
+                    envelope = new ReferencedEnvelope(values[0], values[1], values[2],
+                            values[3], crs);
+                }
+                bounds.put(typeName, envelope);
+            }
+            return new ReferencedEnvelope(envelope);
+        }
+
+        synchronized void setBounds(String typeName, ReferencedEnvelope envelope) {
+            FileMetadata current = current();
+            if (envelope.isNull()) {
+                current.bounds.put(typeName, new double[0]);
+            } else {
+                current.bounds.put(typeName, new double[] { envelope.getMinX(),
+                        envelope.getMaxX(), envelope.getMinY(), envelope.getMaxY() });
+            }
+            current.crs.remove(typeName);
+            CoordinateReferenceSystem crs = envelope.getCoordinateReferenceSystem();
+            if (crs != null) {
+                try {
+                    current.crs.put(typeName, crs.toWKT());
+                } catch (UnsupportedOperationException e) {
+                    LOGGER.log(Level.FINE, "Cannot encode the CRS of " + typeName, e);
+                }
+            }
+            bounds.put(typeName, new ReferencedEnvelope(envelope));
+            metadataChanged = true;
+        }
+
+        /**
+         * Returns the metadata, dropping the statistics and schemas if the
+         * file changed. To be called with the entry lock held
+         */
+        private FileMetadata current() {
+            FileMetadata current = metadata;
+            if (!current.isCurrent(file)) {
+                current = new FileMetadata(file, current.typeNames);
+                metadata = current;
+                schemas.clear();
+                bounds.clear();
+                metadataChanged = true;
+            }
+            return current;
+        }
+
+        /**
+         * A copy of the metadata that can be serialized while the entry is in
+         * use
+         */
+        synchronized FileMetadata snapshot() {
+            return new FileMetadata(metadata);
+        }
+
+        /**
+         * Closes the store, it will be opened again when needed
+         */
+        synchronized void close() {
+            if (ref != null) {
+                // disposes the store
+                ref.clear();
+                ref = null;
+            }
+        }
         
         void dispose() {
-            DataStore store = ref != null ? ref.get() : null;
-            if(store != null)
-                store.dispose();
-            ref.clear();
+            synchronized (openStores) {
+                openStores.remove(this);
+            }
+            close();
         }
     }
     
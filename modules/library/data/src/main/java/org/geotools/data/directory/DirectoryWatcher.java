@@ -16,6 +16,9 @@
  */
 package org.geotools.data.directory;
 
+import java.io.File;
+import java.util.Set;
+
 /**
  * Implementors will provide a service that checks if directory contents are
  * changed since last refresh.
@@ -35,4 +38,16 @@ interface DirectoryWatcher {
      * Marks the time the directory has been last checked at
      */
     public void mark();
+
+    /**
+     * Returns the files created, modified or removed since the changes were
+     * last collected, or null if they are not known and the whole directory
+     * needs to be scanned. To be called before {@link #mark()}
+     */
+    public Set<File> getChanges();
+
+    /**
+     * Releases the resources used to watch the directory
+     */
+    public void dispose();
 }
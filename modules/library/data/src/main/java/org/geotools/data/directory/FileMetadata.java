@@ -0,0 +1,81 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.directory;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * What the directory store remembers about a file: the feature types it
+ * provides and, when already computed, their feature count and bounds. The
+ * information is valid as long as the file size and last modified time do not
+ * change.
+ *
+ * @source $URL$
+ */
+class FileMetadata implements Serializable {
+
+    private static final long serialVersionUID = -3203384773926406361L;
+
+    final long lastModified;
+
+    final long length;
+
+    /**
+     * The feature types provided by the file, empty if no store can read it
+     */
+    final String[] typeNames;
+
+    /**
+     * Count of each feature type, when known
+     */
+    final Map<String, Integer> counts = new HashMap<String, Integer>();
+
+    /**
+     * Bounds of each feature type as minx, maxx, miny, maxy, when known
+     */
+    final Map<String, double[]> bounds = new HashMap<String, double[]>();
+
+    /**
+     * WKT of the bounds coordinate reference system, when there is one
+     */
+    final Map<String, String> crs = new HashMap<String, String>();
+
+    FileMetadata(File file, String[] typeNames) {
+        this.lastModified = file.lastModified();
+        this.length = file.length();
+        this.typeNames = typeNames;
+    }
+
+    FileMetadata(FileMetadata other) {
+        this.lastModified = other.lastModified;
+        this.length = other.length;
+        this.typeNames = other.typeNames;
+        this.counts.putAll(other.counts);
+        this.bounds.putAll(other.bounds);
+        this.crs.putAll(other.crs);
+    }
+
+    /**
+     * Returns true if the file did not change since the metadata was gathered
+     */
+    boolean isCurrent(File file) {
+        return lastModified == file.lastModified() && length == file.length();
+    }
+}
@@ -17,6 +17,7 @@
 package org.geotools.data.directory;
 
 import java.io.File;
+import java.util.Set;
 
 /**
  * Performs a last updated check each time isStale is called. Accurate, but will
@@ -44,4 +45,13 @@ class ImmediateDirectoryWatcher implements DirectoryWatcher {
         lastUpdated = directory.lastModified();
     }
 
+    public Set<File> getChanges() {
+        // we only know the directory changed, not what changed in it
+        return null;
+    }
+
+    public void dispose() {
+        // nothing to release
+    }
+
 }
@@ -0,0 +1,161 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.directory;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.util.logging.Logging;
+
+/**
+ * Uses a {@link WatchService} to collect the files that changed in the
+ * directory, so that the type cache can be updated incrementally instead of
+ * scanning the whole directory again.
+ * <p>
+ * The directory last modified time is still checked, since some watch service
+ * implementations deliver the events with a delay: when the directory changed
+ * and no event arrived in a short while, a full scan is requested.
+ * </p>
+ *
+ * @source $URL$
+ */
+class WatchServiceDirectoryWatcher implements DirectoryWatcher {
+
+    static final Logger LOGGER = Logging.getLogger(WatchServiceDirectoryWatcher.class);
+
+    /**
+     * How long to wait for the events of a change the directory last modified
+     * time already reports, in milliseconds
+     */
+    static final long EVENT_WAIT = 100;
+
+    File directory;
+
+    WatchService service;
+
+    Long lastUpdated;
+
+    Set<File> changes = new HashSet<File>();
+
+    boolean overflow;
+
+    public WatchServiceDirectoryWatcher(File directory) throws IOException {
+        this.directory = directory;
+        Path path = directory.toPath();
+        this.service = path.getFileSystem().newWatchService();
+        try {
+            path.register(service, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+        } catch (IOException e) {
+            service.close();
+            throw e;
+        } catch (RuntimeException e) {
+            service.close();
+            throw e;
+        }
+    }
+
+    public synchronized boolean isStale() {
+        poll();
+        return lastUpdated == null || overflow || !changes.isEmpty()
+                || lastUpdated < directory.lastModified();
+    }
+
+    public synchronized void mark() {
+        lastUpdated = directory.lastModified();
+        overflow = false;
+    }
+
+    public synchronized Set<File> getChanges() {
+        poll();
+        if (lastUpdated == null || overflow) {
+            return null;
+        }
+        if (changes.isEmpty() && lastUpdated < directory.lastModified()) {
+            // the events might not have been delivered yet
+            try {
+                WatchKey key = service.poll(EVENT_WAIT, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    drain(key);
+                    poll();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            if (changes.isEmpty() || overflow) {
+                return null;
+            }
+        }
+        Set<File> result = changes;
+        changes = new HashSet<File>();
+        return result;
+    }
+
+    /**
+     * Collects the pending events without blocking
+     */
+    void poll() {
+        try {
+            WatchKey key;
+            while ((key = service.poll()) != null) {
+                drain(key);
+            }
+        } catch (RuntimeException e) {
+            // closed service
+            LOGGER.log(Level.FINE, "Cannot watch " + directory, e);
+            overflow = true;
+        }
+    }
+
+    void drain(WatchKey key) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                overflow = true;
+            } else {
+                Path name = (Path) event.context();
+                changes.add(new File(directory, name.toString()));
+            }
+        }
+        if (!key.reset()) {
+            // the directory is no longer accessible
+            overflow = true;
+        }
+    }
+
+    public void dispose() {
+        try {
+            service.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Error closing the watch service of " + directory, e);
+        }
+    }
+
+}
@@ -65,10 +65,40 @@ import org.opengis.feature.type.Name;
  */
 public class MemoryDataStore extends ContentDataStore {
 
+    /**
+     * Whether new entries should use concurrent, spatially indexed, storage
+     */
+    boolean concurrent;
+
     public MemoryDataStore() {
         super();
     }
 
+    /**
+     * Returns true if feature types added from now on use concurrent storage.
+     * 
+     * @see #setConcurrent(boolean)
+     */
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    /**
+     * Enables concurrent storage for the feature types added from now on.
+     * <p>
+     * In concurrent mode features are kept in a concurrent map along with a spatial index of
+     * their default geometry. Readers work on a snapshot of the content and never block
+     * writers, updates replace the stored features instead of modifying them in place, and
+     * queries by feature id or bounding box only visit the matching features. Feature order is
+     * not preserved in this mode.
+     * </p>
+     * 
+     * @param concurrent True to enable concurrent storage
+     */
+    public void setConcurrent(boolean concurrent) {
+        this.concurrent = concurrent;
+    }
+
     /**
      * Use MemoryState to manage internal storage.
      */
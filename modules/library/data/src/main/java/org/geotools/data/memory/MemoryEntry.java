@@ -16,13 +16,29 @@
  */
 package org.geotools.data.memory;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.geotools.data.DataUtilities;
 import org.geotools.data.store.ContentEntry;
+import org.geotools.filter.visitor.ExtractBoundsFilterVisitor;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.filter.Filter;
+import org.opengis.filter.Id;
+import org.opengis.filter.identity.Identifier;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.index.quadtree.Quadtree;
 
 /**
  * Entry used to store features (of a single FeatureType).
@@ -32,6 +48,12 @@ import org.opengis.feature.simple.SimpleFeatureType;
  * <pre><code> synchronize ( entry ){
  *     entry.memory.put( feature.getID(), feature );
  * }</code></pre>
+ * <p>
+ * When the store is {@link MemoryDataStore#isConcurrent() concurrent} the features are kept in
+ * a concurrent map along with a spatial index of the default geometry. Stored features are
+ * never modified in place, updates replace them with a new copy, so readers can work on a
+ * snapshot of the content without locking. In this mode the memory map is read only, and
+ * content must be changed through the feature writers (or {@link MemoryDataStore#addFeature}).
  * 
  * @author Jody Garnett (Boundless)
  */
@@ -52,6 +74,16 @@ public class MemoryEntry extends ContentEntry {
      */
     private final Map<String, SimpleFeature> memory;
 
+    /**
+     * Spatial index of the default geometry, only used in concurrent mode.
+     */
+    private final Quadtree index;
+
+    /**
+     * Guards {@link #index}, and keeps it consistent with {@link #memory}, in concurrent mode.
+     */
+    private final ReadWriteLock lock;
+
     /**
      * Entry to store content of the provided SimpleFeatureType.
      * 
@@ -61,7 +93,22 @@ public class MemoryEntry extends ContentEntry {
     MemoryEntry( MemoryDataStore store, SimpleFeatureType schema){
         super( store, schema.getName() );
         this.schema = schema;
-        memory = Collections.synchronizedMap(new LinkedHashMap<String, SimpleFeature>());
+        if (store != null && store.isConcurrent()) {
+            memory = new ConcurrentHashMap<String, SimpleFeature>();
+            index = schema.getGeometryDescriptor() != null ? new Quadtree() : null;
+            lock = new ReentrantReadWriteLock();
+        } else {
+            memory = Collections.synchronizedMap(new LinkedHashMap<String, SimpleFeature>());
+            index = null;
+            lock = null;
+        }
+    }
+
+    /**
+     * Returns true if this entry allows concurrent, non blocking, reads and writes.
+     */
+    public boolean isConcurrent() {
+        return lock != null;
     }
 
     protected MemoryState createContentState(ContentEntry entry) {
@@ -70,11 +117,13 @@ public class MemoryEntry extends ContentEntry {
     
     /**
      * Access the {@link #memory} field used to store feature content.
+     * <p>
+     * In concurrent mode the returned map is read only.
      * 
      * @return the memory
      */
     public Map<String, SimpleFeature> getMemory() {
-        return memory;
+        return lock != null ? Collections.unmodifiableMap(memory) : memory;
     }
 
     public String toString() {
@@ -95,7 +144,130 @@ public class MemoryEntry extends ContentEntry {
             throw new IllegalArgumentException("addFeatures expected " + schema.getTypeName()
                     + "(but was " + feature.getFeatureType().getTypeName() + ")");
         }
-        getMemory().put(feature.getID(), feature);
+        if (lock != null) {
+            putFeature(feature);
+        } else {
+            getMemory().put(feature.getID(), feature);
+        }
+    }
+
+    /**
+     * Stores the feature replacing any previous one with the same id, keeping the spatial index
+     * up to date (concurrent mode only).
+     */
+    void putFeature(SimpleFeature feature) {
+        lock.writeLock().lock();
+        try {
+            SimpleFeature previous = memory.put(feature.getID(), feature);
+            if (index != null) {
+                if (previous != null) {
+                    Envelope envelope = envelope(previous);
+                    if (envelope != null) {
+                        index.remove(envelope, previous.getID());
+                    }
+                }
+                Envelope envelope = envelope(feature);
+                if (envelope != null) {
+                    index.insert(envelope, feature.getID());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the feature with the given id, keeping the spatial index up to date (concurrent
+     * mode only).
+     */
+    void removeFeature(String id) {
+        lock.writeLock().lock();
+        try {
+            SimpleFeature previous = memory.remove(id);
+            if (index != null && previous != null) {
+                Envelope envelope = envelope(previous);
+                if (envelope != null) {
+                    index.remove(envelope, id);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the stored features. In concurrent mode, when possible, the id and
+     * bounding box of the filter are used to limit the features returned, which are a superset
+     * of the ones matching the filter in any case.
+     */
+    List<SimpleFeature> getFeatures(Filter filter) {
+        if (lock == null || filter == null || filter == Filter.INCLUDE) {
+            return new ArrayList<SimpleFeature>(memory.values());
+        }
+        if (filter == Filter.EXCLUDE) {
+            return new ArrayList<SimpleFeature>();
+        }
+        if (filter instanceof Id) {
+            List<SimpleFeature> features = new ArrayList<SimpleFeature>();
+            for (Identifier id : ((Id) filter).getIdentifiers()) {
+                SimpleFeature feature = memory.get(id.getID().toString());
+                if (feature != null) {
+                    features.add(feature);
+                }
+            }
+            return features;
+        }
+        Envelope bbox = index != null ? queryEnvelope(filter) : null;
+        if (bbox == null) {
+            return new ArrayList<SimpleFeature>(memory.values());
+        }
+        List<?> ids;
+        lock.readLock().lock();
+        try {
+            ids = index.query(bbox);
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<SimpleFeature> features = new ArrayList<SimpleFeature>(ids.size());
+        for (Object id : ids) {
+            SimpleFeature feature = memory.get(id);
+            if (feature != null) {
+                Envelope envelope = envelope(feature);
+                if (envelope != null && envelope.intersects(bbox)) {
+                    features.add(feature);
+                }
+            }
+        }
+        return features;
+    }
+
+    /**
+     * The envelope the default geometry is restricted to by the filter, or null if the filter
+     * does not restrict it (or also involves other geometries).
+     */
+    Envelope queryEnvelope(Filter filter) {
+        String defaultGeometry = schema.getGeometryDescriptor().getLocalName();
+        for (String name : DataUtilities.attributeNames(filter, schema)) {
+            AttributeDescriptor ad = schema.getDescriptor(name);
+            if (ad instanceof GeometryDescriptor && !defaultGeometry.equals(name)) {
+                return null;
+            }
+        }
+        Envelope bbox = (Envelope) filter.accept(ExtractBoundsFilterVisitor.BOUNDS_VISITOR,
+                new Envelope());
+        if (bbox == null || bbox.isNull() || Double.isInfinite(bbox.getWidth())
+                || Double.isInfinite(bbox.getHeight())) {
+            return null;
+        }
+        return bbox;
+    }
+
+    static Envelope envelope(SimpleFeature feature) {
+        Geometry geometry = (Geometry) feature.getDefaultGeometry();
+        if (geometry == null || geometry.isEmpty()) {
+            return null;
+        }
+        return geometry.getEnvelopeInternal();
     }
 
 }
@@ -17,7 +17,6 @@
 package org.geotools.data.memory;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -43,7 +42,7 @@ public class MemoryFeatureReader implements FeatureReader<SimpleFeatureType, Sim
         featureType = state.getFeatureType();
         MemoryEntry entry = (MemoryEntry) state.getEntry();
         
-        final List<SimpleFeature> internalCollection = new ArrayList<>(entry.getMemory().values());
+        final List<SimpleFeature> internalCollection = entry.getFeatures(query.getFilter());
         iterator = internalCollection.iterator();
     }
 
@@ -29,6 +29,7 @@ import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.opengis.feature.FeatureVisitor;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
 
 public class MemoryFeatureStore extends ContentFeatureStore {
     
@@ -43,7 +44,11 @@ public class MemoryFeatureStore extends ContentFeatureStore {
     @Override
     protected FeatureWriter<SimpleFeatureType, SimpleFeature> getWriterInternal(
             Query query, int flags) throws IOException {
-        // TODO Auto-generated method stub
+        if ((flags & WRITER_UPDATE) == 0 && getState().getEntry().isConcurrent()) {
+            // append only, no need to go through a snapshot of the existing content
+            query = new Query(query);
+            query.setFilter(Filter.EXCLUDE);
+        }
         return new MemoryFeatureWriter(getState(), query);
     }
     
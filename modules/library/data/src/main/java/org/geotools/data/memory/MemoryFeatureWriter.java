@@ -53,7 +53,12 @@ public class MemoryFeatureWriter implements FeatureWriter<SimpleFeatureType, Sim
         this.featureType = state.getFeatureType();
         
         MemoryEntry entry = state.getEntry();
-        iterator = entry.getMemory().values().iterator();
+        if (entry.isConcurrent()) {
+            // work on a snapshot, changes are applied through the entry
+            iterator = entry.getFeatures(query.getFilter()).iterator();
+        } else {
+            iterator = entry.getMemory().values().iterator();
+        }
     }
     
     public SimpleFeatureType getFeatureType() {
@@ -98,7 +103,11 @@ public class MemoryFeatureWriter implements FeatureWriter<SimpleFeatureType, Sim
 
         if (live != null) {
             // remove existing content
-            iterator.remove();
+            if (state.getEntry().isConcurrent()) {
+                state.getEntry().removeFeature(live.getID());
+            } else {
+                iterator.remove();
+            }
             live = null;
             current = null;
         } else {
@@ -134,7 +143,12 @@ public class MemoryFeatureWriter implements FeatureWriter<SimpleFeatureType, Sim
                 // accept modifications
                 //
                 try {
-                    live.setAttributes(current.getAttributes());
+                    if (state.getEntry().isConcurrent()) {
+                        // replace rather than modify, readers might be looking at it
+                        state.getEntry().putFeature(SimpleFeatureBuilder.copy(current));
+                    } else {
+                        live.setAttributes(current.getAttributes());
+                    }
                 } catch (Exception e) {
                     throw new DataSourceException("Unable to accept modifications to "
                         + live.getID() + " on " + typeName);
@@ -149,7 +163,7 @@ public class MemoryFeatureWriter implements FeatureWriter<SimpleFeatureType, Sim
         } else {
             // add new content
             MemoryEntry entry = state.getEntry();
-            entry.addFeature(current);
+            entry.addFeature(entry.isConcurrent() ? SimpleFeatureBuilder.copy(current) : current);
             current = null;
         }
     }
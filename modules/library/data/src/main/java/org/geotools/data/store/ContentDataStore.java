@@ -159,6 +159,11 @@ public abstract class ContentDataStore implements DataStore {
      * factory used to create the datastore
      */
     protected DataStoreFactorySpi dataStoreFactory;
+
+    /**
+     * count and bounds statistics shared by the feature sources, null when not kept
+     */
+    protected volatile ContentStatistics statistics;
     
     public ContentDataStore() {
         // get a concurrent map so that we can do reads in parallel with writes (writes vs writes
@@ -236,6 +241,26 @@ public abstract class ContentDataStore implements DataStore {
         this.geometryFactory = geometryFactory;
     }
 
+    /**
+     * The count and bounds statistics shared by the feature sources of the store.
+     * 
+     * @return The statistics, or <code>null</code> if they are not kept, the default.
+     */
+    public ContentStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Sets the count and bounds statistics shared by the feature sources of the store, 
+     * <code>null</code> to compute the counts and bounds on each request.
+     */
+    public void setStatistics(ContentStatistics statistics) {
+        if (this.statistics != null && this.statistics != statistics) {
+            this.statistics.dispose();
+        }
+        this.statistics = statistics;
+    }
+
     /**
      * Returns the factory used to create the data store.
      * 
@@ -510,6 +535,9 @@ public abstract class ContentDataStore implements DataStore {
             entry.dispose();
         }
         entries.clear();
+        if (statistics != null) {
+            statistics.dispose();
+        }
     }
     
     /**
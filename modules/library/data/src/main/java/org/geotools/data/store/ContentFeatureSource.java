@@ -440,6 +440,8 @@ public abstract class ContentFeatureSource implements SimpleFeatureSource {
                     }
                 }
             }
+        } else if (isStatisticsQuery(query, true)) {
+            bounds = getDataStore().getStatistics().getBounds(this, query);
         } else {
             bounds = getBoundsInternal(query);
         }
@@ -494,8 +496,14 @@ public abstract class ContentFeatureSource implements SimpleFeatureSource {
         query = joinQuery( query );
         query = resolvePropertyNames( query );
         
-        // calculate the count
-        int count = getCountInternal( query );
+        // calculate the count, the datastore statistics hold the committed state,
+        // the transaction changes kept in a diff get applied below
+        int count;
+        if (isStatisticsQuery(query, false)) {
+            count = getDataStore().getStatistics().getCount(this, query);
+        } else {
+            count = getCountInternal( query );
+        }
         
         // if internal is not counted, return
         if (count < 0) {
@@ -574,6 +582,62 @@ public abstract class ContentFeatureSource implements SimpleFeatureSource {
      * implement this method.
      */
     protected abstract int getCountInternal(Query query) throws IOException;
+
+    /**
+     * Estimates the number of features of the whole feature source, for example from the
+     * statistics the storage keeps about its content. Used by the datastore
+     * {@link ContentStatistics} when estimates are allowed.
+     * <p>
+     * Subclasses may override, the default implementation returns -1, meaning no estimate is
+     * available.
+     * </p>
+     */
+    protected int getEstimatedCountInternal() throws IOException {
+        return -1;
+    }
+
+    /**
+     * Estimates the bounds of the whole feature source, see {@link #getEstimatedCountInternal()}.
+     * <p>
+     * Subclasses may override, the default implementation returns <code>null</code>, meaning
+     * no estimate is available.
+     * </p>
+     */
+    protected ReferencedEnvelope getEstimatedBoundsInternal() throws IOException {
+        return null;
+    }
+
+    /**
+     * Whether the query can be answered by the datastore statistics: it asks for all the
+     * features, in the committed state, without reprojection.
+     */
+    boolean isStatisticsQuery(Query query, boolean bounds) {
+        if (getDataStore().getStatistics() == null) {
+            return false;
+        }
+        // transactions kept in a diff see the committed state plus the diff, the others
+        // see their own uncommitted changes
+        boolean autoCommit = transaction == null || transaction == Transaction.AUTO_COMMIT;
+        if (!autoCommit && (bounds || canTransact())) {
+            return false;
+        }
+        if ((query.getFilter() != null && query.getFilter() != Filter.INCLUDE)
+                || !query.isMaxFeaturesUnlimited()
+                || (query.getStartIndex() != null && query.getStartIndex() > 0)
+                || !query.getJoins().isEmpty()) {
+            return false;
+        }
+        if (query.getHints() != null
+                && query.getHints().containsKey(Hints.VIRTUAL_TABLE_PARAMETERS)) {
+            return false;
+        }
+        if (bounds) {
+            return query.getPropertyNames() == Query.ALL_NAMES
+                    && query.getCoordinateSystem() == null
+                    && query.getCoordinateSystemReproject() == null;
+        }
+        return true;
+    }
     
     /**
      * Returns the feature collection of all the features of the feature source.
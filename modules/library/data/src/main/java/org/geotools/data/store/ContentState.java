@@ -288,6 +288,14 @@ public class ContentState {
         }
         return false;
     }
+    /**
+     * Whether the datastore keeps statistics, which need the events even when nobody is
+     * listening.
+     */
+    boolean hasStatistics() {
+        return this.entry.dataStore.getStatistics() != null;
+    }
+
     /**
      * Creates a FeatureEvent indicating that the provided feature has been changed.
      * <p>
@@ -305,7 +313,7 @@ public class ContentState {
         if( feature == null){
             return; // nothing changed
         }
-        if (listeners.isEmpty() && tx != Transaction.AUTO_COMMIT)
+        if (listeners.isEmpty() && tx != Transaction.AUTO_COMMIT && !hasStatistics())
             return; // nobody is listenting
 
         Filter filter = idFilter(feature);
@@ -315,7 +323,7 @@ public class ContentState {
         }
         
         FeatureEvent event = new FeatureEvent(source, Type.CHANGED, bounds, filter);
-        fireFeatureEvent(event);
+        fireFeatureEvent(event, true);
     }
 
     /**
@@ -325,7 +333,7 @@ public class ContentState {
      * @param feature
      */
     public final void fireFeatureAdded(FeatureSource<?, ?> source, Feature feature) {
-        if (listeners.isEmpty() && tx != Transaction.AUTO_COMMIT)
+        if (listeners.isEmpty() && tx != Transaction.AUTO_COMMIT && !hasStatistics())
             return;
 
         Filter filter = idFilter(feature);
@@ -333,11 +341,11 @@ public class ContentState {
 
         FeatureEvent event = new FeatureEvent(source, Type.ADDED, bounds, filter);
 
-        fireFeatureEvent(event);
+        fireFeatureEvent(event, true);
     }
 
     public void fireFeatureRemoved(FeatureSource<?, ?> source, Feature feature) {
-        if (listeners.isEmpty() && tx != Transaction.AUTO_COMMIT)
+        if (listeners.isEmpty() && tx != Transaction.AUTO_COMMIT && !hasStatistics())
             return;
 
         Filter filter = idFilter(feature);
@@ -345,7 +353,7 @@ public class ContentState {
 
         FeatureEvent event = new FeatureEvent(source, Type.REMOVED, bounds, filter);
 
-        fireFeatureEvent(event);
+        fireFeatureEvent(event, true);
     }
 
     /**
@@ -370,7 +378,19 @@ public class ContentState {
      * @param event
      */
     public final void fireFeatureEvent(FeatureEvent event) {
+        fireFeatureEvent(event, false);
+    }
+
+    /**
+     * Issues a FeatureEvent, single tells whether the event describes exactly the one feature
+     * its filter identifies, letting the datastore statistics update the count.
+     */
+    void fireFeatureEvent(FeatureEvent event, boolean single) {
         if (this.tx == Transaction.AUTO_COMMIT) {
+            ContentStatistics statistics = this.entry.dataStore.getStatistics();
+            if (statistics != null) {
+                statistics.featureEvent(this.entry.getName(), event, single);
+            }
             this.entry.notifiyFeatureEvent(this, event);
         } else {
             // we are not in auto-commit mode so we need to batch
@@ -398,11 +418,23 @@ public class ContentState {
      * to our
      */
     public final void fireBatchFeatureEvent(boolean isCommit) {
+        fireBatchFeatureEvent(isCommit, true);
+    }
+
+    /**
+     * Notifies the batch event, updateStatistics is false when the committed changes have
+     * already been applied to the datastore statistics.
+     */
+    void fireBatchFeatureEvent(boolean isCommit, boolean updateStatistics) {
         if (batchFeatureEvent == null) {
             return;
         }
         if (isCommit) {
             batchFeatureEvent.setType(Type.COMMIT);
+            ContentStatistics statistics = this.entry.dataStore.getStatistics();
+            if (updateStatistics && statistics != null) {
+                statistics.featureEvent(this.entry.getName(), batchFeatureEvent, false);
+            }
             
             // This state already knows about the changes, let others know a modifications was made
             this.entry.notifiyFeatureEvent(this, batchFeatureEvent);
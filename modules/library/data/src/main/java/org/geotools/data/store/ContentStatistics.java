@@ -0,0 +1,455 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.store;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.data.FeatureEvent;
+import org.geotools.data.Query;
+import org.geotools.data.Transaction;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.type.Name;
+import org.opengis.filter.Filter;
+import org.opengis.filter.Id;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Keeps the feature count and bounds of each feature type of a {@link ContentDataStore}, so
+ * that the whole type aggregates are computed once and shared by all the feature sources and
+ * transactions.
+ * <p>
+ * The cached values are kept up to date with the feature events of the store: single feature
+ * additions and removals adjust the count, and the committed {@link DiffTransactionState}
+ * changes are applied as a delta. Changes whose effect is not known (a removal by filter, a
+ * commit of a transaction handled by the storage) mark the values as stale, and they are
+ * computed again on the next request, or by a background refresh when
+ * {@link #setRefreshDelay(long) enabled}.
+ * </p>
+ * <p>
+ * When {@link #setUseEstimates(boolean) estimates} are allowed the stale values are returned
+ * while they are refreshed, and the first value of a type may come from the statistics the
+ * storage keeps (see {@link ContentFeatureSource#getEstimatedCountInternal()}) instead of a
+ * full scan.
+ * </p>
+ *
+ * @source $URL$
+ */
+public class ContentStatistics {
+
+    static final Logger LOGGER = Logging.getLogger(ContentStatistics.class);
+
+    /**
+     * The cached values of a feature type
+     */
+    static class Statistics {
+
+        int count = -1;
+
+        boolean countExact;
+
+        ReferencedEnvelope bounds;
+
+        boolean boundsExact;
+
+        /** Incremented on each change, values computed meanwhile are discarded */
+        int generation;
+
+        boolean refreshScheduled;
+    }
+
+    final ContentDataStore dataStore;
+
+    final ConcurrentHashMap<Name, Statistics> statistics =
+            new ConcurrentHashMap<Name, Statistics>();
+
+    volatile boolean useEstimates;
+
+    volatile long refreshDelay;
+
+    ScheduledExecutorService executor;
+
+    public ContentStatistics(ContentDataStore dataStore) {
+        this.dataStore = dataStore;
+    }
+
+    /**
+     * Whether estimated and stale values can be returned.
+     */
+    public boolean isUseEstimates() {
+        return useEstimates;
+    }
+
+    /**
+     * Allows estimated and stale values to be returned instead of computing the exact ones.
+     */
+    public void setUseEstimates(boolean useEstimates) {
+        this.useEstimates = useEstimates;
+    }
+
+    /**
+     * The delay, in milliseconds, of the background refresh of stale values.
+     */
+    public long getRefreshDelay() {
+        return refreshDelay;
+    }
+
+    /**
+     * Sets the delay, in milliseconds, after which stale and estimated values are computed again
+     * in the background. A delay of zero or less, the default, disables the background refresh.
+     */
+    public void setRefreshDelay(long refreshDelay) {
+        this.refreshDelay = refreshDelay;
+    }
+
+    /**
+     * The count of all the features of a feature source.
+     */
+    public int getCount(ContentFeatureSource source, Query query) throws IOException {
+        Name name = source.getEntry().getName();
+        Statistics stats = getStatistics(name);
+        int generation;
+        synchronized (stats) {
+            if (stats.count >= 0 && (stats.countExact || useEstimates)) {
+                if (!stats.countExact) {
+                    scheduleRefresh(name, stats);
+                }
+                return stats.count;
+            }
+            generation = stats.generation;
+        }
+
+        if (useEstimates) {
+            int estimate = source.getEstimatedCountInternal();
+            if (estimate >= 0) {
+                synchronized (stats) {
+                    if (stats.generation == generation) {
+                        stats.count = estimate;
+                        stats.countExact = false;
+                        scheduleRefresh(name, stats);
+                    }
+                }
+                return estimate;
+            }
+        }
+
+        int count = source.getCountInternal(query);
+        if (count >= 0) {
+            synchronized (stats) {
+                if (stats.generation == generation) {
+                    stats.count = count;
+                    stats.countExact = true;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The bounds of all the features of a feature source.
+     */
+    public ReferencedEnvelope getBounds(ContentFeatureSource source, Query query)
+            throws IOException {
+        Name name = source.getEntry().getName();
+        Statistics stats = getStatistics(name);
+        int generation;
+        synchronized (stats) {
+            if (stats.bounds != null && (stats.boundsExact || useEstimates)) {
+                if (!stats.boundsExact) {
+                    scheduleRefresh(name, stats);
+                }
+                return new ReferencedEnvelope(stats.bounds);
+            }
+            generation = stats.generation;
+        }
+
+        if (useEstimates) {
+            ReferencedEnvelope estimate = source.getEstimatedBoundsInternal();
+            if (estimate != null) {
+                synchronized (stats) {
+                    if (stats.generation == generation) {
+                        stats.bounds = new ReferencedEnvelope(estimate);
+                        stats.boundsExact = false;
+                        scheduleRefresh(name, stats);
+                    }
+                }
+                return estimate;
+            }
+        }
+
+        ReferencedEnvelope bounds = source.getBoundsInternal(query);
+        if (bounds != null) {
+            synchronized (stats) {
+                if (stats.generation == generation) {
+                    stats.bounds = new ReferencedEnvelope(bounds);
+                    stats.boundsExact = true;
+                }
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Whether the cached count of a feature type is known and exact.
+     */
+    public boolean isCountExact(Name typeName) {
+        Statistics stats = statistics.get(typeName);
+        if (stats == null) {
+            return false;
+        }
+        synchronized (stats) {
+            return stats.count >= 0 && stats.countExact;
+        }
+    }
+
+    /**
+     * Whether the cached bounds of a feature type are known and exact.
+     */
+    public boolean isBoundsExact(Name typeName) {
+        Statistics stats = statistics.get(typeName);
+        if (stats == null) {
+            return false;
+        }
+        synchronized (stats) {
+            return stats.bounds != null && stats.boundsExact;
+        }
+    }
+
+    /**
+     * Drops the cached values of a feature type.
+     */
+    public void invalidate(Name typeName) {
+        Statistics stats = statistics.remove(typeName);
+        if (stats != null) {
+            synchronized (stats) {
+                stats.generation++;
+            }
+        }
+    }
+
+    /**
+     * Drops all the cached values.
+     */
+    public void invalidateAll() {
+        for (Name name : statistics.keySet()) {
+            invalidate(name);
+        }
+    }
+
+    /**
+     * Stops the background refresh and drops all the cached values.
+     */
+    public void dispose() {
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
+        invalidateAll();
+    }
+
+    Statistics getStatistics(Name name) {
+        Statistics stats = statistics.get(name);
+        if (stats == null) {
+            stats = new Statistics();
+            Statistics previous = statistics.putIfAbsent(name, stats);
+            if (previous != null) {
+                stats = previous;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Updates the values of a feature type after a change issued in auto commit mode.
+     *
+     * @param single Whether the event describes exactly one feature, as the ones issued by
+     *        {@link ContentState#fireFeatureAdded(org.geotools.data.FeatureSource, org.opengis.feature.Feature)}
+     */
+    void featureEvent(Name name, FeatureEvent event, boolean single) {
+        Statistics stats = statistics.get(name);
+        if (stats == null || event.getType() == FeatureEvent.Type.ROLLBACK) {
+            return;
+        }
+        synchronized (stats) {
+            stats.generation++;
+            Filter filter = event.getFilter();
+            boolean counted = single && filter instanceof Id
+                    && ((Id) filter).getIdentifiers().size() == 1;
+            switch (event.getType()) {
+            case ADDED:
+                if (counted && stats.count >= 0) {
+                    stats.count++;
+                } else {
+                    stats.countExact = false;
+                }
+                stats.boundsExact &= expand(stats, event.getBounds());
+                break;
+            case REMOVED:
+                if (counted && stats.count >= 0) {
+                    stats.count = Math.max(0, stats.count - 1);
+                } else {
+                    stats.countExact = false;
+                }
+                // the bounds might shrink
+                stats.boundsExact = false;
+                break;
+            case CHANGED:
+                expand(stats, event.getBounds());
+                stats.boundsExact = false;
+                break;
+            default:
+                // a commit of changes that are not known one by one
+                stats.countExact = false;
+                expand(stats, event.getBounds());
+                stats.boundsExact = false;
+            }
+            if (!stats.countExact || !stats.boundsExact) {
+                scheduleRefresh(name, stats);
+            }
+        }
+    }
+
+    /**
+     * Applies the changes of a committed transaction to the values of a feature type.
+     *
+     * @param added Number of features added
+     * @param removed Number of features removed
+     * @param bounds The bounds of the added and modified features
+     * @param exactBounds Whether the bounds can only have grown, that is, nothing was removed or
+     *        modified
+     */
+    void committed(Name name, int added, int removed, ReferencedEnvelope bounds,
+            boolean exactBounds) {
+        Statistics stats = statistics.get(name);
+        if (stats == null) {
+            return;
+        }
+        synchronized (stats) {
+            stats.generation++;
+            if (stats.count >= 0) {
+                stats.count = Math.max(0, stats.count + added - removed);
+            }
+            boolean expanded = expand(stats, bounds);
+            stats.boundsExact &= expanded && exactBounds;
+            if (!stats.countExact || !stats.boundsExact) {
+                scheduleRefresh(name, stats);
+            }
+        }
+    }
+
+    /**
+     * Expands the cached bounds, returning false if the change bounds are not known
+     */
+    boolean expand(Statistics stats, Envelope bounds) {
+        if (bounds == null) {
+            return false;
+        }
+        if (stats.bounds != null && !bounds.isNull()) {
+            stats.bounds.expandToInclude(bounds.getMinX(), bounds.getMinY());
+            stats.bounds.expandToInclude(bounds.getMaxX(), bounds.getMaxY());
+        }
+        return true;
+    }
+
+    /**
+     * Schedules the computation of the exact values of a type, if the background refresh is
+     * enabled. Called holding the type statistics lock.
+     */
+    void scheduleRefresh(final Name name, final Statistics stats) {
+        long delay = refreshDelay;
+        if (delay <= 0 || stats.refreshScheduled) {
+            return;
+        }
+        ScheduledExecutorService executor = getExecutor();
+        if (executor == null) {
+            return;
+        }
+        stats.refreshScheduled = true;
+        executor.schedule(new Runnable() {
+            public void run() {
+                refresh(name, stats);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized ScheduledExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ContentStatistics refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Computes the exact values of a feature type
+     */
+    void refresh(Name name, Statistics stats) {
+        boolean count;
+        boolean bounds;
+        int generation;
+        synchronized (stats) {
+            stats.refreshScheduled = false;
+            if (statistics.get(name) != stats) {
+                return;
+            }
+            count = stats.count >= 0 && !stats.countExact;
+            bounds = stats.bounds != null && !stats.boundsExact;
+            generation = stats.generation;
+        }
+        if (!count && !bounds) {
+            return;
+        }
+        try {
+            ContentFeatureSource source = dataStore.getFeatureSource(name,
+                    Transaction.AUTO_COMMIT);
+            Query query = new Query(source.getSchema().getTypeName());
+            int newCount = count ? source.getCountInternal(query) : -1;
+            ReferencedEnvelope newBounds = bounds ? source.getBoundsInternal(query) : null;
+            synchronized (stats) {
+                if (stats.generation != generation) {
+                    // changed meanwhile, the next request will get another refresh going
+                    return;
+                }
+                if (newCount >= 0) {
+                    stats.count = newCount;
+                    stats.countExact = true;
+                }
+                if (newBounds != null) {
+                    stats.bounds = new ReferencedEnvelope(newBounds);
+                    stats.boundsExact = true;
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to refresh the statistics of " + name, e);
+        }
+    }
+}
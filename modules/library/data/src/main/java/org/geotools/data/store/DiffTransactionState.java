@@ -24,10 +24,12 @@ import org.geotools.data.FeatureReader;
 import org.geotools.data.FeatureWriter;
 import org.geotools.data.Transaction;
 import org.geotools.factory.Hints;
+import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.opengis.feature.IllegalAttributeException;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.Name;
+import org.opengis.geometry.BoundingBox;
 import org.opengis.filter.Filter;
 
 /**
@@ -208,7 +210,14 @@ public class DiffTransactionState implements Transaction.State {
         } finally {
             try {
                 writer.close();
-                state.fireBatchFeatureEvent(true);
+                ContentStatistics statistics = dataStore.getStatistics();
+                if (statistics != null && cause == null) {
+                    // the diff knows exactly what changed
+                    applyStatistics(statistics, name);
+                    state.fireBatchFeatureEvent(true, false);
+                } else {
+                    state.fireBatchFeatureEvent(true);
+                }
                 diff.clear();
             } catch (IOException e) {
                 if (cause != null) {
@@ -224,6 +233,38 @@ public class DiffTransactionState implements Transaction.State {
         }
     }
 
+    /**
+     * Applies the diff to the datastore statistics, once committed.
+     */
+    void applyStatistics(ContentStatistics statistics, Name name) {
+        synchronized (diff) {
+            int removed = 0;
+            boolean modified = false;
+            ReferencedEnvelope bounds = new ReferencedEnvelope();
+            for (SimpleFeature feature : diff.getAdded().values()) {
+                expand(bounds, feature);
+            }
+            for (SimpleFeature feature : diff.getModified().values()) {
+                if (feature == Diff.NULL) {
+                    removed++;
+                } else {
+                    modified = true;
+                    expand(bounds, feature);
+                }
+            }
+            statistics.committed(name, diff.getAdded().size(), removed, bounds,
+                    removed == 0 && !modified);
+        }
+    }
+
+    private void expand(ReferencedEnvelope bounds, SimpleFeature feature) {
+        BoundingBox fb = feature.getBounds();
+        if (fb != null && !fb.isEmpty()) {
+            bounds.expandToInclude(fb.getMinX(), fb.getMinY());
+            bounds.expandToInclude(fb.getMaxX(), fb.getMaxY());
+        }
+    }
+
     @Override
     /**
      * @see org.geotools.data.Transaction.State#rollback()
@@ -0,0 +1,265 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.memory.MemoryDataStore;
+import org.geotools.data.memory.MemoryFeatureStore;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureStore;
+import org.geotools.data.store.ContentEntry;
+import org.geotools.data.store.ContentFeatureSource;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.filter.visitor.ExtractBoundsFilterVisitor;
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ *
+ *
+ * @source $URL$
+ */
+public class TileCachingFeatureSourceTest {
+
+    static final FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
+
+    static final GeometryFactory gf = JTSFactoryFinder.getGeometryFactory();
+
+    SimpleFeatureType type;
+
+    MemoryDataStore store;
+
+    AtomicInteger reads = new AtomicInteger();
+
+    Query lastQuery;
+
+    @Before
+    public void setUp() throws Exception {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("points");
+        tb.add("geom", Point.class);
+        tb.add("name", String.class);
+        type = tb.buildFeatureType();
+
+        store = new MemoryDataStore() {
+            @Override
+            protected ContentFeatureSource createFeatureSource(ContentEntry entry, Query query) {
+                return new MemoryFeatureStore(entry, query) {
+                    @Override
+                    protected FeatureReader<SimpleFeatureType, SimpleFeature> getReaderInternal(
+                            Query query) throws IOException {
+                        reads.incrementAndGet();
+                        lastQuery = query;
+                        return super.getReaderInternal(query);
+                    }
+                };
+            }
+        };
+        store.createSchema(type);
+        // a 10x10 grid of points, on a 3x3 tile grid each tile is 3 units wide
+        for (int x = 0; x < 10; x++) {
+            for (int y = 0; y < 10; y++) {
+                store.addFeature(point(x, y));
+            }
+        }
+    }
+
+    SimpleFeature point(double x, double y) {
+        return SimpleFeatureBuilder.build(type,
+                new Object[] { gf.createPoint(new Coordinate(x, y)), x + "_" + y },
+                "points." + x + "_" + y);
+    }
+
+    Filter bbox(double x1, double y1, double x2, double y2) {
+        return ff.bbox("geom", x1, y1, x2, y2, null);
+    }
+
+    Set<String> ids(SimpleFeatureCollection fc) {
+        Set<String> ids = new HashSet<String>();
+        SimpleFeatureIterator it = fc.features();
+        try {
+            while (it.hasNext()) {
+                ids.add(it.next().getID());
+            }
+        } finally {
+            it.close();
+        }
+        return ids;
+    }
+
+    SimpleFeatureStore source() throws IOException {
+        return (SimpleFeatureStore) store.getFeatureSource("points");
+    }
+
+    @Test
+    public void testRepeatedAndPannedRequests() throws Exception {
+        TileCachingFeatureSource cache = new TileCachingFeatureSource(source(), 3,
+                TileCachingFeatureSource.DEFAULT_MAX_MEMORY);
+        reads.set(0);
+
+        Filter filter = bbox(0, 0, 2, 2);
+        assertEquals(ids(source().getFeatures(filter)), ids(cache.getFeatures(filter)));
+        assertEquals(9, cache.getFeatures(filter).size());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+
+        // panning to the right only loads the new tile, with a single query
+        filter = bbox(1, 0, 5, 2);
+        Set<String> expected = ids(source().getFeatures(filter));
+        reads.set(0);
+        assertEquals(expected, ids(cache.getFeatures(filter)));
+        assertEquals(1, reads.get());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.getCachedTiles());
+
+        // a request over the whole grid loads the remaining tiles at once
+        reads.set(0);
+        assertEquals(100, cache.getFeatures().size());
+        assertEquals(1, reads.get());
+        assertEquals(9, cache.getCachedTiles());
+
+        // all cached now
+        Filter attribute = ff.and(bbox(3, 3, 9, 9), ff.like(ff.property("name"), "4*"));
+        expected = ids(source().getFeatures(attribute));
+        assertEquals(7, expected.size());
+        reads.set(0);
+        assertEquals(expected, ids(cache.getFeatures(attribute)));
+        assertEquals(0, reads.get());
+    }
+
+    @Test
+    public void testQueryOptions() throws Exception {
+        TileCachingFeatureSource cache = new TileCachingFeatureSource(source(), 3,
+                TileCachingFeatureSource.DEFAULT_MAX_MEMORY);
+
+        Query query = new Query("points", bbox(0, 0, 9, 9), new String[] { "geom" });
+        query.setMaxFeatures(10);
+        SimpleFeatureCollection fc = cache.getFeatures(query);
+        assertEquals(1, fc.getSchema().getAttributeCount());
+        assertEquals(10, fc.size());
+
+        // features handed out are copies, modifying them does not alter the cache
+        SimpleFeatureIterator it = cache.getFeatures(bbox(0, 0, 0, 0)).features();
+        try {
+            it.next().setAttribute("name", "changed");
+        } finally {
+            it.close();
+        }
+        it = cache.getFeatures(bbox(0, 0, 0, 0)).features();
+        try {
+            assertEquals("0.0_0.0", it.next().getAttribute("name"));
+        } finally {
+            it.close();
+        }
+
+        assertEquals(0, cache.getFeatures(Filter.EXCLUDE).size());
+    }
+
+    @Test
+    public void testMemoryBudget() throws Exception {
+        // room for a single tile
+        SimpleFeature sample = point(0, 0);
+        long budget = TileCachingFeatureSource.estimateSize(sample) * 16;
+        TileCachingFeatureSource cache = new TileCachingFeatureSource(source(), 3, budget);
+
+        assertEquals(9, cache.getFeatures(bbox(0, 0, 2, 2)).size());
+        assertEquals(1, cache.getCachedTiles());
+        assertEquals(9, cache.getFeatures(bbox(3, 0, 5, 2)).size());
+        assertEquals(1, cache.getCachedTiles());
+        assertTrue(cache.getMemoryUsage() <= budget);
+
+        // the first tile got evicted
+        reads.set(0);
+        assertEquals(9, cache.getFeatures(bbox(0, 0, 2, 2)).size());
+        assertEquals(1, reads.get());
+
+        // a request larger than the budget is still answered in full
+        assertEquals(100, cache.getFeatures().size());
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        SimpleFeatureStore source = source();
+        TileCachingFeatureSource cache = new TileCachingFeatureSource(source, 3,
+                TileCachingFeatureSource.DEFAULT_MAX_MEMORY);
+        assertEquals(100, cache.getFeatures().size());
+        assertEquals(9, cache.getCachedTiles());
+
+        // only the tile containing the new feature is dropped
+        source.addFeatures(new ListFeatureCollection(type, new SimpleFeature[] { point(1.5,
+                1.5) }));
+        assertEquals(8, cache.getCachedTiles());
+        assertEquals(10, cache.getFeatures(bbox(0, 0, 2, 2)).size());
+
+        // features outside of the original bounds end up in the border tiles
+        source.addFeatures(new ListFeatureCollection(type, new SimpleFeature[] { point(20,
+                20) }));
+        assertEquals(1, cache.getFeatures(bbox(15, 15, 25, 25)).size());
+
+        source.modifyFeatures("name", "modified", ff.id(ff.featureId("points.5.0_5.0")));
+        assertEquals("modified",
+                cache.getFeatures(ff.id(ff.featureId("points.5.0_5.0"))).features().next()
+                        .getAttribute("name"));
+
+        cache.dispose();
+        assertEquals(0, cache.getCachedTiles());
+        assertEquals(0, cache.getMemoryUsage());
+    }
+
+    @Test
+    public void testBorderTilesQueryGridBounds() throws Exception {
+        TileCachingFeatureSource cache = new TileCachingFeatureSource(source(), 3,
+                TileCachingFeatureSource.DEFAULT_MAX_MEMORY);
+        assertEquals(100, cache.getFeatures().size());
+        Envelope queried = (Envelope) lastQuery.getFilter().accept(
+                ExtractBoundsFilterVisitor.BOUNDS_VISITOR, new Envelope());
+        assertEquals(new Envelope(0, 9, 0, 9), queried);
+    }
+
+    @Test
+    public void testReprojectionDelegated() throws Exception {
+        TileCachingFeatureSource cache = new TileCachingFeatureSource(source(), 3,
+                TileCachingFeatureSource.DEFAULT_MAX_MEMORY);
+        Query query = new Query("points", bbox(0, 0, 2, 2));
+        query.setCoordinateSystem(DefaultGeographicCRS.WGS84);
+        assertEquals(9, cache.getFeatures(query).size());
+        assertEquals(0, cache.getCachedTiles());
+        assertEquals(0, cache.getMissCount());
+    }
+}
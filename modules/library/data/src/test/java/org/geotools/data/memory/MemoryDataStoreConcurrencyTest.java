@@ -1,12 +1,23 @@
 package org.geotools.data.memory;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 import org.geotools.data.DataTestCase;
 import org.geotools.data.FeatureReader;
 import org.geotools.data.Query;
 import org.geotools.data.Transaction;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.data.simple.SimpleFeatureStore;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
 
 /**
  * Concurrency test from GEOT-2515.
@@ -61,4 +72,107 @@ public class MemoryDataStoreConcurrencyTest extends DataTestCase {
             writeThread.join();
         }
     }
+
+    private SimpleFeature road(int i, int x, int y) {
+        return SimpleFeatureBuilder.build(roadType, new Object[] { new Integer(i),
+                line(new int[] { x, y, x + 1, y }), "r" + i, null }, "road.rd" + i);
+    }
+
+    private Set<String> ids(SimpleFeatureCollection features) {
+        Set<String> ids = new HashSet<String>();
+        try (SimpleFeatureIterator it = features.features()) {
+            while (it.hasNext()) {
+                ids.add(it.next().getID());
+            }
+        }
+        return ids;
+    }
+
+    public void testConcurrentStoreQueries() throws Exception {
+        final MemoryDataStore dataStore = new MemoryDataStore();
+        dataStore.setConcurrent(true);
+        dataStore.createSchema(roadType);
+        for (int i = 0; i < 100; i++) {
+            dataStore.addFeature(road(i, i % 10 * 2, i / 10 * 2));
+        }
+        SimpleFeatureSource source = dataStore.getFeatureSource(roadType.getTypeName());
+        assertEquals(100, source.getCount(Query.ALL));
+
+        // bbox queries return the same features as a full scan
+        Filter[] filters = new Filter[] { ff.bbox("geom", 3, 3, 7, 5, null),
+                ff.and(ff.bbox("geom", 0, 0, 5, 5, null), ff.equals(ff.property("name"),
+                        ff.literal("r11"))),
+                ff.or(ff.bbox("geom", 0, 0, 1, 1, null), ff.equals(ff.property("name"),
+                        ff.literal("r99"))) };
+        for (Filter filter : filters) {
+            Set<String> expected = new HashSet<String>();
+            for (SimpleFeature f : dataStore.entry(roadType).getMemory().values()) {
+                if (filter.evaluate(f)) {
+                    expected.add(f.getID());
+                }
+            }
+            assertEquals(filter.toString(), expected, ids(source.getFeatures(filter)));
+        }
+        assertEquals(new HashSet<String>(Arrays.asList("road.rd21", "road.rd22", "road.rd23")),
+                ids(source.getFeatures(filters[0])));
+
+        // id queries
+        Filter id = ff.id(Collections.singleton(ff.featureId("road.rd42")));
+        assertEquals(Collections.singleton("road.rd42"), ids(source.getFeatures(id)));
+
+        // the content can only be changed through the store
+        try {
+            dataStore.entry(roadType).getMemory().remove("road.rd42");
+            fail("Memory should be read only in concurrent mode");
+        } catch (UnsupportedOperationException e) {
+            // fine
+        }
+        SimpleFeatureStore store = (SimpleFeatureStore) source;
+        store.removeFeatures(id);
+        assertEquals(99, source.getCount(Query.ALL));
+        assertTrue(ids(source.getFeatures(id)).isEmpty());
+    }
+
+    public void testConcurrentStoreUpdates() throws Exception {
+        final MemoryDataStore dataStore = new MemoryDataStore();
+        dataStore.setConcurrent(true);
+        dataStore.createSchema(roadType);
+        for (int i = 0; i < 100; i++) {
+            dataStore.addFeature(road(i, i, 0));
+        }
+        final SimpleFeatureStore store = (SimpleFeatureStore) dataStore
+                .getFeatureSource(roadType.getTypeName());
+
+        // move the features up one at a time while reading
+        Thread writeThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int step = 1; step <= 5; step++) {
+                        for (int i = 0; i < 100; i++) {
+                            store.modifyFeatures("geom", line(new int[] { i, step * 10, i + 1,
+                                    step * 10 }), ff.id(Collections.singleton(ff
+                                    .featureId("road.rd" + i))));
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        writeThread.start();
+        try {
+            while (writeThread.isAlive()) {
+                // every feature is always found exactly once
+                assertEquals(100, ids(store.getFeatures(ff.bbox("geom", -1, -1, 101, 51, null)))
+                        .size());
+            }
+        } finally {
+            writeThread.join();
+        }
+
+        // the index follows the updates
+        assertTrue(ids(store.getFeatures(ff.bbox("geom", -1, -1, 101, 45, null))).isEmpty());
+        assertEquals(100, ids(store.getFeatures(ff.bbox("geom", -1, 45, 101, 55, null))).size());
+    }
 }
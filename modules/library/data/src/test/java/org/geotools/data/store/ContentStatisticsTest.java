@@ -0,0 +1,187 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.DefaultTransaction;
+import org.geotools.data.FeatureEvent;
+import org.geotools.data.Query;
+import org.geotools.data.memory.MemoryDataStore;
+import org.geotools.data.simple.SimpleFeatureStore;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.NameImpl;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.Name;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.identity.FeatureId;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * Checks the count and bounds statistics follow the changes made through the store
+ *
+ * @source $URL$
+ */
+public class ContentStatisticsTest {
+
+    static final Name TYPE_NAME = new NameImpl("points");
+
+    GeometryFactory gf = JTSFactoryFinder.getGeometryFactory();
+
+    FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
+
+    SimpleFeatureType type;
+
+    MemoryDataStore store;
+
+    ContentStatistics statistics;
+
+    @Before
+    public void setUp() throws Exception {
+        type = DataUtilities.createType("points", "geom:Point,name:String");
+        store = new MemoryDataStore();
+        store.createSchema(type);
+        store.addFeature(feature("p1", 0, 0));
+        store.addFeature(feature("p2", 10, 10));
+        store.addFeature(feature("p3", 5, 5));
+        statistics = new ContentStatistics(store);
+        store.setStatistics(statistics);
+    }
+
+    @After
+    public void tearDown() {
+        store.dispose();
+    }
+
+    SimpleFeature feature(String id, double x, double y) {
+        return SimpleFeatureBuilder.build(type,
+                new Object[] { gf.createPoint(new Coordinate(x, y)), id }, id);
+    }
+
+    @Test
+    public void testCached() throws Exception {
+        ContentFeatureSource source = store.getFeatureSource("points");
+        assertEquals(3, source.getCount(Query.ALL));
+        assertEquals(new ReferencedEnvelope(0, 10, 0, 10, null), source.getBounds());
+        assertTrue(statistics.isCountExact(TYPE_NAME));
+        assertTrue(statistics.isBoundsExact(TYPE_NAME));
+
+        // changes behind the store back are not seen until invalidated
+        store.addFeature(feature("p4", 20, 20));
+        assertEquals(3, store.getFeatureSource("points").getCount(Query.ALL));
+        assertEquals(10, source.getBounds().getMaxX(), 0d);
+        statistics.invalidate(TYPE_NAME);
+        assertEquals(4, source.getCount(Query.ALL));
+        assertEquals(20, source.getBounds().getMaxX(), 0d);
+
+        // filtered queries are not cached
+        assertEquals(1, source.getFeatures(ff.equals(ff.property("name"), ff.literal("p1")))
+                .size());
+    }
+
+    @Test
+    public void testAutoCommitChanges() throws Exception {
+        SimpleFeatureStore fs = (SimpleFeatureStore) store.getFeatureSource("points");
+        assertEquals(3, fs.getCount(Query.ALL));
+        fs.getBounds();
+
+        List<FeatureId> added = fs.addFeatures(DataUtilities.collection(feature("p4", -5, 20)));
+        assertTrue(statistics.isCountExact(TYPE_NAME));
+        assertTrue(statistics.isBoundsExact(TYPE_NAME));
+        assertEquals(4, fs.getCount(Query.ALL));
+        assertEquals(new ReferencedEnvelope(-5, 10, 0, 20, null), fs.getBounds());
+
+        // removals keep the count exact, the bounds might shrink
+        fs.removeFeatures(ff.id(new HashSet<FeatureId>(added)));
+        assertTrue(statistics.isCountExact(TYPE_NAME));
+        assertFalse(statistics.isBoundsExact(TYPE_NAME));
+        assertEquals(3, fs.getCount(Query.ALL));
+        assertEquals(new ReferencedEnvelope(0, 10, 0, 10, null), fs.getBounds());
+        assertTrue(statistics.isBoundsExact(TYPE_NAME));
+    }
+
+    @Test
+    public void testTransactionCommit() throws Exception {
+        SimpleFeatureStore autoCommit = (SimpleFeatureStore) store.getFeatureSource("points");
+        assertEquals(3, autoCommit.getCount(Query.ALL));
+        autoCommit.getBounds();
+
+        DefaultTransaction tx = new DefaultTransaction();
+        try {
+            SimpleFeatureStore fs = (SimpleFeatureStore) store.getFeatureSource("points");
+            fs.setTransaction(tx);
+            fs.addFeatures(DataUtilities.collection(new SimpleFeature[] {
+                    feature("p4", 30, 30), feature("p5", 40, 40) }));
+            fs.removeFeatures(ff.id(ff.featureId("p1")));
+
+            // the transaction sees its changes, the others do not
+            assertEquals(4, fs.getCount(Query.ALL));
+            assertEquals(3, autoCommit.getCount(Query.ALL));
+            assertEquals(10, autoCommit.getBounds().getMaxX(), 0d);
+
+            tx.commit();
+        } finally {
+            tx.close();
+        }
+
+        // the diff got applied, no need to count again
+        assertTrue(statistics.isCountExact(TYPE_NAME));
+        assertFalse(statistics.isBoundsExact(TYPE_NAME));
+        assertEquals(4, autoCommit.getCount(Query.ALL));
+        assertEquals(new ReferencedEnvelope(5, 40, 5, 40, null), autoCommit.getBounds());
+    }
+
+    @Test
+    public void testEstimatesAndRefresh() throws Exception {
+        statistics.setUseEstimates(true);
+        statistics.setRefreshDelay(10);
+        ContentFeatureSource source = store.getFeatureSource("points");
+        assertEquals(3, source.getCount(Query.ALL));
+        source.getBounds();
+
+        // a change that is not known one by one makes the values stale
+        store.addFeature(feature("p4", 20, 20));
+        statistics.featureEvent(TYPE_NAME, new FeatureEvent(source, FeatureEvent.Type.ADDED,
+                null, Filter.INCLUDE), false);
+        assertFalse(statistics.isCountExact(TYPE_NAME));
+
+        // the refresh computes them again in the background
+        for (int i = 0; i < 100 && !statistics.isCountExact(TYPE_NAME); i++) {
+            Thread.sleep(20);
+        }
+        assertTrue(statistics.isCountExact(TYPE_NAME));
+        assertTrue(statistics.isBoundsExact(TYPE_NAME));
+        assertEquals(4, source.getCount(Query.ALL));
+        assertEquals(20, source.getBounds().getMaxX(), 0d);
+    }
+}
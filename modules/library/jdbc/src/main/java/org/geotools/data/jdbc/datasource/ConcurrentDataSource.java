@@ -0,0 +1,616 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.jdbc.datasource;
+
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.ObjectName;
+
+import org.geotools.util.logging.Logging;
+
+/**
+ * A connection pool meant for many threads borrowing connections at the same time.
+ * <p>
+ * Unlike DBCP, borrowing and returning a connection does not synchronize on the pool: the
+ * connections are claimed with a compare and set on their state, each thread trying first the
+ * connection it used last, and the number of connections in use is bounded by a semaphore, so
+ * that threads only wait when all the connections are actually in use, and for at most the
+ * configured time.
+ * </p>
+ * <p>
+ * When a leak threshold is set, the connections held for longer than that are reported in the
+ * logs along with the stack trace of the code that borrowed them. The pool statistics can be
+ * published through JMX, see {@link #registerMBean()}.
+ * </p>
+ *
+ * @source $URL$
+ */
+public class ConcurrentDataSource implements ManageableDataSource, ConcurrentDataSourceMBean {
+
+    static final Logger LOGGER = Logging.getLogger(ConcurrentDataSource.class);
+
+    /** The JMX domain of the pools */
+    public static final String JMX_DOMAIN = "org.geotools.jdbc";
+
+    static final AtomicInteger POOL_IDS = new AtomicInteger();
+
+    static final int IDLE = 0;
+
+    static final int IN_USE = 1;
+
+    static final int REMOVED = 2;
+
+    /**
+     * A physical connection of the pool
+     */
+    static final class Entry {
+        final Connection connection;
+
+        final AtomicInteger state = new AtomicInteger(IN_USE);
+
+        volatile long borrowTime;
+
+        /** Where the connection was borrowed from, tracked only with leak detection */
+        volatile Throwable borrower;
+
+        volatile boolean leakReported;
+
+        Entry(Connection connection) {
+            this.connection = connection;
+        }
+
+        boolean reserve() {
+            return state.get() == IDLE && state.compareAndSet(IDLE, IN_USE);
+        }
+    }
+
+    final Driver driver;
+
+    final String url;
+
+    final Properties info;
+
+    final int maxActive;
+
+    /** Bounds the connections in use, null if unbounded */
+    final Semaphore permits;
+
+    final CopyOnWriteArrayList<Entry> entries = new CopyOnWriteArrayList<Entry>();
+
+    final ThreadLocal<Entry> lastUsed = new ThreadLocal<Entry>();
+
+    final AtomicInteger active = new AtomicInteger();
+
+    final AtomicInteger idle = new AtomicInteger();
+
+    final AtomicInteger waiting = new AtomicInteger();
+
+    final LongAdder borrowCount = new LongAdder();
+
+    final LongAdder borrowNanos = new LongAdder();
+
+    final LongAccumulator maxBorrowNanos = new LongAccumulator(Long::max, 0);
+
+    final LongAdder waitCount = new LongAdder();
+
+    final LongAdder waitNanos = new LongAdder();
+
+    final LongAdder timeoutCount = new LongAdder();
+
+    final LongAdder createdCount = new LongAdder();
+
+    final LongAdder leakCount = new LongAdder();
+
+    int maxIdle = 8;
+
+    long maxWait = -1;
+
+    String validationQuery;
+
+    volatile long leakThreshold;
+
+    ScheduledExecutorService leakChecker;
+
+    ObjectName objectName;
+
+    PrintWriter logWriter;
+
+    int loginTimeout;
+
+    volatile boolean closed;
+
+    /**
+     * Creates a pool opening its connections with the given driver
+     *
+     * @param driver The JDBC driver
+     * @param url The JDBC url
+     * @param info The connection properties, such as the user and password
+     * @param maxActive The maximum number of connections in use at the same time, unbounded if
+     *        not positive
+     */
+    public ConcurrentDataSource(Driver driver, String url, Properties info, int maxActive) {
+        this.driver = driver;
+        this.url = url;
+        this.info = info != null ? info : new Properties();
+        this.maxActive = maxActive;
+        this.permits = maxActive > 0 ? new Semaphore(maxActive) : null;
+    }
+
+    /**
+     * Creates a pool logging in with the given credentials
+     *
+     * @param driverClassName The class of the JDBC driver
+     * @param url The JDBC url
+     * @param username The user name, or null if not required
+     * @param password The password, or null if not required
+     * @param maxActive The maximum number of connections in use at the same time, unbounded if
+     *        not positive
+     * @throws SQLException If the driver cannot be loaded
+     */
+    public ConcurrentDataSource(String driverClassName, String url, String username,
+            String password, int maxActive) throws SQLException {
+        this(loadDriver(driverClassName), url, credentials(username, password), maxActive);
+    }
+
+    static Driver loadDriver(String driverClassName) throws SQLException {
+        try {
+            return (Driver) Class.forName(driverClassName).getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            throw new SQLException("Cannot load JDBC driver class '" + driverClassName + "'", e);
+        }
+    }
+
+    static Properties credentials(String username, String password) {
+        Properties info = new Properties();
+        if (username != null) {
+            info.setProperty("user", username);
+        }
+        if (password != null) {
+            info.setProperty("password", password);
+        }
+        return info;
+    }
+
+    /**
+     * Sets the maximum number of connections kept open while not in use, unbounded if negative
+     */
+    public void setMaxIdle(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+    /**
+     * Sets how long, in milliseconds, a borrow waits for a connection to be returned before
+     * failing, waits forever if negative
+     */
+    public void setMaxWait(long maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    public long getMaxWait() {
+        return maxWait;
+    }
+
+    /**
+     * Sets the query run to check the connections before handing them out, or null to skip the
+     * check
+     */
+    public void setValidationQuery(String validationQuery) {
+        this.validationQuery = validationQuery;
+    }
+
+    public String getValidationQuery() {
+        return validationQuery;
+    }
+
+    /**
+     * Sets how long, in milliseconds, a connection can be held before being reported as leaked,
+     * disables the leak detection if not positive
+     */
+    public synchronized void setLeakThreshold(long leakThreshold) {
+        this.leakThreshold = leakThreshold;
+        if (leakChecker != null) {
+            leakChecker.shutdownNow();
+            leakChecker = null;
+        }
+        if (leakThreshold > 0 && !closed) {
+            leakChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "Connection leak checker");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(1, leakThreshold / 2);
+            leakChecker.scheduleWithFixedDelay(this::checkLeaks, period, period,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public long getLeakThreshold() {
+        return leakThreshold;
+    }
+
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("The connection pool has been closed");
+        }
+        long start = System.nanoTime();
+        acquire(start);
+        try {
+            Entry entry = borrow();
+            entry.borrowTime = System.nanoTime();
+            entry.leakReported = false;
+            if (leakThreshold > 0) {
+                entry.borrower = new Throwable("Connection borrowed here");
+            }
+            active.incrementAndGet();
+            long elapsed = entry.borrowTime - start;
+            borrowCount.increment();
+            borrowNanos.add(elapsed);
+            maxBorrowNanos.accumulate(elapsed);
+            return new PooledConnection(this, entry);
+        } catch (SQLException | RuntimeException e) {
+            if (permits != null) {
+                permits.release();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Takes a permit to use a connection, waiting for at most {@link #maxWait} if none is
+     * available
+     */
+    void acquire(long start) throws SQLException {
+        if (permits == null || permits.tryAcquire()) {
+            return;
+        }
+        waiting.incrementAndGet();
+        try {
+            if (maxWait < 0) {
+                permits.acquire();
+            } else if (!permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS)) {
+                timeoutCount.increment();
+                throw new SQLException("Timed out after " + maxWait
+                        + "ms waiting for a connection, all the " + maxActive
+                        + " connections of the pool are in use");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        } finally {
+            waiting.decrementAndGet();
+            waitCount.increment();
+            waitNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Claims an idle connection, trying first the one last used by the calling thread, or opens
+     * a new one
+     */
+    Entry borrow() throws SQLException {
+        Entry entry = lastUsed.get();
+        if (entry != null && entry.reserve()) {
+            idle.decrementAndGet();
+            if (validate(entry)) {
+                return entry;
+            }
+        }
+        for (Entry candidate : entries) {
+            if (candidate.reserve()) {
+                idle.decrementAndGet();
+                if (validate(candidate)) {
+                    lastUsed.set(candidate);
+                    return candidate;
+                }
+            }
+        }
+
+        Connection cx = driver.connect(url, info);
+        if (cx == null) {
+            throw new SQLException("The driver does not accept the url " + url);
+        }
+        createdCount.increment();
+        entry = new Entry(cx);
+        entries.add(entry);
+        lastUsed.set(entry);
+        return entry;
+    }
+
+    /**
+     * Checks a connection claimed from the pool is still usable, removing it otherwise
+     */
+    boolean validate(Entry entry) {
+        try {
+            if (entry.connection.isClosed()) {
+                destroy(entry);
+                return false;
+            }
+            if (validationQuery != null) {
+                Statement st = entry.connection.createStatement();
+                try {
+                    st.execute(validationQuery);
+                } finally {
+                    st.close();
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Discarding invalid pooled connection", e);
+            destroy(entry);
+            return false;
+        }
+    }
+
+    /**
+     * Returns a connection to the pool, resetting its state, or closes it if the pool has enough
+     * idle connections already
+     */
+    void release(Entry entry) {
+        active.decrementAndGet();
+        entry.borrower = null;
+        try {
+            boolean reusable = !closed;
+            try {
+                Connection cx = entry.connection;
+                if (reusable && !cx.getAutoCommit()) {
+                    cx.rollback();
+                    cx.setAutoCommit(true);
+                }
+                if (reusable) {
+                    cx.clearWarnings();
+                }
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "Discarding pooled connection that could not be reset", e);
+                reusable = false;
+            }
+
+            if (reusable && (maxIdle < 0 || idle.get() < maxIdle)) {
+                idle.incrementAndGet();
+                entry.state.set(IDLE);
+                // the pool might have been closed in the meantime
+                if (closed && entry.state.compareAndSet(IDLE, REMOVED)) {
+                    idle.decrementAndGet();
+                    destroy(entry);
+                }
+            } else {
+                destroy(entry);
+            }
+        } finally {
+            if (permits != null) {
+                permits.release();
+            }
+        }
+    }
+
+    void destroy(Entry entry) {
+        entry.state.set(REMOVED);
+        entries.remove(entry);
+        try {
+            entry.connection.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Failed to close pooled connection", e);
+        }
+    }
+
+    /**
+     * Reports the connections held for longer than the leak threshold
+     */
+    void checkLeaks() {
+        long threshold = TimeUnit.MILLISECONDS.toNanos(leakThreshold);
+        long now = System.nanoTime();
+        for (Entry entry : entries) {
+            if (entry.state.get() == IN_USE && !entry.leakReported
+                    && now - entry.borrowTime > threshold) {
+                Throwable borrower = entry.borrower;
+                if (borrower == null) {
+                    // borrowed before the leak detection was enabled, or just returned
+                    continue;
+                }
+                entry.leakReported = true;
+                leakCount.increment();
+                LOGGER.log(Level.WARNING, "Connection to " + url + " in use for more than "
+                        + leakThreshold + "ms, it might have been leaked", borrower);
+            }
+        }
+    }
+
+    /**
+     * Publishes the pool statistics in the platform MBean server, under the
+     * {@link #JMX_DOMAIN} domain. The pool is unregistered when closed.
+     */
+    public synchronized void registerMBean() {
+        if (objectName != null || closed) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName(JMX_DOMAIN + ":type=ConnectionPool,url="
+                    + ObjectName.quote(url) + ",id=" + POOL_IDS.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            objectName = name;
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Could not publish the connection pool statistics", e);
+        }
+    }
+
+    /**
+     * The name the pool is registered under in the platform MBean server, or null if not
+     * registered
+     */
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+
+    public void close() throws SQLException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (leakChecker != null) {
+                leakChecker.shutdownNow();
+                leakChecker = null;
+            }
+            if (objectName != null) {
+                try {
+                    ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+                } catch (Exception e) {
+                    LOGGER.log(Level.FINE, "Could not unregister the connection pool", e);
+                }
+                objectName = null;
+            }
+        }
+        // the connections in use get closed when returned
+        for (Entry entry : entries) {
+            if (entry.state.compareAndSet(IDLE, REMOVED)) {
+                idle.decrementAndGet();
+                destroy(entry);
+            }
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException(
+                "The pool connections all use the configured credentials");
+    }
+
+    public PrintWriter getLogWriter() throws SQLException {
+        return logWriter;
+    }
+
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        this.logWriter = out;
+    }
+
+    public void setLoginTimeout(int seconds) throws SQLException {
+        this.loginTimeout = seconds;
+    }
+
+    public int getLoginTimeout() throws SQLException {
+        return loginTimeout;
+    }
+
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("This implementation cannot unwrap " + iface);
+    }
+
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this);
+    }
+
+    // ----------------------------------------------------------------------------------------
+    // Statistics
+    // ----------------------------------------------------------------------------------------
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getMaxActive() {
+        return maxActive;
+    }
+
+    public int getNumActive() {
+        return active.get();
+    }
+
+    public int getNumIdle() {
+        return Math.max(0, idle.get());
+    }
+
+    public int getNumWaiting() {
+        return waiting.get();
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    public long getCreatedCount() {
+        return createdCount.sum();
+    }
+
+    public double getAverageBorrowTime() {
+        return average(borrowNanos.sum(), borrowCount.sum());
+    }
+
+    public double getMaxBorrowTime() {
+        return maxBorrowNanos.get() / 1e6;
+    }
+
+    public double getAverageWaitTime() {
+        return average(waitNanos.sum(), waitCount.sum());
+    }
+
+    public long getWaitCount() {
+        return waitCount.sum();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    public long getLeakCount() {
+        return leakCount.sum();
+    }
+
+    public void resetStatistics() {
+        borrowCount.reset();
+        borrowNanos.reset();
+        maxBorrowNanos.reset();
+        waitCount.reset();
+        waitNanos.reset();
+        timeoutCount.reset();
+        createdCount.reset();
+        leakCount.reset();
+    }
+
+    static double average(long nanos, long count) {
+        return count == 0 ? 0 : nanos / 1e6 / count;
+    }
+}
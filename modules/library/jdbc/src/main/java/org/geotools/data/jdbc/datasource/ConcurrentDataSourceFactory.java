@@ -0,0 +1,137 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.jdbc.datasource;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.geotools.data.DataSourceException;
+import org.geotools.data.DataAccessFactory.Param;
+
+/**
+ * A datasource factory using the {@link ConcurrentDataSource} connection pool
+ *
+ * @source $URL$
+ */
+public class ConcurrentDataSourceFactory extends AbstractDataSourceFactorySpi {
+
+    public static final Param DSTYPE = new Param("dstype", String.class,
+            "Must be CONCURRENT", false);
+
+    public static final Param USERNAME = new Param("username", String.class,
+            "User name to login as", false);
+
+    public static final Param PASSWORD = new Param("password", String.class,
+            "Password used to login", false);
+
+    public static final Param JDBC_URL = new Param("jdbcUrl", String.class,
+            "The JDBC url (check the JDBC driver docs to find out its format)", true);
+
+    public static final Param DRIVERCLASS = new Param("driverClassName", String.class,
+            "The JDBC driver class name (check the JDBC driver docs to find out its name)", true);
+
+    public static final Param MAXACTIVE = new Param("maxActive", Integer.class,
+            "The maximum number of active connections in the pool", true);
+
+    public static final Param MAXIDLE = new Param("maxIdle", Integer.class,
+            "The maximum number of idle connections in the pool", true);
+
+    public static final Param MAXWAIT = new Param("maxWait", Integer.class,
+            "The number of milliseconds to wait for a connection before giving up, "
+                    + "waits forever if negative", false, -1);
+
+    public static final Param VALIDATION_QUERY = new Param("validationQuery", String.class,
+            "The query used to check the connections before handing them out", false);
+
+    public static final Param LEAK_THRESHOLD = new Param("leakThreshold", Integer.class,
+            "The number of milliseconds a connection can be in use before being reported as "
+                    + "leaked, 0 disables the leak detection", false, 0);
+
+    public static final Param JMX = new Param("jmx", Boolean.class,
+            "Publish the pool statistics through JMX", false, false);
+
+    private static final Param[] PARAMS = new Param[] { DSTYPE, DRIVERCLASS, JDBC_URL, USERNAME,
+            PASSWORD, MAXACTIVE, MAXIDLE, MAXWAIT, VALIDATION_QUERY, LEAK_THRESHOLD, JMX };
+
+    public DataSource createDataSource(Map params) throws IOException {
+        return createNewDataSource(params);
+    }
+
+    public boolean canProcess(Map params) {
+        return super.canProcess(params) && "CONCURRENT".equals(params.get("dstype"));
+    }
+
+    public DataSource createNewDataSource(Map params) throws IOException {
+        ConcurrentDataSource dataSource;
+        try {
+            dataSource = new ConcurrentDataSource((String) DRIVERCLASS.lookUp(params),
+                    (String) JDBC_URL.lookUp(params), (String) USERNAME.lookUp(params),
+                    (String) PASSWORD.lookUp(params),
+                    ((Integer) MAXACTIVE.lookUp(params)).intValue());
+        } catch (SQLException e) {
+            throw new DataSourceException(e.getMessage(), e);
+        }
+        dataSource.setMaxIdle(((Integer) MAXIDLE.lookUp(params)).intValue());
+        Integer maxWait = (Integer) MAXWAIT.lookUp(params);
+        if (maxWait != null) {
+            dataSource.setMaxWait(maxWait);
+        }
+        dataSource.setValidationQuery((String) VALIDATION_QUERY.lookUp(params));
+
+        // check the data source is properly setup by trying to gather a connection out of it
+        Connection conn = null;
+        try {
+            conn = dataSource.getConnection();
+        } catch (SQLException e) {
+            throw new DataSourceException("Connection pool improperly set up: " + e.getMessage(), e);
+        } finally {
+            // close the connection at once
+            if (conn != null)
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                }
+        }
+
+        Integer leakThreshold = (Integer) LEAK_THRESHOLD.lookUp(params);
+        if (leakThreshold != null && leakThreshold > 0) {
+            dataSource.setLeakThreshold(leakThreshold);
+        }
+        if (Boolean.TRUE.equals(JMX.lookUp(params))) {
+            dataSource.registerMBean();
+        }
+
+        return dataSource;
+    }
+
+    public String getDescription() {
+        return "A connection pool with lock free borrowing, leak detection and JMX statistics.";
+    }
+
+    public Param[] getParametersInfo() {
+        return PARAMS;
+    }
+
+    public boolean isAvailable() {
+        return true;
+    }
+
+}
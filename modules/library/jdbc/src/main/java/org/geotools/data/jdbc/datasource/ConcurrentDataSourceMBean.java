@@ -0,0 +1,96 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.jdbc.datasource;
+
+/**
+ * The statistics of a {@link ConcurrentDataSource}, as published through JMX
+ *
+ * @source $URL$
+ */
+public interface ConcurrentDataSourceMBean {
+
+    /**
+     * The JDBC url the connections are opened against
+     */
+    String getUrl();
+
+    /**
+     * The maximum number of connections in use at the same time
+     */
+    int getMaxActive();
+
+    /**
+     * The number of connections currently in use
+     */
+    int getNumActive();
+
+    /**
+     * The number of connections waiting in the pool
+     */
+    int getNumIdle();
+
+    /**
+     * The number of threads waiting for a connection to be returned
+     */
+    int getNumWaiting();
+
+    /**
+     * The number of connections handed out since the pool creation
+     */
+    long getBorrowCount();
+
+    /**
+     * The number of connections opened since the pool creation
+     */
+    long getCreatedCount();
+
+    /**
+     * The average time, in milliseconds, taken to hand out a connection, waits included
+     */
+    double getAverageBorrowTime();
+
+    /**
+     * The longest time, in milliseconds, taken to hand out a connection
+     */
+    double getMaxBorrowTime();
+
+    /**
+     * The average time, in milliseconds, spent waiting for a connection to be returned, over the
+     * borrows that had to wait
+     */
+    double getAverageWaitTime();
+
+    /**
+     * The number of borrows that had to wait for a connection to be returned
+     */
+    long getWaitCount();
+
+    /**
+     * The number of borrows that gave up waiting
+     */
+    long getTimeoutCount();
+
+    /**
+     * The number of connections found in use for longer than the leak threshold
+     */
+    long getLeakCount();
+
+    /**
+     * Resets the counters and timings
+     */
+    void resetStatistics();
+}
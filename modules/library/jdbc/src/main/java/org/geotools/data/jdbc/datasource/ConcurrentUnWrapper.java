@@ -0,0 +1,49 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.jdbc.datasource;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Unwraps the connections handed out by a {@link ConcurrentDataSource}. The statements are not
+ * wrapped by the pool.
+ *
+ * @source $URL$
+ */
+public class ConcurrentUnWrapper implements UnWrapper {
+
+    public boolean canUnwrap(Connection conn) {
+        return conn instanceof PooledConnection;
+    }
+
+    public Connection unwrap(Connection conn) {
+        if (!canUnwrap(conn))
+            throw new IllegalArgumentException("This unwrapper can only handle instances of "
+                    + PooledConnection.class);
+        return ((PooledConnection) conn).getDelegate();
+    }
+
+    public boolean canUnwrap(Statement st) {
+        return false;
+    }
+
+    public Statement unwrap(Statement statement) {
+        throw new UnsupportedOperationException("This un-wrapper cannot operate on statements");
+    }
+
+}
@@ -0,0 +1,412 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opengis.filter.And;
+import org.opengis.filter.BinaryComparisonOperator;
+import org.opengis.filter.BinaryLogicOperator;
+import org.opengis.filter.ExcludeFilter;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterVisitor;
+import org.opengis.filter.Id;
+import org.opengis.filter.IncludeFilter;
+import org.opengis.filter.Not;
+import org.opengis.filter.Or;
+import org.opengis.filter.PropertyIsBetween;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.PropertyIsGreaterThan;
+import org.opengis.filter.PropertyIsGreaterThanOrEqualTo;
+import org.opengis.filter.PropertyIsLessThan;
+import org.opengis.filter.PropertyIsLessThanOrEqualTo;
+import org.opengis.filter.PropertyIsLike;
+import org.opengis.filter.PropertyIsNil;
+import org.opengis.filter.PropertyIsNotEqualTo;
+import org.opengis.filter.PropertyIsNull;
+import org.opengis.filter.expression.Add;
+import org.opengis.filter.expression.BinaryExpression;
+import org.opengis.filter.expression.Divide;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.ExpressionVisitor;
+import org.opengis.filter.expression.Function;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.Multiply;
+import org.opengis.filter.expression.NilExpression;
+import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.expression.Subtract;
+import org.opengis.filter.spatial.BBOX;
+import org.opengis.filter.spatial.BBOX3D;
+import org.opengis.filter.spatial.Beyond;
+import org.opengis.filter.spatial.BinarySpatialOperator;
+import org.opengis.filter.spatial.Contains;
+import org.opengis.filter.spatial.Crosses;
+import org.opengis.filter.spatial.DWithin;
+import org.opengis.filter.spatial.Disjoint;
+import org.opengis.filter.spatial.Equals;
+import org.opengis.filter.spatial.Intersects;
+import org.opengis.filter.spatial.Overlaps;
+import org.opengis.filter.spatial.Touches;
+import org.opengis.filter.spatial.Within;
+import org.opengis.filter.temporal.After;
+import org.opengis.filter.temporal.AnyInteracts;
+import org.opengis.filter.temporal.Before;
+import org.opengis.filter.temporal.Begins;
+import org.opengis.filter.temporal.BegunBy;
+import org.opengis.filter.temporal.During;
+import org.opengis.filter.temporal.EndedBy;
+import org.opengis.filter.temporal.Ends;
+import org.opengis.filter.temporal.Meets;
+import org.opengis.filter.temporal.MetBy;
+import org.opengis.filter.temporal.OverlappedBy;
+import org.opengis.filter.temporal.TContains;
+import org.opengis.filter.temporal.TEquals;
+import org.opengis.filter.temporal.TOverlaps;
+
+/**
+ * The shape of a filter, that is, its structure with the literal values left out.
+ * <p>
+ * Two filters with the same shape are expected to encode to the same prepared SQL, differing
+ * only by the values of the literals, which are collected in visiting order. Only the filters
+ * whose encoding is known not to depend on the literal values are supported, identifier,
+ * distance and temporal filters are not.
+ * </p>
+ *
+ * @source $URL$
+ */
+class FilterShape implements FilterVisitor, ExpressionVisitor {
+
+    final StringBuilder key = new StringBuilder();
+
+    final List<Literal> literals = new ArrayList<Literal>();
+
+    boolean supported = true;
+
+    /**
+     * Returns the shape of a filter, or null if the filter is not supported
+     */
+    static FilterShape of(Filter filter) {
+        FilterShape shape = new FilterShape();
+        filter.accept(shape, null);
+        return shape.supported ? shape : null;
+    }
+
+    /**
+     * The filter structure, with a placeholder for each literal
+     */
+    String getKey() {
+        return key.toString();
+    }
+
+    /**
+     * The literals of the filter, in visiting order
+     */
+    List<Literal> getLiterals() {
+        return literals;
+    }
+
+    Object unsupported(Object extraData) {
+        supported = false;
+        return extraData;
+    }
+
+    Object logic(String name, BinaryLogicOperator filter, Object extraData) {
+        key.append(name).append('(');
+        for (Filter child : filter.getChildren()) {
+            child.accept(this, extraData);
+            key.append(',');
+        }
+        key.append(')');
+        return extraData;
+    }
+
+    Object comparison(String name, BinaryComparisonOperator filter, Object extraData) {
+        key.append(name).append('[').append(filter.isMatchingCase()).append(',')
+                .append(filter.getMatchAction()).append("](");
+        filter.getExpression1().accept(this, extraData);
+        key.append(',');
+        filter.getExpression2().accept(this, extraData);
+        key.append(')');
+        return extraData;
+    }
+
+    Object spatial(String name, BinarySpatialOperator filter, Object extraData) {
+        key.append(name).append('[').append(filter.getMatchAction()).append("](");
+        filter.getExpression1().accept(this, extraData);
+        key.append(',');
+        filter.getExpression2().accept(this, extraData);
+        key.append(')');
+        return extraData;
+    }
+
+    Object arithmetic(String name, BinaryExpression expression, Object extraData) {
+        key.append(name).append('(');
+        expression.getExpression1().accept(this, extraData);
+        key.append(',');
+        expression.getExpression2().accept(this, extraData);
+        key.append(')');
+        return extraData;
+    }
+
+    public Object visitNullFilter(Object extraData) {
+        return unsupported(extraData);
+    }
+
+    public Object visit(ExcludeFilter filter, Object extraData) {
+        key.append("EXCLUDE");
+        return extraData;
+    }
+
+    public Object visit(IncludeFilter filter, Object extraData) {
+        key.append("INCLUDE");
+        return extraData;
+    }
+
+    public Object visit(And filter, Object extraData) {
+        return logic("AND", filter, extraData);
+    }
+
+    public Object visit(Id filter, Object extraData) {
+        // the identifiers are encoded one by one
+        return unsupported(extraData);
+    }
+
+    public Object visit(Not filter, Object extraData) {
+        key.append("NOT(");
+        filter.getFilter().accept(this, extraData);
+        key.append(')');
+        return extraData;
+    }
+
+    public Object visit(Or filter, Object extraData) {
+        return logic("OR", filter, extraData);
+    }
+
+    public Object visit(PropertyIsBetween filter, Object extraData) {
+        key.append("BETWEEN[").append(filter.getMatchAction()).append("](");
+        filter.getExpression().accept(this, extraData);
+        key.append(',');
+        filter.getLowerBoundary().accept(this, extraData);
+        key.append(',');
+        filter.getUpperBoundary().accept(this, extraData);
+        key.append(')');
+        return extraData;
+    }
+
+    public Object visit(PropertyIsEqualTo filter, Object extraData) {
+        return comparison("EQ", filter, extraData);
+    }
+
+    public Object visit(PropertyIsNotEqualTo filter, Object extraData) {
+        return comparison("NE", filter, extraData);
+    }
+
+    public Object visit(PropertyIsGreaterThan filter, Object extraData) {
+        return comparison("GT", filter, extraData);
+    }
+
+    public Object visit(PropertyIsGreaterThanOrEqualTo filter, Object extraData) {
+        return comparison("GE", filter, extraData);
+    }
+
+    public Object visit(PropertyIsLessThan filter, Object extraData) {
+        return comparison("LT", filter, extraData);
+    }
+
+    public Object visit(PropertyIsLessThanOrEqualTo filter, Object extraData) {
+        return comparison("LE", filter, extraData);
+    }
+
+    public Object visit(PropertyIsLike filter, Object extraData) {
+        // the pattern is encoded in the SQL, so it is part of the shape
+        key.append("LIKE[").append(filter.getLiteral()).append(',')
+                .append(filter.getWildCard()).append(',').append(filter.getSingleChar())
+                .append(',').append(filter.getEscape()).append(',')
+                .append(filter.isMatchingCase()).append(',').append(filter.getMatchAction())
+                .append("](");
+        filter.getExpression().accept(this, extraData);
+        key.append(')');
+        return extraData;
+    }
+
+    public Object visit(PropertyIsNull filter, Object extraData) {
+        key.append("NULL(");
+        filter.getExpression().accept(this, extraData);
+        key.append(')');
+        return extraData;
+    }
+
+    public Object visit(PropertyIsNil filter, Object extraData) {
+        key.append("NIL[").append(filter.getNilReason()).append("](");
+        filter.getExpression().accept(this, extraData);
+        key.append(')');
+        return extraData;
+    }
+
+    public Object visit(BBOX filter, Object extraData) {
+        if (filter instanceof BBOX3D) {
+            // encoded with the bounds values
+            return unsupported(extraData);
+        }
+        return spatial("BBOX", filter, extraData);
+    }
+
+    public Object visit(Beyond filter, Object extraData) {
+        // the distance can depend on the geometry location
+        return unsupported(extraData);
+    }
+
+    public Object visit(Contains filter, Object extraData) {
+        return spatial("CONTAINS", filter, extraData);
+    }
+
+    public Object visit(Crosses filter, Object extraData) {
+        return spatial("CROSSES", filter, extraData);
+    }
+
+    public Object visit(Disjoint filter, Object extraData) {
+        return spatial("DISJOINT", filter, extraData);
+    }
+
+    public Object visit(DWithin filter, Object extraData) {
+        // the distance can depend on the geometry location
+        return unsupported(extraData);
+    }
+
+    public Object visit(Equals filter, Object extraData) {
+        return spatial("EQUALS", filter, extraData);
+    }
+
+    public Object visit(Intersects filter, Object extraData) {
+        return spatial("INTERSECTS", filter, extraData);
+    }
+
+    public Object visit(Overlaps filter, Object extraData) {
+        return spatial("OVERLAPS", filter, extraData);
+    }
+
+    public Object visit(Touches filter, Object extraData) {
+        return spatial("TOUCHES", filter, extraData);
+    }
+
+    public Object visit(Within filter, Object extraData) {
+        return spatial("WITHIN", filter, extraData);
+    }
+
+    // temporal filters are encoded differently for instants and periods
+
+    public Object visit(After after, Object extraData) {
+        return unsupported(extraData);
+    }
+
+    public Object visit(AnyInteracts anyInteracts, Object extraData) {
+        return unsupported(extraData);
+    }
+
+    public Object visit(Before before, Object extraData) {
+        return unsupported(extraData);
+    }
+
+    public Object visit(Begins begins, Object extraData) {
+        return unsupported(extraData);
+    }
+
+    public Object visit(BegunBy begunBy, Object extraData) {
+        return unsupported(extraData);
+    }
+
+    public Object visit(During during, Object extraData) {
+        return unsupported(extraData);
+    }
+
+    public Object visit(EndedBy endedBy, Object extraData) {
+        return unsupported(extraData);
+    }
+
+    public Object visit(Ends ends, Object extraData) {
+        return unsupported(extraData);
+    }
+
+    public Object visit(Meets meets, Object extraData) {
+        return unsupported(extraData);
+    }
+
+    public Object visit(MetBy metBy, Object extraData) {
+        return unsupported(extraData);
+    }
+
+    public Object visit(OverlappedBy overlappedBy, Object extraData) {
+        return unsupported(extraData);
+    }
+
+    public Object visit(TContains contains, Object extraData) {
+        return unsupported(extraData);
+    }
+
+    public Object visit(TEquals equals, Object extraData) {
+        return unsupported(extraData);
+    }
+
+    public Object visit(TOverlaps contains, Object extraData) {
+        return unsupported(extraData);
+    }
+
+    public Object visit(NilExpression expression, Object extraData) {
+        key.append("NIL");
+        return extraData;
+    }
+
+    public Object visit(Add expression, Object extraData) {
+        return arithmetic("ADD", expression, extraData);
+    }
+
+    public Object visit(Divide expression, Object extraData) {
+        return arithmetic("DIV", expression, extraData);
+    }
+
+    public Object visit(Function expression, Object extraData) {
+        key.append("F:").append(expression.getName()).append('(');
+        for (Expression parameter : expression.getParameters()) {
+            parameter.accept(this, extraData);
+            key.append(',');
+        }
+        key.append(')');
+        return extraData;
+    }
+
+    public Object visit(Literal expression, Object extraData) {
+        // the value type can change the encoding, the value itself should not
+        Object value = expression.getValue();
+        key.append('?').append(value == null ? "null" : value.getClass().getName());
+        literals.add(expression);
+        return extraData;
+    }
+
+    public Object visit(Multiply expression, Object extraData) {
+        return arithmetic("MUL", expression, extraData);
+    }
+
+    public Object visit(PropertyName expression, Object extraData) {
+        key.append('[').append(expression.getPropertyName()).append(']');
+        return extraData;
+    }
+
+    public Object visit(Subtract expression, Object extraData) {
+        return arithmetic("SUB", expression, extraData);
+    }
+}
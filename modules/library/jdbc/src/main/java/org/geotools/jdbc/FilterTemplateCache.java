@@ -0,0 +1,176 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.geotools.data.jdbc.FilterToSQLException;
+import org.opengis.filter.Filter;
+import org.opengis.filter.expression.Literal;
+
+/**
+ * Caches the prepared SQL encoding of filters by shape, see {@link FilterShape}.
+ * <p>
+ * A filter with the same shape as one already encoded reuses its SQL, only evaluating its
+ * literals into the values to bind. Besides saving the encoding, this gives the same SQL to
+ * the queries differing only by their values, letting the pooled prepared statements be
+ * reused.
+ * </p>
+ *
+ * @source $URL$
+ */
+class FilterTemplateCache {
+
+    /**
+     * The SQL of a filter shape, and how to bind the values of each parameter
+     */
+    static class Template {
+        final String sql;
+
+        /** The index of the shape literal providing each parameter */
+        final int[] literalIndexes;
+
+        final Class[] contexts;
+
+        final Integer[] srids;
+
+        final Integer[] dimensions;
+
+        Template(String sql, int[] literalIndexes, Class[] contexts, Integer[] srids,
+                Integer[] dimensions) {
+            this.sql = sql;
+            this.literalIndexes = literalIndexes;
+            this.contexts = contexts;
+            this.srids = srids;
+            this.dimensions = dimensions;
+        }
+
+        /**
+         * Builds the template of an encoded filter, or returns null if the encoding is not
+         * reusable, that is, if it depends on the literal values or some of its parameters do
+         * not come from the filter literals.
+         */
+        static Template create(String sql, PreparedFilterToSQL toSQL, List<Literal> literals) {
+            int size = toSQL.getLiteralValues().size();
+            if (!toSQL.isTemplateSafe() || toSQL.literalExpressions.size() != size) {
+                return null;
+            }
+            int[] indexes = new int[size];
+            boolean[] used = new boolean[literals.size()];
+            for (int i = 0; i < size; i++) {
+                indexes[i] = -1;
+                Literal literal = toSQL.literalExpressions.get(i);
+                for (int j = 0; j < literals.size(); j++) {
+                    if (literals.get(j) == literal) {
+                        indexes[i] = j;
+                        used[j] = true;
+                        break;
+                    }
+                }
+                if (indexes[i] < 0) {
+                    // a literal built during the encoding
+                    return null;
+                }
+            }
+            for (boolean u : used) {
+                if (!u) {
+                    // a literal encoded in the SQL
+                    return null;
+                }
+            }
+            return new Template(sql, indexes, toSQL.literalContexts.toArray(new Class[size]),
+                    toSQL.getSRIDs().toArray(new Integer[size]),
+                    toSQL.getDimensions().toArray(new Integer[size]));
+        }
+
+        /**
+         * Evaluates the literals of a filter with the same shape into the encoder values
+         */
+        void bind(PreparedFilterToSQL toSQL, List<Literal> literals) {
+            for (int i = 0; i < literalIndexes.length; i++) {
+                toSQL.addLiteralValue(literals.get(literalIndexes[i]), contexts[i], srids[i],
+                        dimensions[i]);
+            }
+        }
+    }
+
+    final int maxSize;
+
+    final Map<String, Template> templates;
+
+    /**
+     * @param maxSize The maximum number of filter shapes kept
+     */
+    FilterTemplateCache(final int maxSize) {
+        this.maxSize = maxSize;
+        this.templates = Collections.synchronizedMap(new LinkedHashMap<String, Template>(16,
+                0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Template> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * Encodes a filter, reusing the SQL of a filter with the same shape if available
+     *
+     * @param typeName The type the filter applies to
+     * @param filter The filter to encode
+     * @param encoders Creates the encoder for the filter
+     * @param sql The buffer the filter SQL is appended to
+     * @return The encoder, holding the values to bind
+     */
+    PreparedFilterToSQL encode(String typeName, Filter filter,
+            Supplier<PreparedFilterToSQL> encoders, StringBuffer sql) throws FilterToSQLException {
+        PreparedFilterToSQL toSQL = encoders.get();
+        FilterShape shape = FilterShape.of(filter);
+        String key = shape != null ? typeName + "|" + shape.getKey() : null;
+        Template template = key != null ? templates.get(key) : null;
+        if (template != null) {
+            template.bind(toSQL, shape.getLiterals());
+            sql.append(" ").append(template.sql);
+            return toSQL;
+        }
+
+        toSQL.setInline(true);
+        String encoded = toSQL.encodeToString(filter);
+        sql.append(" ").append(encoded);
+        if (key != null) {
+            template = Template.create(encoded, toSQL, shape.getLiterals());
+            if (template != null) {
+                templates.put(key, template);
+            }
+        }
+        return toSQL;
+    }
+
+    /**
+     * The number of filter shapes cached
+     */
+    int size() {
+        return templates.size();
+    }
+
+    void clear() {
+        templates.clear();
+    }
+}
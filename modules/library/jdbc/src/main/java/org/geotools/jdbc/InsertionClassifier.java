@@ -44,7 +44,7 @@ class InsertionClassifier {
             SimpleFeatureType featureType, Collection<? extends SimpleFeature> features) {
         Map<InsertionClassifier, Collection<SimpleFeature>> kinds = new HashMap<>();
         for (SimpleFeature feature : features) {
-            InsertionClassifier kind = new InsertionClassifier(featureType, feature);
+            InsertionClassifier kind = of(featureType, feature);
             Collection<SimpleFeature> currents = kinds.get(kind);
             if (currents == null) {
                 currents = new ArrayList<>();
@@ -55,6 +55,13 @@ class InsertionClassifier {
         return kinds;
     }
 
+    /**
+     * Returns the kind of insertion a single feature needs
+     */
+    static InsertionClassifier of(SimpleFeatureType featureType, SimpleFeature feature) {
+        return new InsertionClassifier(featureType, feature);
+    }
+
     private InsertionClassifier(SimpleFeatureType featureType, SimpleFeature feature) {
         useExisting = useExisting(feature);
         geometryTypes = new TreeMap<>();
@@ -42,6 +42,8 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
@@ -66,6 +68,7 @@ import org.geotools.data.store.ContentDataStore;
 import org.geotools.data.store.ContentEntry;
 import org.geotools.data.store.ContentFeatureSource;
 import org.geotools.data.store.ContentState;
+import org.geotools.data.store.ContentStatistics;
 import org.geotools.factory.Hints;
 import org.geotools.feature.NameImpl;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
@@ -284,6 +287,39 @@ public final class JDBCDataStore extends ContentDataStore
      */
     protected int batchInsertSize = 1;
 
+    /**
+     * The number of features read ahead on a background thread while the previous ones are
+     * being consumed, 0 to read on the calling thread.
+     */
+    protected int pipelineBufferSize = 0;
+
+    /**
+     * Runs the background reads, created on demand
+     */
+    ExecutorService readerExecutor;
+
+    /**
+     * The prepared SQL of the filters by shape, null if not caching
+     */
+    volatile FilterTemplateCache filterTemplates;
+
+    /**
+     * The features of the recent auto commit queries, null if not caching
+     */
+    volatile QueryResultCache queryCache;
+
+    /**
+     * The number of connections the auto commit feature additions are spread over, 1 to insert
+     * on a single connection
+     */
+    protected int parallelInsertPartitions = 1;
+
+    /**
+     * The number of features each parallel insert connection commits at once, 0 to commit at
+     * the end of the addition
+     */
+    protected int parallelInsertCommitInterval = 10000;
+
     /**
      * flag controlling whether primary key columns of a table are exposed via the 
      * feature type.
@@ -306,6 +342,11 @@ public final class JDBCDataStore extends ContentDataStore
      */
     protected List<ConnectionLifecycleListener> connectionLifecycleListeners = new CopyOnWriteArrayList<ConnectionLifecycleListener>();
 
+    /**
+     * The listeners collecting the metrics of the queries
+     */
+    protected List<QueryMetricsListener> queryMetricsListeners = new CopyOnWriteArrayList<QueryMetricsListener>();
+
     protected JDBCCallbackFactory callbackFactory = JDBCCallbackFactory.NULL;
 
     private volatile NamePatternEscaping namePatternEscaping;
@@ -352,6 +393,10 @@ public final class JDBCDataStore extends ContentDataStore
             virtualTables.put(vtable.getName(), new VirtualTable(vtable));
             // the new vtable might be overriding a previous definition
             entries.remove(new NameImpl(namespaceURI, vtable.getName()));
+            if (filterTemplates != null) {
+                filterTemplates.clear();
+            }
+            invalidateQueryCache(vtable.getName(), null);
             getSchema(vtable.getName());
         } catch (IOException e) {
             virtualTables.remove(vtable.getName());
@@ -366,6 +411,36 @@ public final class JDBCDataStore extends ContentDataStore
     public List<ConnectionLifecycleListener> getConnectionLifecycleListeners() {
         return connectionLifecycleListeners;
     }
+
+    /**
+     * Returns a modifiable list of query metrics listeners. The metrics of the queries are
+     * collected only while the list is not empty.
+     */
+    public List<QueryMetricsListener> getQueryMetricsListeners() {
+        return queryMetricsListeners;
+    }
+
+    /**
+     * Starts collecting the metrics of a query, if anyone is listening
+     *
+     * @return The query metrics, or null if there are no listeners
+     */
+    QueryMetrics createQueryMetrics(String typeName) {
+        return queryMetricsListeners.isEmpty() ? null : new QueryMetrics(typeName);
+    }
+
+    /**
+     * Hands over the metrics of a completed query to the listeners
+     */
+    void fireQueryMetrics(QueryMetrics metrics) {
+        for (QueryMetricsListener listener : queryMetricsListeners) {
+            try {
+                listener.onQuery(this, metrics);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Query metrics listener failed", e);
+            }
+        }
+    }
     
     /**
      * Removes and returns the specified virtual table
@@ -389,6 +464,7 @@ public final class JDBCDataStore extends ContentDataStore
         VirtualTable vt = virtualTables.remove(name);
         if (vt != null) {
             entries.remove(new NameImpl(namespaceURI, name));
+            invalidateQueryCache(name, null);
         }
         return vt;
     }
@@ -461,6 +537,156 @@ public final class JDBCDataStore extends ContentDataStore
         this.batchInsertSize = batchInsertSize;
     }
 
+    /**
+     * @return the number of connections the auto commit feature additions are spread over
+     */
+    public int getParallelInsertPartitions() {
+        return parallelInsertPartitions;
+    }
+
+    /**
+     * Sets the number of connections the auto commit feature additions are spread over. When
+     * greater than 1, the features added through a feature store on auto commit are inserted
+     * by a {@link ParallelInserter}, each connection committing on its own. A failure then
+     * leaves the features committed before it in the database.
+     *
+     * @param parallelInsertPartitions
+     */
+    public void setParallelInsertPartitions(int parallelInsertPartitions) {
+        this.parallelInsertPartitions = parallelInsertPartitions;
+    }
+
+    /**
+     * @return the number of features each parallel insert connection commits at once
+     */
+    public int getParallelInsertCommitInterval() {
+        return parallelInsertCommitInterval;
+    }
+
+    /**
+     * Sets the number of features each parallel insert connection commits at once, 0 to commit
+     * only at the end of the addition.
+     *
+     * @param parallelInsertCommitInterval
+     */
+    public void setParallelInsertCommitInterval(int parallelInsertCommitInterval) {
+        this.parallelInsertCommitInterval = parallelInsertCommitInterval;
+    }
+
+    /**
+     * @return the number of features read ahead on a background thread, 0 if reading on the
+     *         calling thread
+     */
+    public int getPipelineBufferSize() {
+        return pipelineBufferSize;
+    }
+
+    /**
+     * Sets the number of features read ahead on a background thread. When positive, the rows of
+     * the auto commit queries are fetched and decoded on a separate thread while the caller
+     * consumes the features already read.
+     *
+     * @param pipelineBufferSize
+     */
+    public void setPipelineBufferSize(int pipelineBufferSize) {
+        this.pipelineBufferSize = pipelineBufferSize;
+    }
+
+    /**
+     * @return the maximum number of filter shapes whose prepared SQL is cached, 0 if not caching
+     */
+    public int getSQLTemplateCacheSize() {
+        FilterTemplateCache templates = filterTemplates;
+        return templates != null ? templates.maxSize : 0;
+    }
+
+    /**
+     * Sets the maximum number of filter shapes whose prepared SQL is cached. When positive, and
+     * the dialect uses prepared statements, a filter with the same structure as one already
+     * encoded, differing only by its literal values, reuses its SQL and just binds the new
+     * values. Set to 0 to encode each filter from scratch.
+     *
+     * @param size
+     */
+    public void setSQLTemplateCacheSize(int size) {
+        filterTemplates = size > 0 ? new FilterTemplateCache(size) : null;
+    }
+
+    /**
+     * @return the maximum size, in bytes, of the cached query results, 0 if not caching
+     */
+    public long getQueryCacheSize() {
+        QueryResultCache cache = queryCache;
+        return cache != null ? cache.maxBytes : 0;
+    }
+
+    /**
+     * @return the time, in milliseconds, after which a cached query result expires, 0 if
+     *         the results are kept until invalidated or evicted
+     */
+    public long getQueryCacheTimeToLive() {
+        QueryResultCache cache = queryCache;
+        return cache != null && cache.timeToLive > 0 ? cache.timeToLive : 0;
+    }
+
+    /**
+     * Sets up the cache of the query results. When the size is positive, the features returned
+     * by the auto commit queries are kept in a compact binary form, and the identical queries
+     * issued later are answered from the cache, until it runs out of space or the results
+     * expire. The writes made through this store invalidate the cached results of the type
+     * they modify, the time to live covers the changes made by other means.
+     *
+     * @param maxBytes The maximum size of the cached features, 0 to disable the cache
+     * @param timeToLive The time, in milliseconds, after which a cached result is read again
+     *        from the database, 0 to keep it until invalidated or evicted
+     */
+    public void setQueryCache(long maxBytes, long timeToLive) {
+        queryCache = maxBytes > 0 ? new QueryResultCache(maxBytes, timeToLive) : null;
+    }
+
+    /**
+     * Drops the cached query results of a type modified within a transaction. The results
+     * are dropped right away on auto commit, otherwise when the transaction commits, as the
+     * auto commit queries do not see the changes until then.
+     */
+    void invalidateQueryCache(String typeName, Transaction tx) {
+        QueryResultCache cache = queryCache;
+        if (cache == null) {
+            return;
+        }
+        State state = tx != null && tx != Transaction.AUTO_COMMIT ? tx.getState(this) : null;
+        if (state instanceof JDBCTransactionState) {
+            ((JDBCTransactionState) state).modified(typeName);
+        } else {
+            cache.invalidate(Collections.singleton(typeName));
+        }
+    }
+
+    /**
+     * Drops the cached count and bounds of a type modified without issuing feature events,
+     * as the parallel inserter does when committing its partitions
+     */
+    void invalidateStatistics(String typeName) {
+        ContentStatistics stats = statistics;
+        if (stats != null) {
+            stats.invalidate(name(typeName));
+        }
+    }
+
+    /**
+     * Returns the executor running the background reads of the pipelined readers
+     */
+    synchronized ExecutorService getReaderExecutor() {
+        if (readerExecutor == null) {
+            readerExecutor = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "JDBC reader");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return readerExecutor;
+    }
+
     /**
      * Determines if the datastore creates feature types which include those columns / attributes
      * which compose the primary key.
@@ -840,6 +1066,7 @@ public final class JDBCDataStore extends ContentDataStore
 
             dialect.postDropTable(databaseSchema, featureType, cx);
             removeEntry(typeName);
+            invalidateQueryCache(typeName.getLocalPart(), null);
         }
         catch(Exception e) {
             String msg = "Error occurred dropping table";
@@ -1432,6 +1659,48 @@ public final class JDBCDataStore extends ContentDataStore
         getAggregateValue(v,featureType,query,cx);
         return v.getCount();
     }
+
+    /**
+     * Returns the estimated count of the features of a feature type / table, as kept in the
+     * database statistics, or -1 if the dialect cannot estimate it.
+     */
+    protected int getEstimatedCount(SimpleFeatureType featureType, Connection cx)
+            throws IOException {
+        try {
+            return dialect.getEstimatedCount(databaseSchema, featureType, cx);
+        } catch (SQLException e) {
+            String msg = "Error occured estimating count for " + featureType.getTypeName();
+            throw (IOException) new IOException(msg).initCause(e);
+        }
+    }
+
+    /**
+     * Returns the estimated bounds of the features of a feature type / table, as kept in the
+     * database statistics, or null if the dialect cannot estimate them.
+     */
+    protected ReferencedEnvelope getEstimatedBounds(SimpleFeatureType featureType,
+            Connection cx) throws IOException {
+        // handle geometryless case by returning an emtpy envelope
+        if (featureType.getGeometryDescriptor() == null)
+            return EMPTY_ENVELOPE;
+
+        try {
+            List<ReferencedEnvelope> result = dialect.getEstimatedBounds(databaseSchema,
+                    featureType, cx);
+            if (result == null || result.isEmpty()) {
+                return null;
+            }
+            ReferencedEnvelope bounds = ReferencedEnvelope.create(featureType
+                    .getCoordinateReferenceSystem());
+            for (ReferencedEnvelope envelope : result) {
+                bounds = mergeEnvelope(bounds, envelope);
+            }
+            return bounds;
+        } catch (Exception e) {
+            String msg = "Error occured estimating bounds for " + featureType.getTypeName();
+            throw (IOException) new IOException(msg).initCause(e);
+        }
+    }
     
     /**
      * Results the value of an aggregate function over a query.
@@ -1689,28 +1958,70 @@ public final class JDBCDataStore extends ContentDataStore
         // we do this in a synchronized block because we need to do two queries,
         // first to figure out what the id will be, then the insert statement
         synchronized (this) {
-            try {
-                if (dialect instanceof PreparedStatementSQLDialect) {
-                    Map<InsertionClassifier, Collection<SimpleFeature>> kinds =
-                            InsertionClassifier.classify(featureType, features);
-                    for (InsertionClassifier kind: kinds.keySet()) {
-                        insertPS(kinds.get(kind), kind, featureType, cx, key);
-                    }
-                } else {
-                    Collection<SimpleFeature> useExistings = new ArrayList<>();
-                    Collection<SimpleFeature> notUseExistings = new ArrayList<>();
-                    for (SimpleFeature cur : features) {
-                        (InsertionClassifier.useExisting(cur) ? useExistings : notUseExistings).
-                                add(cur);
-                    }
-                    insertNonPS(useExistings, featureType, cx, key, true);
-                    insertNonPS(notUseExistings, featureType, cx, key, false);
+            insert(features, featureType, cx, key);
+        }
+    }
+
+    /**
+     * Inserts a collection of new features, without serializing the insert with the others
+     * when the keys cannot be mixed up by concurrent inserts, see
+     * {@link #isConcurrentInsertSafe(PrimaryKey)}
+     */
+    void insertConcurrently(Collection<? extends SimpleFeature> features,
+            SimpleFeatureType featureType, Connection cx) throws IOException {
+        PrimaryKey key = getPrimaryKey(featureType);
+        if (isConcurrentInsertSafe(key)) {
+            insert(features, featureType, cx, key);
+        } else {
+            synchronized (this) {
+                insert(features, featureType, cx, key);
+            }
+        }
+    }
+
+    private void insert(Collection<? extends SimpleFeature> features,
+            SimpleFeatureType featureType, Connection cx, PrimaryKey key) throws IOException {
+        try {
+            if (dialect instanceof PreparedStatementSQLDialect) {
+                Map<InsertionClassifier, Collection<SimpleFeature>> kinds =
+                        InsertionClassifier.classify(featureType, features);
+                for (InsertionClassifier kind: kinds.keySet()) {
+                    insertPS(kinds.get(kind), kind, featureType, cx, key);
                 }
-            } catch (SQLException e) {
-                String msg = "Error inserting features";
-                throw (IOException) new IOException(msg).initCause(e);
+            } else {
+                Collection<SimpleFeature> useExistings = new ArrayList<>();
+                Collection<SimpleFeature> notUseExistings = new ArrayList<>();
+                for (SimpleFeature cur : features) {
+                    (InsertionClassifier.useExisting(cur) ? useExistings : notUseExistings).
+                            add(cur);
+                }
+                insertNonPS(useExistings, featureType, cx, key, true);
+                insertNonPS(notUseExistings, featureType, cx, key, false);
+            }
+        } catch (SQLException e) {
+            String msg = "Error inserting features";
+            throw (IOException) new IOException(msg).initCause(e);
+        }
+    }
+
+    /**
+     * Returns true if inserts running concurrently on separate connections get distinct keys,
+     * that is, if the new values of the key are taken from sequences, are random, or are auto
+     * generated and looked up on the connection, as opposed to being computed from the existing
+     * ones, see {@link KeysFetcher}
+     */
+    boolean isConcurrentInsertSafe(PrimaryKey key) {
+        for (PrimaryKeyColumn col : key.getColumns()) {
+            if (col instanceof AutoGeneratedPrimaryKeyColumn) {
+                if (!dialect.isAutoGeneratedValueConnectionScoped()) {
+                    return false;
+                }
+            } else if (!(col instanceof SequencedPrimaryKeyColumn)
+                    && !CharSequence.class.isAssignableFrom(col.getType())) {
+                return false;
             }
         }
+        return true;
     }
 
     /**
@@ -3270,20 +3581,36 @@ public final class JDBCDataStore extends ContentDataStore
         sql.append(" FROM ");
         encodeTableName(featureType.getTypeName(), sql, query.getHints());
 
-        //filtering
+        //filtering, continuing from the previous page if seek paging, or keeping a single
+        //feature per pixel among the small ones if decimating for a screen map
+        KeysetPaging paging = KeysetPaging.create(this, featureType, query);
+        boolean seek = paging != null && paging.isSeeking();
+        ScreenMapDecimation decimation = paging == null
+                ? ScreenMapDecimation.create(this, featureType, query) : null;
         Filter filter = query.getFilter();
-        if (filter != null && !Filter.INCLUDE.equals(filter)) {
+        if (decimation != null) {
             sql.append(" WHERE ");
+            decimation.encode(filter, sql);
+        } else if (filter != null && !Filter.INCLUDE.equals(filter)) {
+            sql.append(seek ? " WHERE (" : " WHERE ");
             
             //encode filter
             filter(featureType, filter, sql);
+            if (seek) {
+                sql.append(") AND ");
+                paging.encodeSeek(null, sql);
+            }
+        } else if (seek) {
+            sql.append(" WHERE ");
+            paging.encodeSeek(null, sql);
         }
 
         //sorting
         sort(featureType, query.getSortBy(), null, sql);
         
         // encode limit/offset, if necessary
-        applyLimitOffset(sql, query.getStartIndex(), query.getMaxFeatures());
+        applyLimitOffset(sql, seek ? paging.getOffset() : query.getStartIndex(),
+                query.getMaxFeatures());
         
         // add search hints if the dialect supports them
         applySearchHints(featureType, query, sql);
@@ -3396,6 +3723,11 @@ public final class JDBCDataStore extends ContentDataStore
             // grab the full feature type, as we might be encoding a filter
             // that uses attributes that aren't returned in the results
             SimpleFeatureType fullSchema = getSchema(featureType.getTypeName());
+            FilterTemplateCache templates = filterTemplates;
+            if (templates != null && dialect instanceof PreparedStatementSQLDialect) {
+                return templates.encode(fullSchema.getTypeName(), filter,
+                        () -> createPreparedFilterToSQL(fullSchema), sql);
+            }
             FilterToSQL toSQL = dialect instanceof PreparedStatementSQLDialect ? 
                 createPreparedFilterToSQL(fullSchema) : createFilterToSQL(fullSchema);
             toSQL.setInline(true);
@@ -3468,6 +3800,15 @@ public final class JDBCDataStore extends ContentDataStore
      */
     protected PreparedStatement selectSQLPS( SimpleFeatureType featureType, Query query, Connection cx )
         throws SQLException, IOException {
+        return selectSQLPS(featureType, query, cx, null);
+    }
+
+    /**
+     * Generates a 'SELECT p1, p2, ... FROM ... WHERE ...' prepared statement, recording its SQL
+     * in the query metrics
+     */
+    PreparedStatement selectSQLPS(SimpleFeatureType featureType, Query query, Connection cx,
+            QueryMetrics metrics) throws SQLException, IOException {
         
         StringBuffer sql = new StringBuffer();
         sql.append("SELECT ");
@@ -3480,38 +3821,68 @@ public final class JDBCDataStore extends ContentDataStore
         sql.append(" FROM ");
         encodeTableName(featureType.getTypeName(), sql, query.getHints());
 
-        //filtering
+        //filtering, continuing from the previous page if seek paging, or keeping a single
+        //feature per pixel among the small ones if decimating for a screen map
+        KeysetPaging paging = KeysetPaging.create(this, featureType, query);
+        boolean seek = paging != null && paging.isSeeking();
+        ScreenMapDecimation decimation = paging == null
+                ? ScreenMapDecimation.create(this, featureType, query) : null;
         PreparedFilterToSQL toSQL = null;
         Filter filter = query.getFilter();
-        if (filter != null && !Filter.INCLUDE.equals(filter)) {
+        if (decimation != null) {
             sql.append(" WHERE ");
+            toSQL = (PreparedFilterToSQL) decimation.encode(filter, sql);
+        } else if (filter != null && !Filter.INCLUDE.equals(filter)) {
+            sql.append(seek ? " WHERE (" : " WHERE ");
             
             //encode filter
             toSQL = (PreparedFilterToSQL) filter(featureType, filter, sql);
+            if (seek) {
+                sql.append(") AND ");
+                paging.encodeSeek(null, sql);
+            }
+        } else if (seek) {
+            sql.append(" WHERE ");
+            paging.encodeSeek(null, sql);
         }
 
         //sorting
         sort(featureType, query.getSortBy(), null, sql);
         
         // finally encode limit/offset, if necessary
-        applyLimitOffset(sql, query.getStartIndex(), query.getMaxFeatures());
+        applyLimitOffset(sql, seek ? paging.getOffset() : query.getStartIndex(),
+                query.getMaxFeatures());
 
         // add search hints if the dialect supports them
         applySearchHints(featureType, query, sql);
 
         LOGGER.fine( sql.toString() );
+        if (metrics != null) {
+            metrics.setSQL(sql.toString());
+        }
         PreparedStatement ps = cx.prepareStatement(sql.toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
         ps.setFetchSize(fetchSize);
         
         if ( toSQL != null ) {
             setPreparedFilterValues( ps, toSQL, 0, cx );
         } 
+        if (seek) {
+            paging.setSeekValues(ps, toSQL != null ? toSQL.getLiteralValues().size() : 0, cx);
+        }
         
         return ps;
     }
     
     protected PreparedStatement selectJoinSQLPS( SimpleFeatureType featureType, JoinInfo join, 
         Query query, Connection cx ) throws SQLException, IOException {
+        return selectJoinSQLPS(featureType, join, query, cx, null);
+    }
+
+    /**
+     * Generates a join prepared statement, recording its SQL in the query metrics
+     */
+    PreparedStatement selectJoinSQLPS(SimpleFeatureType featureType, JoinInfo join, Query query,
+            Connection cx, QueryMetrics metrics) throws SQLException, IOException {
         
         StringBuffer sql = new StringBuffer();
         sql.append("SELECT ");
@@ -3541,6 +3912,9 @@ public final class JDBCDataStore extends ContentDataStore
         applyLimitOffset(sql, query.getStartIndex(), query.getMaxFeatures());
     
         LOGGER.fine( sql.toString() );
+        if (metrics != null) {
+            metrics.setSQL(sql.toString());
+        }
         PreparedStatement ps = cx.prepareStatement(sql.toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
         ps.setFetchSize(fetchSize);
         
@@ -4681,6 +5055,19 @@ public final class JDBCDataStore extends ContentDataStore
     
     public void dispose() {
         super.dispose();
+        for (QueryMetricsListener listener : queryMetricsListeners) {
+            listener.onDispose(this);
+        }
+        QueryResultCache cache = queryCache;
+        if (cache != null) {
+            cache.clear();
+        }
+        synchronized (this) {
+            if (readerExecutor != null) {
+                readerExecutor.shutdown();
+                readerExecutor = null;
+            }
+        }
         if(dataSource != null && dataSource instanceof ManageableDataSource) {
             try {
                 ManageableDataSource mds = (ManageableDataSource) dataSource; 
@@ -18,6 +18,8 @@ package org.geotools.jdbc;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -27,11 +29,14 @@ import java.util.Map;
 import javax.sql.DataSource;
 
 import org.apache.commons.dbcp.BasicDataSource;
+import org.geotools.data.DataSourceException;
 import org.geotools.data.DataStore;
 import org.geotools.data.DataStoreFactorySpi;
 import org.geotools.data.DataUtilities;
 import org.geotools.data.Parameter;
+import org.geotools.data.jdbc.datasource.ConcurrentDataSource;
 import org.geotools.data.jdbc.datasource.DBCPDataSource;
+import org.geotools.data.store.ContentStatistics;
 import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.factory.FactoryCreator;
 import org.geotools.factory.FactoryRegistry;
@@ -153,6 +158,84 @@ public abstract class JDBCDataStoreFactory implements DataStoreFactorySpi {
     public static final Param CALLBACK_FACTORY = new Param("Callback factory", String.class, 
         "Name of JDBCReaderCallbackFactory to enable on the data store", false);
 
+    /** keep the count and bounds of each feature type, updated as features are written */
+    public static final Param CACHE_STATISTICS = new Param("Cache statistics", Boolean.class,
+            "Cache the feature count and bounds of each table, updating them as features are " +
+            "written through the store", false, false);
+
+    /** allow estimated counts and bounds */
+    public static final Param ESTIMATED_STATISTICS = new Param("Estimated statistics",
+            Boolean.class, "Use the estimated row count and extent of the database statistics, " +
+            "and return stale cached values while they are being refreshed (implies cached " +
+            "statistics)", false, false);
+
+    /** delay of the background refresh of the cached statistics */
+    public static final Param STATISTICS_REFRESH_DELAY = new Param("Statistics refresh delay",
+            Integer.class, "Delay, in seconds, after which stale or estimated cached statistics " +
+            "are computed again in the background. Set to 0 to disable the background refresh",
+            false, 0);
+
+    /** number of features read ahead on a background thread */
+    public static final Param PIPELINE_BUFFER_SIZE = new Param("Pipelined read buffer",
+            Integer.class, "Number of features fetched and decoded on a background thread " +
+            "while the previous ones are being consumed. Set to 0 to read on the calling thread",
+            false, 0);
+
+    /** number of filter shapes whose prepared SQL is cached */
+    public static final Param SQL_TEMPLATE_CACHE_SIZE = new Param("SQL template cache size",
+            Integer.class, "Number of filter structures whose prepared statement SQL is " +
+            "cached, so that the queries differing only by their values skip the encoding. " +
+            "Set to 0 to disable the cache", false, 0);
+
+    /** size of the cache of the query results */
+    public static final Param QUERY_CACHE_SIZE = new Param("Query cache size", Integer.class,
+            "Size, in megabytes, of the cache keeping the features of the recent auto commit " +
+            "queries, answering the identical queries without going to the database. The " +
+            "writes made through the store invalidate it. Set to 0 to disable the cache",
+            false, 0);
+
+    /** expiration of the cached query results */
+    public static final Param QUERY_CACHE_TIME_TO_LIVE = new Param("Query cache time to live",
+            Integer.class, "Number of seconds after which a cached query result is read " +
+            "again from the database, to pick up the changes not made through the store. Set " +
+            "to 0 to keep the results until invalidated or evicted", false, 60);
+
+    /** number of connections the auto commit additions are spread over */
+    public static final Param PARALLEL_INSERT_PARTITIONS = new Param("Parallel insert partitions",
+            Integer.class, "Number of connections the features added on auto commit are " +
+            "inserted on concurrently, each one committing on its own. Set to 1 to insert on " +
+            "a single connection", false, 1);
+
+    /** number of features committed at once by each parallel insert connection */
+    public static final Param PARALLEL_INSERT_COMMIT_INTERVAL = new Param(
+            "Parallel insert commit interval", Integer.class, "Number of features each " +
+            "parallel insert connection commits at once. Set to 0 to commit at the end of " +
+            "the addition", false, 10000);
+
+    /** collect the query metrics and publish their statistics through JMX */
+    public static final Param QUERY_STATISTICS = new Param("Query statistics", Boolean.class,
+            "Collect the time spent generating, executing, fetching and decoding each query, and " +
+            "publish their statistics through JMX", false, false);
+
+    /** the DBCP connection pool */
+    public static final String DBCP_POOL = "DBCP";
+
+    /** the {@link ConcurrentDataSource} connection pool */
+    public static final String CONCURRENT_POOL = "Concurrent";
+
+    /** connection pool implementation */
+    public static final Param CONNECTION_POOL = new Param("Connection pool", String.class,
+            "The connection pool implementation, DBCP or Concurrent. The latter lets many threads " +
+            "borrow connections without contending on the pool, and publishes its statistics " +
+            "through JMX, but ignores the idle connection evictor settings", false, DBCP_POOL,
+            Collections.singletonMap(Parameter.OPTIONS, Arrays.asList(DBCP_POOL, CONCURRENT_POOL)));
+
+    /** time after which a borrowed connection is reported as leaked */
+    public static final Param CONNECTION_LEAK_THRESHOLD = new Param("Connection leak threshold",
+            Integer.class, "Number of seconds a connection can be in use before being reported " +
+            "as leaked in the logs, along with the code that borrowed it. Only used by the " +
+            "Concurrent connection pool, set to 0 to disable", false, 0);
+
     /**
      * system property  name used to set callback factory
      */
@@ -237,6 +320,41 @@ public abstract class JDBCDataStoreFactory implements DataStoreFactorySpi {
             dataStore.setBatchInsertSize(batchInsertSize);
         }
 
+        Integer pipelineBufferSize = (Integer) PIPELINE_BUFFER_SIZE.lookUp(params);
+        if (pipelineBufferSize != null && pipelineBufferSize > 0) {
+            dataStore.setPipelineBufferSize(pipelineBufferSize);
+        }
+
+        Integer sqlTemplateCacheSize = (Integer) SQL_TEMPLATE_CACHE_SIZE.lookUp(params);
+        if (sqlTemplateCacheSize != null && sqlTemplateCacheSize > 0) {
+            dataStore.setSQLTemplateCacheSize(sqlTemplateCacheSize);
+        }
+
+        Integer queryCacheSize = (Integer) QUERY_CACHE_SIZE.lookUp(params);
+        if (queryCacheSize != null && queryCacheSize > 0) {
+            Integer timeToLive = (Integer) QUERY_CACHE_TIME_TO_LIVE.lookUp(params);
+            if (timeToLive == null) {
+                timeToLive = (Integer) QUERY_CACHE_TIME_TO_LIVE.getDefaultValue();
+            }
+            dataStore.setQueryCache(queryCacheSize * 1024L * 1024L, timeToLive * 1000L);
+        }
+
+        Integer parallelInsertPartitions = (Integer) PARALLEL_INSERT_PARTITIONS.lookUp(params);
+        if (parallelInsertPartitions != null && parallelInsertPartitions > 0) {
+            dataStore.setParallelInsertPartitions(parallelInsertPartitions);
+        }
+
+        Integer commitInterval = (Integer) PARALLEL_INSERT_COMMIT_INTERVAL.lookUp(params);
+        if (commitInterval != null && commitInterval >= 0) {
+            dataStore.setParallelInsertCommitInterval(commitInterval);
+        }
+
+        if (Boolean.TRUE.equals(QUERY_STATISTICS.lookUp(params))) {
+            QueryStatistics statistics = new QueryStatistics();
+            statistics.registerMBean(getStatisticsName(params));
+            dataStore.getQueryMetricsListeners().add(statistics);
+        }
+
         // namespace
         String namespace = (String) NAMESPACE.lookUp(params);
 
@@ -283,6 +401,19 @@ public abstract class JDBCDataStoreFactory implements DataStoreFactorySpi {
             dataStore.getConnectionLifecycleListeners().add(listener);
         }
         
+        // count and bounds statistics
+        Boolean cacheStatistics = (Boolean) CACHE_STATISTICS.lookUp(params);
+        Boolean estimatedStatistics = (Boolean) ESTIMATED_STATISTICS.lookUp(params);
+        if (Boolean.TRUE.equals(cacheStatistics) || Boolean.TRUE.equals(estimatedStatistics)) {
+            ContentStatistics statistics = new ContentStatistics(dataStore);
+            statistics.setUseEstimates(Boolean.TRUE.equals(estimatedStatistics));
+            Integer refreshDelay = (Integer) STATISTICS_REFRESH_DELAY.lookUp(params);
+            if (refreshDelay != null && refreshDelay > 0) {
+                statistics.setRefreshDelay(refreshDelay * 1000L);
+            }
+            dataStore.setStatistics(statistics);
+        }
+
         // callback factory
         String callbackFactory = (String) CALLBACK_FACTORY.lookUp(params);
         if (callbackFactory == null) {
@@ -378,7 +509,16 @@ public abstract class JDBCDataStoreFactory implements DataStoreFactorySpi {
         parameters.put(MINCONN.key, MINCONN);
         parameters.put(FETCHSIZE.key, FETCHSIZE);
         parameters.put(BATCH_INSERT_SIZE.key, BATCH_INSERT_SIZE);
+        parameters.put(PIPELINE_BUFFER_SIZE.key, PIPELINE_BUFFER_SIZE);
+        parameters.put(SQL_TEMPLATE_CACHE_SIZE.key, SQL_TEMPLATE_CACHE_SIZE);
+        parameters.put(QUERY_CACHE_SIZE.key, QUERY_CACHE_SIZE);
+        parameters.put(QUERY_CACHE_TIME_TO_LIVE.key, QUERY_CACHE_TIME_TO_LIVE);
+        parameters.put(PARALLEL_INSERT_PARTITIONS.key, PARALLEL_INSERT_PARTITIONS);
+        parameters.put(PARALLEL_INSERT_COMMIT_INTERVAL.key, PARALLEL_INSERT_COMMIT_INTERVAL);
+        parameters.put(QUERY_STATISTICS.key, QUERY_STATISTICS);
         parameters.put(MAXWAIT.key, MAXWAIT);
+        parameters.put(CONNECTION_POOL.key, CONNECTION_POOL);
+        parameters.put(CONNECTION_LEAK_THRESHOLD.key, CONNECTION_LEAK_THRESHOLD);
         if(getValidationQuery() != null)
             parameters.put(VALIDATECONN.key, VALIDATECONN);
         parameters.put(TEST_WHILE_IDLE.key, TEST_WHILE_IDLE);
@@ -389,6 +529,9 @@ public abstract class JDBCDataStoreFactory implements DataStoreFactorySpi {
         parameters.put(SQL_ON_BORROW.key, SQL_ON_BORROW);
         parameters.put(SQL_ON_RELEASE.key, SQL_ON_RELEASE);
         parameters.put(CALLBACK_FACTORY.key, CALLBACK_FACTORY);
+        parameters.put(CACHE_STATISTICS.key, CACHE_STATISTICS);
+        parameters.put(ESTIMATED_STATISTICS.key, ESTIMATED_STATISTICS);
+        parameters.put(STATISTICS_REFRESH_DELAY.key, STATISTICS_REFRESH_DELAY);
     }
 
     /**
@@ -458,10 +601,20 @@ public abstract class JDBCDataStoreFactory implements DataStoreFactorySpi {
      * If different behaviour is needed, this method should be extended or
      * overridden.
      * </p>
+     * <p>
+     * When the {@link #CONNECTION_POOL} parameter asks for the concurrent pool, a
+     * {@link ConcurrentDataSource} is returned instead, see
+     * {@link #createConcurrentDataSource(Map, BasicDataSource)}.
+     * </p>
      */
     protected DataSource createDataSource(Map params, SQLDialect dialect) throws IOException {
         BasicDataSource dataSource = createDataSource(params);
 
+        String pool = (String) CONNECTION_POOL.lookUp(params);
+        if (CONCURRENT_POOL.equalsIgnoreCase(pool)) {
+            return createConcurrentDataSource(params, dataSource);
+        }
+
         // some default data source behaviour
         if(dialect instanceof PreparedStatementSQLDialect) {
             dataSource.setPoolPreparedStatements(true);
@@ -483,6 +636,35 @@ public abstract class JDBCDataStoreFactory implements DataStoreFactorySpi {
         return new DBCPDataSource(dataSource);
     }
 
+    /**
+     * Creates a {@link ConcurrentDataSource} with the driver, url, credentials, pool size, wait
+     * and validation settings of the DBCP data source built by {@link #createDataSource(Map)}.
+     * All the connections are kept in the pool once opened, and the pool statistics are
+     * published through JMX.
+     */
+    protected DataSource createConcurrentDataSource(Map params, BasicDataSource config)
+            throws IOException {
+        ConcurrentDataSource dataSource;
+        try {
+            dataSource = new ConcurrentDataSource(config.getDriverClassName(), config.getUrl(),
+                    config.getUsername(), config.getPassword(), config.getMaxActive());
+        } catch (SQLException e) {
+            throw new DataSourceException(e.getMessage(), e);
+        }
+        dataSource.setMaxIdle(config.getMaxActive() > 0 ? config.getMaxActive() : -1);
+        dataSource.setMaxWait(config.getMaxWait());
+        if (config.getTestOnBorrow()) {
+            dataSource.setValidationQuery(config.getValidationQuery());
+        }
+
+        Integer leakThreshold = (Integer) CONNECTION_LEAK_THRESHOLD.lookUp(params);
+        if (leakThreshold != null && leakThreshold > 0) {
+            dataSource.setLeakThreshold(leakThreshold * 1000l);
+        }
+        dataSource.registerMBean();
+        return dataSource;
+    }
+
     /**
      * DataSource access allowing SQL use: intended to allow client code to query available schemas.
      * <p>
@@ -562,6 +744,21 @@ public abstract class JDBCDataStoreFactory implements DataStoreFactorySpi {
         return dataSource;
     }
 
+    /**
+     * The name the query statistics of a store are published under in JMX, made of the
+     * database type, name and schema
+     */
+    String getStatisticsName(Map params) throws IOException {
+        StringBuilder name = new StringBuilder(String.valueOf(DBTYPE.lookUp(params)));
+        for (Param param : new Param[] { DATABASE, SCHEMA }) {
+            Object value = param.lookUp(params);
+            if (value != null) {
+                name.append("/").append(value);
+            }
+        }
+        return name.toString();
+    }
+
     /**
      * Override this to return a good validation query (a very quick one, such as one that
      * asks the database what time is it) or return null if the factory does not support
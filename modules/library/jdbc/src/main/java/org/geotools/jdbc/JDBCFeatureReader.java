@@ -142,6 +142,18 @@ public class JDBCFeatureReader implements  FeatureReader<SimpleFeatureType, Simp
     
     protected JDBCReaderCallback callback = JDBCReaderCallback.NULL;
 
+    /**
+     * records the keys read for seek paging, if any
+     */
+    KeysetPaging paging;
+
+    /**
+     * the metrics of the query, if collected
+     */
+    QueryMetrics metrics;
+
+    boolean firstRowFetched;
+
     public JDBCFeatureReader( String sql, Connection cx, JDBCFeatureSource featureSource, SimpleFeatureType featureType, Query query ) 
         throws SQLException {
         init( featureSource, featureType, query );
@@ -269,6 +281,23 @@ public class JDBCFeatureReader implements  FeatureReader<SimpleFeatureType, Simp
         this.md = other.md;
     }
 
+    void setPaging(KeysetPaging paging) {
+        this.paging = paging;
+    }
+
+    /**
+     * Starts collecting the metrics of the query, reported to the store listeners on close
+     *
+     * @param metrics The query metrics, or null if not collected
+     * @param executeStart When the query execution started
+     */
+    void setMetrics(QueryMetrics metrics, long executeStart) {
+        this.metrics = metrics;
+        if (metrics != null) {
+            metrics.addTime(QueryMetrics.Phase.EXECUTE, System.nanoTime() - executeStart);
+        }
+    }
+
     public void setNext(Boolean next) {
         this.next = next;
     }
@@ -291,7 +320,16 @@ public class JDBCFeatureReader implements  FeatureReader<SimpleFeatureType, Simp
         if (next == null) {
             try {
                 callback.beforeNext(rs);
+                long start = metrics != null ? System.nanoTime() : 0;
                 next = Boolean.valueOf(rs.next());
+                if (metrics != null) {
+                    long elapsed = System.nanoTime() - start;
+                    metrics.addTime(QueryMetrics.Phase.FETCH, elapsed);
+                    if (!firstRowFetched) {
+                        firstRowFetched = true;
+                        metrics.addTime(QueryMetrics.Phase.FIRST_ROW, elapsed);
+                    }
+                }
                 callback.afterNext(rs, next);
 
                 if (!next) {
@@ -320,12 +358,18 @@ public class JDBCFeatureReader implements  FeatureReader<SimpleFeatureType, Simp
     
     public SimpleFeature next() throws IOException, IllegalArgumentException,
             NoSuchElementException {
+        // the time spent building the feature, and decoding its geometries
+        long start = 0;
+        long decodeTime = 0;
         try {
             ensureOpen();
             if(!hasNext()) {
                 throw new NoSuchElementException("No more features in this reader, you should call " +
                 		"hasNext() to check for feature availability");
             }
+            if (metrics != null) {
+                start = System.nanoTime();
+            }
             
             //grab the connection
             Connection cx;
@@ -347,6 +391,9 @@ public class JDBCFeatureReader implements  FeatureReader<SimpleFeatureType, Simp
                 }
                 // wrap the fid in the type name
                 fid = featureType.getTypeName() + "." + fid;
+                if (paging != null) {
+                    paging.featureRead(rs, offset);
+                }
             } catch (Exception e) {
                 throw new RuntimeException("Could not determine fid from primary key", e);
             }
@@ -365,6 +412,7 @@ public class JDBCFeatureReader implements  FeatureReader<SimpleFeatureType, Simp
                         GeometryDescriptor gatt = (GeometryDescriptor) type;
                         
                         //read the geometry
+                        long decodeStart = metrics != null ? System.nanoTime() : 0;
                         try {
                             value = dataStore.getSQLDialect()
                                              .decodeGeometryValue(gatt, rs, offset+attributeRsIndex[i],
@@ -372,6 +420,9 @@ public class JDBCFeatureReader implements  FeatureReader<SimpleFeatureType, Simp
                         } catch (IOException e) {
                             throw new RuntimeException(e);
                         }
+                        if (metrics != null) {
+                            decodeTime += System.nanoTime() - decodeStart;
+                        }
                         
                         if (value != null) {
                             //check to see if a crs was set
@@ -420,6 +471,11 @@ public class JDBCFeatureReader implements  FeatureReader<SimpleFeatureType, Simp
             // move to the next record no matter what, if the current one could
             // not be read there is no salvation for it anyways
             next = null;
+            if (start != 0) {
+                metrics.addRow();
+                metrics.addTime(QueryMetrics.Phase.DECODE, decodeTime);
+                metrics.addTime(QueryMetrics.Phase.BUILD, System.nanoTime() - start - decodeTime);
+            }
         }
     }
 
@@ -448,11 +504,18 @@ public class JDBCFeatureReader implements  FeatureReader<SimpleFeatureType, Simp
 
     public void close() throws IOException {
         if ( dataStore != null ) {
+            long start = metrics != null ? System.nanoTime() : 0;
             //clean up
             dataStore.closeSafe( rs );
             dataStore.closeSafe( st );
 
             dataStore.releaseConnection(cx, featureSource.getState() );
+
+            if (metrics != null) {
+                metrics.addTime(QueryMetrics.Phase.CLOSE, System.nanoTime() - start);
+                dataStore.fireQueryMetrics(metrics);
+                metrics = null;
+            }
         }
         else {
             //means we are already closed... should we throw an exception?
@@ -55,6 +55,7 @@ import org.geotools.filter.visitor.PostPreProcessFilterSplittingVisitor;
 import org.geotools.filter.visitor.SimplifyingFilterVisitor;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
+import org.geotools.renderer.ScreenMap;
 import org.geotools.util.logging.Logging;
 import org.opengis.feature.Association;
 import org.opengis.feature.FeatureVisitor;
@@ -419,6 +420,28 @@ public class JDBCFeatureSource extends ContentFeatureSource {
         return split;
     }
 
+    @Override
+    protected int getEstimatedCountInternal() throws IOException {
+        JDBCDataStore dataStore = getDataStore();
+        Connection cx = dataStore.getConnection(getState());
+        try {
+            return dataStore.getEstimatedCount(getSchema(), cx);
+        } finally {
+            dataStore.releaseConnection(cx, getState());
+        }
+    }
+
+    @Override
+    protected ReferencedEnvelope getEstimatedBoundsInternal() throws IOException {
+        JDBCDataStore dataStore = getDataStore();
+        Connection cx = dataStore.getConnection(getState());
+        try {
+            return dataStore.getEstimatedBounds(getSchema(), cx);
+        } finally {
+            dataStore.releaseConnection(cx, getState());
+        }
+    }
+
     protected int getCountInternal(Query query) throws IOException {
         JDBCDataStore dataStore = getDataStore();
 
@@ -570,6 +593,29 @@ public class JDBCFeatureSource extends ContentFeatureSource {
     }
     
     protected  FeatureReader<SimpleFeatureType, SimpleFeature> getReaderInternal(Query query) throws IOException {
+        // answer the repeated auto commit queries from the cache, if any
+        QueryResultCache cache = getDataStore().queryCache;
+        if (cache != null && getState().getTransaction() == Transaction.AUTO_COMMIT) {
+            String typeName = getSchema().getTypeName();
+            QueryResultCache.Key key = cache.key(typeName, query);
+            if (key != null) {
+                FeatureReader<SimpleFeatureType, SimpleFeature> cached = cache.getReader(key);
+                if (cached != null) {
+                    return cached;
+                }
+                // grab the generation before running the query, a write made meanwhile
+                // prevents caching its results
+                long generation = cache.generation(typeName);
+                return cache.caching(key, generation, getDatabaseReader(query));
+            }
+        }
+        return getDatabaseReader(query);
+    }
+
+    /**
+     * Runs the query against the database
+     */
+    FeatureReader<SimpleFeatureType, SimpleFeature> getDatabaseReader(Query query) throws IOException {
         // split the filter
         Filter[] split = splitFilter(query.getFilter());
         Filter preFilter = split[0];
@@ -583,6 +629,22 @@ public class JDBCFeatureSource extends ContentFeatureSource {
         if(postFilterRequired) {
             preQuery.setStartIndex(0);
             preQuery.setMaxFeatures(Integer.MAX_VALUE);
+            // nor seek paging
+            if (query.getHints().containsKey(Hints.PAGE_TOKEN)) {
+                Hints hints = new Hints(query.getHints());
+                hints.remove(Hints.PAGE_TOKEN);
+                preQuery.setHints(hints);
+            }
+        }
+
+        // the screen map is applied to the features read, and decimates them in the database
+        // too if the dialect supports it, unless they still have to go through the post filter
+        ScreenMap screenMap = getScreenMap(query);
+        if (screenMap != null
+                && (postFilterRequired || !getSupportedHints().contains(Hints.SCREENMAP))) {
+            Hints hints = new Hints(preQuery.getHints());
+            hints.remove(Hints.SCREENMAP);
+            preQuery.setHints(hints);
         }
 
         // Build the feature type returned by this query. Also build an eventual extra feature type
@@ -597,6 +659,8 @@ public class JDBCFeatureSource extends ContentFeatureSource {
         
         //create the reader
         FeatureReader<SimpleFeatureType, SimpleFeature> reader;
+        // the metrics of the query, if anyone is listening
+        QueryMetrics metrics = getDataStore().createQueryMetrics(querySchema.getTypeName());
         
         try {            
             SQLDialect dialect = getDataStore().getSQLDialect();
@@ -608,30 +672,60 @@ public class JDBCFeatureSource extends ContentFeatureSource {
 
             if (query.getJoins().isEmpty()) {
                 //regular query
+                JDBCFeatureReader jdbcReader;
+                long start = System.nanoTime();
                 if ( dialect instanceof PreparedStatementSQLDialect ) {
-                    PreparedStatement ps = getDataStore().selectSQLPS(querySchema, preQuery, cx);
-                    reader = new JDBCFeatureReader( ps, cx, this, querySchema, query );
+                    PreparedStatement ps = metrics != null
+                            ? getDataStore().selectSQLPS(querySchema, preQuery, cx, metrics)
+                            : getDataStore().selectSQLPS(querySchema, preQuery, cx);
+                    start = recordSQLGeneration(metrics, start);
+                    jdbcReader = new JDBCFeatureReader( ps, cx, this, querySchema, query );
                 } else {
                     //build up a statement for the content
                     String sql = getDataStore().selectSQL(querySchema, preQuery);
                     getDataStore().getLogger().fine(sql);
+                    if (metrics != null) {
+                        metrics.setSQL(sql);
+                    }
+                    start = recordSQLGeneration(metrics, start);
         
-                    reader = new JDBCFeatureReader( sql, cx, this, querySchema, query );
+                    jdbcReader = new JDBCFeatureReader( sql, cx, this, querySchema, query );
+                }
+                jdbcReader.setMetrics(metrics, start);
+                // record the keys read for the next page
+                jdbcReader.setPaging(KeysetPaging.create(getDataStore(), querySchema, preQuery));
+                reader = jdbcReader;
+                // read ahead on a background thread, unless the connection is shared
+                // with the transaction
+                int bufferSize = getDataStore().getPipelineBufferSize();
+                if (bufferSize > 0 && getState().getTransaction() == Transaction.AUTO_COMMIT) {
+                    reader = new JDBCPipelinedFeatureReader(jdbcReader, bufferSize);
                 }
             }
             else {
                 JoinInfo join = JoinInfo.create(preQuery, this);
 
+                JDBCJoiningFeatureReader joinReader;
+                long start = System.nanoTime();
                 if ( dialect instanceof PreparedStatementSQLDialect ) {
-                    PreparedStatement ps =getDataStore().selectJoinSQLPS(querySchema, join, preQuery, cx);
-                    reader = new JDBCJoiningFeatureReader(ps, cx, this, querySchema, join, query);
+                    PreparedStatement ps = metrics != null
+                            ? getDataStore().selectJoinSQLPS(querySchema, join, preQuery, cx, metrics)
+                            : getDataStore().selectJoinSQLPS(querySchema, join, preQuery, cx);
+                    start = recordSQLGeneration(metrics, start);
+                    joinReader = new JDBCJoiningFeatureReader(ps, cx, this, querySchema, join, query);
                 } else {
                     //build up a statement for the content
                     String sql = getDataStore().selectJoinSQL(querySchema, join, preQuery);
                     getDataStore().getLogger().fine(sql);
+                    if (metrics != null) {
+                        metrics.setSQL(sql);
+                    }
+                    start = recordSQLGeneration(metrics, start);
         
-                    reader = new JDBCJoiningFeatureReader(sql, cx, this, querySchema, join, query);
+                    joinReader = new JDBCJoiningFeatureReader(sql, cx, this, querySchema, join, query);
                 }
+                joinReader.setMetrics(metrics, start);
+                reader = joinReader;
                 
                 //check for post filters
                 if (join.hasPostFilters()) {
@@ -642,6 +736,10 @@ public class JDBCFeatureSource extends ContentFeatureSource {
         } catch (Throwable e) { // NOSONAR
             // close the connection
             getDataStore().closeSafe(cx);
+            if (metrics != null) {
+                metrics.setError(e);
+                getDataStore().fireQueryMetrics(metrics);
+            }
             // safely rethrow
             if (e instanceof Error) {
                 throw (Error) e;
@@ -654,6 +752,9 @@ public class JDBCFeatureSource extends ContentFeatureSource {
         // if post filter, wrap it
         if (postFilterRequired) {
             reader = new FilteringFeatureReader<SimpleFeatureType, SimpleFeature>(reader, postFilter);
+            if (screenMap != null) {
+                reader = new ScreenMapFeatureReader(reader, screenMap);
+            }
             if(!returnedSchema.equals(querySchema)) {
                 reader = new ReTypeFeatureReader(reader, returnedSchema);
             }
@@ -671,11 +772,37 @@ public class JDBCFeatureSource extends ContentFeatureSource {
             if (query.getMaxFeatures() >= 0 && query.getMaxFeatures() < Integer.MAX_VALUE ) {
                 reader = new MaxFeatureReader<SimpleFeatureType, SimpleFeature>(reader, query.getMaxFeatures());
             }
+        } else if (screenMap != null) {
+            reader = new ScreenMapFeatureReader(reader, screenMap);
         }
 
         return reader;
     }
 
+    /**
+     * Returns the screen map of the query, if any and ready for use
+     */
+    static ScreenMap getScreenMap(Query query) {
+        Object screenMap = query.getHints().get(Hints.SCREENMAP);
+        if (screenMap instanceof ScreenMap && ((ScreenMap) screenMap).getTransform() != null) {
+            return (ScreenMap) screenMap;
+        }
+        return null;
+    }
+
+    /**
+     * Records the time spent generating the SQL, if collecting metrics
+     *
+     * @return The current time, the start of the query execution
+     */
+    static long recordSQLGeneration(QueryMetrics metrics, long start) {
+        long now = System.nanoTime();
+        if (metrics != null) {
+            metrics.addTime(QueryMetrics.Phase.SQL_GENERATION, now - start);
+        }
+        return now;
+    }
+
     SimpleFeatureType[] buildQueryAndReturnFeatureTypes(SimpleFeatureType featureType, 
         String[] propertyNames, Filter filter) {
 
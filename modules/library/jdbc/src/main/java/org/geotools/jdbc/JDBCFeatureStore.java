@@ -20,8 +20,11 @@ import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.geotools.data.FeatureEvent;
@@ -31,12 +34,16 @@ import org.geotools.data.FilteringFeatureWriter;
 import org.geotools.data.Query;
 import org.geotools.data.QueryCapabilities;
 import org.geotools.data.ResourceInfo;
+import org.geotools.data.collection.ListFeatureCollection;
 import org.geotools.data.Transaction;
 import org.geotools.data.FeatureEvent.Type;
 import org.geotools.data.store.ContentEntry;
 import org.geotools.data.store.ContentFeatureStore;
 import org.geotools.data.store.ContentState;
 import org.geotools.factory.Hints;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.filter.identity.FeatureIdImpl;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.opengis.feature.FeatureVisitor;
 import org.opengis.feature.simple.SimpleFeature;
@@ -44,6 +51,7 @@ import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
 import org.opengis.feature.type.Name;
 import org.opengis.filter.Filter;
+import org.opengis.filter.identity.FeatureId;
 
 import com.vividsolutions.jts.geom.Geometry;
 
@@ -189,6 +197,16 @@ public final class JDBCFeatureStore extends ContentFeatureStore {
             throws IOException {
         return delegate.getBoundsInternal(query);
     }
+
+    @Override
+    protected int getEstimatedCountInternal() throws IOException {
+        return delegate.getEstimatedCountInternal();
+    }
+
+    @Override
+    protected ReferencedEnvelope getEstimatedBoundsInternal() throws IOException {
+        return delegate.getEstimatedBoundsInternal();
+    }
     
     @Override
     protected boolean canFilter() {
@@ -326,7 +344,87 @@ public final class JDBCFeatureStore extends ContentFeatureStore {
         }
         return writer;
     }
-    
+
+    @Override
+    public List<FeatureId> addFeatures(
+            FeatureCollection<SimpleFeatureType, SimpleFeature> featureCollection)
+            throws IOException {
+        if (!isParallelInsert()) {
+            return super.addFeatures(featureCollection);
+        }
+        return addFeaturesParallel(featureCollection);
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public List<FeatureId> addFeatures(Collection collection) throws IOException {
+        if (!isParallelInsert()) {
+            return super.addFeatures(collection);
+        }
+        List<SimpleFeature> features = new ArrayList<SimpleFeature>(collection.size());
+        for (Object feature : collection) {
+            features.add((SimpleFeature) feature);
+        }
+        return addFeaturesParallel(new ListFeatureCollection(getSchema(), features));
+    }
+
+    /**
+     * The auto commit additions are spread over several connections when the store is
+     * configured to, see {@link JDBCDataStore#setParallelInsertPartitions(int)}
+     */
+    boolean isParallelInsert() {
+        Transaction tx = getState().getTransaction();
+        return getDataStore().getParallelInsertPartitions() > 1
+                && (tx == null || tx == Transaction.AUTO_COMMIT);
+    }
+
+    List<FeatureId> addFeaturesParallel(
+            FeatureCollection<SimpleFeatureType, SimpleFeature> featureCollection)
+            throws IOException {
+        JDBCDataStore dataStore = getDataStore();
+        ParallelInserter inserter = new ParallelInserter(dataStore);
+        inserter.setPartitions(dataStore.getParallelInsertPartitions());
+        inserter.setBatchSize(Math.max(1, dataStore.getBatchInsertSize()));
+        inserter.setCommitInterval(dataStore.getParallelInsertCommitInterval());
+        // the features are copied, leaving the caller's ones alone as the insert writer does
+        final List<SimpleFeature> features = new ArrayList<SimpleFeature>();
+        final SimpleFeatureBuilder builder = new SimpleFeatureBuilder(getSchema());
+        final boolean useProvidedFidSupported = getQueryCapabilities().isUseProvidedFIDSupported();
+        inserter.featureMapper = feature -> {
+            for (AttributeDescriptor descriptor : getSchema().getAttributeDescriptors()) {
+                String name = descriptor.getLocalName();
+                builder.set(name, feature.getAttribute(name));
+            }
+            boolean useExisting = Boolean.TRUE.equals(
+                    feature.getUserData().get(Hints.USE_PROVIDED_FID));
+            SimpleFeature copy = builder.buildFeature(useProvidedFidSupported && useExisting
+                    ? feature.getID() : null);
+            copy.getUserData().putAll(feature.getUserData());
+            features.add(copy);
+            return copy;
+        };
+
+        ParallelInsertReport report = inserter.insert(getSchema().getTypeName(),
+                featureCollection);
+        getDataStore().getLogger().fine(report.toString());
+        if (report.hasFailures()) {
+            // the committed features stay, there is no transaction to roll them back
+            throw new IOException("Failed to insert " + report.getFailedCount() + " features, "
+                    + report.getInsertedCount() + " were committed",
+                    report.getFailures().get(0).getCause());
+        }
+
+        // report the persistent ids back, the way the insert writer does
+        List<FeatureId> ids = new ArrayList<FeatureId>(features.size());
+        ContentState state = getEntry().getState(getTransaction());
+        for (SimpleFeature feature : features) {
+            String fid = (String) feature.getUserData().get("fid");
+            ids.add(fid != null ? new FeatureIdImpl(fid) : feature.getIdentifier());
+            state.fireFeatureAdded(this, feature);
+        }
+        return ids;
+    }
+
     @Override
     public void modifyFeatures(Name[] names, Object[] values, Filter filter)
             throws IOException {
@@ -375,6 +473,7 @@ public final class JDBCFeatureStore extends ContentFeatureStore {
                 }
                 try {
                     getDataStore().update(getSchema(), innerTypes, values, preFilter, cx);
+                    getDataStore().invalidateQueryCache(getSchema().getTypeName(), tx);
                 } catch(SQLException e) {
                     throw (IOException) (new IOException(e.getMessage()).initCause(e));
                 }
@@ -435,6 +534,7 @@ public final class JDBCFeatureStore extends ContentFeatureStore {
                     }
                 }            
                 getDataStore().delete(featureType, preFilter, cx);
+                getDataStore().invalidateQueryCache(featureType.getTypeName(), tx);
                 if( state.hasListener() ){
                     // issue notification
                     FeatureEvent event = new FeatureEvent(this, Type.REMOVED, bounds, preFilter );
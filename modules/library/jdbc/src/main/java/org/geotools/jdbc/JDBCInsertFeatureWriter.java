@@ -126,6 +126,7 @@ public class JDBCInsertFeatureWriter extends JDBCFeatureReader implements Featur
             Collection<ResultSetFeature> features =
                     Arrays.asList(Arrays.copyOfRange(buffer, 0, curBufferPos));
             dataStore.insert(features, featureType, st.getConnection());
+            dataStore.invalidateQueryCache(featureType.getTypeName(), tx);
 
             for (ResultSetFeature cur : features) {
                 //the datastore sets as userData, grab it and update the fid
@@ -158,11 +158,21 @@ public abstract class JDBCJNDIDataStoreFactory extends JDBCDataStoreFactory {
         parameters.put(NAMESPACE.key, NAMESPACE);
         parameters.put(FETCHSIZE.key, FETCHSIZE);
         parameters.put(BATCH_INSERT_SIZE.key, BATCH_INSERT_SIZE);
+        parameters.put(PIPELINE_BUFFER_SIZE.key, PIPELINE_BUFFER_SIZE);
+        parameters.put(SQL_TEMPLATE_CACHE_SIZE.key, SQL_TEMPLATE_CACHE_SIZE);
+        parameters.put(QUERY_CACHE_SIZE.key, QUERY_CACHE_SIZE);
+        parameters.put(QUERY_CACHE_TIME_TO_LIVE.key, QUERY_CACHE_TIME_TO_LIVE);
+        parameters.put(PARALLEL_INSERT_PARTITIONS.key, PARALLEL_INSERT_PARTITIONS);
+        parameters.put(PARALLEL_INSERT_COMMIT_INTERVAL.key, PARALLEL_INSERT_COMMIT_INTERVAL);
+        parameters.put(QUERY_STATISTICS.key, QUERY_STATISTICS);
         parameters.put(EXPOSE_PK.key, EXPOSE_PK);
         parameters.put(PK_METADATA_TABLE.key, PK_METADATA_TABLE);
         parameters.put(SQL_ON_BORROW.key, SQL_ON_BORROW);
         parameters.put(SQL_ON_RELEASE.key, SQL_ON_RELEASE);
         parameters.put(CALLBACK_FACTORY.key, CALLBACK_FACTORY);
+        parameters.put(CACHE_STATISTICS.key, CACHE_STATISTICS);
+        parameters.put(ESTIMATED_STATISTICS.key, ESTIMATED_STATISTICS);
+        parameters.put(STATISTICS_REFRESH_DELAY.key, STATISTICS_REFRESH_DELAY);
     }
 
     @Override
@@ -0,0 +1,238 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.data.DelegatingFeatureReader;
+import org.geotools.data.FeatureReader;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * Reads the features of a {@link JDBCFeatureReader} on a background thread, so that fetching
+ * the rows and decoding the geometries overlaps with the processing of the features already
+ * read.
+ * <p>
+ * The features are handed over in batches through a bounded queue, the background thread stops
+ * when the queue is full and resumes as the batches are consumed. The delegate reader, and
+ * with it the result set, statement and connection, is closed on the thread calling
+ * {@link #close()} once the background thread has stopped using it.
+ * </p>
+ * <p>
+ * The connection is used by the background thread while the reader is open, so the reader
+ * must not be used with a connection shared by a transaction.
+ * </p>
+ *
+ * @source $URL$
+ */
+class JDBCPipelinedFeatureReader implements
+        DelegatingFeatureReader<SimpleFeatureType, SimpleFeature> {
+
+    static final Logger LOGGER = Logging.getLogger(JDBCPipelinedFeatureReader.class);
+
+    /** Marks the end of the features */
+    static final Object END = new Object();
+
+    /** How long the producer waits for space in the queue before checking if closed */
+    static final long OFFER_TIMEOUT = 100;
+
+    final JDBCFeatureReader delegate;
+
+    final SimpleFeatureType featureType;
+
+    final int batchSize;
+
+    final BlockingQueue<Object> queue;
+
+    final CountDownLatch stopped = new CountDownLatch(1);
+
+    volatile boolean closed;
+
+    List<SimpleFeature> batch;
+
+    int index;
+
+    boolean finished;
+
+    /**
+     * Starts reading ahead the features of the delegate.
+     *
+     * @param delegate The reader providing the features
+     * @param bufferSize The maximum number of features read ahead
+     */
+    JDBCPipelinedFeatureReader(JDBCFeatureReader delegate, int bufferSize) {
+        this.delegate = delegate;
+        this.featureType = delegate.getFeatureType();
+        int fetchSize = delegate.dataStore.getFetchSize();
+        int size = Math.max(1, bufferSize / 2);
+        if (fetchSize > 0) {
+            size = Math.min(size, fetchSize);
+        }
+        this.batchSize = size;
+        this.queue = new ArrayBlockingQueue<Object>(Math.max(1, bufferSize / batchSize));
+        try {
+            delegate.dataStore.getReaderExecutor().execute(this::produce);
+        } catch (RejectedExecutionException e) {
+            // report it on the first read
+            queue.offer(e);
+            stopped.countDown();
+        }
+    }
+
+    /**
+     * Reads the features of the delegate until it is exhausted or this reader gets closed.
+     */
+    void produce() {
+        try {
+            List<SimpleFeature> features = new ArrayList<SimpleFeature>(batchSize);
+            while (!closed && delegate.hasNext()) {
+                features.add(delegate.next());
+                if (features.size() == batchSize) {
+                    if (!put(features)) {
+                        return;
+                    }
+                    features = new ArrayList<SimpleFeature>(batchSize);
+                }
+            }
+            if (!features.isEmpty() && !put(features)) {
+                return;
+            }
+            put(END);
+        } catch (Throwable t) { // NOSONAR
+            // hand it over to the consumer
+            try {
+                put(t);
+            } catch (InterruptedException e) {
+                LOGGER.log(Level.FINE, "Interrupted while reporting a read failure", t);
+            }
+        } finally {
+            stopped.countDown();
+        }
+    }
+
+    /**
+     * Queues an item, waiting for space unless the reader gets closed
+     *
+     * @return false if the reader was closed before the item could be queued
+     */
+    boolean put(Object item) throws InterruptedException {
+        while (!closed) {
+            if (queue.offer(item, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public FeatureReader<SimpleFeatureType, SimpleFeature> getDelegate() {
+        return delegate;
+    }
+
+    public SimpleFeatureType getFeatureType() {
+        return featureType;
+    }
+
+    public boolean hasNext() throws IOException {
+        if (closed) {
+            throw new IOException("reader already closed");
+        }
+        while (!finished && (batch == null || index >= batch.size())) {
+            Object item;
+            try {
+                item = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for features");
+            }
+            if (item == END) {
+                finished = true;
+                batch = null;
+            } else if (item instanceof Throwable) {
+                finished = true;
+                batch = null;
+                rethrow((Throwable) item);
+            } else {
+                @SuppressWarnings("unchecked")
+                List<SimpleFeature> features = (List<SimpleFeature>) item;
+                batch = features;
+                index = 0;
+            }
+        }
+        return !finished;
+    }
+
+    void rethrow(Throwable t) throws IOException {
+        if (t instanceof IOException) {
+            throw new IOException(t.getMessage(), t);
+        } else if (t instanceof RuntimeException) {
+            throw new RuntimeException(t.getMessage(), t);
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        }
+        throw new IOException(t);
+    }
+
+    public SimpleFeature next() throws IOException, IllegalArgumentException,
+            NoSuchElementException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more features in this reader, you should call "
+                    + "hasNext() to check for feature availability");
+        }
+        return batch.get(index++);
+    }
+
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        batch = null;
+        // free the space the producer might be waiting for, then wait for it to let go of
+        // the result set before closing it
+        queue.clear();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                stopped.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        queue.clear();
+        try {
+            delegate.close();
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
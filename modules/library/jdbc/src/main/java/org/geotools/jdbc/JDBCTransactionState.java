@@ -19,6 +19,8 @@ package org.geotools.jdbc;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import org.geotools.data.Transaction;
@@ -47,6 +49,10 @@ final class JDBCTransactionState implements State {
      * case no attempt to commit, rollback or close will be done)
      */
     boolean external;
+    /**
+     * The types modified in the transaction, whose cached query results are dropped on commit
+     */
+    Set<String> modifiedTypes;
 
     public JDBCTransactionState(Connection cx, JDBCDataStore dataStore) {
         this(cx, dataStore, false);
@@ -82,6 +88,16 @@ final class JDBCTransactionState implements State {
     public void addAuthorization(String AuthID) throws IOException {
     }
 
+    /**
+     * Records a type was modified in the transaction
+     */
+    synchronized void modified(String typeName) {
+        if (modifiedTypes == null) {
+            modifiedTypes = new HashSet<String>();
+        }
+        modifiedTypes.add(typeName);
+    }
+
     public void commit() throws IOException {
         if(!external) {        
             try {
@@ -91,6 +107,15 @@ final class JDBCTransactionState implements State {
                 throw (IOException) new IOException(msg).initCause(e);
             }        
         }
+        synchronized (this) {
+            if (modifiedTypes != null) {
+                QueryResultCache cache = dataStore.queryCache;
+                if (cache != null) {
+                    cache.invalidate(modifiedTypes);
+                }
+                modifiedTypes = null;
+            }
+        }
     }
 
     public void rollback() throws IOException {
@@ -102,6 +127,9 @@ final class JDBCTransactionState implements State {
                 throw (IOException) new IOException(msg).initCause(e);
             }
         }
+        synchronized (this) {
+            modifiedTypes = null;
+        }
     }
     
     @Override
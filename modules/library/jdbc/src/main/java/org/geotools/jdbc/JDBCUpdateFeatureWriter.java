@@ -87,6 +87,7 @@ public class JDBCUpdateFeatureWriter extends JDBCFeatureReader implements
     public void remove() throws IOException {
         try {
             dataStore.delete(featureType, last.getID(), st.getConnection());
+            dataStore.invalidateQueryCache(featureType.getTypeName(), tx);
             
             // issue notification
             ContentEntry entry = featureSource.getEntry();
@@ -122,6 +123,7 @@ public class JDBCUpdateFeatureWriter extends JDBCFeatureReader implements
 
             // do the write
             dataStore.update(featureType, changed, values, filter, st.getConnection());
+            dataStore.invalidateQueryCache(featureType.getTypeName(), tx);
             
             // issue notification
             ContentEntry entry = featureSource.getEntry();
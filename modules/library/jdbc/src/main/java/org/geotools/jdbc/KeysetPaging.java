@@ -0,0 +1,255 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.geotools.data.PageToken;
+import org.geotools.data.Query;
+import org.geotools.factory.Hints;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
+
+/**
+ * Keyset (seek) paging of a query sorted on the primary key.
+ * <p>
+ * When the query carries a {@link PageToken} the last primary key read is recorded in it, and
+ * the query of the next page is encoded as <code>WHERE key > last</code> instead of making the
+ * database skip all the previous rows with an offset.
+ * </p>
+ *
+ * @source $URL$
+ */
+class KeysetPaging {
+
+    final JDBCDataStore dataStore;
+
+    final PageToken token;
+
+    final String signature;
+
+    final int startIndex;
+
+    /** The primary key columns, in sort order */
+    final PrimaryKeyColumn[] columns;
+
+    /** The position of each sort column in the primary key, and so in the result set */
+    final int[] keyIndexes;
+
+    final boolean descending;
+
+    /** The last key of the previous page, null if not seeking */
+    final Object[] seekKey;
+
+    int read;
+
+    /** Set when a key could not be recorded */
+    boolean disabled;
+
+    KeysetPaging(JDBCDataStore dataStore, PageToken token, String signature, int startIndex,
+            PrimaryKeyColumn[] columns, int[] keyIndexes, boolean descending, Object[] seekKey) {
+        this.dataStore = dataStore;
+        this.token = token;
+        this.signature = signature;
+        this.startIndex = startIndex;
+        this.columns = columns;
+        this.keyIndexes = keyIndexes;
+        this.descending = descending;
+        this.seekKey = seekKey;
+    }
+
+    /**
+     * Returns the paging of a query, or null if the query has no {@link Hints#PAGE_TOKEN} or is
+     * not sorted on the primary key.
+     */
+    static KeysetPaging create(JDBCDataStore dataStore, SimpleFeatureType featureType,
+            Query query) throws IOException {
+        if (query == null || !(query.getHints().get(Hints.PAGE_TOKEN) instanceof PageToken)
+                || !dataStore.getSQLDialect().isLimitOffsetSupported()) {
+            return null;
+        }
+        PrimaryKey key = dataStore.getPrimaryKey(featureType);
+        List<PrimaryKeyColumn> keyColumns = key.getColumns();
+        SortBy[] sortBy = query.getSortBy();
+        if (key instanceof NullPrimaryKey || keyColumns.isEmpty() || sortBy == null
+                || sortBy.length == 0) {
+            return null;
+        }
+
+        // the sort must be on all the key columns, in the same direction
+        PrimaryKeyColumn[] columns;
+        int[] keyIndexes;
+        boolean descending = sortBy[0].getSortOrder() == SortOrder.DESCENDING;
+        if (sortBy.length == 1
+                && (SortBy.NATURAL_ORDER.equals(sortBy[0]) || SortBy.REVERSE_ORDER
+                        .equals(sortBy[0]))) {
+            columns = keyColumns.toArray(new PrimaryKeyColumn[keyColumns.size()]);
+            keyIndexes = new int[columns.length];
+            for (int i = 0; i < keyIndexes.length; i++) {
+                keyIndexes[i] = i;
+            }
+        } else {
+            if (sortBy.length != keyColumns.size()) {
+                return null;
+            }
+            columns = new PrimaryKeyColumn[sortBy.length];
+            keyIndexes = new int[sortBy.length];
+            for (int i = 0; i < sortBy.length; i++) {
+                if (sortBy[i].getPropertyName() == null
+                        || (sortBy[i].getSortOrder() == SortOrder.DESCENDING) != descending) {
+                    return null;
+                }
+                String name = dataStore.getPropertyName(featureType, sortBy[i].getPropertyName());
+                keyIndexes[i] = -1;
+                for (int j = 0; j < keyColumns.size(); j++) {
+                    if (keyColumns.get(j).getName().equals(name)) {
+                        keyIndexes[i] = j;
+                    }
+                }
+                if (keyIndexes[i] < 0) {
+                    return null;
+                }
+                columns[i] = keyColumns.get(keyIndexes[i]);
+            }
+            int[] sorted = keyIndexes.clone();
+            Arrays.sort(sorted);
+            for (int i = 0; i < sorted.length; i++) {
+                if (sorted[i] != i) {
+                    // a column is used twice
+                    return null;
+                }
+            }
+        }
+
+        PageToken token = (PageToken) query.getHints().get(Hints.PAGE_TOKEN);
+        Filter filter = query.getFilter() == null ? Filter.INCLUDE : query.getFilter();
+        StringBuilder signature = new StringBuilder();
+        signature.append(System.identityHashCode(dataStore)).append('|');
+        signature.append(featureType.getTypeName()).append('|');
+        signature.append(filter).append('|');
+        signature.append(Arrays.toString(sortBy));
+        Object parameters = query.getHints().get(Hints.VIRTUAL_TABLE_PARAMETERS);
+        if (parameters != null) {
+            signature.append('|').append(parameters);
+        }
+
+        int startIndex = query.getStartIndex() != null ? query.getStartIndex() : 0;
+        Object[] seekKey = null;
+        if (startIndex > 0) {
+            seekKey = (Object[]) token.getPosition(signature.toString(), startIndex);
+        }
+        return new KeysetPaging(dataStore, token, signature.toString(), startIndex, columns,
+                keyIndexes, descending, seekKey);
+    }
+
+    /**
+     * Whether the query continues from the last key of the previous page
+     */
+    boolean isSeeking() {
+        return seekKey != null;
+    }
+
+    /**
+     * The offset to encode in the query
+     */
+    Integer getOffset() {
+        return seekKey != null ? 0 : startIndex;
+    }
+
+    /**
+     * Encodes the condition selecting the keys after the last one read, as
+     * <code>(k1 > ?) OR (k1 = ? AND k2 > ?) ...</code>, with the values inlined for the basic
+     * dialects and as parameters for the prepared ones.
+     */
+    void encodeSeek(String prefix, StringBuffer sql) {
+        SQLDialect dialect = dataStore.getSQLDialect();
+        sql.append("(");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sql.append(" OR ");
+            }
+            sql.append("(");
+            for (int j = 0; j <= i; j++) {
+                if (j > 0) {
+                    sql.append(" AND ");
+                }
+                dialect.encodeColumnName(prefix, columns[j].getName(), sql);
+                sql.append(j < i ? " = " : descending ? " < " : " > ");
+                encodeValue(j, sql);
+            }
+            sql.append(")");
+        }
+        sql.append(")");
+    }
+
+    private void encodeValue(int column, StringBuffer sql) {
+        SQLDialect dialect = dataStore.getSQLDialect();
+        if (dialect instanceof PreparedStatementSQLDialect) {
+            sql.append("?");
+        } else {
+            ((BasicSQLDialect) dialect).encodeValue(seekKey[column], columns[column].getType(),
+                    sql);
+        }
+    }
+
+    /**
+     * Sets the values of the prepared seek condition
+     *
+     * @param offset The number of parameters preceding the seek condition
+     */
+    void setSeekValues(PreparedStatement ps, int offset, Connection cx) throws SQLException {
+        PreparedStatementSQLDialect dialect = (PreparedStatementSQLDialect) dataStore
+                .getSQLDialect();
+        int parameter = offset + 1;
+        for (int i = 0; i < columns.length; i++) {
+            for (int j = 0; j <= i; j++) {
+                dialect.setValue(seekKey[j], columns[j].getType(), ps, parameter++, cx);
+            }
+        }
+    }
+
+    /**
+     * Records the key of a feature read, the primary key columns come first in the result set.
+     *
+     * @param offset The result set offset of the feature columns
+     */
+    void featureRead(ResultSet rs, int offset) throws SQLException {
+        if (disabled) {
+            return;
+        }
+        Object[] key = new Object[columns.length];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = rs.getObject(offset + keyIndexes[i] + 1);
+            if (key[i] == null) {
+                // cannot seek past a null key
+                token.reset();
+                disabled = true;
+                return;
+            }
+        }
+        read++;
+        token.update(signature, startIndex + read, key);
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of a {@link ParallelInserter} run: how many features each partition inserted,
+ * how fast, and which batches failed.
+ * <p>
+ * The features of a failed batch are rolled back along with the others inserted by the same
+ * partition since its last commit, each of them is reported as a {@link Failure}.
+ * </p>
+ *
+ * @source $URL$
+ */
+public class ParallelInsertReport {
+
+    /**
+     * A batch of features that could not be inserted, or was rolled back
+     */
+    public static class Failure {
+        final String typeName;
+
+        final int featureCount;
+
+        final Exception cause;
+
+        Failure(String typeName, int featureCount, Exception cause) {
+            this.typeName = typeName;
+            this.featureCount = featureCount;
+            this.cause = cause;
+        }
+
+        /**
+         * The type the features were inserted into
+         */
+        public String getTypeName() {
+            return typeName;
+        }
+
+        /**
+         * The number of features in the batch
+         */
+        public int getFeatureCount() {
+            return featureCount;
+        }
+
+        /**
+         * The error that made the batch fail, or its partition roll back
+         */
+        public Exception getCause() {
+            return cause;
+        }
+
+        @Override
+        public String toString() {
+            return "Failure[" + typeName + ", " + featureCount + " features, "
+                    + cause.getMessage() + "]";
+        }
+    }
+
+    /**
+     * The work done by a single partition, that is, a thread inserting on its own connection
+     */
+    public static class Partition {
+        final int index;
+
+        long insertedCount;
+
+        long failedCount;
+
+        int batchCount;
+
+        int commitCount;
+
+        long elapsedTime;
+
+        final List<Failure> failures = new ArrayList<Failure>();
+
+        Partition(int index) {
+            this.index = index;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * The number of features inserted and committed
+         */
+        public long getInsertedCount() {
+            return insertedCount;
+        }
+
+        /**
+         * The number of features that failed to insert or were rolled back
+         */
+        public long getFailedCount() {
+            return failedCount;
+        }
+
+        public int getBatchCount() {
+            return batchCount;
+        }
+
+        public int getCommitCount() {
+            return commitCount;
+        }
+
+        /**
+         * The time the partition was running, in nanoseconds
+         */
+        public long getElapsedTime() {
+            return elapsedTime;
+        }
+
+        /**
+         * The committed features per second
+         */
+        public double getThroughput() {
+            return throughput(insertedCount, elapsedTime);
+        }
+
+        public List<Failure> getFailures() {
+            return Collections.unmodifiableList(failures);
+        }
+
+        void committed(int features) {
+            insertedCount += features;
+            commitCount++;
+        }
+
+        void failed(String typeName, int features, Exception cause) {
+            failedCount += features;
+            failures.add(new Failure(typeName, features, cause));
+        }
+
+        @Override
+        public String toString() {
+            return "Partition " + index + ": " + insertedCount + " inserted, " + failedCount
+                    + " failed, " + batchCount + " batches, " + commitCount + " commits, "
+                    + Math.round(getThroughput()) + " features/s";
+        }
+    }
+
+    final List<Partition> partitions;
+
+    final long elapsedTime;
+
+    ParallelInsertReport(List<Partition> partitions, long elapsedTime) {
+        this.partitions = partitions;
+        this.elapsedTime = elapsedTime;
+    }
+
+    public List<Partition> getPartitions() {
+        return Collections.unmodifiableList(partitions);
+    }
+
+    /**
+     * The number of features inserted and committed by all partitions
+     */
+    public long getInsertedCount() {
+        long count = 0;
+        for (Partition partition : partitions) {
+            count += partition.insertedCount;
+        }
+        return count;
+    }
+
+    /**
+     * The number of features that failed to insert or were rolled back, in all partitions
+     */
+    public long getFailedCount() {
+        long count = 0;
+        for (Partition partition : partitions) {
+            count += partition.failedCount;
+        }
+        return count;
+    }
+
+    public boolean hasFailures() {
+        return getFailedCount() > 0;
+    }
+
+    /**
+     * The failures of all partitions
+     */
+    public List<Failure> getFailures() {
+        List<Failure> failures = new ArrayList<Failure>();
+        for (Partition partition : partitions) {
+            failures.addAll(partition.failures);
+        }
+        return failures;
+    }
+
+    /**
+     * The time taken by the whole run, in nanoseconds
+     */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    /**
+     * The features committed per second, over the whole run
+     */
+    public double getThroughput() {
+        return throughput(getInsertedCount(), elapsedTime);
+    }
+
+    static double throughput(long features, long nanos) {
+        return nanos > 0 ? features * (double) TimeUnit.SECONDS.toNanos(1) / nanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Inserted ").append(getInsertedCount())
+                .append(" features, ").append(getFailedCount()).append(" failed, in ")
+                .append(TimeUnit.NANOSECONDS.toMillis(elapsedTime)).append("ms, ")
+                .append(Math.round(getThroughput())).append(" features/s");
+        for (Partition partition : partitions) {
+            sb.append("\n  ").append(partition);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,400 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.FeatureIterator;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * Inserts features into the tables of a {@link JDBCDataStore} from several threads, each one
+ * with its own connection, for bulk loads that do not need to happen in a single transaction.
+ * <p>
+ * The features are read on the calling thread and grouped into batches by type and
+ * {@link InsertionClassifier}, so that each batch is inserted with a single prepared statement.
+ * The batches are handed over to the partitions, each committing once it inserted the given
+ * number of features. A failed batch rolls back the features inserted by its partition since the
+ * last commit, and the partition goes on with the next batches. The outcome is described by a
+ * {@link ParallelInsertReport}.
+ * </p>
+ * <p>
+ * The types whose keys are computed from the existing ones, or auto generated by a database
+ * that cannot look them up per connection, are inserted by a single partition, as concurrent
+ * inserts could get the same keys. Several such types are still loaded in parallel. The number
+ * of partitions should not exceed the size of the connection pool.
+ * </p>
+ *
+ * @source $URL$
+ */
+public class ParallelInserter {
+
+    static final Logger LOGGER = Logging.getLogger(ParallelInserter.class);
+
+    /** The partitions wait for new batches for this long before checking if the run ended */
+    static final long POLL_MILLIS = 100;
+
+    /**
+     * A batch of features of the same insertion kind
+     */
+    static class Batch {
+        final SimpleFeatureType featureType;
+
+        final List<SimpleFeature> features;
+
+        Batch(SimpleFeatureType featureType, List<SimpleFeature> features) {
+            this.featureType = featureType;
+            this.features = features;
+        }
+
+        String getTypeName() {
+            return featureType.getTypeName();
+        }
+    }
+
+    final JDBCDataStore dataStore;
+
+    int partitions = 4;
+
+    int batchSize = 1000;
+
+    int commitInterval = 10000;
+
+    /** Called on each feature read, on the calling thread, returns the feature to insert */
+    UnaryOperator<SimpleFeature> featureMapper;
+
+    public ParallelInserter(JDBCDataStore dataStore) {
+        this.dataStore = dataStore;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Sets the number of threads inserting concurrently, each on its own connection. Defaults
+     * to 4.
+     */
+    public void setPartitions(int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("At least one partition is needed");
+        }
+        this.partitions = partitions;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the number of features inserted in a single batch. Defaults to 1000.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getCommitInterval() {
+        return commitInterval;
+    }
+
+    /**
+     * Sets the number of features each partition inserts before committing, the commit happens
+     * at the end of the batch crossing the interval. Set to 0 to commit only at the end of the
+     * run. Defaults to 10000.
+     */
+    public void setCommitInterval(int commitInterval) {
+        this.commitInterval = commitInterval;
+    }
+
+    /**
+     * Inserts the features into a single type
+     */
+    public ParallelInsertReport insert(String typeName,
+            FeatureCollection<SimpleFeatureType, SimpleFeature> features) throws IOException {
+        return insert(Collections.singletonMap(typeName, features));
+    }
+
+    /**
+     * Inserts the features into several types, keyed by type name. The types are read one
+     * after the other, their batches being inserted concurrently.
+     */
+    public ParallelInsertReport insert(
+            Map<String, ? extends FeatureCollection<SimpleFeatureType, SimpleFeature>> features)
+            throws IOException {
+        // resolve the types upfront, failing before inserting anything
+        Map<SimpleFeatureType, FeatureCollection<SimpleFeatureType, SimpleFeature>> types =
+                new LinkedHashMap<SimpleFeatureType, FeatureCollection<SimpleFeatureType, SimpleFeature>>();
+        for (Map.Entry<String, ? extends FeatureCollection<SimpleFeatureType, SimpleFeature>> e
+                : features.entrySet()) {
+            types.put(dataStore.getSchema(e.getKey()), e.getValue());
+        }
+
+        long start = System.nanoTime();
+        Run run = new Run();
+        ExecutorService executor = Executors.newFixedThreadPool(partitions, r -> {
+            Thread thread = new Thread(r, "JDBC insert " + run.threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (Worker worker : run.workers) {
+            futures.add(executor.submit(worker));
+        }
+        try {
+            for (Map.Entry<SimpleFeatureType, FeatureCollection<SimpleFeatureType, SimpleFeature>>
+                    e : types.entrySet()) {
+                run.read(e.getKey(), e.getValue());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while inserting features", e);
+        } finally {
+            run.done = true;
+            executor.shutdown();
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    executor.shutdownNow();
+                } catch (ExecutionException e) {
+                    LOGGER.log(Level.WARNING, "Insert partition failed", e.getCause());
+                }
+            }
+        }
+
+        List<ParallelInsertReport.Partition> reports = new ArrayList<ParallelInsertReport.Partition>();
+        for (Worker worker : run.workers) {
+            reports.add(worker.report);
+        }
+        return new ParallelInsertReport(reports, System.nanoTime() - start);
+    }
+
+    /**
+     * The state of a single insert run
+     */
+    class Run {
+        final Worker[] workers = new Worker[partitions];
+
+        final AtomicInteger threads = new AtomicInteger();
+
+        /** The partition next in turn */
+        int next;
+
+        volatile boolean done;
+
+        Run() {
+            for (int i = 0; i < partitions; i++) {
+                workers[i] = new Worker(this, i);
+            }
+        }
+
+        void read(SimpleFeatureType featureType,
+                FeatureCollection<SimpleFeatureType, SimpleFeature> collection)
+                throws IOException, InterruptedException {
+            // concurrent inserts could get the same keys
+            int pinned = !dataStore.isConcurrentInsertSafe(dataStore.getPrimaryKey(featureType))
+                    ? Math.floorMod(featureType.getTypeName().hashCode(), partitions) : -1;
+            Map<InsertionClassifier, List<SimpleFeature>> pending =
+                    new HashMap<InsertionClassifier, List<SimpleFeature>>();
+            try (FeatureIterator<SimpleFeature> it = collection.features()) {
+                while (it.hasNext()) {
+                    SimpleFeature feature = it.next();
+                    if (featureMapper != null) {
+                        feature = featureMapper.apply(feature);
+                    }
+                    InsertionClassifier kind = InsertionClassifier.of(featureType, feature);
+                    List<SimpleFeature> batch = pending.get(kind);
+                    if (batch == null) {
+                        batch = new ArrayList<SimpleFeature>(batchSize);
+                        pending.put(kind, batch);
+                    }
+                    batch.add(feature);
+                    if (batch.size() >= batchSize) {
+                        dispatch(new Batch(featureType, pending.remove(kind)), pinned);
+                    }
+                }
+            }
+            for (List<SimpleFeature> batch : pending.values()) {
+                dispatch(new Batch(featureType, batch), pinned);
+            }
+        }
+
+        void dispatch(Batch batch, int pinned) throws InterruptedException {
+            if (pinned >= 0) {
+                workers[pinned].queue.put(batch);
+                return;
+            }
+            // the first partition with room, starting from the one in turn
+            for (int i = 0; i < partitions; i++) {
+                int p = (next + i) % partitions;
+                if (workers[p].queue.offer(batch)) {
+                    next = (p + 1) % partitions;
+                    return;
+                }
+            }
+            workers[next].queue.put(batch);
+            next = (next + 1) % partitions;
+        }
+    }
+
+    /**
+     * Inserts the batches of a partition on its own connection
+     */
+    class Worker implements Runnable {
+        final Run run;
+
+        final ParallelInsertReport.Partition report;
+
+        final BlockingQueue<Batch> queue = new ArrayBlockingQueue<Batch>(2);
+
+        /** The batches inserted since the last commit */
+        final List<Batch> uncommitted = new ArrayList<Batch>();
+
+        int uncommittedCount;
+
+        Worker(Run run, int index) {
+            this.run = run;
+            this.report = new ParallelInsertReport.Partition(index);
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            Connection cx = null;
+            Exception connectionError = null;
+            try {
+                cx = dataStore.createConnection();
+                cx.setAutoCommit(false);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Could not get a connection for the inserts", e);
+                connectionError = e;
+            }
+            try {
+                while (true) {
+                    Batch batch = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (batch == null) {
+                        if (run.done && queue.isEmpty()) {
+                            break;
+                        }
+                        continue;
+                    }
+                    report.batchCount++;
+                    if (connectionError != null) {
+                        // keep draining the queue, the reader would block otherwise
+                        report.failed(batch.getTypeName(), batch.features.size(),
+                                connectionError);
+                        continue;
+                    }
+                    insert(cx, batch);
+                }
+                if (cx != null) {
+                    commit(cx);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rollback(cx, e);
+            } finally {
+                if (cx != null) {
+                    dataStore.closeSafe(cx);
+                }
+                report.elapsedTime = System.nanoTime() - start;
+            }
+        }
+
+        void insert(Connection cx, Batch batch) {
+            try {
+                dataStore.insertConcurrently(batch.features, batch.featureType, cx);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.FINE, "Failed to insert a batch, rolling back", e);
+                report.failed(batch.getTypeName(), batch.features.size(), e);
+                rollback(cx, e);
+                return;
+            }
+            uncommitted.add(batch);
+            uncommittedCount += batch.features.size();
+            if (commitInterval > 0 && uncommittedCount >= commitInterval) {
+                commit(cx);
+            }
+        }
+
+        void commit(Connection cx) {
+            if (uncommitted.isEmpty()) {
+                return;
+            }
+            try {
+                cx.commit();
+            } catch (SQLException e) {
+                rollback(cx, e);
+                return;
+            }
+            report.committed(uncommittedCount);
+            Set<String> typeNames = new HashSet<String>();
+            for (Batch batch : uncommitted) {
+                typeNames.add(batch.getTypeName());
+            }
+            for (String typeName : typeNames) {
+                dataStore.invalidateQueryCache(typeName, null);
+                dataStore.invalidateStatistics(typeName);
+            }
+            uncommitted.clear();
+            uncommittedCount = 0;
+        }
+
+        void rollback(Connection cx, Exception cause) {
+            try {
+                if (cx != null) {
+                    cx.rollback();
+                }
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Rollback failed", e);
+            }
+            for (Batch batch : uncommitted) {
+                report.failed(batch.getTypeName(), batch.features.size(), cause);
+            }
+            uncommitted.clear();
+            uncommittedCount = 0;
+        }
+    }
+}
@@ -55,8 +55,14 @@ public class PreparedFilterToSQL extends FilterToSQL {
     protected List<Class> literalTypes = new ArrayList<Class>();
     protected List<Integer> SRIDs = new ArrayList<Integer>();
     protected List<Integer> dimensions = new ArrayList<Integer>();
+    /**
+     * the literal each value comes from, and the type it was evaluated to
+     */
+    List<Literal> literalExpressions = new ArrayList<Literal>();
+    List<Class> literalContexts = new ArrayList<Class>();
     protected PreparedStatementSQLDialect dialect;
     boolean prepareEnabled = true;
+    boolean templateSafe = true;
     
     /**
      * Default constructor
@@ -92,23 +98,29 @@ public class PreparedFilterToSQL extends FilterToSQL {
         super(out);
     }
 
+    /**
+     * Whether the SQL encoded so far depends only on the structure of the filter, and not on the
+     * values of its literals, so that it can be reused for another filter of the same structure
+     * by binding different values. Encoders producing SQL that depends on the literal values
+     * should set it to false.
+     */
+    public boolean isTemplateSafe() {
+        return templateSafe;
+    }
+
+    public void setTemplateSafe(boolean templateSafe) {
+        this.templateSafe = templateSafe;
+    }
+
     public Object visit(Literal expression, Object context)
             throws RuntimeException {
         if(!prepareEnabled)
             return super.visit(expression, context);
         
         // evaluate the literal and store it for later
-        Object literalValue = evaluateLiteral( expression, (context instanceof Class ? (Class) context : null) );
-        literalValues.add(literalValue);
-        SRIDs.add(currentSRID);
-        dimensions.add(currentDimension);
-        
-        Class clazz = null;
-        if(context instanceof Class)
-            clazz = (Class) context;
-        else if(literalValue != null)
-            clazz = literalValue.getClass();
-        literalTypes.add( clazz );
+        Class clazz = addLiteralValue(expression, (context instanceof Class ? (Class) context : null),
+                currentSRID, currentDimension);
+        Object literalValue = literalValues.get(literalValues.size() - 1);
         
         try {
             if ( literalValue == null || dialect == null ) {
@@ -137,6 +149,28 @@ public class PreparedFilterToSQL extends FilterToSQL {
         return context;
     }
     
+    /**
+     * Evaluates a literal and stores its value for later
+     * 
+     * @return the type of the value
+     */
+    Class addLiteralValue(Literal expression, Class context, Integer srid, Integer dimension) {
+        Object literalValue = evaluateLiteral(expression, context);
+        literalValues.add(literalValue);
+        SRIDs.add(srid);
+        dimensions.add(dimension);
+        literalExpressions.add(expression);
+        literalContexts.add(context);
+
+        Class clazz = null;
+        if(context != null)
+            clazz = context;
+        else if(literalValue != null)
+            clazz = literalValue.getClass();
+        literalTypes.add( clazz );
+        return clazz;
+    }
+
     /**
      * Encodes an Id filter
      *
@@ -152,6 +186,8 @@ public class PreparedFilterToSQL extends FilterToSQL {
         }
 
         Set ids = filter.getIdentifiers();
+        // the number of identifiers changes the SQL
+        templateSafe = false;
         
         // prepare column name array
         String[] colNames = new String[mapper.getColumnCount()];
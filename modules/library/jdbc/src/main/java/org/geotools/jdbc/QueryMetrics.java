@@ -0,0 +1,172 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time spent in each phase of a query run by a {@link JDBCDataStore}, along with the number
+ * of rows it returned. The metrics are collected only when the store has
+ * {@link QueryMetricsListener}s, and reported to them when the reader is closed.
+ * <p>
+ * The times are in nanoseconds. The instances are filled by a single reader at a time and are
+ * not meant to be modified by the listeners.
+ * </p>
+ *
+ * @source $URL$
+ */
+public class QueryMetrics {
+
+    /**
+     * The phases of a query
+     */
+    public enum Phase {
+        /** Encoding the query into SQL and preparing the statement */
+        SQL_GENERATION,
+        /** Executing the statement, until the result set is returned */
+        EXECUTE,
+        /** Moving to the first row of the result set */
+        FIRST_ROW,
+        /** Moving through the result set, first row included */
+        FETCH,
+        /** Decoding the geometries */
+        DECODE,
+        /** Reading the other values and building the features */
+        BUILD,
+        /** Closing the result set and statement, and releasing the connection */
+        CLOSE
+    }
+
+    final String typeName;
+
+    final long[] times = new long[Phase.values().length];
+
+    String sql;
+
+    long rows;
+
+    Throwable error;
+
+    public QueryMetrics(String typeName) {
+        this.typeName = typeName;
+    }
+
+    /**
+     * The name of the feature type queried
+     */
+    public String getTypeName() {
+        return typeName;
+    }
+
+    /**
+     * The SQL of the query, with the values of prepared statements as parameters, or null if
+     * not known
+     */
+    public String getSQL() {
+        return sql;
+    }
+
+    public void setSQL(String sql) {
+        this.sql = sql;
+    }
+
+    /**
+     * A hash of the SQL text, identifying the queries with the same SQL across runs, or null if
+     * the SQL is not known. With prepared statements the queries differing only by their values
+     * share the same hash.
+     */
+    public String getSQLHash() {
+        if (sql == null) {
+            return null;
+        }
+        // 64 bits FNV-1a, stable across JVMs
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < sql.length(); i++) {
+            hash ^= sql.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return Long.toHexString(hash);
+    }
+
+    /**
+     * The time spent in a phase, in nanoseconds
+     */
+    public long getTime(Phase phase) {
+        return times[phase.ordinal()];
+    }
+
+    /**
+     * The time spent in a phase, in the given unit
+     */
+    public long getTime(Phase phase, TimeUnit unit) {
+        return unit.convert(times[phase.ordinal()], TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The total time spent in the query, in nanoseconds. The first row time is included in the
+     * fetch time, so it is not counted.
+     */
+    public long getTotalTime() {
+        long total = 0;
+        for (Phase phase : Phase.values()) {
+            if (phase != Phase.FIRST_ROW) {
+                total += times[phase.ordinal()];
+            }
+        }
+        return total;
+    }
+
+    public void addTime(Phase phase, long nanos) {
+        times[phase.ordinal()] += nanos;
+    }
+
+    /**
+     * The number of rows read from the result set
+     */
+    public long getRowCount() {
+        return rows;
+    }
+
+    void addRow() {
+        rows++;
+    }
+
+    /**
+     * The error that made the query fail, or null if it succeeded
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    public void setError(Throwable error) {
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("QueryMetrics[").append(typeName);
+        sb.append(", sql ").append(getSQLHash()).append(", ").append(rows).append(" rows");
+        for (Phase phase : Phase.values()) {
+            sb.append(", ").append(phase.name().toLowerCase()).append(" ")
+                    .append(getTime(phase, TimeUnit.MICROSECONDS)).append("us");
+        }
+        if (error != null) {
+            sb.append(", failed: ").append(error.getMessage());
+        }
+        return sb.append("]").toString();
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+/**
+ * This interface can be implemented to collect the {@link QueryMetrics} of the queries run by a
+ * {@link JDBCDataStore}, see {@link JDBCDataStore#getQueryMetricsListeners()}.
+ * <p>
+ * The listeners are called on the thread closing the feature reader, they should return
+ * quickly.
+ * </p>
+ *
+ * @see QueryStatistics
+ * @source $URL$
+ */
+public interface QueryMetricsListener {
+
+    /**
+     * Called when the reader of a query is closed, or when the query failed to execute
+     */
+    public void onQuery(JDBCDataStore store, QueryMetrics metrics);
+
+    /**
+     * Called when the store is disposed
+     */
+    public default void onDispose(JDBCDataStore store) {
+    }
+}
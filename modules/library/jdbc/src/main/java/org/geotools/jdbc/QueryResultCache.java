@@ -0,0 +1,653 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.data.FeatureReader;
+import org.geotools.data.Query;
+import org.geotools.factory.Hints;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.CurvedGeometry;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.CoordinateSequenceFactory;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequenceFactory;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBReader;
+import com.vividsolutions.jts.io.WKBWriter;
+
+/**
+ * Caches the features returned by the auto commit queries of a {@link JDBCDataStore}, so that
+ * identical queries issued shortly after each other are not run again against the database.
+ * <p>
+ * The queries are keyed by type name, filter, properties, sorting, paging and hints. The
+ * features of a query are kept as a single block of bytes, each value tagged with its type and
+ * geometries encoded as WKB, and decoded into new features on each read. The cache is bounded
+ * by the total size of the blocks, evicting the least recently used ones, and a query whose
+ * features take more than a quarter of the budget is not cached.
+ * </p>
+ * <p>
+ * The writes made through the store invalidate the queries of the modified type, either
+ * immediately on auto commit or when the transaction is committed. Changes made to the
+ * database by other means are picked up once the cached queries expire.
+ * </p>
+ *
+ * @source $URL$
+ */
+class QueryResultCache {
+
+    static final Logger LOGGER = Logging.getLogger(QueryResultCache.class);
+
+    /** Value tags */
+    static final byte NULL = 0, BOOLEAN = 1, BYTE = 2, SHORT = 3, INTEGER = 4, LONG = 5,
+            FLOAT = 6, DOUBLE = 7, STRING = 8, DATE = 9, SQL_DATE = 10, TIME = 11,
+            TIMESTAMP = 12, BIG_DECIMAL = 13, BIG_INTEGER = 14, BYTES = 15, GEOMETRY = 16,
+            SERIALIZED = 17;
+
+    /** Approximate memory taken by an entry besides its features */
+    static final int ENTRY_OVERHEAD = 256;
+
+    /**
+     * The normalised query a block of features was read for
+     */
+    static class Key {
+        final String typeName;
+
+        final Object[] parts;
+
+        final int hashCode;
+
+        Key(String typeName, Object... parts) {
+            this.typeName = typeName;
+            this.parts = parts;
+            this.hashCode = 31 * typeName.hashCode() + Arrays.hashCode(parts);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hashCode == other.hashCode && typeName.equals(other.typeName)
+                    && Arrays.equals(parts, other.parts);
+        }
+    }
+
+    /**
+     * The features of a query
+     */
+    static class Entry {
+        final SimpleFeatureType featureType;
+
+        final GeometryFactory geometryFactory;
+
+        final byte[] block;
+
+        final int count;
+
+        final long expires;
+
+        Entry(SimpleFeatureType featureType, GeometryFactory geometryFactory, byte[] block,
+                int count, long expires) {
+            this.featureType = featureType;
+            this.geometryFactory = geometryFactory;
+            this.block = block;
+            this.count = count;
+            this.expires = expires;
+        }
+
+        long size() {
+            return block.length + ENTRY_OVERHEAD;
+        }
+    }
+
+    final long maxBytes;
+
+    final long timeToLive;
+
+    final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+    long bytes;
+
+    /**
+     * The number of invalidations of each type, a query read before the last invalidation of
+     * its type is not cached
+     */
+    final Map<String, AtomicLong> generations = new ConcurrentHashMap<String, AtomicLong>();
+
+    final AtomicLong hits = new AtomicLong();
+
+    final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxBytes The maximum size of the cached features, in bytes
+     * @param timeToLive The time after which a cached query is read again from the database,
+     *        in milliseconds, 0 or negative to keep it until invalidated or evicted
+     */
+    QueryResultCache(long maxBytes, long timeToLive) {
+        this.maxBytes = maxBytes;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Returns the key of a query, or null if the query cannot be cached
+     */
+    Key key(String typeName, Query query) {
+        if (!query.getJoins().isEmpty()) {
+            return null;
+        }
+        Map<Object, Object> hints = new HashMap<Object, Object>();
+        for (Map.Entry<?, ?> hint : query.getHints().entrySet()) {
+            // the paging tokens and screen maps are updated by the readers
+            if (hint.getKey() == Hints.PAGE_TOKEN || hint.getKey() == Hints.SCREENMAP) {
+                return null;
+            }
+            hints.put(hint.getKey(), normalize(hint.getValue()));
+        }
+        return new Key(typeName, query.getFilter(), String.valueOf(query.getFilter()),
+                query.getPropertyNames() != null ? Arrays.asList(query.getPropertyNames())
+                        : null,
+                query.getSortBy() != null ? Arrays.asList(query.getSortBy()) : null,
+                query.getStartIndex(), query.getMaxFeatures(), hints);
+    }
+
+    /**
+     * Replaces the hint values that are usually created anew for each query, but have no
+     * equality, with an equivalent value that has
+     */
+    static Object normalize(Object value) {
+        if (value instanceof GeometryFactory) {
+            GeometryFactory gf = (GeometryFactory) value;
+            return Arrays.asList(gf.getClass(), normalize(gf.getCoordinateSequenceFactory()),
+                    gf.getPrecisionModel(), gf.getSRID());
+        } else if (value instanceof CoordinateSequenceFactory
+                && !(value instanceof PackedCoordinateSequenceFactory)) {
+            return value.getClass();
+        }
+        return value;
+    }
+
+    /**
+     * The number of invalidations of a type so far, to be passed to
+     * {@link #caching(Key, long, FeatureReader)} when starting to read a query
+     */
+    long generation(String typeName) {
+        return generation(typeName, generations).get();
+    }
+
+    static AtomicLong generation(String typeName, Map<String, AtomicLong> generations) {
+        return generations.computeIfAbsent(typeName, n -> new AtomicLong());
+    }
+
+    /**
+     * Returns a reader over the cached features of a query, or null if the query is not cached
+     */
+    FeatureReader<SimpleFeatureType, SimpleFeature> getReader(Key key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && timeToLive > 0 && entry.expires < System.currentTimeMillis()) {
+                remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return new CachedFeatureReader(entry);
+    }
+
+    /**
+     * Wraps the reader of a query, caching its features once fully read
+     *
+     * @param generation The generation of the query type before the query was run
+     */
+    FeatureReader<SimpleFeatureType, SimpleFeature> caching(Key key, long generation,
+            FeatureReader<SimpleFeatureType, SimpleFeature> reader) {
+        return new CachingFeatureReader(key, generation, reader);
+    }
+
+    /**
+     * Caches the features of a query, unless its type was invalidated after the query started
+     */
+    synchronized boolean put(Key key, long generation, Entry entry) {
+        if (generation(key.typeName) != generation || entry.size() > maxBytes / 4) {
+            return false;
+        }
+        remove(key);
+        entries.put(key, entry);
+        bytes += entry.size();
+        Iterator<Entry> it = entries.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().size();
+            it.remove();
+        }
+        return true;
+    }
+
+    private void remove(Key key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            bytes -= removed.size();
+        }
+    }
+
+    /**
+     * Drops the cached queries of the given types
+     */
+    synchronized void invalidate(Collection<String> typeNames) {
+        for (String typeName : typeNames) {
+            generation(typeName, generations).incrementAndGet();
+        }
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> e = it.next();
+            if (typeNames.contains(e.getKey().typeName)) {
+                bytes -= e.getValue().size();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops all the cached queries
+     */
+    synchronized void clear() {
+        for (AtomicLong generation : generations.values()) {
+            generation.incrementAndGet();
+        }
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * The number of cached queries
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * The size of the cached features, in bytes
+     */
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Encodes the features read from a query, and caches them once the reader is exhausted.
+     * Gives up if the features get too large for the cache, or some value cannot be encoded.
+     */
+    class CachingFeatureReader implements FeatureReader<SimpleFeatureType, SimpleFeature> {
+
+        final Key key;
+
+        final long generation;
+
+        final FeatureReader<SimpleFeatureType, SimpleFeature> delegate;
+
+        /** Grabbed upfront, the JDBC readers release it on close */
+        final SimpleFeatureType featureType;
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        DataOutputStream out = new DataOutputStream(buffer);
+
+        GeometryFactory geometryFactory;
+
+        int count;
+
+        boolean exhausted;
+
+        CachingFeatureReader(Key key, long generation,
+                FeatureReader<SimpleFeatureType, SimpleFeature> delegate) {
+            this.key = key;
+            this.generation = generation;
+            this.delegate = delegate;
+            this.featureType = delegate.getFeatureType();
+        }
+
+        @Override
+        public SimpleFeatureType getFeatureType() {
+            return delegate.getFeatureType();
+        }
+
+        @Override
+        public SimpleFeature next() throws IOException, NoSuchElementException {
+            SimpleFeature feature = delegate.next();
+            if (out != null) {
+                try {
+                    if (!write(feature) || buffer.size() > maxBytes / 4) {
+                        out = null;
+                        buffer = null;
+                    }
+                } catch (NotSerializableException | RuntimeException e) {
+                    // the read goes on, only the caching stops
+                    LOGGER.log(Level.FINE, "Could not cache a query on " + key.typeName, e);
+                    out = null;
+                    buffer = null;
+                }
+                count++;
+            }
+            return feature;
+        }
+
+        boolean write(SimpleFeature feature) throws IOException {
+            out.writeUTF(feature.getID());
+            for (Object value : feature.getAttributes()) {
+                if (value instanceof Geometry) {
+                    Geometry geometry = (Geometry) value;
+                    if (geometry instanceof CurvedGeometry || (geometryFactory != null
+                            && geometryFactory != geometry.getFactory())) {
+                        // would not decode back the same
+                        return false;
+                    }
+                    if (geometry.isEmpty()) {
+                        // WKB cannot represent empty points
+                        return false;
+                    }
+                    geometryFactory = geometry.getFactory();
+                }
+                writeValue(out, value);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean hasNext() throws IOException {
+            boolean hasNext = delegate.hasNext();
+            if (!hasNext) {
+                exhausted = true;
+            }
+            return hasNext;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                delegate.close();
+            } finally {
+                // only complete results are cached
+                if (exhausted && out != null) {
+                    long expires = timeToLive > 0 ? System.currentTimeMillis() + timeToLive : 0;
+                    put(key, generation, new Entry(featureType, geometryFactory,
+                            buffer.toByteArray(), count, expires));
+                }
+                out = null;
+                buffer = null;
+            }
+        }
+    }
+
+    /**
+     * Decodes the cached features of a query
+     */
+    static class CachedFeatureReader implements FeatureReader<SimpleFeatureType, SimpleFeature> {
+
+        final Entry entry;
+
+        final SimpleFeatureBuilder builder;
+
+        final List<AttributeDescriptor> descriptors;
+
+        DataInputStream in;
+
+        WKBReader wkbReader;
+
+        int read;
+
+        CachedFeatureReader(Entry entry) {
+            this.entry = entry;
+            this.builder = new SimpleFeatureBuilder(entry.featureType);
+            this.descriptors = entry.featureType.getAttributeDescriptors();
+            this.in = new DataInputStream(new ByteArrayInputStream(entry.block));
+        }
+
+        @Override
+        public SimpleFeatureType getFeatureType() {
+            return entry.featureType;
+        }
+
+        @Override
+        public SimpleFeature next() throws IOException, NoSuchElementException {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String fid = in.readUTF();
+            for (AttributeDescriptor ad : descriptors) {
+                Object value = readValue(in, this);
+                if (value instanceof Geometry && ad instanceof GeometryDescriptor) {
+                    ((Geometry) value).setUserData(
+                            ((GeometryDescriptor) ad).getCoordinateReferenceSystem());
+                }
+                builder.add(value);
+            }
+            read++;
+            return builder.buildFeature(fid);
+        }
+
+        WKBReader getWKBReader() {
+            if (wkbReader == null) {
+                wkbReader = entry.geometryFactory != null ? new WKBReader(entry.geometryFactory)
+                        : new WKBReader();
+            }
+            return wkbReader;
+        }
+
+        @Override
+        public boolean hasNext() throws IOException {
+            return in != null && read < entry.count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in = null;
+        }
+    }
+
+    static void writeValue(DataOutputStream out, Object value) throws IOException {
+        // the exact classes are checked, so that the values decode to the same class
+        Class<?> c = value != null ? value.getClass() : null;
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (c == Boolean.class) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (c == Byte.class) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (c == Short.class) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (c == Integer.class) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (c == Long.class) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (c == Float.class) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (c == Double.class) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (c == String.class) {
+            // writeUTF is limited to 64k bytes
+            byte[] utf = ((String) value).getBytes("UTF-8");
+            out.writeByte(STRING);
+            out.writeInt(utf.length);
+            out.write(utf);
+        } else if (c == java.util.Date.class) {
+            out.writeByte(DATE);
+            out.writeLong(((java.util.Date) value).getTime());
+        } else if (c == java.sql.Date.class) {
+            out.writeByte(SQL_DATE);
+            out.writeLong(((java.util.Date) value).getTime());
+        } else if (c == java.sql.Time.class) {
+            out.writeByte(TIME);
+            out.writeLong(((java.util.Date) value).getTime());
+        } else if (c == java.sql.Timestamp.class) {
+            java.sql.Timestamp timestamp = (java.sql.Timestamp) value;
+            out.writeByte(TIMESTAMP);
+            out.writeLong(timestamp.getTime());
+            out.writeInt(timestamp.getNanos());
+        } else if (c == BigDecimal.class) {
+            BigDecimal decimal = (BigDecimal) value;
+            out.writeByte(BIG_DECIMAL);
+            out.writeInt(decimal.scale());
+            writeBytes(out, decimal.unscaledValue().toByteArray());
+        } else if (c == BigInteger.class) {
+            out.writeByte(BIG_INTEGER);
+            writeBytes(out, ((BigInteger) value).toByteArray());
+        } else if (c == byte[].class) {
+            out.writeByte(BYTES);
+            writeBytes(out, (byte[]) value);
+        } else if (value instanceof Geometry) {
+            Geometry geometry = (Geometry) value;
+            Coordinate first = geometry.getCoordinate();
+            int dimension = first != null && !Double.isNaN(first.z) ? 3 : 2;
+            out.writeByte(GEOMETRY);
+            out.writeInt(geometry.getSRID());
+            writeBytes(out, new WKBWriter(dimension).write(geometry));
+        } else if (value instanceof Serializable) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(bos);
+            oos.writeObject(value);
+            oos.close();
+            out.writeByte(SERIALIZED);
+            writeBytes(out, bos.toByteArray());
+        } else {
+            throw new NotSerializableException(c.getName());
+        }
+    }
+
+    static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static Object readValue(DataInputStream in, CachedFeatureReader reader) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+        case NULL:
+            return null;
+        case BOOLEAN:
+            return in.readBoolean();
+        case BYTE:
+            return in.readByte();
+        case SHORT:
+            return in.readShort();
+        case INTEGER:
+            return in.readInt();
+        case LONG:
+            return in.readLong();
+        case FLOAT:
+            return in.readFloat();
+        case DOUBLE:
+            return in.readDouble();
+        case STRING:
+            return new String(readBytes(in), "UTF-8");
+        case DATE:
+            return new java.util.Date(in.readLong());
+        case SQL_DATE:
+            return new java.sql.Date(in.readLong());
+        case TIME:
+            return new java.sql.Time(in.readLong());
+        case TIMESTAMP:
+            java.sql.Timestamp timestamp = new java.sql.Timestamp(in.readLong());
+            timestamp.setNanos(in.readInt());
+            return timestamp;
+        case BIG_DECIMAL:
+            int scale = in.readInt();
+            return new BigDecimal(new BigInteger(readBytes(in)), scale);
+        case BIG_INTEGER:
+            return new BigInteger(readBytes(in));
+        case BYTES:
+            return readBytes(in);
+        case GEOMETRY:
+            int srid = in.readInt();
+            try {
+                Geometry geometry = reader.getWKBReader().read(readBytes(in));
+                geometry.setSRID(srid);
+                return geometry;
+            } catch (ParseException e) {
+                throw new IOException("Failed to decode a cached geometry", e);
+            }
+        case SERIALIZED:
+            try (ObjectInputStream ois = new ObjectInputStream(
+                    new ByteArrayInputStream(readBytes(in)))) {
+                return ois.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Failed to decode a cached value", e);
+            }
+        default:
+            throw new IOException("Unknown value tag " + tag);
+        }
+    }
+
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
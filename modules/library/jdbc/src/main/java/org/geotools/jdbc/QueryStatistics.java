@@ -0,0 +1,192 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.ObjectName;
+
+import org.geotools.jdbc.QueryMetrics.Phase;
+import org.geotools.util.logging.Logging;
+
+/**
+ * A {@link QueryMetricsListener} keeping a histogram of the time spent in each query phase, and
+ * optionally logging the slow queries with their metrics and SQL. The statistics can be
+ * published through JMX, see {@link #registerMBean(String)}.
+ *
+ * @source $URL$
+ */
+public class QueryStatistics implements QueryMetricsListener, QueryStatisticsMBean {
+
+    static final Logger LOGGER = Logging.getLogger(QueryStatistics.class);
+
+    /** The JMX domain of the statistics */
+    public static final String JMX_DOMAIN = "org.geotools.jdbc";
+
+    /** The name of the whole query in the phase based methods */
+    public static final String TOTAL = "TOTAL";
+
+    static final AtomicInteger IDS = new AtomicInteger();
+
+    final Map<Phase, LatencyHistogram> phases = new EnumMap<Phase, LatencyHistogram>(Phase.class);
+
+    final LatencyHistogram total = new LatencyHistogram();
+
+    final LongAdder rows = new LongAdder();
+
+    final LongAdder errors = new LongAdder();
+
+    volatile long slowQueryThreshold;
+
+    ObjectName objectName;
+
+    public QueryStatistics() {
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new LatencyHistogram());
+        }
+    }
+
+    public void onQuery(JDBCDataStore store, QueryMetrics metrics) {
+        for (Phase phase : Phase.values()) {
+            phases.get(phase).add(metrics.getTime(phase));
+        }
+        long time = metrics.getTotalTime();
+        total.add(time);
+        rows.add(metrics.getRowCount());
+        if (metrics.getError() != null) {
+            errors.increment();
+        }
+
+        long threshold = slowQueryThreshold;
+        if (threshold > 0 && time > TimeUnit.MILLISECONDS.toNanos(threshold)
+                && LOGGER.isLoggable(Level.INFO)) {
+            LOGGER.info("Slow query, " + TimeUnit.NANOSECONDS.toMillis(time) + "ms: " + metrics
+                    + "\n" + metrics.getSQL());
+        }
+    }
+
+    public void onDispose(JDBCDataStore store) {
+        unregisterMBean();
+    }
+
+    /**
+     * Publishes the statistics in the platform MBean server, under the {@link #JMX_DOMAIN}
+     * domain. They are unregistered when the store is disposed.
+     *
+     * @param name Identifies the store the statistics are collected for
+     */
+    public synchronized void registerMBean(String name) {
+        if (objectName != null) {
+            return;
+        }
+        try {
+            ObjectName on = new ObjectName(JMX_DOMAIN + ":type=QueryStatistics,name="
+                    + ObjectName.quote(name) + ",id=" + IDS.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+            objectName = on;
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Could not publish the query statistics", e);
+        }
+    }
+
+    public synchronized void unregisterMBean() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Could not unregister the query statistics", e);
+            }
+            objectName = null;
+        }
+    }
+
+    /**
+     * The name the statistics are registered under in the platform MBean server, or null if
+     * not registered
+     */
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+
+    LatencyHistogram histogram(String phase) {
+        if (TOTAL.equalsIgnoreCase(phase)) {
+            return total;
+        }
+        try {
+            return phases.get(Phase.valueOf(phase.toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown query phase " + phase + ", valid ones are "
+                    + TOTAL + " and " + phases.keySet());
+        }
+    }
+
+    public long getQueryCount() {
+        return total.getCount();
+    }
+
+    public long getRowCount() {
+        return rows.sum();
+    }
+
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    public double getAverageTime() {
+        return total.getAverage();
+    }
+
+    public double getMaxTime() {
+        return total.getMax();
+    }
+
+    public double getAverageTime(String phase) {
+        return histogram(phase).getAverage();
+    }
+
+    public double getMaxTime(String phase) {
+        return histogram(phase).getMax();
+    }
+
+    public double getPercentileTime(String phase, double percentile) {
+        return histogram(phase).getPercentile(percentile);
+    }
+
+    public long getSlowQueryThreshold() {
+        return slowQueryThreshold;
+    }
+
+    public void setSlowQueryThreshold(long slowQueryThreshold) {
+        this.slowQueryThreshold = slowQueryThreshold;
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : phases.values()) {
+            histogram.reset();
+        }
+        total.reset();
+        rows.reset();
+        errors.reset();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+/**
+ * The query statistics of a {@link JDBCDataStore}, as published through JMX. The times are in
+ * milliseconds, the phases are named after {@link QueryMetrics.Phase}, or "TOTAL" for the
+ * whole query.
+ *
+ * @source $URL$
+ */
+public interface QueryStatisticsMBean {
+
+    /**
+     * The number of queries run
+     */
+    long getQueryCount();
+
+    /**
+     * The number of rows read by the queries
+     */
+    long getRowCount();
+
+    /**
+     * The number of queries that failed
+     */
+    long getErrorCount();
+
+    /**
+     * The average time of the queries
+     */
+    double getAverageTime();
+
+    /**
+     * The longest time of a query
+     */
+    double getMaxTime();
+
+    /**
+     * The average time spent in a phase
+     */
+    double getAverageTime(String phase);
+
+    /**
+     * The longest time spent in a phase
+     */
+    double getMaxTime(String phase);
+
+    /**
+     * The time below which the given percentage of the queries spent in a phase
+     *
+     * @param percentile A value between 0 and 100
+     */
+    double getPercentileTime(String phase, double percentile);
+
+    /**
+     * The time, in milliseconds, above which queries are logged, 0 if disabled
+     */
+    long getSlowQueryThreshold();
+
+    void setSlowQueryThreshold(long slowQueryThreshold);
+
+    /**
+     * Resets the statistics
+     */
+    void reset();
+}
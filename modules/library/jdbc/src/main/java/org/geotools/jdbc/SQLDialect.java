@@ -640,6 +640,41 @@ public abstract class SQLDialect {
         return null;
     }
 
+    /**
+     * Returns an estimate of the bounds of all geometry columns in the layer, typically read from
+     * the statistics the database keeps, or null if no estimate is available.
+     * <p>
+     * Unlike {@link #getOptimizedBounds(String, SimpleFeatureType, Connection)} this method is
+     * called only when the user allowed estimates, the default implementation delegates to it.
+     * </p>
+     * 
+     * @param schema
+     *            The database schema, if any, or null
+     * @param featureType
+     *            The feature type containing the geometry columns whose bounds need to estimated
+     * @param cx
+     * @return a list of referenced envelopes (some of which may be null or empty)
+     */
+    public List<ReferencedEnvelope> getEstimatedBounds(String schema, SimpleFeatureType featureType,
+            Connection cx) throws SQLException, IOException {
+        return getOptimizedBounds(schema, featureType, cx);
+    }
+
+    /**
+     * Returns an estimate of the number of rows in the table, typically read from the statistics
+     * the database keeps, or -1 if no estimate is available, the default.
+     * 
+     * @param schema
+     *            The database schema, if any, or null
+     * @param featureType
+     *            The feature type of the table
+     * @param cx
+     */
+    public int getEstimatedCount(String schema, SimpleFeatureType featureType, Connection cx)
+            throws SQLException, IOException {
+        return -1;
+    }
+
     /**
      * Encodes the spatial extent function of a geometry column in a SELECT statement.
      * <p>
@@ -650,6 +685,24 @@ public abstract class SQLDialect {
      */
     public abstract void encodeGeometryEnvelope(String tableName, String geometryColumn, StringBuffer sql);
 
+    /**
+     * Encodes the minimum or maximum ordinate of the envelope of a geometry column, used to
+     * keep a single feature per pixel among those smaller than a pixel, when the dialect lists
+     * {@link Hints#SCREENMAP} among its supported hints.
+     * <p>
+     * The default implementation uses the ST_XMin, ST_XMax, ST_YMin and ST_YMax functions.
+     * </p>
+     * @param gatt The geometry column
+     * @param ordinate 0 for x, 1 for y
+     * @param max true for the maximum, false for the minimum
+     */
+    public void encodeGeometryEnvelopeOrdinate(GeometryDescriptor gatt, int ordinate,
+            boolean max, StringBuffer sql) {
+        sql.append(ordinate == 0 ? "ST_X" : "ST_Y").append(max ? "Max(" : "Min(");
+        encodeColumnName(null, gatt.getLocalName(), sql);
+        sql.append(")");
+    }
+
     /**
      * Decodes the result of a spatial extent function in a SELECT statement.
      * <p>
@@ -1145,6 +1198,21 @@ public abstract class SQLDialect {
         String columnName, Connection cx) throws SQLException {
         return null;
     } 
+
+    /**
+     * Returns true if the auto generated values looked up by
+     * {@link #getNextAutoGeneratedValue(String, String, String, Connection)} or
+     * {@link #getLastAutoGeneratedValue(String, String, String, Connection)} are specific to the
+     * connection, so that inserts running concurrently on separate connections cannot get each
+     * other's values.
+     * <p>
+     * Returns false by default, in which case the inserts into tables with auto generated keys
+     * are not run concurrently, see {@link ParallelInserter}.
+     * </p>
+     */
+    public boolean isAutoGeneratedValueConnectionScoped() {
+        return false;
+    }
     
     /**
      * Determines the name of the sequence (if any) which is used to increment
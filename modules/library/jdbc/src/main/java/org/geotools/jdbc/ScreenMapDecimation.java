@@ -0,0 +1,183 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+import java.awt.geom.AffineTransform;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.geotools.data.Query;
+import org.geotools.data.jdbc.FilterToSQL;
+import org.geotools.factory.Hints;
+import org.geotools.renderer.ScreenMap;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.filter.Filter;
+
+/**
+ * Pushes the {@link ScreenMap} of a query down to the database.
+ * <p>
+ * Of the features whose envelope is smaller than a pixel, only the one with the lowest key is
+ * returned for each pixel their envelope center falls into, the others would be skipped by the
+ * screen map anyways. The larger features are all returned. The query is encoded as:
+ *
+ * <pre>
+ * WHERE key IN (SELECT MIN(key) FROM table WHERE filter
+ *   GROUP BY CASE WHEN small THEN FLOOR(pixel x) END, CASE WHEN small THEN FLOOR(pixel y) END,
+ *     CASE WHEN small THEN NULL ELSE key END)
+ * </pre>
+ *
+ * The pixel of a feature is computed in SQL, which requires the transform from the data to the
+ * screen to be affine, that is, the data not to be reprojected. The screen map is then still
+ * applied to the features read, which is cheap once the database got rid of the bulk of them.
+ * </p>
+ *
+ * @source $URL$
+ */
+class ScreenMapDecimation {
+
+    final JDBCDataStore dataStore;
+
+    final SimpleFeatureType featureType;
+
+    /** The query hints, carrying the virtual table parameters */
+    final Hints hints;
+
+    final GeometryDescriptor geometry;
+
+    final PrimaryKeyColumn key;
+
+    final AffineTransform transform;
+
+    final double spanX;
+
+    final double spanY;
+
+    ScreenMapDecimation(JDBCDataStore dataStore, SimpleFeatureType featureType, Hints hints,
+            GeometryDescriptor geometry, PrimaryKeyColumn key, AffineTransform transform,
+            double spanX, double spanY) {
+        this.dataStore = dataStore;
+        this.featureType = featureType;
+        this.hints = hints;
+        this.geometry = geometry;
+        this.key = key;
+        this.transform = transform;
+        this.spanX = spanX;
+        this.spanY = spanY;
+    }
+
+    /**
+     * Returns the decimation of a query, or null if the query has no {@link Hints#SCREENMAP},
+     * the screen map transform is not affine, or the type has no geometry or no single column
+     * primary key
+     */
+    static ScreenMapDecimation create(JDBCDataStore dataStore, SimpleFeatureType featureType,
+            Query query) throws IOException {
+        if (query == null || !(query.getHints().get(Hints.SCREENMAP) instanceof ScreenMap)) {
+            return null;
+        }
+        ScreenMap screenMap = (ScreenMap) query.getHints().get(Hints.SCREENMAP);
+        GeometryDescriptor geometry = featureType.getGeometryDescriptor();
+        if (!(screenMap.getTransform() instanceof AffineTransform) || geometry == null
+                || !(screenMap.getSpanX() > 0) || !(screenMap.getSpanY() > 0)) {
+            return null;
+        }
+        PrimaryKey key = dataStore.getPrimaryKey(featureType);
+        List<PrimaryKeyColumn> columns = key.getColumns();
+        if (key instanceof NullPrimaryKey || columns.size() != 1) {
+            return null;
+        }
+        return new ScreenMapDecimation(dataStore, featureType, query.getHints(), geometry,
+                columns.get(0), (AffineTransform) screenMap.getTransform(),
+                screenMap.getSpanX(), screenMap.getSpanY());
+    }
+
+    /**
+     * Encodes the condition keeping a single small feature per pixel, along with the query filter
+     *
+     * @return The encoder of the filter, or null if the filter is {@link Filter#INCLUDE}
+     */
+    FilterToSQL encode(Filter filter, StringBuffer sql) throws IOException, SQLException {
+        SQLDialect dialect = dataStore.getSQLDialect();
+        dialect.encodeColumnName(null, key.getName(), sql);
+        sql.append(" IN (SELECT MIN(");
+        dialect.encodeColumnName(null, key.getName(), sql);
+        sql.append(") FROM ");
+        dataStore.encodeTableName(featureType.getTypeName(), sql, hints);
+
+        FilterToSQL toSQL = null;
+        if (filter != null && !Filter.INCLUDE.equals(filter)) {
+            sql.append(" WHERE ");
+            toSQL = dataStore.filter(featureType, filter, sql);
+        }
+
+        // the pixels are truncated to ints by the screen map, flooring gives the same
+        // pixels or splits them in two, keeping one feature more at most
+        sql.append(" GROUP BY CASE WHEN ");
+        encodeSmall(sql);
+        sql.append(" THEN FLOOR(");
+        encodePixel(transform.getScaleX(), transform.getShearX(), transform.getTranslateX(),
+                sql);
+        sql.append(") END, CASE WHEN ");
+        encodeSmall(sql);
+        sql.append(" THEN FLOOR(");
+        encodePixel(transform.getShearY(), transform.getScaleY(), transform.getTranslateY(),
+                sql);
+        sql.append(") END, CASE WHEN ");
+        encodeSmall(sql);
+        sql.append(" THEN NULL ELSE ");
+        dialect.encodeColumnName(null, key.getName(), sql);
+        sql.append(" END)");
+
+        return toSQL;
+    }
+
+    /**
+     * Encodes the condition on the envelope being smaller than a pixel, the same as
+     * {@link ScreenMap#canSimplify}
+     */
+    void encodeSmall(StringBuffer sql) {
+        SQLDialect dialect = dataStore.getSQLDialect();
+        sql.append("(");
+        dialect.encodeGeometryEnvelopeOrdinate(geometry, 0, true, sql);
+        sql.append(" - ");
+        dialect.encodeGeometryEnvelopeOrdinate(geometry, 0, false, sql);
+        sql.append(" < ").append(spanX).append(" AND ");
+        dialect.encodeGeometryEnvelopeOrdinate(geometry, 1, true, sql);
+        sql.append(" - ");
+        dialect.encodeGeometryEnvelopeOrdinate(geometry, 1, false, sql);
+        sql.append(" < ").append(spanY).append(")");
+    }
+
+    /**
+     * Encodes a screen ordinate of the envelope center, the envelope sums being halved in the
+     * coefficients
+     */
+    void encodePixel(double cx, double cy, double offset, StringBuffer sql) {
+        SQLDialect dialect = dataStore.getSQLDialect();
+        sql.append(cx / 2).append(" * (");
+        dialect.encodeGeometryEnvelopeOrdinate(geometry, 0, false, sql);
+        sql.append(" + ");
+        dialect.encodeGeometryEnvelopeOrdinate(geometry, 0, true, sql);
+        sql.append(") + ").append(cy / 2).append(" * (");
+        dialect.encodeGeometryEnvelopeOrdinate(geometry, 1, false, sql);
+        sql.append(" + ");
+        dialect.encodeGeometryEnvelopeOrdinate(geometry, 1, true, sql);
+        sql.append(") + ").append(offset);
+    }
+}
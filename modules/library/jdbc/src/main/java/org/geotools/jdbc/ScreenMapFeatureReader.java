@@ -0,0 +1,109 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.data.FeatureReader;
+import org.geotools.renderer.ScreenMap;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.referencing.operation.TransformException;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ * Skips the features smaller than a pixel whose pixel is already taken in the
+ * {@link ScreenMap}, and replaces the geometry of the others with the shape of their pixel, the
+ * way the renderer would, as it leaves the screen map to the stores supporting it.
+ *
+ * @source $URL$
+ */
+class ScreenMapFeatureReader implements FeatureReader<SimpleFeatureType, SimpleFeature> {
+
+    static final Logger LOGGER = Logging.getLogger(ScreenMapFeatureReader.class);
+
+    final FeatureReader<SimpleFeatureType, SimpleFeature> delegate;
+
+    final ScreenMap screenMap;
+
+    SimpleFeature next;
+
+    ScreenMapFeatureReader(FeatureReader<SimpleFeatureType, SimpleFeature> delegate,
+            ScreenMap screenMap) {
+        this.delegate = delegate;
+        this.screenMap = screenMap;
+    }
+
+    @Override
+    public SimpleFeatureType getFeatureType() {
+        return delegate.getFeatureType();
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        while (next == null && delegate.hasNext()) {
+            SimpleFeature feature = delegate.next();
+            Geometry geometry = (Geometry) feature.getDefaultGeometry();
+            if (geometry != null) {
+                Envelope envelope = geometry.getEnvelopeInternal();
+                try {
+                    if (screenMap.checkAndSet(envelope)) {
+                        continue;
+                    }
+                    if (screenMap.canSimplify(envelope) && !(geometry instanceof Point)) {
+                        // better provide a shape covering the whole pixel, or we'll end up
+                        // with many holes in the rendering
+                        Geometry simplified = screenMap.getSimplifiedShape(envelope.getMinX(),
+                                envelope.getMinY(), envelope.getMaxX(), envelope.getMaxY(),
+                                geometry.getFactory(), geometry.getClass());
+                        simplified.setSRID(geometry.getSRID());
+                        simplified.setUserData(geometry.getUserData());
+                        feature.setDefaultGeometry(simplified);
+                    }
+                } catch (TransformException e) {
+                    if (LOGGER.isLoggable(Level.FINE)) {
+                        LOGGER.log(Level.FINE, "Failed to set the screen map", e);
+                    }
+                }
+            }
+            next = feature;
+        }
+        return next != null;
+    }
+
+    @Override
+    public SimpleFeature next() throws IOException, NoSuchElementException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more features");
+        }
+        SimpleFeature feature = next;
+        next = null;
+        return feature;
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
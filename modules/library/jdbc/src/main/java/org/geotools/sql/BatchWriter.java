@@ -0,0 +1,408 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.sql;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.geotools.util.logging.Logging;
+
+/**
+ * Bulk writer inserting rows through a single prepared statement, in batches, on a single
+ * connection.
+ * <p>
+ * Items can be submitted concurrently from any number of threads with {@link #write(Object)},
+ * they are queued and written by a single background thread that binds them to the prepared
+ * statement, executes the statement in batches of {@link #getBatchSize()} rows and commits
+ * every {@link #getCommitSize()} rows. Subclasses provide the binding logic and can tune the
+ * connection for the load in {@link #beforeLoad(Connection)} and {@link #afterLoad(Connection)}.
+ * </p>
+ * <p>
+ * The writer must always be closed, {@link #close()} waits for all the queued items to be
+ * written, commits and reports any error that occurred while writing. Once closing started, or
+ * once a write failed, further writes are rejected.
+ * </p>
+ *
+ * @param <T> The type of the items written
+ */
+public abstract class BatchWriter<T> implements Closeable {
+
+    static final Logger LOGGER = Logging.getLogger(BatchWriter.class);
+
+    /**
+     * Default number of rows per batch
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * Default number of rows per transaction
+     */
+    public static final int DEFAULT_COMMIT_SIZE = 10000;
+
+    /**
+     * Default queue capacity
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    static final Object END = new Object();
+
+    final DataSource dataSource;
+
+    final String sql;
+
+    final BlockingQueue<Object> queue;
+
+    Connection cx;
+
+    boolean autoCommit;
+
+    PreparedStatement ps;
+
+    volatile Thread thread;
+
+    int batchSize = DEFAULT_BATCH_SIZE;
+
+    int commitSize = DEFAULT_COMMIT_SIZE;
+
+    volatile long count;
+
+    volatile Throwable failure;
+
+    volatile boolean closed;
+
+    /** Held by the writes while queueing, and by close while flagging the writer as closed */
+    final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+    /**
+     * Creates a writer with the default queue size.
+     *
+     * @param dataSource The data source providing the connection
+     * @param sql The insert statement, with one parameter per column to be bound
+     */
+    protected BatchWriter(DataSource dataSource, String sql) {
+        this(dataSource, sql, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * Creates a writer.
+     *
+     * @param dataSource The data source providing the connection
+     * @param sql The insert statement, with one parameter per column to be bound
+     * @param queueSize Maximum number of items waiting to be written, producers block when the
+     *        queue is full
+     */
+    protected BatchWriter(DataSource dataSource, String sql, int queueSize) {
+        this.dataSource = dataSource;
+        this.sql = sql;
+        this.queue = new ArrayBlockingQueue<Object>(queueSize);
+    }
+
+    /**
+     * Grabs the connection, prepares the statement and starts the writer thread. Done lazily on
+     * the first write so that subclasses are fully initialized by the time their hooks are called.
+     */
+    synchronized void start() throws IOException {
+        if (thread != null) {
+            return;
+        }
+        Connection cx = null;
+        try {
+            cx = dataSource.getConnection();
+            this.autoCommit = cx.getAutoCommit();
+            beforeLoad(cx);
+            cx.setAutoCommit(false);
+            LOGGER.log(Level.FINE, "Bulk loading with statement: {0}", sql);
+            this.ps = cx.prepareStatement(sql);
+            this.cx = cx;
+        } catch (SQLException e) {
+            if (cx != null) {
+                try {
+                    cx.close();
+                } catch (SQLException ex) {
+                    LOGGER.log(Level.FINER, ex.getMessage(), ex);
+                }
+            }
+            throw new IOException(e);
+        }
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, getClass().getSimpleName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Binds the item values to the insert statement parameters.
+     */
+    protected abstract void bind(PreparedStatement ps, T item) throws SQLException;
+
+    /**
+     * Called before the load starts, while the connection is still in its original auto commit
+     * mode. Subclasses can override to tune the connection for the load. The default
+     * implementation does nothing.
+     */
+    protected void beforeLoad(Connection cx) throws SQLException {
+    }
+
+    /**
+     * Called when the load is over, successful or not, once the connection original auto commit
+     * mode has been restored and before the connection is released. Subclasses can override to
+     * undo the changes performed in {@link #beforeLoad(Connection)} and to perform any final
+     * updates. The default implementation does nothing.
+     */
+    protected void afterLoad(Connection cx) throws SQLException {
+    }
+
+    /**
+     * Number of rows executed at once with {@link PreparedStatement#executeBatch()}.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Number of rows written in a single transaction.
+     */
+    public int getCommitSize() {
+        return commitSize;
+    }
+
+    public void setCommitSize(int commitSize) {
+        if (commitSize < 1) {
+            throw new IllegalArgumentException("Commit size must be positive");
+        }
+        this.commitSize = commitSize;
+    }
+
+    /**
+     * Number of items written so far.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Queues an item for writing. This method is thread safe, it blocks when the queue is full.
+     *
+     * @throws IOException If the writer is closed, or if a previous write failed
+     */
+    public void write(T item) throws IOException {
+        if (item == null) {
+            throw new IllegalArgumentException("Cannot write a null item");
+        }
+        // queued items must all come before the end marker queued by close
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IOException("Writer is closed");
+            }
+            checkFailure();
+            if (thread == null) {
+                start();
+            }
+            enqueue(item);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    void enqueue(Object item) throws IOException {
+        try {
+            // the writer thread stops consuming when it fails, don't block forever
+            while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+                if (!thread.isAlive()) {
+                    throw new IOException("Bulk writer thread is not running");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to write", e);
+        }
+        checkFailure();
+    }
+
+    void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Bulk write failed", failure);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    void drain() {
+        int pending = 0;
+        int uncommitted = 0;
+        try {
+            while (true) {
+                Object item = queue.take();
+                if (item == END) {
+                    break;
+                }
+                bind(ps, (T) item);
+                ps.addBatch();
+                pending++;
+                uncommitted++;
+                if (pending >= batchSize) {
+                    ps.executeBatch();
+                    count += pending;
+                    pending = 0;
+                }
+                if (uncommitted >= commitSize) {
+                    if (pending > 0) {
+                        ps.executeBatch();
+                        count += pending;
+                        pending = 0;
+                    }
+                    cx.commit();
+                    uncommitted = 0;
+                }
+            }
+            if (pending > 0) {
+                ps.executeBatch();
+                count += pending;
+            }
+            cx.commit();
+        } catch (Throwable t) {
+            // recorded first, the producers stop waiting for room in the queue once they see it
+            failure = t;
+            queue.clear();
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+        }
+    }
+
+    /**
+     * Waits for all the queued items to be written, commits and releases the connection.
+     *
+     * @throws IOException If any of the writes failed
+     */
+    @Override
+    public void close() throws IOException {
+        // waits for the writes in progress, the later ones will find the writer closed
+        closeLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        if (thread == null) {
+            // nothing was ever written
+            return;
+        }
+        try {
+            if (failure == null) {
+                try {
+                    enqueue(END);
+                } catch (IOException e) {
+                    // failure is reported below
+                }
+            }
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+            if (failure != null) {
+                try {
+                    cx.rollback();
+                } catch (SQLException e) {
+                    LOGGER.log(Level.FINER, e.getMessage(), e);
+                }
+            }
+            try {
+                ps.close();
+                cx.setAutoCommit(autoCommit);
+                afterLoad(cx);
+            } catch (SQLException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        } finally {
+            try {
+                cx.close();
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Error closing database connection", e);
+            }
+        }
+        checkFailure();
+    }
+
+    /**
+     * Runs a query returning a single value, for subclasses reading the connection settings in
+     * {@link #beforeLoad(Connection)}.
+     *
+     * @return The first column of the first row, or null if there are no rows
+     */
+    protected static String queryValue(Connection cx, String sql) throws SQLException {
+        Statement st = cx.createStatement();
+        try {
+            ResultSet rs = st.executeQuery(sql);
+            try {
+                return rs.next() ? rs.getString(1) : null;
+            } finally {
+                rs.close();
+            }
+        } finally {
+            st.close();
+        }
+    }
+
+    /**
+     * Executes a statement, for subclasses changing the connection settings in
+     * {@link #beforeLoad(Connection)} and {@link #afterLoad(Connection)}.
+     */
+    protected static void execute(Connection cx, String sql) throws SQLException {
+        Statement st = cx.createStatement();
+        try {
+            st.execute(sql);
+        } finally {
+            st.close();
+        }
+    }
+}
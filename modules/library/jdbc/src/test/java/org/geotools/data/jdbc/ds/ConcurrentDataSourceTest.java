@@ -0,0 +1,272 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.jdbc.ds;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+
+import org.geotools.data.jdbc.datasource.ConcurrentDataSource;
+import org.geotools.data.jdbc.datasource.ConcurrentDataSourceFactory;
+import org.geotools.data.jdbc.datasource.DataSourceFinder;
+import org.geotools.data.jdbc.datasource.UnWrapper;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Checks the {@link ConcurrentDataSource} pool against an in memory H2 database
+ *
+ * @source $URL$
+ */
+public class ConcurrentDataSourceTest {
+
+    ConcurrentDataSource pool;
+
+    @After
+    public void tearDown() throws Exception {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    ConcurrentDataSource createPool(int maxActive) throws SQLException {
+        pool = new ConcurrentDataSource("org.h2.Driver", "jdbc:h2:mem:concurrent_pool", "admin",
+                "", maxActive);
+        return pool;
+    }
+
+    Connection unwrap(Connection cx) throws Exception {
+        UnWrapper unwrapper = DataSourceFinder.getUnWrapper(cx);
+        assertNotNull(unwrapper);
+        return unwrapper.unwrap(cx);
+    }
+
+    @Test
+    public void testFactory() throws Exception {
+        Map map = new HashMap();
+        map.put(ConcurrentDataSourceFactory.DSTYPE.key, "CONCURRENT");
+        map.put(ConcurrentDataSourceFactory.DRIVERCLASS.key, "org.h2.Driver");
+        map.put(ConcurrentDataSourceFactory.JDBC_URL.key, "jdbc:h2:mem:concurrent_pool");
+        map.put(ConcurrentDataSourceFactory.USERNAME.key, "admin");
+        map.put(ConcurrentDataSourceFactory.PASSWORD.key, "");
+        map.put(ConcurrentDataSourceFactory.MAXACTIVE.key, 10);
+        map.put(ConcurrentDataSourceFactory.MAXIDLE.key, 5);
+
+        DataSourceFinder.scanForPlugins();
+        DataSource source = DataSourceFinder.getDataSource(map);
+        assertTrue(source instanceof ConcurrentDataSource);
+        pool = (ConcurrentDataSource) source;
+        assertEquals(10, pool.getMaxActive());
+        assertEquals(1, pool.getNumIdle());
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        createPool(2);
+        Connection cx = pool.getConnection();
+        Connection physical = unwrap(cx);
+        assertEquals(1, pool.getNumActive());
+        cx.close();
+        // closing again is harmless, the handle is not usable anymore
+        cx.close();
+        assertTrue(cx.isClosed());
+        try {
+            cx.createStatement();
+            fail("The connection was returned to the pool");
+        } catch (SQLException e) {
+            // fine
+        }
+
+        // the same thread gets back the same connection
+        Connection cx2 = pool.getConnection();
+        assertSame(physical, unwrap(cx2));
+        assertFalse(cx2.isClosed());
+        cx2.close();
+
+        assertEquals(0, pool.getNumActive());
+        assertEquals(1, pool.getNumIdle());
+        assertEquals(1, pool.getCreatedCount());
+        assertEquals(2, pool.getBorrowCount());
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        createPool(1);
+        Connection cx = pool.getConnection();
+        Statement st = cx.createStatement();
+        st.execute("CREATE TABLE pooled(id INT)");
+        st.close();
+        cx.setAutoCommit(false);
+        st = cx.createStatement();
+        st.execute("INSERT INTO pooled VALUES (1)");
+        st.close();
+        // returned without commit
+        cx.close();
+
+        cx = pool.getConnection();
+        try {
+            assertTrue(cx.getAutoCommit());
+            st = cx.createStatement();
+            ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM pooled");
+            rs.next();
+            assertEquals(0, rs.getInt(1));
+            rs.close();
+            st.execute("DROP TABLE pooled");
+            st.close();
+        } finally {
+            cx.close();
+        }
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        createPool(1);
+        pool.setMaxWait(50);
+        Connection cx = pool.getConnection();
+        try {
+            pool.getConnection();
+            fail("The only connection is in use");
+        } catch (SQLException e) {
+            // fine
+        } finally {
+            cx.close();
+        }
+        assertEquals(1, pool.getTimeoutCount());
+        assertEquals(1, pool.getWaitCount());
+        assertEquals(0, pool.getNumWaiting());
+
+        // the failed borrow did not consume a permit
+        pool.getConnection().close();
+        assertEquals(0, pool.getNumActive());
+    }
+
+    @Test
+    public void testMaxIdle() throws Exception {
+        createPool(3);
+        pool.setMaxIdle(1);
+        Connection cx1 = pool.getConnection();
+        Connection cx2 = pool.getConnection();
+        Connection cx3 = pool.getConnection();
+        cx1.close();
+        cx2.close();
+        cx3.close();
+        assertEquals(1, pool.getNumIdle());
+        assertEquals(3, pool.getCreatedCount());
+    }
+
+    @Test
+    public void testConcurrentBorrow() throws Exception {
+        createPool(4);
+        pool.setValidationQuery("SELECT 1");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> {
+                    int sum = 0;
+                    for (int j = 0; j < 100; j++) {
+                        Connection cx = pool.getConnection();
+                        try {
+                            Statement st = cx.createStatement();
+                            ResultSet rs = st.executeQuery("SELECT 1");
+                            rs.next();
+                            sum += rs.getInt(1);
+                            rs.close();
+                            st.close();
+                        } finally {
+                            cx.close();
+                        }
+                    }
+                    return sum;
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(100, result.get().intValue());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(800, pool.getBorrowCount());
+        assertTrue(pool.getCreatedCount() <= 4);
+        assertEquals(0, pool.getNumActive());
+        assertEquals(0, pool.getTimeoutCount());
+    }
+
+    @Test
+    public void testLeakDetection() throws Exception {
+        createPool(2);
+        pool.setLeakThreshold(20);
+        Connection cx = pool.getConnection();
+        try {
+            for (int i = 0; i < 50 && pool.getLeakCount() == 0; i++) {
+                Thread.sleep(20);
+            }
+            assertEquals(1, pool.getLeakCount());
+        } finally {
+            cx.close();
+        }
+        // returned connections are not reported
+        Thread.sleep(100);
+        assertEquals(1, pool.getLeakCount());
+    }
+
+    @Test
+    public void testJMX() throws Exception {
+        createPool(2);
+        pool.registerMBean();
+        ObjectName name = pool.getObjectName();
+        assertNotNull(name);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        Connection cx = pool.getConnection();
+        try {
+            assertEquals(1, server.getAttribute(name, "NumActive"));
+            assertEquals(1l, server.getAttribute(name, "BorrowCount"));
+        } finally {
+            cx.close();
+        }
+
+        pool.close();
+        assertFalse(server.isRegistered(name));
+        try {
+            pool.getConnection();
+            fail("The pool has been closed");
+        } catch (SQLException e) {
+            // fine
+        }
+    }
+}
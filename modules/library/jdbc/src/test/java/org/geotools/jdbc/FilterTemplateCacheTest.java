@@ -0,0 +1,118 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.function.Supplier;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.factory.CommonFactoryFinder;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+
+/**
+ * Checks filters of the same shape share their SQL and bind their own values
+ *
+ * @source $URL$
+ */
+public class FilterTemplateCacheTest {
+
+    FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
+
+    SimpleFeatureType type;
+
+    Supplier<PreparedFilterToSQL> encoders;
+
+    @Before
+    public void setUp() throws Exception {
+        type = DataUtilities.createType("roads", "geom:LineString,name:String,lanes:Integer");
+        encoders = () -> {
+            PreparedFilterToSQL toSQL = new PreparedFilterToSQL((PreparedStatementSQLDialect) null);
+            toSQL.setFeatureType(type);
+            return toSQL;
+        };
+    }
+
+    Filter filter(int lanes, String name) {
+        return ff.and(ff.greater(ff.property("lanes"), ff.literal(lanes)),
+                ff.equals(ff.property("name"), ff.literal(name)));
+    }
+
+    @Test
+    public void testShape() {
+        FilterShape s1 = FilterShape.of(filter(0, "a"));
+        FilterShape s2 = FilterShape.of(filter(5, "b"));
+        assertEquals(s1.getKey(), s2.getKey());
+        assertEquals(2, s1.getLiterals().size());
+        assertEquals(FilterShape.of(ff.bbox("geom", 0, 0, 10, 10, null)).getKey(),
+                FilterShape.of(ff.bbox("geom", 5, 5, 20, 20, null)).getKey());
+
+        // the structure and the value types matter
+        assertNotEquals(s1.getKey(), FilterShape.of(ff.equals(ff.property("name"),
+                ff.literal("a"))).getKey());
+        assertNotEquals(FilterShape.of(ff.equals(ff.property("lanes"), ff.literal(1))).getKey(),
+                FilterShape.of(ff.equals(ff.property("lanes"), ff.literal("1"))).getKey());
+        assertNotEquals(FilterShape.of(ff.like(ff.property("name"), "a%")).getKey(),
+                FilterShape.of(ff.like(ff.property("name"), "b%")).getKey());
+
+        // the filters whose encoding depends on the values are not supported
+        assertNull(FilterShape.of(ff.id(ff.featureId("roads.1"))));
+        assertNull(FilterShape.of(ff.dwithin(ff.property("geom"), ff.literal(null), 10, "m")));
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        FilterTemplateCache cache = new FilterTemplateCache(10);
+        StringBuffer sql1 = new StringBuffer();
+        PreparedFilterToSQL toSQL1 = cache.encode("roads", filter(0, "a"), encoders, sql1);
+        assertEquals(1, cache.size());
+
+        StringBuffer sql2 = new StringBuffer();
+        PreparedFilterToSQL toSQL2 = cache.encode("roads", filter(5, "b"), encoders, sql2);
+        assertEquals(1, cache.size());
+        assertEquals(sql1.toString(), sql2.toString());
+
+        // the values are the ones a full encoding would have found
+        PreparedFilterToSQL expected = encoders.get();
+        expected.encodeToString(filter(5, "b"));
+        assertEquals(expected.getLiteralValues(), toSQL2.getLiteralValues());
+        assertEquals(expected.getLiteralTypes(), toSQL2.getLiteralTypes());
+        assertNotEquals(toSQL1.getLiteralValues(), toSQL2.getLiteralValues());
+
+        // a different type does not share the template
+        cache.encode("rivers", filter(5, "b"), encoders, new StringBuffer());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testValueDependentEncoding() throws Exception {
+        FilterTemplateCache cache = new FilterTemplateCache(10);
+        Supplier<PreparedFilterToSQL> unsafe = () -> {
+            PreparedFilterToSQL toSQL = encoders.get();
+            toSQL.setTemplateSafe(false);
+            return toSQL;
+        };
+        cache.encode("roads", filter(0, "a"), unsafe, new StringBuffer());
+        assertEquals(0, cache.size());
+    }
+}
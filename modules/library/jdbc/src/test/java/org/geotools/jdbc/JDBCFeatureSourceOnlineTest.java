@@ -17,11 +17,16 @@
 package org.geotools.jdbc;
 
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import org.geotools.data.Query;
 import org.geotools.data.DataUtilities;
 import org.geotools.data.DefaultTransaction;
+import org.geotools.data.FeatureReader;
+import org.geotools.data.PageToken;
 import org.geotools.data.QueryCapabilities;
 import org.geotools.data.Transaction;
 import org.geotools.data.simple.SimpleFeatureCollection;
@@ -32,6 +37,8 @@ import org.geotools.factory.Hints;
 import org.geotools.geometry.jts.LiteCoordinateSequenceFactory;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
+import org.geotools.referencing.operation.transform.AffineTransform2D;
+import org.geotools.renderer.ScreenMap;
 import org.opengis.feature.Feature;
 import org.opengis.feature.FeatureVisitor;
 import org.opengis.feature.simple.SimpleFeature;
@@ -417,6 +424,113 @@ public abstract class JDBCFeatureSourceOnlineTest extends JDBCTestSupport {
         }
     }
     
+    public void testKeysetPaging() throws Exception {
+        PageToken token = new PageToken();
+        Query q = new Query(featureSource.getSchema().getTypeName());
+        q.setSortBy(new SortBy[] {SortBy.NATURAL_ORDER});
+        q.getHints().put(Hints.PAGE_TOKEN, token);
+        q.setMaxFeatures(1);
+
+        q.setStartIndex(0);
+        SimpleFeature first = DataUtilities.first(featureSource.getFeatures(q));
+        assertEquals(0, ((Number) first.getAttribute(aname("intProperty"))).intValue());
+
+        // remove the feature read, an offset would now skip the second one,
+        // seeking after the last key read does not
+        ((JDBCFeatureStore) featureSource).removeFeatures(dataStore.getFilterFactory().id(
+                Collections.singleton(dataStore.getFilterFactory().featureId(first.getID()))));
+        q.setStartIndex(1);
+        SimpleFeature second = DataUtilities.first(featureSource.getFeatures(q));
+        assertEquals(1, ((Number) second.getAttribute(aname("intProperty"))).intValue());
+
+        q.setStartIndex(2);
+        SimpleFeature third = DataUtilities.first(featureSource.getFeatures(q));
+        assertEquals(2, ((Number) third.getAttribute(aname("intProperty"))).intValue());
+
+        // a page not following the last one read uses the offset
+        q.setStartIndex(0);
+        assertEquals(1, ((Number) DataUtilities.first(featureSource.getFeatures(q))
+                .getAttribute(aname("intProperty"))).intValue());
+    }
+
+    public void testPipelinedReader() throws Exception {
+        dataStore.setPipelineBufferSize(2);
+        Query q = new Query(featureSource.getSchema().getTypeName());
+        q.setSortBy(new SortBy[] {dataStore.getFilterFactory().sort(aname("intProperty"),
+                SortOrder.ASCENDING)});
+        try(FeatureReader<SimpleFeatureType, SimpleFeature> reader =
+                featureSource.getReader(q)) {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(reader.hasNext());
+                assertEquals(i, ((Number) reader.next().getAttribute(aname("intProperty")))
+                        .intValue());
+            }
+            assertFalse(reader.hasNext());
+        }
+
+        // closing before reading all the features
+        try(FeatureReader<SimpleFeatureType, SimpleFeature> reader =
+                featureSource.getReader(q)) {
+            assertTrue(reader.hasNext());
+            reader.next();
+        }
+    }
+
+    public void testQueryMetrics() throws Exception {
+        List<QueryMetrics> collected = new ArrayList<QueryMetrics>();
+        QueryStatistics statistics = new QueryStatistics();
+        dataStore.getQueryMetricsListeners().add((store, metrics) -> collected.add(metrics));
+        dataStore.getQueryMetricsListeners().add(statistics);
+        try {
+            Query q = new Query(featureSource.getSchema().getTypeName());
+            q.setFilter(dataStore.getFilterFactory().greater(
+                    dataStore.getFilterFactory().property(aname("intProperty")),
+                    dataStore.getFilterFactory().literal(0)));
+            try(FeatureReader<SimpleFeatureType, SimpleFeature> reader =
+                    featureSource.getReader(q)) {
+                while (reader.hasNext()) {
+                    reader.next();
+                }
+            }
+            assertEquals(1, collected.size());
+            QueryMetrics metrics = collected.get(0);
+            assertEquals(tname("ft1"), metrics.getTypeName());
+            assertEquals(2, metrics.getRowCount());
+            assertNotNull(metrics.getSQL());
+            assertNotNull(metrics.getSQLHash());
+            assertNull(metrics.getError());
+            assertTrue(metrics.getTime(QueryMetrics.Phase.EXECUTE) > 0);
+            assertTrue(metrics.getTime(QueryMetrics.Phase.FETCH)
+                    >= metrics.getTime(QueryMetrics.Phase.FIRST_ROW));
+
+            assertEquals(1, statistics.getQueryCount());
+            assertEquals(2, statistics.getRowCount());
+        } finally {
+            dataStore.getQueryMetricsListeners().clear();
+        }
+    }
+
+    public void testScreenMap() throws Exception {
+        List<QueryMetrics> collected = new ArrayList<QueryMetrics>();
+        dataStore.getQueryMetricsListeners().add((store, metrics) -> collected.add(metrics));
+        try {
+            // ten units per pixel, the three points fall in the same pixel
+            ScreenMap screenMap = new ScreenMap(0, 0, 10, 10);
+            screenMap.setTransform(new AffineTransform2D(0.1, 0, 0, -0.1, 0.5, 5.5));
+            screenMap.setSpans(10, 10);
+            Query q = new Query(featureSource.getSchema().getTypeName());
+            q.setHints(new Hints(Hints.SCREENMAP, screenMap));
+            assertEquals(1, DataUtilities.list(featureSource.getFeatures(q)).size());
+
+            // the database already skipped the others if it supports the screen map
+            if (featureSource.getSupportedHints().contains(Hints.SCREENMAP)) {
+                assertEquals(1, collected.get(0).getRowCount());
+            }
+        } finally {
+            dataStore.getQueryMetricsListeners().clear();
+        }
+    }
+
     public void testFeatureIteratorNextContract() throws Exception {
         try(SimpleFeatureIterator features = featureSource.getFeatures().features()) {
             // 1) non empty iterator, calling next() should just return the feature
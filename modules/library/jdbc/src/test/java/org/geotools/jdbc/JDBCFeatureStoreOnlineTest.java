@@ -19,6 +19,7 @@ package org.geotools.jdbc;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
@@ -34,15 +35,18 @@ import org.geotools.data.DataUtilities;
 import org.geotools.data.DefaultTransaction;
 import org.geotools.data.FeatureEvent.Type;
 import org.geotools.data.FeatureReader;
+import org.geotools.data.Query;
 import org.geotools.data.Transaction;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.store.ContentFeatureCollection;
+import org.geotools.data.store.ContentStatistics;
 import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.factory.Hints;
 import org.geotools.feature.AttributeTypeBuilder;
 import org.geotools.feature.DefaultFeatureCollection;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
@@ -440,4 +444,151 @@ public abstract class JDBCFeatureStoreOnlineTest extends JDBCTestSupport {
             //  fine
         }
     }
+
+    public void testQueryCacheInvalidation() throws Exception {
+        dataStore.setQueryCache(1024 * 1024, 0);
+        try {
+            FilterFactory ff = dataStore.getFilterFactory();
+            Filter filter = ff.greaterOrEqual(ff.property(aname("intProperty")), ff.literal(0));
+            SimpleFeatureCollection features = featureStore.getFeatures(filter);
+            assertEquals(3, DataUtilities.list(features).size());
+            List<SimpleFeature> cached = DataUtilities.list(features);
+            assertEquals(3, cached.size());
+            assertEquals(1, dataStore.queryCache.getHits());
+
+            // auto commit writes invalidate right away
+            Filter one = ff.equals(ff.property(aname("intProperty")), ff.literal(1));
+            featureStore.removeFeatures(one);
+            assertEquals(2, DataUtilities.list(features).size());
+
+            featureStore.modifyFeatures(aname("stringProperty"), "foo", Filter.INCLUDE);
+            for (SimpleFeature feature : DataUtilities.list(features)) {
+                assertEquals("foo", feature.getAttribute(aname("stringProperty")));
+            }
+
+            // transaction writes on commit
+            try (Transaction tx = new DefaultTransaction()) {
+                JDBCFeatureStore txStore = (JDBCFeatureStore) dataStore
+                        .getFeatureSource(tname("ft1"), tx);
+                txStore.modifyFeatures(aname("stringProperty"), "bar", Filter.INCLUDE);
+                // the auto commit reads do not see the change until committed
+                for (SimpleFeature feature : DataUtilities.list(features)) {
+                    assertEquals("foo", feature.getAttribute(aname("stringProperty")));
+                }
+                tx.commit();
+            }
+            for (SimpleFeature feature : DataUtilities.list(features)) {
+                assertEquals("bar", feature.getAttribute(aname("stringProperty")));
+            }
+        } finally {
+            dataStore.setQueryCache(0, 0);
+        }
+    }
+
+    public void testParallelAddFeatures() throws IOException {
+        SimpleFeatureBuilder b = new SimpleFeatureBuilder(featureStore.getSchema());
+        DefaultFeatureCollection collection = new DefaultFeatureCollection(null,
+                featureStore.getSchema());
+        for (int i = 3; i < 53; i++) {
+            b.set(aname("intProperty"), new Integer(i));
+            b.set(aname("geometry"), new GeometryFactory().createPoint(new Coordinate(i, i)));
+            collection.add(b.buildFeature(null));
+        }
+
+        List<String> originalIds = new ArrayList<String>();
+        for (SimpleFeature feature : DataUtilities.list(collection)) {
+            originalIds.add(feature.getID());
+        }
+
+        FeatureEventWatcher watcher = new FeatureEventWatcher();
+        featureStore.addFeatureListener(watcher);
+        dataStore.setParallelInsertPartitions(3);
+        dataStore.setParallelInsertCommitInterval(10);
+        dataStore.setBatchInsertSize(4);
+        List<FeatureId> fids;
+        try {
+            fids = featureStore.addFeatures((SimpleFeatureCollection) collection);
+        } finally {
+            dataStore.setParallelInsertPartitions(1);
+            dataStore.setBatchInsertSize(1);
+        }
+        assertEquals(50, fids.size());
+        assertEquals(watcher.bounds, collection.getBounds());
+        assertEquals(53, featureStore.getCount(Query.ALL));
+
+        // the features added are left alone
+        List<SimpleFeature> added = DataUtilities.list(collection);
+        for (int i = 0; i < added.size(); i++) {
+            assertEquals(originalIds.get(i), added.get(i).getID());
+            assertFalse(added.get(i).getUserData().containsKey("fid"));
+        }
+
+        // the ids are reported in the order of the features added
+        FilterFactory ff = dataStore.getFilterFactory();
+        for (int i = 0; i < fids.size(); i++) {
+            Id filter = ff.id(Collections.singleton(fids.get(i)));
+            List<SimpleFeature> features = DataUtilities.list(featureStore.getFeatures(filter));
+            assertEquals(1, features.size());
+            assertEquals(i + 3, ((Number) features.get(0).getAttribute(aname("intProperty")))
+                    .intValue());
+        }
+    }
+
+    public void testParallelInserterReport() throws IOException {
+        SimpleFeatureType schema = featureStore.getSchema();
+        SimpleFeatureBuilder b = new SimpleFeatureBuilder(schema);
+        DefaultFeatureCollection collection = new DefaultFeatureCollection(null, schema);
+        for (int i = 3; i < 23; i++) {
+            b.set(aname("intProperty"), new Integer(i));
+            b.set(aname("geometry"), new GeometryFactory().createPoint(new Coordinate(i, i)));
+            collection.add(b.buildFeature(null));
+        }
+
+        ParallelInserter inserter = new ParallelInserter(dataStore);
+        inserter.setPartitions(2);
+        inserter.setBatchSize(5);
+        inserter.setCommitInterval(0);
+        ParallelInsertReport report = inserter.insert(schema.getTypeName(), collection);
+        assertFalse(report.hasFailures());
+        assertEquals(20, report.getInsertedCount());
+        assertEquals(2, report.getPartitions().size());
+        int batches = 0;
+        for (ParallelInsertReport.Partition partition : report.getPartitions()) {
+            batches += partition.getBatchCount();
+            // committing at the end only
+            assertTrue(partition.getCommitCount() <= 1);
+        }
+        assertEquals(4, batches);
+        assertEquals(23, featureStore.getCount(Query.ALL));
+    }
+
+    public void testParallelInserterStatistics() throws IOException {
+        SimpleFeatureType schema = featureStore.getSchema();
+        SimpleFeatureBuilder b = new SimpleFeatureBuilder(schema);
+        DefaultFeatureCollection collection = new DefaultFeatureCollection(null, schema);
+        for (int i = 3; i < 23; i++) {
+            b.set(aname("intProperty"), new Integer(i));
+            b.set(aname("geometry"), new GeometryFactory().createPoint(new Coordinate(i, i)));
+            collection.add(b.buildFeature(null));
+        }
+
+        dataStore.setStatistics(new ContentStatistics(dataStore));
+        try {
+            // cache the count and bounds
+            assertEquals(3, featureStore.getCount(Query.ALL));
+            ReferencedEnvelope bounds = featureStore.getBounds();
+            assertFalse(bounds.contains(22, 22));
+
+            // the inserter does not issue feature events, the statistics are still dropped
+            ParallelInserter inserter = new ParallelInserter(dataStore);
+            inserter.setPartitions(2);
+            inserter.setBatchSize(5);
+            ParallelInsertReport report = inserter.insert(schema.getTypeName(), collection);
+            assertFalse(report.hasFailures());
+            assertEquals(23, featureStore.getCount(Query.ALL));
+            assertTrue(featureStore.getBounds().contains(22, 22));
+        } finally {
+            dataStore.setStatistics(null);
+        }
+    }
 }
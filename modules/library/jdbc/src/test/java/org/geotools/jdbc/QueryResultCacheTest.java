@@ -0,0 +1,321 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.geotools.data.CollectionFeatureReader;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.FeatureReader;
+import org.geotools.data.Query;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.factory.Hints;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.LiteCoordinateSequenceFactory;
+import org.geotools.renderer.ScreenMap;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequenceFactory;
+
+/**
+ * Checks the query result cache keys, encoding, eviction and invalidation
+ *
+ * @source $URL$
+ */
+public class QueryResultCacheTest {
+
+    static final FilterFactory2 FF = CommonFactoryFinder.getFilterFactory2(null);
+
+    static final GeometryFactory GF = new GeometryFactory(
+            PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
+
+    SimpleFeatureType featureType() throws Exception {
+        return DataUtilities.createType("roads",
+                "geom:LineString:srid=4326,name:String,lanes:Integer,length:Double,"
+                        + "cost:java.math.BigDecimal,opened:java.sql.Timestamp,tags:java.util.List");
+    }
+
+    List<SimpleFeature> features(SimpleFeatureType type, int count) {
+        SimpleFeatureBuilder fb = new SimpleFeatureBuilder(type);
+        List<SimpleFeature> features = new ArrayList<SimpleFeature>();
+        for (int i = 0; i < count; i++) {
+            fb.add(GF.createLineString(new Coordinate[] { new Coordinate(i, 0, 1),
+                    new Coordinate(i + 1, 1, 2) }));
+            fb.add(i % 2 == 0 ? "road " + i : null);
+            fb.add(i);
+            fb.add(i * 1.5);
+            fb.add(new BigDecimal("12.345").add(BigDecimal.valueOf(i)));
+            Timestamp timestamp = new Timestamp(1500000000000L + i);
+            timestamp.setNanos(123456789);
+            fb.add(timestamp);
+            fb.add(new ArrayList<String>(Arrays.asList("a", "b")));
+            features.add(fb.buildFeature("roads." + i));
+        }
+        return features;
+    }
+
+    FeatureReader<SimpleFeatureType, SimpleFeature> reader(SimpleFeatureType type,
+            List<SimpleFeature> features) {
+        return new CollectionFeatureReader(features, type);
+    }
+
+    List<SimpleFeature> readAll(FeatureReader<SimpleFeatureType, SimpleFeature> reader)
+            throws Exception {
+        List<SimpleFeature> result = new ArrayList<SimpleFeature>();
+        try {
+            while (reader.hasNext()) {
+                result.add(reader.next());
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+
+    Query query(int lanes) {
+        Query query = new Query("roads", FF.and(FF.greater(FF.property("lanes"),
+                FF.literal(lanes)), FF.bbox("geom", 0, 0, 10, 10, "EPSG:4326")));
+        query.setPropertyNames(new String[] { "geom", "name" });
+        query.setSortBy(new SortBy[] { FF.sort("name", SortOrder.ASCENDING) });
+        query.setMaxFeatures(100);
+        return query;
+    }
+
+    @Test
+    public void testKey() {
+        QueryResultCache cache = new QueryResultCache(1024, 0);
+        assertEquals(cache.key("roads", query(1)), cache.key("roads", query(1)));
+        assertFalse(cache.key("roads", query(1)).equals(cache.key("roads", query(2))));
+        assertFalse(cache.key("roads", query(1)).equals(cache.key("rivers", query(1))));
+
+        Query paged = query(1);
+        paged.setStartIndex(10);
+        assertFalse(cache.key("roads", query(1)).equals(cache.key("roads", paged)));
+
+        // hints created anew for each query are compared by value
+        Query q1 = query(1);
+        q1.getHints().put(Hints.JTS_COORDINATE_SEQUENCE_FACTORY,
+                new LiteCoordinateSequenceFactory());
+        Query q2 = query(1);
+        q2.getHints().put(Hints.JTS_COORDINATE_SEQUENCE_FACTORY,
+                new LiteCoordinateSequenceFactory());
+        assertEquals(cache.key("roads", q1), cache.key("roads", q2));
+        assertFalse(cache.key("roads", q1).equals(cache.key("roads", query(1))));
+
+        // queries updating state in the reader cannot be cached
+        Query screenMap = query(1);
+        screenMap.getHints().put(Hints.SCREENMAP, new ScreenMap(0, 0, 100, 100));
+        assertNull(cache.key("roads", screenMap));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        SimpleFeatureType type = featureType();
+        List<SimpleFeature> features = features(type, 10);
+        QueryResultCache cache = new QueryResultCache(1024 * 1024, 0);
+        QueryResultCache.Key key = cache.key("roads", query(1));
+        assertNull(cache.getReader(key));
+
+        List<SimpleFeature> read = readAll(
+                cache.caching(key, cache.generation("roads"), reader(type, features)));
+        assertEquals(features, read);
+        assertEquals(1, cache.size());
+
+        FeatureReader<SimpleFeatureType, SimpleFeature> cached = cache.getReader(key);
+        assertNotNull(cached);
+        assertSame(type, cached.getFeatureType());
+        List<SimpleFeature> decoded = readAll(cached);
+        assertEquals(features.size(), decoded.size());
+        for (int i = 0; i < features.size(); i++) {
+            SimpleFeature expected = features.get(i);
+            SimpleFeature actual = decoded.get(i);
+            assertEquals(expected.getID(), actual.getID());
+            Geometry geometry = (Geometry) actual.getDefaultGeometry();
+            assertTrue(((Geometry) expected.getDefaultGeometry()).equalsExact(geometry));
+            // the z and the factory are preserved
+            assertEquals(2, geometry.getCoordinates()[1].z, 0d);
+            assertSame(GF, geometry.getFactory());
+            for (int j = 1; j < type.getAttributeCount(); j++) {
+                assertEquals(expected.getAttribute(j), actual.getAttribute(j));
+            }
+        }
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testGeometryCRS() throws Exception {
+        SimpleFeatureType type = DataUtilities.createType("points", "geom:Point:srid=4326");
+        SimpleFeature feature = SimpleFeatureBuilder.build(type,
+                new Object[] { GF.createPoint(new Coordinate(1, 2)) }, "points.1");
+        QueryResultCache cache = new QueryResultCache(1024 * 1024, 0);
+        QueryResultCache.Key key = cache.key("points", new Query("points"));
+        readAll(cache.caching(key, cache.generation("points"),
+                reader(type, Collections.singletonList(feature))));
+        SimpleFeature decoded = readAll(cache.getReader(key)).get(0);
+        Geometry point = (Geometry) decoded.getDefaultGeometry();
+        assertEquals(type.getCoordinateReferenceSystem(), point.getUserData());
+        assertTrue(Double.isNaN(point.getCoordinate().z));
+    }
+
+    @Test
+    public void testEmptyPointNotCached() throws Exception {
+        SimpleFeatureType type = DataUtilities.createType("points", "geom:Point:srid=4326");
+        List<SimpleFeature> features = new ArrayList<SimpleFeature>();
+        features.add(SimpleFeatureBuilder.build(type,
+                new Object[] { GF.createPoint(new Coordinate(1, 2)) }, "points.1"));
+        features.add(SimpleFeatureBuilder.build(type,
+                new Object[] { GF.createPoint((Coordinate) null) }, "points.2"));
+        QueryResultCache cache = new QueryResultCache(1024 * 1024, 0);
+        QueryResultCache.Key key = cache.key("points", new Query("points"));
+        // the read succeeds, the result is just not cached
+        assertEquals(features, readAll(cache.caching(key, cache.generation("points"),
+                reader(type, features))));
+        assertEquals(0, cache.size());
+        assertNull(cache.getReader(key));
+    }
+
+    @Test
+    public void testPartialReadNotCached() throws Exception {
+        SimpleFeatureType type = featureType();
+        QueryResultCache cache = new QueryResultCache(1024 * 1024, 0);
+        QueryResultCache.Key key = cache.key("roads", query(1));
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader = cache.caching(key,
+                cache.generation("roads"), reader(type, features(type, 10)));
+        reader.next();
+        reader.close();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        SimpleFeatureType type = featureType();
+        QueryResultCache cache = new QueryResultCache(1024 * 1024, 0);
+        QueryResultCache.Key roads = cache.key("roads", query(1));
+        QueryResultCache.Key rivers = cache.key("rivers", query(1));
+        readAll(cache.caching(roads, cache.generation("roads"), reader(type, features(type, 5))));
+        readAll(cache.caching(rivers, cache.generation("rivers"),
+                reader(type, features(type, 5))));
+        assertEquals(2, cache.size());
+
+        cache.invalidate(Collections.singleton("roads"));
+        assertNull(cache.getReader(roads));
+        assertNotNull(cache.getReader(rivers));
+
+        // a query started before a write does not get cached
+        long generation = cache.generation("roads");
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader = cache.caching(roads,
+                generation, reader(type, features(type, 5)));
+        cache.invalidate(Collections.singleton("roads"));
+        readAll(reader);
+        assertNull(cache.getReader(roads));
+    }
+
+    @Test
+    public void testByteBudget() throws Exception {
+        SimpleFeatureType type = featureType();
+        List<SimpleFeature> features = features(type, 10);
+        // find out how large a result is
+        QueryResultCache probe = new QueryResultCache(Long.MAX_VALUE, 0);
+        readAll(probe.caching(probe.key("roads", query(0)), 0, reader(type, features)));
+        long size = probe.getBytes();
+
+        // room for four results
+        QueryResultCache cache = new QueryResultCache(size * 4, 0);
+        for (int i = 0; i < 6; i++) {
+            QueryResultCache.Key key = cache.key("roads", query(i));
+            readAll(cache.caching(key, cache.generation("roads"), reader(type, features)));
+        }
+        assertEquals(4, cache.size());
+        assertTrue(cache.getBytes() <= size * 4);
+        // the least recently used are gone
+        assertNull(cache.getReader(cache.key("roads", query(0))));
+        assertNull(cache.getReader(cache.key("roads", query(1))));
+        assertNotNull(cache.getReader(cache.key("roads", query(5))));
+
+        // results larger than a quarter of the budget are not kept
+        QueryResultCache small = new QueryResultCache(size * 2, 0);
+        QueryResultCache.Key key = small.key("roads", query(1));
+        readAll(small.caching(key, small.generation("roads"), reader(type, features)));
+        assertEquals(0, small.size());
+    }
+
+    @Test
+    public void testTimeToLive() throws Exception {
+        SimpleFeatureType type = featureType();
+        QueryResultCache cache = new QueryResultCache(1024 * 1024, 50);
+        QueryResultCache.Key key = cache.key("roads", query(1));
+        readAll(cache.caching(key, cache.generation("roads"), reader(type, features(type, 3))));
+        assertNotNull(cache.getReader(key));
+        Thread.sleep(100);
+        assertNull(cache.getReader(key));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void testValues() throws Exception {
+        Object[] values = new Object[] { null, true, (byte) 1, (short) 2, 3, 4L, 5f, 6d, "seven",
+                new java.util.Date(8), new java.sql.Date(9), new java.sql.Time(10),
+                new BigDecimal("11.5"), new BigInteger("12"), new byte[] { 13 },
+                UUID.randomUUID() };
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (Object value : values) {
+            QueryResultCache.writeValue(out, value);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (Object value : values) {
+            Object read = QueryResultCache.readValue(in, null);
+            if (value instanceof byte[]) {
+                assertArrayEquals((byte[]) value, (byte[]) read);
+            } else {
+                assertEquals(value, read);
+                if (value != null) {
+                    assertSame(value.getClass(), read.getClass());
+                }
+            }
+        }
+    }
+}
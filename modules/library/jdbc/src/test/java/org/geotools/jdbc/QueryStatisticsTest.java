@@ -0,0 +1,119 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.geotools.jdbc.QueryMetrics.Phase;
+import org.junit.Test;
+
+/**
+ * Checks the query metrics are aggregated in histograms
+ *
+ * @source $URL$
+ */
+public class QueryStatisticsTest {
+
+    QueryMetrics metrics(long executeMillis, long fetchMillis, int rows) {
+        QueryMetrics metrics = new QueryMetrics("roads");
+        metrics.setSQL("SELECT * FROM roads WHERE lanes > ?");
+        metrics.addTime(Phase.EXECUTE, TimeUnit.MILLISECONDS.toNanos(executeMillis));
+        metrics.addTime(Phase.FETCH, TimeUnit.MILLISECONDS.toNanos(fetchMillis));
+        metrics.addTime(Phase.FIRST_ROW, TimeUnit.MILLISECONDS.toNanos(fetchMillis));
+        for (int i = 0; i < rows; i++) {
+            metrics.addRow();
+        }
+        return metrics;
+    }
+
+    @Test
+    public void testMetrics() {
+        QueryMetrics metrics = metrics(10, 5, 3);
+        // the first row is part of the fetch time
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(15), metrics.getTotalTime());
+        assertEquals(metrics.getSQLHash(), metrics(1, 1, 1).getSQLHash());
+        QueryMetrics other = metrics(1, 1, 1);
+        other.setSQL("SELECT * FROM rivers");
+        assertNotEquals(metrics.getSQLHash(), other.getSQLHash());
+    }
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.add(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50.5, histogram.getAverage(), 1e-6);
+        assertEquals(100, histogram.getMax(), 1e-6);
+        // the percentiles are precise within a factor of two
+        double median = histogram.getPercentile(50);
+        assertTrue(median >= 50 && median <= 100);
+        assertEquals(100, histogram.getPercentile(100), 1e-6);
+        histogram.reset();
+        assertEquals(0, histogram.getPercentile(50), 0);
+    }
+
+    @Test
+    public void testStatistics() throws Exception {
+        QueryStatistics statistics = new QueryStatistics();
+        statistics.onQuery(null, metrics(10, 5, 3));
+        statistics.onQuery(null, metrics(30, 15, 7));
+        QueryMetrics failed = metrics(1, 0, 0);
+        failed.setError(new Exception("failed"));
+        statistics.onQuery(null, failed);
+
+        assertEquals(3, statistics.getQueryCount());
+        assertEquals(10, statistics.getRowCount());
+        assertEquals(1, statistics.getErrorCount());
+        assertEquals(45, statistics.getMaxTime(), 1e-6);
+        assertEquals(41 / 3d, statistics.getAverageTime("execute"), 1e-6);
+        assertEquals(30, statistics.getMaxTime("EXECUTE"), 1e-6);
+        assertEquals(0, statistics.getMaxTime("decode"), 1e-6);
+
+        statistics.reset();
+        assertEquals(0, statistics.getQueryCount());
+    }
+
+    @Test
+    public void testJMX() throws Exception {
+        QueryStatistics statistics = new QueryStatistics();
+        statistics.registerMBean("h2/test");
+        ObjectName name = statistics.getObjectName();
+        assertNotNull(name);
+        try {
+            statistics.onQuery(null, metrics(10, 5, 3));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(1l, server.getAttribute(name, "QueryCount"));
+            assertEquals(10d, (Double) server.invoke(name, "getMaxTime",
+                    new Object[] { "execute" }, new String[] { String.class.getName() }), 1e-6);
+        } finally {
+            statistics.onDispose(null);
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+}
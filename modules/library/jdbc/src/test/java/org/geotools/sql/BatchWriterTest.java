@@ -0,0 +1,147 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the batch writer commits all the rows written, and fails fast once the writer thread
+ * stopped or the writer is closed
+ *
+ * @source $URL$
+ */
+public class BatchWriterTest {
+
+    static class Failure extends Error {
+        private static final long serialVersionUID = 1L;
+    }
+
+    static class IntWriter extends BatchWriter<Integer> {
+
+        int failAt = -1;
+
+        IntWriter(DataSource dataSource) {
+            super(dataSource, "INSERT INTO numbers VALUES (?)", 5);
+        }
+
+        @Override
+        protected void bind(PreparedStatement ps, Integer item) throws SQLException {
+            if (item == failAt) {
+                throw new Failure();
+            }
+            ps.setInt(1, item);
+        }
+    }
+
+    BasicDataSource dataSource;
+
+    @Before
+    public void setUp() throws SQLException {
+        dataSource = new BasicDataSource();
+        dataSource.setDriverClassName("org.h2.Driver");
+        dataSource.setUrl("jdbc:h2:mem:batchwriter");
+        Connection cx = dataSource.getConnection();
+        try {
+            BatchWriter.execute(cx, "CREATE TABLE numbers (n INT)");
+        } finally {
+            cx.close();
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        Connection cx = dataSource.getConnection();
+        try {
+            BatchWriter.execute(cx, "DROP TABLE numbers");
+        } finally {
+            cx.close();
+        }
+        dataSource.close();
+    }
+
+    String count() throws SQLException {
+        Connection cx = dataSource.getConnection();
+        try {
+            return BatchWriter.queryValue(cx, "SELECT COUNT(*) FROM numbers");
+        } finally {
+            cx.close();
+        }
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        IntWriter writer = new IntWriter(dataSource);
+        writer.setBatchSize(10);
+        writer.setCommitSize(25);
+        for (int i = 0; i < 123; i++) {
+            writer.write(i);
+        }
+        writer.close();
+        assertEquals(123, writer.getCount());
+        assertEquals("123", count());
+    }
+
+    @Test(timeout = 10000)
+    public void testErrorStopsWrites() throws Exception {
+        IntWriter writer = new IntWriter(dataSource);
+        writer.failAt = 10;
+        try {
+            // the queue is much smaller, the writes must not wait forever for room
+            for (int i = 0; i < 1000; i++) {
+                writer.write(i);
+            }
+            fail("The writes should have failed");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof Failure);
+        }
+        try {
+            writer.close();
+            fail("The close should have reported the failure");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof Failure);
+        }
+        assertEquals("0", count());
+    }
+
+    @Test
+    public void testWriteAfterClose() throws Exception {
+        IntWriter writer = new IntWriter(dataSource);
+        writer.write(1);
+        writer.close();
+        try {
+            writer.write(2);
+            fail("Writes after close should be rejected");
+        } catch (IOException e) {
+            // fine
+        }
+        assertEquals("1", count());
+    }
+}
@@ -117,6 +117,27 @@ public class ScreenMap {
         this.spanY = spanY;
     }
 
+    /**
+     * Returns the transform from the data to the screen coordinates, or null if not set yet
+     */
+    public MathTransform getTransform() {
+        return mt;
+    }
+
+    /**
+     * Returns the width of a pixel in data units
+     */
+    public double getSpanX() {
+        return spanX;
+    }
+
+    /**
+     * Returns the height of a pixel in data units
+     */
+    public double getSpanY() {
+        return spanY;
+    }
+
     /**
      * Checks if the geometry should be skipped. If the test returns true it means the geometry
      * sits in a pixel that has already been used
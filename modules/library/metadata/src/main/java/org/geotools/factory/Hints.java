@@ -709,6 +709,16 @@ public class Hints extends RenderingHints {
     public static final ClassKey VIRTUAL_TABLE_PARAMETERS = new ClassKey(
             "java.util.Map");
 
+    /**
+     * Carries the position reached by the previous page of a paged query, letting the data
+     * stores supporting it seek to the next page instead of skipping the previous ones.
+     * The value of the hint must be a {@link org.geotools.data.PageToken}
+     *
+     * @since 18
+     */
+    public static final ClassKey PAGE_TOKEN = new ClassKey(
+            "org.geotools.data.PageToken");
+
 
     ////////////////////////////////////////////////////////////////////////
     ////////                                                        ////////
@@ -0,0 +1,838 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.lite;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsDevice;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.geometry.jts.LiteShape2;
+import org.geotools.renderer.style.MarkStyle2D;
+import org.geotools.renderer.style.PolygonStyle2D;
+import org.geotools.renderer.style.Style2D;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.MultiPolygon;
+
+/**
+ * Paints the simplest and most common styles (solid color marks, solid color polygon fills)
+ * directly into the {@link DataBufferInt} of a premultiplied ARGB canvas, bypassing the
+ * per shape Java2D setup costs that dominate the rendering of dense point and polygon layers.
+ * <p>
+ * Marks are painted by stamping a pre-rendered image of the mark, computed once per style and
+ * subpixel position with the same rendering hints as the target graphics, so the output matches
+ * the Java2D one within a fraction of a pixel. Polygons are filled with a scanline algorithm
+ * following the Java2D filling rules for non antialiased, non normalized painting, all other
+ * polygons are left to Java2D.
+ * <p>
+ * Each target {@link Graphics2D} gets its own canvas, that is composited onto it when
+ * {@link #flush(Graphics2D)} or {@link #flush()} are called. Callers must flush before painting on
+ * the target graphics in any other way, to preserve the painting order. Instances are not thread
+ * safe, they are meant to be used by the painting thread only.
+ */
+final class DirectRasterPainter {
+
+    static final Logger LOGGER = org.geotools.util.logging.Logging
+            .getLogger(DirectRasterPainter.class);
+
+    /**
+     * The number of subpixel positions, along each axis, a mark stamp is rendered at
+     */
+    static final int SUBPIXELS = 8;
+
+    /**
+     * Marks larger than this, in pixels, are left to Java2D
+     */
+    static final int MAX_STAMP_SIZE = 64;
+
+    /**
+     * Max number of mark styles whose stamps are kept around
+     */
+    static final int MAX_CACHED_MARKS = 256;
+
+    private static final AffineTransform IDENTITY_TRANSFORM = new AffineTransform();
+
+    private final Map<Graphics2D, Canvas> canvases = new IdentityHashMap<Graphics2D, Canvas>();
+
+    private final Map<List<Object>, MarkStamps> marks = new LinkedHashMap<List<Object>, MarkStamps>(
+            16, 0.75f, true) {
+        private static final long serialVersionUID = -2281497577396453402L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, MarkStamps> eldest) {
+            return size() > MAX_CACHED_MARKS;
+        }
+    };
+
+    /**
+     * Paints the shape with the given style, if the style and the graphics are simple enough.
+     * Returns false if nothing was painted, in that case the caller should fall back on Java2D
+     * painting.
+     *
+     * @param graphics
+     * @param shape
+     * @param style
+     * @param scale
+     * @return
+     */
+    public boolean paint(Graphics2D graphics, LiteShape2 shape, Style2D style, double scale) {
+        if (!style.isScaleInRange(scale)) {
+            return false;
+        }
+
+        if (style instanceof MarkStyle2D) {
+            MarkStyle2D ms2d = (MarkStyle2D) style;
+            if (!isSimpleMark(ms2d)) {
+                return false;
+            }
+            MarkStamps stamps = getMarkStamps(graphics, ms2d);
+            if (stamps == null) {
+                return false;
+            }
+            Canvas canvas = getCanvas(graphics);
+            if (canvas == null) {
+                return false;
+            }
+            paintMarks(canvas, shape, stamps);
+            return true;
+        } else if (style.getClass() == PolygonStyle2D.class) {
+            PolygonStyle2D ps2d = (PolygonStyle2D) style;
+            if (!isSimpleFill(ps2d) || !isPixelExactFill(graphics)) {
+                return false;
+            }
+            Canvas canvas = getCanvas(graphics);
+            if (canvas == null) {
+                return false;
+            }
+            int color = premultiply((Color) ps2d.getFill(), ps2d.getFillComposite());
+            fillPolygons(canvas, shape, color);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Composites the pending rasterized content onto the specified graphics, if any
+     *
+     * @param graphics
+     */
+    public void flush(Graphics2D graphics) {
+        Canvas canvas = canvases.get(graphics);
+        if (canvas != null) {
+            canvas.flush(graphics);
+        }
+    }
+
+    /**
+     * Composites the pending rasterized content onto all the target graphics
+     */
+    public void flush() {
+        for (Map.Entry<Graphics2D, Canvas> entry : canvases.entrySet()) {
+            entry.getValue().flush(entry.getKey());
+        }
+    }
+
+    /**
+     * Releases the canvases without painting them. The mark stamps are kept, as the same styles
+     * are likely to be used again.
+     */
+    public void clear() {
+        canvases.clear();
+    }
+
+    /**
+     * Checks if the mark can be represented by a stamp: solid colors, no graphic fills/strokes,
+     * plain alpha compositing
+     *
+     * @param ms2d
+     * @return
+     */
+    static boolean isSimpleMark(MarkStyle2D ms2d) {
+        if (ms2d.getShape() == null || ms2d.getGraphicFill() != null
+                || ms2d.getGraphicStroke() != null) {
+            return false;
+        }
+        if (ms2d.getFill() == null && ms2d.getContour() == null) {
+            return false;
+        }
+        if (ms2d.getFill() != null && !(ms2d.getFill() instanceof Color
+                && isSimpleComposite(ms2d.getFillComposite()))) {
+            return false;
+        }
+        if (ms2d.getContour() != null && !(ms2d.getContour() instanceof Color
+                && ms2d.getStroke() instanceof BasicStroke
+                && isSimpleComposite(ms2d.getContourComposite()))) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the polygon style is a plain solid color fill, without outline
+     *
+     * @param ps2d
+     * @return
+     */
+    static boolean isSimpleFill(PolygonStyle2D ps2d) {
+        Paint fill = ps2d.getFill();
+        return fill instanceof Color && ps2d.getGraphicFill() == null
+                && ps2d.getContour() == null && ps2d.getGraphicStroke() == null
+                && isSimpleComposite(ps2d.getFillComposite());
+    }
+
+    /**
+     * Checks if the scanline fill would give the same results as Java2D: the antialiasing and
+     * the stroke normalization rules vary between Java2D rendering pipelines, only the plain
+     * pixel center sampling can be reproduced reliably
+     *
+     * @param graphics
+     * @return
+     */
+    static boolean isPixelExactFill(Graphics2D graphics) {
+        return !RenderingHints.VALUE_ANTIALIAS_ON
+                .equals(graphics.getRenderingHint(RenderingHints.KEY_ANTIALIASING))
+                && RenderingHints.VALUE_STROKE_PURE
+                        .equals(graphics.getRenderingHint(RenderingHints.KEY_STROKE_CONTROL));
+    }
+
+    static boolean isSimpleComposite(Composite composite) {
+        return composite == null || (composite instanceof AlphaComposite
+                && ((AlphaComposite) composite).getRule() == AlphaComposite.SRC_OVER);
+    }
+
+    /**
+     * Returns the canvas associated to the graphics, or null if the graphics is not a raster one,
+     * or its transformation and clip do not allow to work in pixel space
+     *
+     * @param graphics
+     * @return
+     */
+    Canvas getCanvas(Graphics2D graphics) {
+        Rectangle bounds = getPixelBounds(graphics);
+        Canvas canvas = canvases.get(graphics);
+        if (canvas != null) {
+            if (canvas.bounds.equals(bounds)) {
+                return canvas;
+            }
+            // clip or transformation changed, paint what we have and start over
+            canvas.flush(graphics);
+            canvases.remove(graphics);
+        }
+        if (bounds == null) {
+            return null;
+        }
+
+        canvas = new Canvas(bounds);
+        canvases.put(graphics, canvas);
+        return canvas;
+    }
+
+    /**
+     * Returns the area the graphics can paint into, in user space, provided it's a pixel aligned
+     * rectangle on a raster device, null otherwise
+     *
+     * @param graphics
+     * @return
+     */
+    static Rectangle getPixelBounds(Graphics2D graphics) {
+        GraphicsConfiguration gc = graphics.getDeviceConfiguration();
+        if (gc == null || gc.getDevice().getType() != GraphicsDevice.TYPE_IMAGE_BUFFER) {
+            return null;
+        }
+        // user space must be the pixel space, or an integer translation of it
+        AffineTransform at = graphics.getTransform();
+        if ((at.getType() & ~AffineTransform.TYPE_TRANSLATION) != 0
+                || at.getTranslateX() != Math.rint(at.getTranslateX())
+                || at.getTranslateY() != Math.rint(at.getTranslateY())) {
+            return null;
+        }
+
+        Shape clip = graphics.getClip();
+        Rectangle bounds;
+        if (clip == null) {
+            if (graphics instanceof DelayedBackbufferGraphic) {
+                bounds = ((DelayedBackbufferGraphic) graphics).screenSize;
+            } else {
+                return null;
+            }
+        } else if (clip instanceof Rectangle2D) {
+            Rectangle2D r = (Rectangle2D) clip;
+            if (r.getX() != Math.rint(r.getX()) || r.getY() != Math.rint(r.getY())
+                    || r.getWidth() != Math.rint(r.getWidth())
+                    || r.getHeight() != Math.rint(r.getHeight())) {
+                return null;
+            }
+            bounds = r.getBounds();
+        } else {
+            return null;
+        }
+
+        if (bounds.isEmpty()) {
+            return null;
+        }
+        return bounds;
+    }
+
+    /**
+     * Returns the stamps for the given mark, or null if the mark is too large to be stamped
+     *
+     * @param graphics
+     * @param ms2d
+     * @return
+     */
+    MarkStamps getMarkStamps(Graphics2D graphics, MarkStyle2D ms2d) {
+        Object antialiasing = graphics.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+        Object strokeControl = graphics.getRenderingHint(RenderingHints.KEY_STROKE_CONTROL);
+        List<Object> key = Arrays.<Object> asList(ms2d.getShape(), ms2d.getSize(),
+                ms2d.getRotation(), ms2d.getDisplacementX(), ms2d.getDisplacementY(),
+                ms2d.getAnchorPointX(), ms2d.getAnchorPointY(), ms2d.getFill(),
+                ms2d.getFillComposite(), ms2d.getContour(), ms2d.getStroke(),
+                ms2d.getContourComposite(), MarkStyle2D.isMaxMarkSizeEnabled(), antialiasing,
+                strokeControl);
+        MarkStamps stamps = marks.get(key);
+        if (stamps == null && !marks.containsKey(key)) {
+            stamps = MarkStamps.create(ms2d, graphics.getRenderingHints());
+            marks.put(key, stamps);
+        }
+        return stamps;
+    }
+
+    /**
+     * Stamps the mark on all the points of the shape
+     *
+     * @param canvas
+     * @param shape
+     * @param stamps
+     */
+    void paintMarks(Canvas canvas, LiteShape2 shape, MarkStamps stamps) {
+        // same iteration logic as StyledShapePainter
+        PathIterator citer = shape.getPathIterator(IDENTITY_TRANSFORM);
+        float[] coords = new float[2];
+        while (!(citer.isDone())) {
+            if (citer.currentSegment(coords) != PathIterator.SEG_MOVETO) {
+                double x = coords[0] - canvas.bounds.x;
+                double y = coords[1] - canvas.bounds.y;
+                int ix = (int) Math.floor(x);
+                int iy = (int) Math.floor(y);
+                int sx = (int) Math.round((x - ix) * SUBPIXELS);
+                int sy = (int) Math.round((y - iy) * SUBPIXELS);
+                if (sx == SUBPIXELS) {
+                    ix++;
+                    sx = 0;
+                }
+                if (sy == SUBPIXELS) {
+                    iy++;
+                    sy = 0;
+                }
+                int left = ix - stamps.originX;
+                int top = iy - stamps.originY;
+                if (left < canvas.width && top < canvas.height && left + stamps.width > 0
+                        && top + stamps.height > 0) {
+                    canvas.stamp(stamps.getStamp(sx, sy), left, top, stamps.width,
+                            stamps.height);
+                }
+            }
+            citer.next();
+        }
+    }
+
+    /**
+     * Fills the polygons in the shape. As in {@link StyledShapePainter}, the elements of a multi
+     * polygon are filled one by one, so that overlaps do not turn into holes.
+     *
+     * @param canvas
+     * @param shape
+     * @param color
+     */
+    void fillPolygons(Canvas canvas, LiteShape2 shape, int color) {
+        Geometry geometry = shape.getGeometry();
+        if (geometry instanceof MultiPolygon && geometry.getNumGeometries() > 1) {
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                try {
+                    LiteShape2 part = new LiteShape2(geometry.getGeometryN(i), null, null, false,
+                            false);
+                    fill(canvas, part.getPathIterator(IDENTITY_TRANSFORM), color);
+                } catch (Exception e) {
+                    // should not really happen, but anyways
+                    throw new RuntimeException(
+                            "Unexpected error occurred while rendering a multipolygon", e);
+                }
+            }
+        } else {
+            fill(canvas, shape.getPathIterator(IDENTITY_TRANSFORM), color);
+        }
+    }
+
+    /**
+     * Scanline fills the path, using the Java2D rules for non antialiased fills: a pixel is
+     * painted if its center is inside the shape, according to the path winding rule.
+     *
+     * @param canvas
+     * @param pi
+     * @param color
+     */
+    static void fill(Canvas canvas, PathIterator pi, int color) {
+        // collect the edges, top to bottom, in canvas coordinates
+        Edges edges = new Edges();
+        double[] coords = new double[6];
+        double startX = 0, startY = 0, lastX = 0, lastY = 0;
+        boolean open = false;
+        while (!pi.isDone()) {
+            int type = pi.currentSegment(coords);
+            double x = coords[0] - canvas.bounds.x;
+            double y = coords[1] - canvas.bounds.y;
+            if (type == PathIterator.SEG_MOVETO) {
+                if (open) {
+                    edges.add(lastX, lastY, startX, startY);
+                }
+                startX = lastX = x;
+                startY = lastY = y;
+                open = true;
+            } else if (type == PathIterator.SEG_LINETO) {
+                edges.add(lastX, lastY, x, y);
+                lastX = x;
+                lastY = y;
+            } else if (type == PathIterator.SEG_CLOSE) {
+                edges.add(lastX, lastY, startX, startY);
+                lastX = startX;
+                lastY = startY;
+            } else {
+                // the JTS iterators only return straight segments
+                throw new IllegalArgumentException("Unsupported segment type " + type);
+            }
+            pi.next();
+        }
+        if (open) {
+            edges.add(lastX, lastY, startX, startY);
+        }
+        if (edges.size == 0) {
+            return;
+        }
+
+        // the rows whose pixel centers fall in the vertical range of the edges
+        int minRow = Math.max(0, (int) Math.ceil(edges.minY - 0.5));
+        int maxRow = Math.min(canvas.height, (int) Math.ceil(edges.maxY - 0.5));
+        if (minRow >= maxRow) {
+            return;
+        }
+        edges.sort();
+
+        boolean evenOdd = pi.getWindingRule() == PathIterator.WIND_EVEN_ODD;
+        int[] active = new int[edges.size];
+        int activeCount = 0;
+        int next = 0;
+        double[] crossings = new double[edges.size];
+        int[] directions = new int[edges.size];
+        for (int row = minRow; row < maxRow; row++) {
+            double yc = row + 0.5;
+            // update the active edge list
+            while (next < edges.size && edges.y0(next) <= yc) {
+                active[activeCount++] = next++;
+            }
+            int count = 0;
+            for (int i = 0; i < activeCount; i++) {
+                int e = active[i];
+                if (edges.y1(e) <= yc) {
+                    active[i--] = active[--activeCount];
+                } else {
+                    crossings[count] = edges.xAt(e, yc);
+                    directions[count] = edges.direction[e];
+                    count++;
+                }
+            }
+            if (count < 2) {
+                continue;
+            }
+            sortCrossings(crossings, directions, count);
+
+            int winding = 0;
+            for (int i = 0; i < count - 1; i++) {
+                winding += evenOdd ? 1 : directions[i];
+                boolean inside = evenOdd ? (winding & 1) != 0 : winding != 0;
+                if (inside) {
+                    int x0 = Math.max(0, (int) Math.ceil(crossings[i] - 0.5));
+                    int x1 = Math.min(canvas.width, (int) Math.ceil(crossings[i + 1] - 0.5));
+                    if (x0 < x1) {
+                        canvas.span(row, x0, x1, color);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Insertion sort, the number of crossings on a scanline is usually very small
+     */
+    private static void sortCrossings(double[] crossings, int[] directions, int count) {
+        for (int i = 1; i < count; i++) {
+            double x = crossings[i];
+            int d = directions[i];
+            int j = i - 1;
+            while (j >= 0 && crossings[j] > x) {
+                crossings[j + 1] = crossings[j];
+                directions[j + 1] = directions[j];
+                j--;
+            }
+            crossings[j + 1] = x;
+            directions[j + 1] = d;
+        }
+    }
+
+    /**
+     * Turns a color and a composite into a premultiplied ARGB pixel value
+     *
+     * @param color
+     * @param composite
+     * @return
+     */
+    static int premultiply(Color color, Composite composite) {
+        float alpha = color.getAlpha() / 255f;
+        if (composite instanceof AlphaComposite) {
+            alpha *= ((AlphaComposite) composite).getAlpha();
+        }
+        int a = Math.round(alpha * 255);
+        int r = Math.round(color.getRed() * alpha);
+        int g = Math.round(color.getGreen() * alpha);
+        int b = Math.round(color.getBlue() * alpha);
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Composites a premultiplied source pixel over a premultiplied destination one
+     */
+    static int blend(int src, int dst) {
+        int sa = src >>> 24;
+        if (sa == 255 || dst == 0) {
+            return src;
+        }
+        int ia = 255 - sa;
+        int a = sa + ((dst >>> 24) * ia + 127) / 255;
+        int r = ((src >> 16) & 0xFF) + (((dst >> 16) & 0xFF) * ia + 127) / 255;
+        int g = ((src >> 8) & 0xFF) + (((dst >> 8) & 0xFF) * ia + 127) / 255;
+        int b = (src & 0xFF) + ((dst & 0xFF) * ia + 127) / 255;
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * A premultiplied ARGB image collecting the direct painting for a target graphics, along
+     * with the area painted since the last flush
+     */
+    static final class Canvas {
+        final Rectangle bounds;
+
+        final int width;
+
+        final int height;
+
+        final BufferedImage image;
+
+        final int[] pixels;
+
+        int minX, minY, maxX, maxY;
+
+        Canvas(Rectangle bounds) {
+            this.bounds = new Rectangle(bounds);
+            this.width = bounds.width;
+            this.height = bounds.height;
+            this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+            this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            resetDirtyArea();
+        }
+
+        void resetDirtyArea() {
+            minX = width;
+            minY = height;
+            maxX = 0;
+            maxY = 0;
+        }
+
+        boolean isEmpty() {
+            return minX >= maxX || minY >= maxY;
+        }
+
+        void markDirty(int x0, int y0, int x1, int y1) {
+            if (x0 < minX) minX = x0;
+            if (y0 < minY) minY = y0;
+            if (x1 > maxX) maxX = x1;
+            if (y1 > maxY) maxY = y1;
+        }
+
+        /**
+         * Paints a horizontal span of the given color, x1 excluded. The span is assumed to be
+         * within the canvas.
+         */
+        void span(int row, int x0, int x1, int color) {
+            int offset = row * width;
+            if ((color >>> 24) == 255) {
+                Arrays.fill(pixels, offset + x0, offset + x1, color);
+            } else {
+                for (int i = offset + x0; i < offset + x1; i++) {
+                    pixels[i] = blend(color, pixels[i]);
+                }
+            }
+            markDirty(x0, row, x1, row + 1);
+        }
+
+        /**
+         * Composites a stamp with the top left corner at the given position, clipping it to
+         * the canvas area
+         */
+        void stamp(int[] stamp, int left, int top, int stampWidth, int stampHeight) {
+            int x0 = Math.max(0, left);
+            int y0 = Math.max(0, top);
+            int x1 = Math.min(width, left + stampWidth);
+            int y1 = Math.min(height, top + stampHeight);
+            for (int y = y0; y < y1; y++) {
+                int src = (y - top) * stampWidth + (x0 - left);
+                int dst = y * width + x0;
+                for (int x = x0; x < x1; x++, src++, dst++) {
+                    int s = stamp[src];
+                    if (s != 0) {
+                        pixels[dst] = blend(s, pixels[dst]);
+                    }
+                }
+            }
+            markDirty(x0, y0, x1, y1);
+        }
+
+        /**
+         * Draws the area painted since the last flush on the graphics, and clears it
+         */
+        void flush(Graphics2D graphics) {
+            if (isEmpty()) {
+                return;
+            }
+            int w = maxX - minX;
+            int h = maxY - minY;
+            if (LOGGER.isLoggable(Level.FINEST)) {
+                LOGGER.finest("Flushing direct raster painting area " + minX + "," + minY + ","
+                        + w + "," + h);
+            }
+            Composite oldComposite = graphics.getComposite();
+            try {
+                graphics.setComposite(AlphaComposite.SrcOver);
+                graphics.drawImage(image.getSubimage(minX, minY, w, h), bounds.x + minX,
+                        bounds.y + minY, null);
+            } finally {
+                graphics.setComposite(oldComposite);
+            }
+            for (int y = minY; y < maxY; y++) {
+                Arrays.fill(pixels, y * width + minX, y * width + maxX, 0);
+            }
+            resetDirtyArea();
+        }
+    }
+
+    /**
+     * The pre-rendered images of a mark, one per subpixel position, built lazily
+     */
+    static final class MarkStamps {
+        final MarkStyle2D style;
+
+        final Map<?, ?> hints;
+
+        /**
+         * Position of the mark center, in the stamp
+         */
+        final int originX, originY;
+
+        final int width, height;
+
+        final int[][] stamps = new int[SUBPIXELS * SUBPIXELS][];
+
+        MarkStamps(MarkStyle2D style, Map<?, ?> hints, int originX, int originY, int width,
+                int height) {
+            this.style = style;
+            this.hints = hints;
+            this.originX = originX;
+            this.originY = originY;
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * Builds the stamps for the mark, or returns null if the mark is too large
+         */
+        static MarkStamps create(MarkStyle2D style, Map<?, ?> hints) {
+            Shape shape = style.getTransformedShape(0, 0);
+            Rectangle2D extent = shape.getBounds2D();
+            if (style.getContour() != null) {
+                extent = extent.createUnion(
+                        style.getStroke().createStrokedShape(shape).getBounds2D());
+            }
+            // one pixel for the subpixel offset, one for antialiasing, on each side
+            int minX = (int) Math.floor(extent.getMinX()) - 2;
+            int minY = (int) Math.floor(extent.getMinY()) - 2;
+            int width = (int) Math.ceil(extent.getMaxX()) + 2 - minX;
+            int height = (int) Math.ceil(extent.getMaxY()) + 2 - minY;
+            if (width > MAX_STAMP_SIZE || height > MAX_STAMP_SIZE || width <= 0
+                    || height <= 0) {
+                return null;
+            }
+            return new MarkStamps(style, hints, -minX, -minY, width, height);
+        }
+
+        int[] getStamp(int sx, int sy) {
+            int idx = sy * SUBPIXELS + sx;
+            int[] stamp = stamps[idx];
+            if (stamp == null) {
+                stamp = render(originX + sx / (float) SUBPIXELS,
+                        originY + sy / (float) SUBPIXELS);
+                stamps[idx] = stamp;
+            }
+            return stamp;
+        }
+
+        /**
+         * Paints the mark exactly as {@link StyledShapePainter} would
+         */
+        int[] render(float x, float y) {
+            BufferedImage image = new BufferedImage(width, height,
+                    BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D graphics = image.createGraphics();
+            try {
+                graphics.setRenderingHints(hints);
+                Shape shape = style.getTransformedShape(x, y);
+                if (style.getFill() != null) {
+                    graphics.setPaint(style.getFill());
+                    graphics.setComposite(compositeOrDefault(style.getFillComposite()));
+                    graphics.fill(shape);
+                }
+                if (style.getContour() != null) {
+                    graphics.setPaint(style.getContour());
+                    graphics.setStroke(style.getStroke());
+                    graphics.setComposite(compositeOrDefault(style.getContourComposite()));
+                    graphics.draw(shape);
+                }
+            } finally {
+                graphics.dispose();
+            }
+            return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+
+        private static Composite compositeOrDefault(Composite composite) {
+            return composite != null ? composite : AlphaComposite.SrcOver;
+        }
+    }
+
+    /**
+     * A growable list of non horizontal edges, stored with y0 < y1 along with their original
+     * direction
+     */
+    static final class Edges {
+        double[] coords = new double[64];
+
+        int[] direction = new int[16];
+
+        int size;
+
+        double minY = Double.POSITIVE_INFINITY;
+
+        double maxY = Double.NEGATIVE_INFINITY;
+
+        void add(double x0, double y0, double x1, double y1) {
+            if (y0 == y1) {
+                return;
+            }
+            if (size * 4 == coords.length) {
+                coords = Arrays.copyOf(coords, coords.length * 2);
+                direction = Arrays.copyOf(direction, direction.length * 2);
+            }
+            int base = size * 4;
+            if (y0 < y1) {
+                coords[base] = x0;
+                coords[base + 1] = y0;
+                coords[base + 2] = x1;
+                coords[base + 3] = y1;
+                direction[size] = 1;
+            } else {
+                coords[base] = x1;
+                coords[base + 1] = y1;
+                coords[base + 2] = x0;
+                coords[base + 3] = y0;
+                direction[size] = -1;
+            }
+            minY = Math.min(minY, Math.min(y0, y1));
+            maxY = Math.max(maxY, Math.max(y0, y1));
+            size++;
+        }
+
+        double y0(int e) {
+            return coords[e * 4 + 1];
+        }
+
+        double y1(int e) {
+            return coords[e * 4 + 3];
+        }
+
+        double xAt(int e, double y) {
+            int base = e * 4;
+            double x0 = coords[base];
+            double y0 = coords[base + 1];
+            double x1 = coords[base + 2];
+            double y1 = coords[base + 3];
+            return x0 + (y - y0) * (x1 - x0) / (y1 - y0);
+        }
+
+        /**
+         * Sorts the edges on their top y
+         */
+        void sort() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Double.compare(y0(a), y0(b));
+                }
+            });
+            double[] sortedCoords = new double[coords.length];
+            int[] sortedDirection = new int[direction.length];
+            for (int i = 0; i < size; i++) {
+                System.arraycopy(coords, order[i] * 4, sortedCoords, i * 4, 4);
+                sortedDirection[i] = direction[order[i]];
+            }
+            coords = sortedCoords;
+            direction = sortedDirection;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.lite;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base class for the in memory caches used by the renderer, keeps the values in least recently
+ * used order and evicts the eldest ones once their estimated memory footprint goes beyond the
+ * configured limit. Also tracks hits, misses and evictions.
+ *
+ * @param <V> The type of the cached values
+ * @source $URL$
+ */
+public abstract class MemoryBoundedCache<V> {
+
+    /**
+     * The key of a cached value. Equality is based on the equality of the components, arrays
+     * are compared by content.
+     */
+    public static final class Key {
+
+        private final Object[] components;
+
+        private final int hashCode;
+
+        public Key(Object... components) {
+            this.components = components;
+            this.hashCode = Arrays.deepHashCode(components);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hashCode == other.hashCode && Arrays.deepEquals(components, other.components);
+        }
+
+        @Override
+        public String toString() {
+            return "Key" + Arrays.deepToString(components);
+        }
+    }
+
+    /**
+     * A cached value along with its estimated memory footprint
+     */
+    static final class Entry<V> {
+        final V value;
+
+        final long size;
+
+        Entry(V value, long size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    private final long maxMemory;
+
+    private final LinkedHashMap<Key, Entry<V>> entries = new LinkedHashMap<Key, Entry<V>>(16,
+            0.75f, true);
+
+    private long memory;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Builds a new cache
+     *
+     * @param maxMemory The maximum amount of memory used by the cache, in bytes
+     */
+    protected MemoryBoundedCache(long maxMemory) {
+        if (maxMemory <= 0) {
+            throw new IllegalArgumentException("The maximum memory must be positive");
+        }
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * Returns the value associated to the key, or null if not found, recording a hit or a miss
+     *
+     * @param key
+     * @return
+     */
+    protected V lookup(Key key) {
+        Entry<V> entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        } else {
+            hits.incrementAndGet();
+            return entry.value;
+        }
+    }
+
+    /**
+     * Returns the value associated to the key without recording a hit or a miss, for caches
+     * that need to validate the value before deciding whether it can be used
+     *
+     * @param key
+     * @return
+     */
+    protected V peek(Key key) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            return entry != null ? entry.value : null;
+        }
+    }
+
+    /**
+     * Records a successful lookup
+     */
+    protected void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    /**
+     * Records a failed lookup
+     */
+    protected void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    /**
+     * Stores the value in the cache, evicting the least recently used values if the memory
+     * limit is exceeded. Values larger than the whole cache are not stored.
+     *
+     * @param key
+     * @param value
+     * @param size The estimated memory footprint of the value, in bytes
+     * @return True if the value has been stored, false otherwise
+     */
+    protected boolean store(Key key, V value, long size) {
+        if (size > maxMemory) {
+            return false;
+        }
+        synchronized (entries) {
+            Entry<V> previous = entries.put(key, new Entry<V>(value, size));
+            if (previous != null) {
+                memory -= previous.size;
+            }
+            memory += size;
+            Iterator<Entry<V>> it = entries.values().iterator();
+            while (memory > maxMemory && it.hasNext()) {
+                Entry<V> eldest = it.next();
+                it.remove();
+                memory -= eldest.size;
+                evictions.incrementAndGet();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes all cached values
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            memory = 0;
+        }
+    }
+
+    /**
+     * Returns the number of cached values
+     *
+     * @return
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the estimated memory used by the cached values, in bytes
+     *
+     * @return
+     */
+    public long getMemoryUsage() {
+        synchronized (entries) {
+            return memory;
+        }
+    }
+
+    /**
+     * Returns the maximum memory the cache can use, in bytes
+     *
+     * @return
+     */
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * Number of successful lookups
+     *
+     * @return
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Number of failed lookups
+     *
+     * @return
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Number of entries removed to make room for new ones
+     *
+     * @return
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the ratio of successful lookups over the total, or 0 if no lookup was performed
+     *
+     * @return
+     */
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : ((double) h) / total;
+    }
+
+    /**
+     * Returns a snapshot of the cache statistics, as a map
+     *
+     * @return
+     */
+    public Map<String, Number> getStatistics() {
+        Map<String, Number> result = new LinkedHashMap<String, Number>();
+        result.put("hits", getHitCount());
+        result.put("misses", getMissCount());
+        result.put("evictions", getEvictionCount());
+        result.put("entries", size());
+        result.put("memory", getMemoryUsage());
+        result.put("maxMemory", maxMemory);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " " + getStatistics();
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.lite;
+
+import org.geotools.geometry.jts.Decimator;
+import org.geotools.geometry.jts.LiteCoordinateSequence;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * A bounded, in memory cache of generalized geometries, used by {@link StreamingRenderer} to
+ * avoid generalizing the same feature geometry over and over when the same area is rendered
+ * repeatedly at the same zoom level (e.g., by tile clients).
+ * <p>
+ * The geometries are generalized in their native CRS, so they do not depend on the rendering
+ * area, and are stored as {@link LiteCoordinateSequence} based geometries, that keep the
+ * ordinates packed in a single array per sequence. The generalization distance is rounded down
+ * to a power of two, so that all zoom levels within a factor of two of each other share the
+ * same cached geometry, while never being generalized more than requested.
+ * <p>
+ * Entries are keyed by layer, feature identifier, geometry expression and generalization level,
+ * the cache should be used only with data sources providing stable feature identifiers. In order
+ * to catch the most common data modifications, each entry also records the number of points and
+ * the envelope of the original geometry, and is discarded if they do not match anymore. Entries
+ * are evicted in least recently used order once the estimated memory footprint goes beyond the
+ * configured limit.
+ */
+public class SimplifiedGeometryCache extends MemoryBoundedCache<SimplifiedGeometryCache.Entry> {
+
+    /**
+     * Rough estimate of the memory used by a geometry object, excluding the ordinates
+     */
+    static final int GEOMETRY_OVERHEAD = 100;
+
+    /**
+     * A cached geometry, along with the fingerprint of the original one
+     */
+    static final class Entry {
+        final Geometry geometry;
+
+        final int originalPoints;
+
+        final Envelope originalEnvelope;
+
+        Entry(Geometry geometry, Geometry original) {
+            this.geometry = geometry;
+            this.originalPoints = original.getNumPoints();
+            this.originalEnvelope = original.getEnvelopeInternal();
+        }
+
+        boolean matches(Geometry original) {
+            return originalPoints == original.getNumPoints()
+                    && originalEnvelope.equals(original.getEnvelopeInternal());
+        }
+    }
+
+    /**
+     * Builds a new cache
+     *
+     * @param maxMemory The maximum amount of memory used by the cache, in bytes
+     */
+    public SimplifiedGeometryCache(long maxMemory) {
+        super(maxMemory);
+    }
+
+    /**
+     * Returns the power of two exponent used to identify the generalization level for the given
+     * generalization distance
+     *
+     * @param distance
+     * @return
+     */
+    static int getLevel(double distance) {
+        return Math.getExponent(distance);
+    }
+
+    /**
+     * Returns a generalized version of the geometry, using the cache to avoid recomputing it. The
+     * returned geometry is based on {@link LiteCoordinateSequence} and is shared with the cache,
+     * the caller must not modify it, but clone it instead if it needs to work on its
+     * coordinates. The returned geometry is already generalized at the requested distance, there
+     * is no need to decimate it again.
+     *
+     * @param layer An object identifying the data source the feature comes from
+     * @param featureId The feature identifier
+     * @param geometryKey An object identifying which geometry of the feature is used
+     * @param original The original geometry, in its native CRS
+     * @param distance The generalization distance, in native CRS units
+     * @param dimension The number of dimensions to retain in the generalized geometry
+     * @return
+     */
+    public Geometry getGeneralized(Object layer, String featureId, Object geometryKey,
+            Geometry original, double distance, int dimension) {
+        int level = getLevel(distance);
+        Key key = new Key(layer, featureId, geometryKey, level, dimension);
+        Entry entry = peek(key);
+        if (entry != null && entry.matches(original)) {
+            recordHit();
+            return entry.geometry;
+        }
+
+        recordMiss();
+        Geometry generalized = LiteCoordinateSequence.cloneGeometry(original, dimension);
+        double span = Math.scalb(1d, level);
+        new Decimator(span, span).decimate(generalized);
+        generalized.geometryChanged();
+        store(key, new Entry(generalized, original), getMemoryFootprint(generalized));
+        return generalized;
+    }
+
+    /**
+     * Estimates the memory used by a {@link LiteCoordinateSequence} based geometry
+     *
+     * @param geometry
+     * @return
+     */
+    static long getMemoryFootprint(Geometry geometry) {
+        if (geometry instanceof GeometryCollection) {
+            long size = GEOMETRY_OVERHEAD;
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                size += getMemoryFootprint(geometry.getGeometryN(i));
+            }
+            return size;
+        } else if (geometry instanceof Polygon) {
+            Polygon polygon = (Polygon) geometry;
+            long size = GEOMETRY_OVERHEAD + getMemoryFootprint(polygon.getExteriorRing());
+            for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+                size += getMemoryFootprint(polygon.getInteriorRingN(i));
+            }
+            return size;
+        } else if (geometry instanceof LineString) {
+            LineString ls = (LineString) geometry;
+            return GEOMETRY_OVERHEAD + ls.getNumPoints()
+                    * ls.getCoordinateSequence().getDimension() * 8;
+        } else if (geometry instanceof Point) {
+            return GEOMETRY_OVERHEAD + ((Point) geometry).getCoordinateSequence().getDimension()
+                    * 8;
+        }
+        return GEOMETRY_OVERHEAD;
+    }
+}
@@ -106,6 +106,7 @@ import org.geotools.renderer.label.LabelCacheImpl;
 import org.geotools.renderer.label.LabelCacheImpl.LabelRenderingMode;
 import org.geotools.renderer.lite.gridcoverage2d.GridCoverageReaderHelper;
 import org.geotools.renderer.lite.gridcoverage2d.GridCoverageRenderer;
+import org.geotools.renderer.lite.gridcoverage2d.RasterTileCache;
 import org.geotools.renderer.style.LineStyle2D;
 import org.geotools.renderer.style.SLDStyleFactory;
 import org.geotools.renderer.style.Style2D;
@@ -151,6 +152,7 @@ import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.MultiPoint;
 import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.Polygon;
 import com.vividsolutions.jts.simplify.TopologyPreservingSimplifier;
@@ -362,6 +364,29 @@ public class StreamingRenderer implements GTRenderer {
     public static final String VECTOR_RENDERING_KEY = "vectorRenderingEnabled";
     private static boolean VECTOR_RENDERING_ENABLED_DEFAULT = false;
 
+    /**
+     * The {@link RasterTileCache} used to store fully symbolized rasters read from
+     * {@link GridCoverage2DReader}s, allowing repeated requests for the same area, resolution and
+     * style to skip the raster symbolizer evaluation. Not set by default.
+     */
+    public static final String RASTER_TILE_CACHE_KEY = "rasterTileCache";
+
+    /**
+     * Boolean flag controlling whether solid color marks and solid polygon fills are painted
+     * directly in a raster buffer, instead of going through Java2D for each feature. Only applies
+     * when painting on images, polygons are painted directly only if antialiasing is disabled and
+     * the stroke control is set to pure. Marks are positioned on a 1/8 pixel grid and an extra
+     * image sized as the target is allocated. Disabled by default.
+     */
+    public static final String DIRECT_RASTER_RENDERING_KEY = "directRasterRendering";
+
+    /**
+     * The {@link SimplifiedGeometryCache} used to store the generalized geometries of features
+     * coming from data sources providing stable feature identifiers, allowing repeated requests
+     * at the same zoom level to skip the in memory generalization. Not set by default.
+     */
+    public static final String SIMPLIFIED_GEOMETRY_CACHE_KEY = "simplifiedGeometryCache";
+
     public static final String LABEL_CACHE_KEY = "labelCache";
     public static final String FORCE_EPSG_AXIS_ORDER_KEY = "ForceEPSGAxisOrder";
     public static final String DPI_KEY = "dpi";
@@ -403,6 +428,11 @@ public class StreamingRenderer implements GTRenderer {
 
     private PainterThread painterThread;
 
+    /**
+     * Paints the simple styles directly in a raster buffer, when enabled
+     */
+    private DirectRasterPainter directRasterPainter;
+
     /**
      * Creates a new instance of LiteRenderer without a context. Use it only to
      * gain access to utility methods of this class or if you want to render
@@ -758,6 +788,16 @@ public class StreamingRenderer implements GTRenderer {
                     mapExtent.getCoordinateReferenceSystem()); 
         }
 
+        // Setup the direct raster painting, if enabled. The instance is kept around
+        // to reuse the mark stamps across paint calls
+        if (isDirectRasterRenderingEnabled()) {
+            if (directRasterPainter == null) {
+                directRasterPainter = new DirectRasterPainter();
+            }
+        } else {
+            directRasterPainter = null;
+        }
+
         // Setup the secondary painting thread
         requests = getRequestsQueue();
         painterThread = new PainterThread(requests);
@@ -1454,6 +1494,43 @@ public class StreamingRenderer implements GTRenderer {
         return Boolean.TRUE.equals(result);
     }
     
+    /**
+     * Returns the raster tile cache, if any was provided in the renderer hints
+     * @return
+     */
+    private RasterTileCache getRasterTileCache() {
+        if (rendererHints == null)
+            return null;
+        Object result = rendererHints.get(RASTER_TILE_CACHE_KEY);
+        if (result instanceof RasterTileCache)
+            return (RasterTileCache) result;
+        return null;
+    }
+
+    /**
+     * Returns the simplified geometry cache, if any was provided in the renderer hints
+     * @return
+     */
+    private SimplifiedGeometryCache getSimplifiedGeometryCache() {
+        if (rendererHints == null)
+            return null;
+        Object result = rendererHints.get(SIMPLIFIED_GEOMETRY_CACHE_KEY);
+        if (result instanceof SimplifiedGeometryCache)
+            return (SimplifiedGeometryCache) result;
+        return null;
+    }
+
+    /**
+     * Checks if direct raster rendering of simple styles is enabled
+     * @return
+     */
+    private boolean isDirectRasterRenderingEnabled() {
+        if (rendererHints == null)
+            return false;
+        Object result = rendererHints.get(DIRECT_RASTER_RENDERING_KEY);
+        return Boolean.TRUE.equals(result);
+    }
+
     /**
      * Checks if continuous map wrapping is enabled
      * @return
@@ -2328,6 +2405,7 @@ public class StreamingRenderer implements GTRenderer {
     RenderableFeature createRenderableFeature(String layerId,
             boolean cloningRequired) {
         RenderableFeature rf = new RenderableFeature(layerId, cloningRequired);
+        rf.simplifiedGeometryCache = getSimplifiedGeometryCache();
         return rf;
     }
 
@@ -2970,10 +3048,12 @@ public class StreamingRenderer implements GTRenderer {
         private IdentityHashMap symbolizerAssociationHT = new IdentityHashMap(); // associate a value
         private List geometries = new ArrayList();
         private List shapes = new ArrayList();
+        private List<Geometry> cachedGeneralizationSources = new ArrayList<Geometry>();
         private boolean clone;
         private IdentityHashMap decimators = new IdentityHashMap();
         private ScreenMap screenMap;
         private String layerId;
+        SimplifiedGeometryCache simplifiedGeometryCache;
 
 
         public RenderableFeature(String layerId, boolean clone) {
@@ -2989,6 +3069,7 @@ public class StreamingRenderer implements GTRenderer {
             this.feature = feature;
             geometries.clear();
             shapes.clear();
+            cachedGeneralizationSources.clear();
         }
 
         public LiteShape2 getShape(Symbolizer symbolizer, AffineTransform at) throws FactoryException {
@@ -2997,6 +3078,8 @@ public class StreamingRenderer implements GTRenderer {
             if (g == null || g.isEmpty())
                 return null;
             
+            // the generalized geometry cache can be used only if the geometry is the original one
+            boolean cacheable = simplifiedGeometryCache != null;
             try {
                 // process screenmap if necessary (only do it once, 
                 // the geometry will be transformed simplified in place and the screenmap 
@@ -3013,6 +3096,7 @@ public class StreamingRenderer implements GTRenderer {
                         } else {
                             g = screenMap.getSimplifiedShape(env.getMinX(), env.getMinY(), 
                                     env.getMaxX(), env.getMaxY(), g.getFactory(), g.getClass());
+                            cacheable = false;
                         }
                 }
     
@@ -3048,7 +3132,9 @@ public class StreamingRenderer implements GTRenderer {
                 // get transformed, try to be lenient
                 if (symbolizer instanceof PointSymbolizer) {
                     // if the coordinate transformation will occurr in place on the coordinate sequence
-                    if(!clone && g.getFactory().getCoordinateSequenceFactory() instanceof LiteCoordinateSequenceFactory) {
+                    // (geometries coming from the generalized geometry cache are never touched)
+                    if(!clone && g.getFactory().getCoordinateSequenceFactory() instanceof LiteCoordinateSequenceFactory
+                            && !isCachedGeneralizationSource(g)) {
                         // if the symbolizer is a point symbolizer we first get the transformed
                         // geometry to make sure the coordinates have been modified once, and then
                         // compute the centroid in the screen space. This is a side effect of the
@@ -3074,7 +3160,7 @@ public class StreamingRenderer implements GTRenderer {
                         return getTransformedShape(RendererUtilities.getCentroid(g), sa);
                     }
                 } else {
-                    return getTransformedShape(g, sa);
+                    return getTransformedShape(g, sa, cacheable ? symbolizer : null);
                 }
             } catch (TransformException te) {
                 LOGGER.log(Level.FINE, te.getLocalizedMessage(), te);
@@ -3087,6 +3173,15 @@ public class StreamingRenderer implements GTRenderer {
             }
         }
         
+        private boolean isCachedGeneralizationSource(Geometry g) {
+            for (Geometry source : cachedGeneralizationSources) {
+                if (source == g) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
         private int getGeometryIndex(Geometry g) {
             for (int i = 0; i < geometries.size(); i++) {
                 if(geometries.get(i) == g) {
@@ -3097,18 +3192,42 @@ public class StreamingRenderer implements GTRenderer {
         }
 
         private LiteShape2 getTransformedShape(Geometry originalGeom, SymbolizerAssociation sa) throws TransformException,
+        FactoryException {
+            return getTransformedShape(originalGeom, sa, null);
+        }
+
+        /**
+         * Transforms the geometry into a shape. If a symbolizer is provided the generalized
+         * geometry cache, if available, will be used to get a pre-generalized copy of the geometry
+         */
+        private LiteShape2 getTransformedShape(Geometry originalGeom,
+                SymbolizerAssociation sa, Symbolizer symbolizer) throws TransformException,
         FactoryException {
             int idx = getGeometryIndex(originalGeom);
             if(idx != -1) {
                 return (LiteShape2) shapes.get(idx);
             }
 
-            // we need to clone if the clone flag is high or if the coordinate sequence is not the one we asked for
-            Geometry geom = originalGeom;
-            if (clone
-                    || !(geom.getFactory().getCoordinateSequenceFactory() instanceof LiteCoordinateSequenceFactory)) {
-                int dim = sa.crs != null ? sa.crs.getCoordinateSystem().getDimension() : 2;
-                geom = LiteCoordinateSequence.cloneGeometry(geom, dim);
+            Geometry geom = null;
+            if (symbolizer != null) {
+                geom = getCachedGeneralization(originalGeom, sa, symbolizer);
+                if (geom != null) {
+                    cachedGeneralizationSources.add(originalGeom);
+                    // the cached geometry is shared, copy it as it will be transformed in place
+                    int dim = sa.crs != null ? sa.crs.getCoordinateSystem().getDimension() : 2;
+                    geom = LiteCoordinateSequence.cloneGeometry(geom, dim);
+                }
+            }
+            // the cached geometries are already generalized, no need to decimate them again
+            final boolean generalized = geom != null;
+            if (geom == null) {
+                // we need to clone if the clone flag is high or if the coordinate sequence is not the one we asked for
+                geom = originalGeom;
+                if (clone
+                        || !(geom.getFactory().getCoordinateSequenceFactory() instanceof LiteCoordinateSequenceFactory)) {
+                    int dim = sa.crs != null ? sa.crs.getCoordinateSystem().getDimension() : 2;
+                    geom = LiteCoordinateSequence.cloneGeometry(geom, dim);
+                }
             }
 
             LiteShape2 shape;
@@ -3119,7 +3238,7 @@ public class StreamingRenderer implements GTRenderer {
                     shape = null;
                 } else {
                     // first generalize and transform the geometry into the rendering CRS
-                    Decimator d = getDecimator(sa.xform);
+                    Decimator d = generalized ? new Decimator(-1, -1) : getDecimator(sa.xform);
                     geom = d.decimateTransformGeneralize(geom, sa.rxform);
                     geom.geometryChanged();
                     // then post process it (provide reverse transform if available)
@@ -3156,7 +3275,8 @@ public class StreamingRenderer implements GTRenderer {
                 MathTransform xform = null;
                 if (sa != null)
                     xform = sa.xform;
-                shape = new LiteShape2(geom, xform, getDecimator(xform), false, false);
+                Decimator d = generalized ? null : getDecimator(xform);
+                shape = new LiteShape2(geom, xform, d, false, false);
             }
 
             // cache the result
@@ -3167,6 +3287,34 @@ public class StreamingRenderer implements GTRenderer {
 
 
 
+        /**
+         * Returns the generalized geometry out of the simplified geometry cache, or null if the
+         * cache cannot be used for this geometry. The returned geometry is shared with the cache
+         * and must not be modified
+         */
+        private Geometry getCachedGeneralization(Geometry originalGeom,
+                SymbolizerAssociation sa, Symbolizer symbolizer) {
+            if (simplifiedGeometryCache == null || sa == null || sa.xform == null
+                    || originalGeom instanceof Point || originalGeom instanceof MultiPoint
+                    || layer == null || layer.getFeatureSource() == null
+                    || feature.getIdentifier() == null) {
+                return null;
+            }
+            Decimator decimator = getDecimator(sa.xform);
+            double span = Math.min(decimator.getSpanX(), decimator.getSpanY());
+            if (!(span > 0) || Double.isInfinite(span)) {
+                return null;
+            }
+
+            FeatureSource<?, ?> source = layer.getFeatureSource();
+            List<Object> layerKey = Arrays.<Object> asList(source.getDataStore(), source.getName());
+            Expression geometry = symbolizer.getGeometry();
+            Object geometryKey = geometry != null ? geometry : symbolizer.getGeometryPropertyName();
+            int dim = sa.crs != null ? sa.crs.getCoordinateSystem().getDimension() : 2;
+            return simplifiedGeometryCache.getGeneralized(layerKey, feature.getIdentifier()
+                    .getID(), geometryKey, originalGeom, span, dim);
+        }
+
         /**
          * @throws org.opengis.referencing.operation.NoninvertibleTransformException
          */
@@ -3236,7 +3384,15 @@ public class StreamingRenderer implements GTRenderer {
             }
             
             try {
-                painter.paint(graphic, shape, style, scale, labelObstacle);
+                DirectRasterPainter rasterPainter = directRasterPainter;
+                if (rasterPainter == null || labelObstacle
+                        || !rasterPainter.paint(graphic, shape, style, scale)) {
+                    if (rasterPainter != null) {
+                        // whatever was painted directly has to go below this shape
+                        rasterPainter.flush(graphic);
+                    }
+                    painter.paint(graphic, shape, style, scale, labelObstacle);
+                }
             } catch(Throwable t) {
                 fireErrorEvent(t);
             }
@@ -3467,6 +3623,7 @@ public class StreamingRenderer implements GTRenderer {
                 // Checks on the Reprojection parameters
                 gcr.setAdvancedProjectionHandlingEnabled(isAdvancedProjectionHandlingEnabled());
                 gcr.setWrapEnabled(isMapWrappingEnabled());
+                gcr.setTileCache(getRasterTileCache());
                 gcr.paint(graphics, reader, readParams, symbolizer, interpolation, null);
 
                 if (LOGGER.isLoggable(Level.FINE)) {
@@ -3549,6 +3706,7 @@ public class StreamingRenderer implements GTRenderer {
 
         public void run() {
             thread = Thread.currentThread();
+            final DirectRasterPainter rasterPainter = directRasterPainter;
             boolean done = false;
             while(!done) {
                 try {
@@ -3563,6 +3721,12 @@ public class StreamingRenderer implements GTRenderer {
                             done = true;
                             break;
                         } else {
+                            if (rasterPainter != null && !(r instanceof PaintShapeRequest)
+                                    && !(r instanceof FeatureRenderedRequest)) {
+                                // the request might paint on, or read from, the graphics
+                                // holding directly painted content
+                                rasterPainter.flush();
+                            }
                             r.execute();
                         }
                     }
@@ -3577,6 +3741,17 @@ public class StreamingRenderer implements GTRenderer {
                 
             }
             
+            if (rasterPainter != null) {
+                try {
+                    if (!renderingStopRequested) {
+                        rasterPainter.flush();
+                    }
+                } catch (Throwable t) {
+                    fireErrorEvent(t);
+                } finally {
+                    rasterPainter.clear();
+                }
+            }
         }
         
     }
@@ -21,6 +21,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.io.CoverageStatistics.LevelStatistics;
 import org.geotools.factory.Hints;
 import org.geotools.renderer.i18n.ErrorKeys;
 import org.geotools.renderer.i18n.Errors;
@@ -75,6 +76,20 @@ class ChannelSelectionNode extends SubchainStyleVisitorCoverageProcessingAdapter
 				SimpleInternationalString.wrap("Node which applies a ChannelSelection following SLD 1.0 spec."));
 	}
 
+	/**
+	 * Precomputed statistics of the source coverage bands, if available
+	 */
+	private LevelStatistics statistics;
+
+	/**
+	 * Sets the precomputed statistics of the source coverage bands, to be used by the
+	 * contrast enhancement of the selected channels. Must be called before visiting the
+	 * {@link ChannelSelection}.
+	 */
+	void setStatistics(LevelStatistics statistics) {
+		this.statistics = statistics;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -157,6 +172,15 @@ class ChannelSelectionNode extends SubchainStyleVisitorCoverageProcessingAdapter
                     //
                     // //
                     final ContrastEnhancementNode contrastenhancementNode = new ContrastEnhancementNode();
+                    if (statistics != null && channel != null) {
+                        try {
+                            // channel names are 1 based
+                            contrastenhancementNode.setStatistics(statistics
+                                    .getBand(Integer.parseInt(channel.getChannelName()) - 1));
+                        } catch (NumberFormatException e) {
+                            // the band selection node will complain
+                        }
+                    }
                     contrastenhancementNode.addSource(bandSelectionNode);
                     bandSelectionNode.addSink(contrastenhancementNode);
                     contrastenhancementNode.visit(channel != null ? channel
@@ -45,6 +45,9 @@ import org.geotools.coverage.GridSampleDimension;
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.coverage.grid.GridCoverageFactory;
 import org.geotools.coverage.grid.GridGeometry2D;
+import org.geotools.coverage.grid.io.CoverageStatistics;
+import org.geotools.coverage.grid.io.CoverageStatistics.BandStatistics;
+import org.geotools.coverage.grid.io.CoverageStatistics.LevelStatistics;
 import org.geotools.factory.Hints;
 import org.geotools.image.ImageWorker;
 import org.geotools.renderer.i18n.ErrorKeys;
@@ -119,6 +122,19 @@ class ContrastEnhancementNode extends StyleVisitorCoverageProcessingNodeAdapter
 	 */
 	private double gammaValue = Double.NaN;
 
+	/**
+	 * Precomputed statistics of the band being enhanced, if available
+	 */
+	private BandStatistics statistics;
+
+	/**
+	 * Sets the precomputed statistics of the band being enhanced. If not set, the statistics
+	 * will be looked up in the hints, and used only if the source has a single band.
+	 */
+	void setStatistics(BandStatistics statistics) {
+		this.statistics = statistics;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -362,7 +378,8 @@ class ContrastEnhancementNode extends StyleVisitorCoverageProcessingNodeAdapter
 				// 
 				//
 				// /////////////////////////////////////////////////////////////////////
-				performContrastEnhancement(intensityWorker, hints);	
+				performContrastEnhancement(intensityWorker,
+				        intensity ? hints : getStatisticsHints(source, hints));
 
 				// /////////////////////////////////////////////////////////////////////
 				//
@@ -497,6 +514,35 @@ class ContrastEnhancementNode extends StyleVisitorCoverageProcessingNodeAdapter
 
 	}
 
+    /**
+     * Returns the hints to be used for the contrast enhancement, adding the precomputed
+     * statistics of the band being enhanced if available and applicable
+     */
+    private Hints getStatisticsHints(GridCoverage2D source, Hints hints) {
+        BandStatistics stats = statistics;
+        final RenderedImage image = source.getRenderedImage();
+        if (stats == null && hints != null) {
+            Object level = hints.get(CoverageStatistics.LEVEL_STATISTICS);
+            // without an explicit band, we can only use the statistics if the source is the
+            // original coverage (gray, or gray plus alpha)
+            if (level instanceof LevelStatistics
+                    && ((LevelStatistics) level).getNumBands() == image.getSampleModel()
+                            .getNumBands()) {
+                stats = ((LevelStatistics) level).getBand(0);
+            }
+        }
+        // the histogram method works on bytes, the statistics are usable only if the
+        // source is already made of bytes
+        if (stats == null || ("HISTOGRAM".equals(type)
+                && image.getSampleModel().getDataType() != DataBuffer.TYPE_BYTE)) {
+            return hints;
+        }
+
+        final Hints result = hints != null ? hints.clone() : new Hints();
+        result.put(ContrastEnhancementType.BAND_STATISTICS, stats);
+        return result;
+    }
+
     /**
      * Performs a contrast enhancement operation on the input image. Note that not all the contrast enhancement operations have been implemented in a
      * way that is generic enough o handle all data types.
@@ -38,6 +38,8 @@ import javax.media.jai.Histogram;
 import javax.media.jai.JAI;
 import javax.media.jai.RasterFactory;
 
+import org.geotools.coverage.grid.io.CoverageStatistics;
+import org.geotools.coverage.grid.io.CoverageStatistics.BandStatistics;
 import org.geotools.factory.Hints;
 import org.geotools.image.ImageWorker;
 import org.geotools.referencing.piecewise.MathTransformationAdapter;
@@ -89,8 +91,9 @@ public enum ContrastEnhancementType {
             // STEP 1 do the extrema
             //
             inputWorker.removeRenderingHints();
-            final double[] minimum = inputWorker.getMinimums();
-            final double[] maximum = inputWorker.getMaximums();
+            final double[][] extrema = getExtrema(inputWorker, hints);
+            final double[] minimum = extrema[0];
+            final double[] maximum = extrema[1];
 
             //
             // STEP 2 use generic piecewise
@@ -173,8 +176,9 @@ public enum ContrastEnhancementType {
             // STEP 1 do the extrema
             //
             inputWorker.removeRenderingHints();
-            final double[] minimum = inputWorker.getMinimums();
-            final double[] maximum = inputWorker.getMaximums();
+            final double[][] extrema = getExtrema(inputWorker, hints);
+            final double[] minimum = extrema[0];
+            final double[] maximum = extrema[1];
 
             //
             // STEP 2 use generic piecewise
@@ -244,12 +248,18 @@ public enum ContrastEnhancementType {
             // convert the input image to 8 bit
             inputWorker.rescaleToBytes();
 
-            // compute the histogram
-            final Histogram h = inputWorker.removeRenderingHints().getHistogram(null, null, null);
+            // use the precomputed histogram if available, or compute it
+            Map<String, Object> params = new HashMap<String, Object>();
+            BandStatistics stats = getBandStatistics(hints);
+            if (stats != null && stats.getCounts() != null && stats.getCounts().length == 256
+                    && stats.getHistogramLow() == 0 && stats.getHistogramHigh() == 256) {
+                params.put(KEY_HISTOGRAM, stats);
+            } else {
+                params.put(KEY_HISTOGRAM,
+                        inputWorker.removeRenderingHints().getHistogram(null, null, null));
+            }
 
             // do the actual lookup
-            Map<String, Object> params = new HashMap<String, Object>();
-            params.put(KEY_HISTOGRAM, h);
             LookupTable table = createByteLookupTable(params);
             inputWorker.setRenderingHints(hints);
             inputWorker.lookup(table);
@@ -259,21 +269,42 @@ public enum ContrastEnhancementType {
         @Override
         LookupTable createByteLookupTable(Map<String, Object> params) {
             Utilities.ensureNonNull("params", params);
-            Histogram h = (Histogram) params.get(KEY_HISTOGRAM);
-            final byte[] cumulative = new byte[h.getNumBins(0)];
+            Object histogram = params.get(KEY_HISTOGRAM);
+            final float[] binSizes;
+            final double low, high;
+            if (histogram instanceof BandStatistics) {
+                // precomputed histogram
+                BandStatistics stats = (BandStatistics) histogram;
+                long[] counts = stats.getCounts();
+                binSizes = new float[counts.length];
+                for (int i = 0; i < counts.length; i++) {
+                    binSizes[i] = counts[i];
+                }
+                low = stats.getHistogramLow();
+                high = stats.getHistogramHigh();
+            } else {
+                Histogram h = (Histogram) histogram;
+                binSizes = new float[h.getNumBins(0)];
+                for (int i = 0; i < binSizes.length; i++) {
+                    binSizes[i] = h.getBinSize(0, i);
+                }
+                low = h.getLowValue(0);
+                high = h.getHighValue(0);
+            }
+            final byte[] cumulative = new byte[binSizes.length];
 
             // sum of bins (we might have excluded 0 hence we cannot really optimise)
             float totalBinSum = 0;
             for (int i = 0; i < cumulative.length; i++) {
-                totalBinSum += h.getBinSize(0, i);
+                totalBinSum += binSizes[i];
             }
 
             // this is the scale factor for the histogram equalization process
-            final float scale = (float) (h.getHighValue(0) - 1 - h.getLowValue(0)) / totalBinSum;
+            final float scale = (float) (high - 1 - low) / totalBinSum;
             float sum = 0;
             for (int i = 1; i < cumulative.length; i++) {
-                sum += h.getBinSize(0, i - 1);
-                cumulative[i] = (byte) ((sum * scale + h.getLowValue(0)) + .5F);
+                sum += binSizes[i - 1];
+                cumulative[i] = (byte) ((sum * scale + low) + .5F);
             }
 
             return generateLookupTableByte(cumulative);
@@ -285,11 +316,9 @@ public enum ContrastEnhancementType {
         RenderedImage process(ImageWorker inputWorker, Hints hints, Map<String, Expression> parameters) {
 
             // step 1 do the extrema to get the statistics for this image
-            final double[][] extrema = new double[2][];
             inputWorker.removeRenderingHints();
             RenderedImage inputImage = inputWorker.getRenderedImage();
-            extrema[0] = inputWorker.getMinimums();
-            extrema[1] = inputWorker.getMaximums();
+            final double[][] extrema = getExtrema(inputWorker, hints);
             final int numBands = extrema[0].length;
             assert numBands == 1 : inputWorker.getRenderedOperation();
             final int dataType = inputImage.getSampleModel().getDataType();
@@ -716,6 +745,12 @@ public enum ContrastEnhancementType {
     /** Parameter Key used to refer to the histogram instance*/
     public static final String KEY_HISTOGRAM = "histogram";
 
+    /**
+     * Hint used to pass down the precomputed statistics of the band being enhanced, see
+     * {@link CoverageStatistics}
+     */
+    static final Hints.Key BAND_STATISTICS = new Hints.Key(BandStatistics.class);
+
     /** Parameter Key used to refer to the correctionFactor value */
     public static final String KEY_CORRECTION_FACTOR = "correctionFactor";
 
@@ -783,6 +818,31 @@ public enum ContrastEnhancementType {
                 new DefaultPiecewiseTransform1DElement[] { mainElement }, 0);
     }
 
+    /**
+     * Returns the precomputed statistics of the band being enhanced, if available in the hints
+     */
+    static BandStatistics getBandStatistics(Hints hints) {
+        if (hints != null) {
+            Object stats = hints.get(BAND_STATISTICS);
+            if (stats instanceof BandStatistics) {
+                return (BandStatistics) stats;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the minimum and maximum of the image, using the precomputed statistics if available
+     * in the hints, or scanning the image otherwise
+     */
+    private static double[][] getExtrema(ImageWorker inputWorker, Hints hints) {
+        BandStatistics stats = getBandStatistics(hints);
+        if (stats != null && stats.getMinimum() <= stats.getMaximum()) {
+            return new double[][] { { stats.getMinimum() }, { stats.getMaximum() } };
+        }
+        return new double[][] { inputWorker.getMinimums(), inputWorker.getMaximums() };
+    }
+
     /**
      * Utility method setting up a Parameters Map containing minimum and maximum values.
      * @param minData
@@ -58,6 +58,8 @@ import org.geotools.coverage.grid.GridCoverageFactory;
 import org.geotools.coverage.grid.GridEnvelope2D;
 import org.geotools.coverage.grid.GridGeometry2D;
 import org.geotools.coverage.grid.io.AbstractGridFormat;
+import org.geotools.coverage.grid.io.CoverageStatistics;
+import org.geotools.coverage.grid.io.CoverageStatistics.LevelStatistics;
 import org.geotools.coverage.grid.io.GridCoverage2DReader;
 import org.geotools.factory.Hints;
 import org.geotools.geometry.GeneralEnvelope;
@@ -177,6 +179,8 @@ public final class GridCoverageRenderer {
 
     private boolean advancedProjectionHandlingEnabled = true;
 
+    private RasterTileCache tileCache;
+
     /**
      * Enables/disable map wrapping (active only when rendering off a {@link GridCoverage2DReader}
      * and when advanced projection handling has been enabled too)
@@ -211,6 +215,23 @@ public final class GridCoverageRenderer {
         return this.advancedProjectionHandlingEnabled;
     }
 
+    /**
+     * Sets the cache used to store the fully symbolized images. When set, painting off a
+     * {@link GridCoverage2DReader} will reuse the images computed by previous requests for the
+     * same reader, read parameters, symbolizer and output area, instead of evaluating again the
+     * raster symbolizer chain. Set to null (the default) to disable caching.
+     */
+    public void setTileCache(RasterTileCache tileCache) {
+        this.tileCache = tileCache;
+    }
+
+    /**
+     * Returns the cache used to store the fully symbolized images, or null if caching is disabled
+     */
+    public RasterTileCache getTileCache() {
+        return tileCache;
+    }
+
 
     /**
      * Creates a new {@link GridCoverageRenderer} object.
@@ -452,11 +473,12 @@ public final class GridCoverageRenderer {
         final GridCoverage2D afterReprojection=reproject(preReprojection, doReprojection,bkgValues);
         
         // symbolizer
-        return symbolize(afterReprojection, symbolizer, bkgValues);
+        return symbolize(afterReprojection, symbolizer, bkgValues, this.hints);
     }
 
     private GridCoverage2D symbolize(final GridCoverage2D coverage,
-            final RasterSymbolizer symbolizer, final double[] bkgValues) {
+            final RasterSymbolizer symbolizer, final double[] bkgValues,
+            final Hints symbolizerHints) {
         // ///////////////////////////////////////////////////////////////////
         //
         // FINAL AFFINE
@@ -477,7 +499,7 @@ public final class GridCoverageRenderer {
                 if (LOGGER.isLoggable(Level.FINE)){
                     LOGGER.fine("Applying Raster Symbolizer ");
                 }            
-        	final RasterSymbolizerHelper rsp = new RasterSymbolizerHelper (preSymbolizer,this.hints);
+        	final RasterSymbolizerHelper rsp = new RasterSymbolizerHelper (preSymbolizer,symbolizerHints);
         	rsp.visit(symbolizer);
         	symbolizerGC = (GridCoverage2D) rsp.getOutput();
     	} else {
@@ -796,9 +818,12 @@ public final class GridCoverageRenderer {
         // symbolizer. Reader should have taken care o proper channel order, based on initial
         // symbolizer channel definition
         RasterSymbolizer finalSymbolizer = symbolizer;
+        int[] selectedBands = null;
         if (isBandsSelectionApplicable(reader, symbolizer)){
             readParams = applyBandsSelectionParameter(reader, readParams, symbolizer);
             finalSymbolizer = setupSymbolizerForBandsSelection(symbolizer);
+            selectedBands = ChannelSelectionUpdateStyleVisitor
+                    .getBandIndicesFromSelectionChannels(symbolizer);
         }
 
         ProjectionHandler handler = null;
@@ -825,6 +850,9 @@ public final class GridCoverageRenderer {
             coverages = rh.readCoverages(readParams, handler, gridCoverageFactory);
         }
 
+        // precomputed statistics for the contrast enhancement, if available
+        Hints symbolizerHints = getStatisticsHints(reader, coverages, selectedBands);
+
         // check if we have to reproject
         boolean reprojectionNeeded = false;
         for (GridCoverage2D coverage : coverages) {
@@ -966,7 +994,7 @@ public final class GridCoverageRenderer {
         int ii = 0;
         for (GridCoverage2D displaced : displacedCoverages) {
             GridCoverage2D symbolized = symbolize(displaced, finalSymbolizer,
-                    bgValues);
+                    bgValues, symbolizerHints);
             if(symbolized != null) {
                 symbolizedCoverages.add(symbolized);
             }
@@ -1008,6 +1036,42 @@ public final class GridCoverageRenderer {
 
     }
 
+    /**
+     * Looks up the statistics sidecar file of the reader source, and if found, returns a copy of
+     * the hints holding the statistics of the level matching the resolution of the coverages
+     * read, so that the contrast enhancement can use them instead of scanning the pixels. The
+     * renderer hints are not modified, as the statistics are specific to the current request.
+     */
+    private Hints getStatisticsHints(GridCoverage2DReader reader,
+            List<GridCoverage2D> coverages, int[] selectedBands) {
+        CoverageStatistics statistics = CoverageStatistics.lookup(reader.getSource());
+        if (statistics == null) {
+            return this.hints;
+        }
+
+        double[] resolution = null;
+        for (GridCoverage2D coverage : coverages) {
+            if (coverage != null) {
+                MathTransform2D gridToWorld = coverage.getGridGeometry().getGridToCRS2D();
+                if (gridToWorld instanceof AffineTransform2D) {
+                    resolution = CoverageUtilities
+                            .getResolution((AffineTransform2D) gridToWorld);
+                }
+                break;
+            }
+        }
+        LevelStatistics level = statistics.getLevel(resolution);
+        if (selectedBands != null) {
+            level = level.selectBands(selectedBands);
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Using precomputed statistics " + level);
+        }
+        Hints result = new Hints(this.hints);
+        result.put(CoverageStatistics.LEVEL_STATISTICS, level);
+        return result;
+    }
+
     /**
      * Forces adding ROI to the coverage in case it's missing. It will use the renderer image
      * footprint.
@@ -1194,9 +1258,36 @@ public final class GridCoverageRenderer {
             finalSymbolizer = setupSymbolizerForBandsSelection(symbolizer);
         }
 
+        // do we have the result already?
+        RasterTileCache.Key cacheKey = null;
+        if (tileCache != null) {
+            cacheKey = new RasterTileCache.Key(gridCoverageReader,
+                    readParams == null ? null : Arrays.asList(readParams), finalSymbolizer,
+                    this.interpolation.getClass(), background, destinationEnvelope,
+                    destinationSize, finalWorldToGrid);
+            RenderedImage cached = tileCache.get(cacheKey);
+            if (cached != null) {
+                paintImage(graphics, cached);
+                return;
+            }
+        }
+
         // Build the final image and the transformation
         RenderedImage finalImage = renderImage(gridCoverageReader, readParams, finalSymbolizer,
                 interpolation, background);
+        if (finalImage != null && cacheKey != null) {
+            // compute and cache the image ready for painting, the original chain can be disposed
+            RenderedImage prepared = new ImageWorker(finalImage).prepareForRendering()
+                    .getRenderedImage();
+            RenderedImage cached = tileCache.put(cacheKey, prepared);
+            if (cached != prepared) {
+                if (finalImage instanceof PlanarImage) {
+                    ImageUtilities.disposePlanarImageChain((PlanarImage) finalImage);
+                }
+                paintImage(graphics, cached);
+                return;
+            }
+        }
         if (finalImage != null) {
             try {
                 paintImage(graphics, finalImage);
@@ -31,6 +31,8 @@ import org.geotools.coverage.GridSampleDimension;
 import org.geotools.coverage.TypeMap;
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.coverage.grid.GridGeometry2D;
+import org.geotools.coverage.grid.io.CoverageStatistics;
+import org.geotools.coverage.grid.io.CoverageStatistics.LevelStatistics;
 import org.geotools.factory.Hints;
 import org.geotools.image.ImageWorker;
 import org.geotools.renderer.i18n.Vocabulary;
@@ -227,6 +229,10 @@ public class RasterSymbolizerHelper extends
 		final ChannelSelection cs = rs.getChannelSelection();
 		csNode.addSource(this.getSource(0));
 		csNode.addSink(cmNode);
+		final Hints hints = this.getHints();
+		if (hints != null && hints.get(CoverageStatistics.LEVEL_STATISTICS) instanceof LevelStatistics) {
+		    csNode.setStatistics((LevelStatistics) hints.get(CoverageStatistics.LEVEL_STATISTICS));
+		}
 		csNode.visit(cs);
 
 		// /////////////////////////////////////////////////////////////////////
@@ -0,0 +1,177 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.lite.gridcoverage2d;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.media.jai.TiledImage;
+
+import org.geotools.renderer.lite.MemoryBoundedCache;
+
+/**
+ * A bounded, in memory cache of fully computed rendered rasters, as produced by
+ * {@link GridCoverageRenderer} after reading, reprojection and application of the
+ * {@link org.geotools.styling.RasterSymbolizer} chain.
+ * <p>
+ * Clients requesting the same coverage with the same style over a fixed tile grid (e.g., WMS tile
+ * seeding) end up issuing the very same requests over and over, the cache allows to skip the whole
+ * color mapping/contrast enhancement/band selection chain when a request is repeated. The cache
+ * key is made of the coverage source, the read parameters, the symbolizer and the destination
+ * envelope and size, which, on a fixed tile grid, are equivalent to the resolution level and tile
+ * index.
+ * <p>
+ * The images to be cached are fully computed before being stored, with the computation of their
+ * tiles being spread over a {@link ForkJoinPool}. Entries are evicted in least recently used
+ * order once the estimated memory footprint goes beyond the configured limit.
+ */
+public class RasterTileCache extends MemoryBoundedCache<RenderedImage> {
+
+    static final Logger LOGGER = org.geotools.util.logging.Logging
+            .getLogger(RasterTileCache.class);
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Builds a new cache using the common {@link ForkJoinPool} to compute the rasters
+     *
+     * @param maxMemory The maximum amount of memory used by the cache, in bytes
+     */
+    public RasterTileCache(long maxMemory) {
+        this(maxMemory, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds a new cache
+     *
+     * @param maxMemory The maximum amount of memory used by the cache, in bytes
+     * @param pool The pool used to compute the image tiles in parallel
+     */
+    public RasterTileCache(long maxMemory, ForkJoinPool pool) {
+        super(maxMemory);
+        if (pool == null) {
+            throw new NullPointerException("The fork join pool cannot be null");
+        }
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the image associated to the key, or null if not found
+     *
+     * @param key
+     * @return
+     */
+    public RenderedImage get(Key key) {
+        return lookup(key);
+    }
+
+    /**
+     * Computes all the tiles of the image, and stores the result in the cache. Returns the
+     * computed image, that the caller should use in place of the original one. If the image
+     * is larger than the whole cache, it will be returned as is, and won't be cached.
+     *
+     * @param key
+     * @param image
+     * @return
+     */
+    public RenderedImage put(Key key, RenderedImage image) {
+        final long size = getMemoryFootprint(image);
+        if (size > getMaxMemory()) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Skipping caching of " + key + ", its size " + size
+                        + " is larger than the cache memory limit " + getMaxMemory());
+            }
+            return image;
+        }
+
+        RenderedImage computed = compute(image);
+        store(key, computed, size);
+        return computed;
+    }
+
+    /**
+     * Computes all the tiles of the specified image in parallel and collects them into a
+     * {@link TiledImage} having the same layout as the original
+     *
+     * @param image
+     * @return
+     */
+    RenderedImage compute(final RenderedImage image) {
+        final int minTileX = image.getMinTileX();
+        final int minTileY = image.getMinTileY();
+        final int numXTiles = image.getNumXTiles();
+        final int numYTiles = image.getNumYTiles();
+        List<Callable<Raster>> tasks = new ArrayList<Callable<Raster>>(numXTiles * numYTiles);
+        for (int ty = minTileY; ty < minTileY + numYTiles; ty++) {
+            for (int tx = minTileX; tx < minTileX + numXTiles; tx++) {
+                final int tileX = tx;
+                final int tileY = ty;
+                tasks.add(new Callable<Raster>() {
+
+                    @Override
+                    public Raster call() throws Exception {
+                        return image.getTile(tileX, tileY);
+                    }
+                });
+            }
+        }
+
+        TiledImage result = new TiledImage(image.getMinX(), image.getMinY(), image.getWidth(),
+                image.getHeight(), image.getTileGridXOffset(), image.getTileGridYOffset(),
+                image.getSampleModel(), image.getColorModel());
+        try {
+            for (Future<Raster> future : pool.invokeAll(tasks)) {
+                result.setData(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while computing the image tiles", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to compute the image tiles", e.getCause());
+        }
+
+        return result;
+    }
+
+    /**
+     * Estimates the memory used by the raster data of the given image
+     *
+     * @param image
+     * @return
+     */
+    static long getMemoryFootprint(RenderedImage image) {
+        SampleModel sm = image.getSampleModel();
+        long pixelBits = 0;
+        for (int size : sm.getSampleSize()) {
+            pixelBits += size;
+        }
+        if (pixelBits == 0) {
+            pixelBits = sm.getNumBands() * DataBuffer.getDataTypeSize(sm.getDataType());
+        }
+        return (long) image.getWidth() * image.getHeight() * pixelBits / 8;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.lite;
+
+import static org.junit.Assert.*;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+
+import org.geotools.geometry.jts.LiteShape2;
+import org.geotools.image.test.ImageAssert;
+import org.geotools.renderer.style.MarkStyle2D;
+import org.geotools.renderer.style.PolygonStyle2D;
+import org.geotools.renderer.style.Style2D;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.WKTReader;
+
+public class DirectRasterPainterTest {
+
+    private static final int SIZE = 100;
+
+    private Graphics2D createGraphics(BufferedImage image, boolean antialiasing) {
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                antialiasing ? RenderingHints.VALUE_ANTIALIAS_ON
+                        : RenderingHints.VALUE_ANTIALIAS_OFF);
+        graphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL,
+                RenderingHints.VALUE_STROKE_PURE);
+        graphics.setClip(0, 0, SIZE, SIZE);
+        return graphics;
+    }
+
+    private LiteShape2 shape(String wkt) throws Exception {
+        Geometry geometry = new WKTReader().read(wkt);
+        return new LiteShape2(geometry, null, null, false, false);
+    }
+
+    /**
+     * Paints the shape with both Java2D and the direct painter, and compares the results
+     */
+    private void assertSameRendering(LiteShape2 shape, Style2D style, boolean antialiasing) {
+        assertSameRendering(shape, style, antialiasing, 0);
+    }
+
+    /**
+     * Same as above, allowing for a few different pixels, as the Java2D scanline converter works
+     * with limited precision, and can differ on pixel centers lying very close to the edges
+     */
+    private void assertSameRendering(LiteShape2 shape, Style2D style, boolean antialiasing,
+            int threshold) {
+        BufferedImage expected = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D eg = createGraphics(expected, antialiasing);
+        new StyledShapePainter().paint(eg, shape, style, 1);
+        eg.dispose();
+
+        BufferedImage actual = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D ag = createGraphics(actual, antialiasing);
+        DirectRasterPainter painter = new DirectRasterPainter();
+        assertTrue(painter.paint(ag, shape, style, 1));
+        painter.flush();
+        ag.dispose();
+
+        ImageAssert.assertEquals(expected, actual, threshold);
+    }
+
+    private MarkStyle2D buildCircle(double size) {
+        MarkStyle2D ms = new MarkStyle2D();
+        ms.setShape(new Ellipse2D.Double(-0.5, -0.5, 1, 1));
+        ms.setSize(size);
+        ms.setFill(Color.RED);
+        ms.setFillComposite(AlphaComposite.SrcOver);
+        ms.setContour(Color.BLACK);
+        ms.setContourComposite(AlphaComposite.SrcOver);
+        ms.setStroke(new BasicStroke(1));
+        return ms;
+    }
+
+    @Test
+    public void testMarks() throws Exception {
+        LiteShape2 points = shape("MULTIPOINT((10.5 10.5), (30.25 40.75), (50 60.125), (98 50))");
+        assertSameRendering(points, buildCircle(8), true);
+        assertSameRendering(points, buildCircle(8), false);
+    }
+
+    @Test
+    public void testTranslucentMarks() throws Exception {
+        MarkStyle2D ms = buildCircle(12);
+        ms.setFillComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.5f));
+        LiteShape2 points = shape("MULTIPOINT((20 20), (25 25), (70.5 30.5))");
+        assertSameRendering(points, ms, true);
+    }
+
+    @Test
+    public void testLargeMarkFallback() throws Exception {
+        BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = createGraphics(image, true);
+        DirectRasterPainter painter = new DirectRasterPainter();
+        assertFalse(painter.paint(graphics, shape("POINT(50 50)"),
+                buildCircle(DirectRasterPainter.MAX_STAMP_SIZE * 2), 1));
+        graphics.dispose();
+    }
+
+    @Test
+    public void testPolygons() throws Exception {
+        PolygonStyle2D ps = new PolygonStyle2D();
+        ps.setFill(Color.BLUE);
+        ps.setFillComposite(AlphaComposite.SrcOver);
+        LiteShape2 polygons = shape("MULTIPOLYGON(((10.3 10.7, 40.6 12.2, 35.1 45.9, 10.3 10.7)),"
+                + "((50 50, 90.5 50, 90.5 90.5, 50 90.5, 50 50), "
+                + "(60.25 60.25, 80.75 60.25, 80.75 80.75, 60.25 80.75, 60.25 60.25)))");
+        assertSameRendering(polygons, ps, false);
+
+        // partially outside of the clip area
+        assertSameRendering(shape("POLYGON((-10 -10, 50 20.5, 120 110, -10 -10))"), ps, false,
+                5);
+    }
+
+    @Test
+    public void testTranslucentPolygons() throws Exception {
+        PolygonStyle2D ps = new PolygonStyle2D();
+        ps.setFill(Color.GREEN);
+        ps.setFillComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.3f));
+        assertSameRendering(shape("POLYGON((5 5, 95 5, 50 95, 5 5))"), ps, false);
+    }
+
+    @Test
+    public void testFallbacks() throws Exception {
+        PolygonStyle2D ps = new PolygonStyle2D();
+        ps.setFill(Color.BLUE);
+        LiteShape2 polygon = shape("POLYGON((10 10, 40 10, 40 40, 10 40, 10 10))");
+        DirectRasterPainter painter = new DirectRasterPainter();
+
+        // antialiased polygons are left to Java2D
+        BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = createGraphics(image, true);
+        assertFalse(painter.paint(graphics, polygon, ps, 1));
+        graphics.dispose();
+
+        // and so are the normalized ones
+        graphics = createGraphics(image, false);
+        graphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL,
+                RenderingHints.VALUE_STROKE_NORMALIZE);
+        assertFalse(painter.paint(graphics, polygon, ps, 1));
+        graphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL,
+                RenderingHints.VALUE_STROKE_PURE);
+        assertTrue(painter.paint(graphics, polygon, ps, 1));
+
+        // same for non rectangular clips
+        graphics.setClip(new Ellipse2D.Double(0, 0, SIZE, SIZE));
+        assertFalse(painter.paint(graphics, polygon, ps, 1));
+
+        // and for polygons with an outline
+        graphics.setClip(0, 0, SIZE, SIZE);
+        ps.setContour(Color.BLACK);
+        ps.setStroke(new BasicStroke(1));
+        assertFalse(painter.paint(graphics, polygon, ps, 1));
+        graphics.dispose();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.lite;
+
+import static org.junit.Assert.*;
+
+import org.geotools.geometry.jts.LiteCoordinateSequence;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+
+public class SimplifiedGeometryCacheTest {
+
+    GeometryFactory gf = new GeometryFactory();
+
+    /**
+     * A line with a point every 0.1 units
+     */
+    private LineString buildLine(int points) {
+        Coordinate[] coords = new Coordinate[points];
+        for (int i = 0; i < points; i++) {
+            coords[i] = new Coordinate(i * 0.1, (i % 2) * 0.1);
+        }
+        return gf.createLineString(coords);
+    }
+
+    @Test
+    public void testGeneralizeAndHit() {
+        SimplifiedGeometryCache cache = new SimplifiedGeometryCache(1024 * 1024);
+        LineString line = buildLine(1000);
+
+        Geometry g1 = cache.getGeneralized("layer", "f.1", null, line, 1, 2);
+        assertTrue(g1.getNumPoints() < line.getNumPoints());
+        assertTrue(((LineString) g1).getCoordinateSequence() instanceof LiteCoordinateSequence);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.size());
+
+        // same level (distances within the same power of two), the cached geometry is shared
+        Geometry g2 = cache.getGeneralized("layer", "f.1", null, line, 1.5, 2);
+        assertEquals(1, cache.getHitCount());
+        assertSame(g1, g2);
+
+        // a different level is computed separately
+        cache.getGeneralized("layer", "f.1", null, line, 4, 2);
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.size());
+
+        // the original geometry has not been touched
+        assertEquals(1000, line.getNumPoints());
+    }
+
+    @Test
+    public void testModifiedGeometry() {
+        SimplifiedGeometryCache cache = new SimplifiedGeometryCache(1024 * 1024);
+        cache.getGeneralized("layer", "f.1", null, buildLine(1000), 1, 2);
+        // same feature id, different geometry, the cached entry is stale
+        Geometry g = cache.getGeneralized("layer", "f.1", null, buildLine(10), 1, 2);
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1, cache.size());
+        assertEquals(0.9, g.getEnvelopeInternal().getMaxX(), 1e-9);
+    }
+
+    @Test
+    public void testEviction() {
+        LineString line = buildLine(100);
+        long entrySize = SimplifiedGeometryCache.getMemoryFootprint(LiteCoordinateSequence
+                .cloneGeometry(line, 2));
+        // the distance is too small to remove any point, room for exactly two entries
+        SimplifiedGeometryCache cache = new SimplifiedGeometryCache(entrySize * 2);
+        for (int i = 0; i < 20; i++) {
+            cache.getGeneralized("layer", "f." + i, null, line, 0.001, 2);
+        }
+        assertTrue(cache.getMemoryUsage() <= entrySize * 2);
+        assertTrue(cache.getEvictionCount() > 0);
+        assertEquals(20, cache.size() + cache.getEvictionCount());
+    }
+}
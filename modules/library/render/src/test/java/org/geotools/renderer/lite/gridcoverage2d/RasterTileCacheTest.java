@@ -0,0 +1,101 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.lite.gridcoverage2d;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class RasterTileCacheTest {
+
+    private BufferedImage buildImage(int size, Color color) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_4BYTE_ABGR);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, size, size);
+        graphics.dispose();
+        return image;
+    }
+
+    @Test
+    public void testKeyEquality() {
+        RasterTileCache.Key k1 = new RasterTileCache.Key("coverage", new double[] { 1, 2 }, 3);
+        RasterTileCache.Key k2 = new RasterTileCache.Key("coverage", new double[] { 1, 2 }, 3);
+        RasterTileCache.Key k3 = new RasterTileCache.Key("coverage", new double[] { 1, 2 }, 4);
+        assertEquals(k1, k2);
+        assertEquals(k1.hashCode(), k2.hashCode());
+        assertNotEquals(k1, k3);
+    }
+
+    @Test
+    public void testPutGet() {
+        RasterTileCache cache = new RasterTileCache(1024 * 1024, new ForkJoinPool(2));
+        RasterTileCache.Key key = new RasterTileCache.Key("coverage", 0, 0);
+        assertNull(cache.get(key));
+
+        RenderedImage cached = cache.put(key, buildImage(64, Color.RED));
+        assertNotNull(cached);
+        assertEquals(64, cached.getWidth());
+        assertEquals(64, cached.getHeight());
+        Raster data = cached.getData();
+        assertEquals(255, data.getSample(10, 10, 0));
+        assertEquals(0, data.getSample(10, 10, 1));
+
+        assertSame(cached, cache.get(key));
+        assertEquals(1, cache.size());
+        assertEquals(64 * 64 * 4, cache.getMemoryUsage());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testEviction() {
+        // room for two 32x32 RGBA images
+        RasterTileCache cache = new RasterTileCache(32 * 32 * 4 * 2);
+        RasterTileCache.Key k1 = new RasterTileCache.Key("coverage", 1);
+        RasterTileCache.Key k2 = new RasterTileCache.Key("coverage", 2);
+        RasterTileCache.Key k3 = new RasterTileCache.Key("coverage", 3);
+        cache.put(k1, buildImage(32, Color.RED));
+        cache.put(k2, buildImage(32, Color.GREEN));
+        // access k1 so that k2 becomes the least recently used
+        assertNotNull(cache.get(k1));
+        cache.put(k3, buildImage(32, Color.BLUE));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertNotNull(cache.get(k1));
+        assertNull(cache.get(k2));
+        assertNotNull(cache.get(k3));
+    }
+
+    @Test
+    public void testTooLarge() {
+        RasterTileCache cache = new RasterTileCache(100);
+        RasterTileCache.Key key = new RasterTileCache.Key("coverage");
+        BufferedImage image = buildImage(32, Color.RED);
+        assertSame(image, cache.put(key, image));
+        assertEquals(0, cache.size());
+        assertNull(cache.get(key));
+    }
+}
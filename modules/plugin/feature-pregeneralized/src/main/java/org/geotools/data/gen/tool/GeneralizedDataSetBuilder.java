@@ -0,0 +1,631 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.gen.tool;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.geotools.data.DataStore;
+import org.geotools.data.DataStoreFinder;
+import org.geotools.data.DefaultTransaction;
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.Query;
+import org.geotools.data.Transaction;
+import org.geotools.data.gen.info.Generalization;
+import org.geotools.data.gen.info.GeneralizationInfo;
+import org.geotools.data.gen.info.GeneralizationInfos;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.shapefile.ShapefileDataStoreFactory;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.simplify.DouglasPeuckerSimplifier;
+import com.vividsolutions.jts.simplify.TopologyPreservingSimplifier;
+
+/**
+ * Builds a set of generalized copies of a feature source, along with the
+ * {@link GeneralizationInfos} configuration needed to serve them with a
+ * {@link org.geotools.data.gen.PreGeneralizedDataStore}, which will then pick the most appropriate
+ * level based on the {@link org.geotools.factory.Hints#GEOMETRY_DISTANCE} hint found in each
+ * query.
+ * <p>
+ * The source is read only once, the geometries are generalized in parallel and the results are
+ * written to one shape file per level (the default, mirroring the layout used by {@link Toolbox})
+ * or to a single target data store, e.g. a GeoPackage, identified by its connection parameters.
+ * <p>
+ * If no distances are provided they are computed from the data, starting at twice the average
+ * segment length of a sample of the geometries and doubling at each level.
+ *
+ * @source $URL$
+ */
+public class GeneralizedDataSetBuilder {
+
+    static final Logger LOGGER = Logging.getLogger(GeneralizedDataSetBuilder.class);
+
+    /**
+     * The simplification algorithm used to build the generalized geometries
+     */
+    public enum Simplification {
+        /**
+         * Douglas-Peucker, fast, but might produce invalid geometries
+         */
+        DOUGLAS_PEUCKER,
+        /**
+         * Topology preserving simplification, slower, but keeps polygons valid
+         */
+        TOPOLOGY_PRESERVING,
+        /**
+         * Uses Douglas-Peucker when the distance is small compared to the geometry size, where
+         * it is unlikely to break the topology, and the topology preserving simplifier otherwise
+         */
+        AUTO
+    }
+
+    /**
+     * Default number of levels built when the distances are not provided
+     */
+    public static final int DEFAULT_LEVELS = 4;
+
+    /**
+     * In {@link Simplification#AUTO} mode, distances below this fraction of the geometry size
+     * are handled with Douglas-Peucker
+     */
+    static final double AUTO_DOUGLAS_PEUCKER_RATIO = 0.05;
+
+    /**
+     * Max number of features sampled to compute the default distances
+     */
+    static final int SAMPLE_SIZE = 1000;
+
+    /**
+     * Number of features generalized in parallel before writing them out
+     */
+    static final int BATCH_SIZE = 512;
+
+    SimpleFeatureSource source;
+
+    File targetDir;
+
+    double[] distances;
+
+    int levels = DEFAULT_LEVELS;
+
+    Simplification simplification = Simplification.AUTO;
+
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    Map<String, Serializable> targetParameters;
+
+    String baseDataSourceName;
+
+    String featureName;
+
+    /**
+     * Builds a new builder
+     *
+     * @param source The full resolution data
+     * @param targetDir The directory that will contain the configuration file, and the
+     *        generalized shape files, if no target data store parameters are provided
+     */
+    public GeneralizedDataSetBuilder(SimpleFeatureSource source, File targetDir) {
+        this.source = source;
+        this.targetDir = targetDir;
+    }
+
+    /**
+     * Sets the generalization distances, in the units of the source CRS. If not set, they are
+     * computed from the data.
+     *
+     * @param distances
+     */
+    public void setDistances(double... distances) {
+        this.distances = distances;
+    }
+
+    /**
+     * Sets the number of levels built when the distances are computed from the data
+     *
+     * @param levels
+     */
+    public void setLevels(int levels) {
+        if (levels <= 0) {
+            throw new IllegalArgumentException("The number of levels must be positive");
+        }
+        this.levels = levels;
+    }
+
+    public void setSimplification(Simplification simplification) {
+        this.simplification = simplification;
+    }
+
+    /**
+     * Sets the number of threads used to generalize the geometries
+     *
+     * @param threads
+     */
+    public void setThreads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of threads must be positive");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the connection parameters of a data store that will receive all the levels, as
+     * separate feature types named after the source one, followed by the level number. The
+     * parameters are also saved in a property file next to the configuration, so that the
+     * {@link org.geotools.data.gen.DSFinderRepository} can connect to the same store.
+     *
+     * @param targetParameters
+     */
+    public void setTargetParameters(Map<String, Serializable> targetParameters) {
+        this.targetParameters = targetParameters;
+    }
+
+    /**
+     * Sets the data source name used in the configuration to locate the full resolution data,
+     * e.g., the path of a shape file or of a property file containing the connection parameters
+     *
+     * @param baseDataSourceName
+     */
+    public void setBaseDataSourceName(String baseDataSourceName) {
+        this.baseDataSourceName = baseDataSourceName;
+    }
+
+    /**
+     * Sets the name of the feature type published by the pre-generalized data store, defaults to
+     * the source type name
+     *
+     * @param featureName
+     */
+    public void setFeatureName(String featureName) {
+        this.featureName = featureName;
+    }
+
+    /**
+     * Returns the configuration file written by {@link #build()}
+     *
+     * @return
+     */
+    public File getConfigFile() {
+        return new File(targetDir, source.getSchema().getTypeName() + "_geninfos.xml");
+    }
+
+    /**
+     * Builds the generalized data sets and writes the configuration file
+     *
+     * @return The generalization configuration, also saved in {@link #getConfigFile()}
+     * @throws IOException
+     */
+    public GeneralizationInfos build() throws IOException {
+        if (baseDataSourceName == null) {
+            throw new IOException("The base data source name has not been set");
+        }
+        if (!targetDir.exists() && !targetDir.mkdirs()) {
+            throw new IOException("Could not create " + targetDir);
+        }
+        SimpleFeatureType schema = source.getSchema();
+        if (schema.getGeometryDescriptor() == null) {
+            throw new IOException(schema.getTypeName() + " does not have a geometry");
+        }
+        double[] levelDistances = distances != null ? distances.clone() : computeDistances();
+        if (levelDistances.length == 0) {
+            throw new IOException("No generalization distances available");
+        }
+
+        String typeName = schema.getTypeName();
+        GeneralizationInfos infos = new GeneralizationInfos();
+        GeneralizationInfo info = new GeneralizationInfo(typeName,
+                featureName != null ? featureName : typeName, schema.getGeometryDescriptor()
+                        .getLocalName(), infos);
+        info.setDataSourceName(baseDataSourceName);
+        infos.addGeneralizationInfo(info);
+
+        DataStore[] stores = new DataStore[levelDistances.length];
+        String[] typeNames = new String[levelDistances.length];
+        String[] dataSourceNames = new String[levelDistances.length];
+        try {
+            createTargets(levelDistances, stores, typeNames, dataSourceNames);
+            writeLevels(levelDistances, stores, typeNames);
+
+            for (int i = 0; i < levelDistances.length; i++) {
+                String geomName = stores[i].getSchema(typeNames[i]).getGeometryDescriptor()
+                        .getLocalName();
+                Generalization generalization = new Generalization(levelDistances[i],
+                        typeNames[i], geomName, info);
+                generalization.setDataSourceName(dataSourceNames[i]);
+                info.getGeneralizations().add(generalization);
+            }
+        } finally {
+            if (targetParameters != null) {
+                // a single target store, shared by all levels
+                if (stores[0] != null) {
+                    stores[0].dispose();
+                }
+            } else {
+                for (DataStore store : stores) {
+                    if (store != null) {
+                        store.dispose();
+                    }
+                }
+            }
+        }
+
+        infos.validate();
+        writeConfig(infos, getConfigFile());
+        return infos;
+    }
+
+    /**
+     * Computes the level distances, starting from twice the average segment length of the
+     * sampled geometries
+     *
+     * @return
+     * @throws IOException
+     */
+    double[] computeDistances() throws IOException {
+        Query q = new Query(source.getSchema().getTypeName());
+        q.setPropertyNames(new String[] { source.getSchema().getGeometryDescriptor()
+                .getLocalName() });
+        q.setMaxFeatures(SAMPLE_SIZE);
+        double length = 0;
+        long segments = 0;
+        SimpleFeatureIterator it = source.getFeatures(q).features();
+        try {
+            while (it.hasNext()) {
+                Geometry g = (Geometry) it.next().getDefaultGeometry();
+                if (g == null) {
+                    continue;
+                }
+                for (int i = 0; i < g.getNumGeometries(); i++) {
+                    Geometry part = g.getGeometryN(i);
+                    if (part instanceof Polygon) {
+                        Polygon p = (Polygon) part;
+                        length += p.getExteriorRing().getLength();
+                        segments += p.getExteriorRing().getNumPoints() - 1;
+                        for (int j = 0; j < p.getNumInteriorRing(); j++) {
+                            length += p.getInteriorRingN(j).getLength();
+                            segments += p.getInteriorRingN(j).getNumPoints() - 1;
+                        }
+                    } else if (part instanceof LineString) {
+                        length += part.getLength();
+                        segments += part.getNumPoints() - 1;
+                    }
+                }
+            }
+        } finally {
+            it.close();
+        }
+        if (segments <= 0 || length <= 0) {
+            throw new IOException("Cannot compute the generalization distances from "
+                    + source.getSchema().getTypeName() + ", please provide them explicitly");
+        }
+
+        double[] result = new double[levels];
+        result[0] = 2 * length / segments;
+        for (int i = 1; i < levels; i++) {
+            result[i] = result[i - 1] * 2;
+        }
+        return result;
+    }
+
+    /**
+     * Generalizes the geometry using the configured algorithm
+     *
+     * @param geometry
+     * @param distance
+     * @return
+     */
+    Geometry simplify(Geometry geometry, double distance) {
+        if (geometry == null || geometry.isEmpty() || geometry.getDimension() == 0) {
+            return geometry;
+        }
+        boolean douglasPeucker = simplification == Simplification.DOUGLAS_PEUCKER;
+        if (simplification == Simplification.AUTO) {
+            Envelope envelope = geometry.getEnvelopeInternal();
+            double size = Math.max(envelope.getWidth(), envelope.getHeight());
+            douglasPeucker = distance < size * AUTO_DOUGLAS_PEUCKER_RATIO;
+        }
+
+        if (douglasPeucker) {
+            Geometry result = DouglasPeuckerSimplifier.simplify(geometry, distance);
+            // Douglas-Peucker collapses small polygons to empty ones, keep them visible instead
+            if (!result.isEmpty()) {
+                return result;
+            }
+        }
+        return TopologyPreservingSimplifier.simplify(geometry, distance);
+    }
+
+    private void createTargets(double[] levelDistances, DataStore[] stores, String[] typeNames,
+            String[] dataSourceNames) throws IOException {
+        SimpleFeatureType schema = source.getSchema();
+        String typeName = schema.getTypeName();
+        if (targetParameters != null) {
+            DataStore store = DataStoreFinder.getDataStore(targetParameters);
+            if (store == null) {
+                throw new IOException("Could not connect to the target data store");
+            }
+            File propertyFile = new File(targetDir, typeName + "_generalized.properties");
+            writeParameters(targetParameters, propertyFile);
+            for (int i = 0; i < levelDistances.length; i++) {
+                stores[i] = store;
+                typeNames[i] = typeName + "_" + i;
+                dataSourceNames[i] = propertyFile.getAbsolutePath();
+                SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+                tb.init(schema);
+                tb.setName(typeNames[i]);
+                store.createSchema(tb.buildFeatureType());
+            }
+        } else {
+            ShapefileDataStoreFactory factory = new ShapefileDataStoreFactory();
+            for (int i = 0; i < levelDistances.length; i++) {
+                File dir = new File(targetDir, String.valueOf(levelDistances[i]));
+                if (!dir.exists() && !dir.mkdirs()) {
+                    throw new IOException("Could not create " + dir);
+                }
+                File file = new File(dir, typeName + ".shp");
+                Map<String, Serializable> params = new HashMap<String, Serializable>();
+                params.put(ShapefileDataStoreFactory.URLP.key, file.toURI().toURL());
+                ShapefileDataStore store = (ShapefileDataStore) factory.createNewDataStore(params);
+                stores[i] = store;
+                store.createSchema(schema);
+                if (schema.getCoordinateReferenceSystem() != null) {
+                    store.forceSchemaCRS(schema.getCoordinateReferenceSystem());
+                }
+                typeNames[i] = store.getTypeNames()[0];
+                dataSourceNames[i] = file.getAbsolutePath();
+            }
+        }
+    }
+
+    private void writeLevels(final double[] levelDistances, DataStore[] stores,
+            String[] typeNames) throws IOException {
+        // a single store gets a single transaction, so that all writers share the same
+        // connection, shape files are better off with auto commit, as their transactions are
+        // kept in memory
+        Transaction transaction = targetParameters != null ? new DefaultTransaction()
+                : Transaction.AUTO_COMMIT;
+        List<FeatureWriter<SimpleFeatureType, SimpleFeature>> writers = new ArrayList<FeatureWriter<SimpleFeatureType, SimpleFeature>>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        SimpleFeatureIterator it = source.getFeatures().features();
+        boolean committed = false;
+        try {
+            for (int i = 0; i < levelDistances.length; i++) {
+                writers.add(stores[i].getFeatureWriterAppend(typeNames[i], transaction));
+            }
+            int[] mapping = getAttributeMapping(source.getSchema(), writers.get(0)
+                    .getFeatureType());
+
+            List<SimpleFeature> batch = new ArrayList<SimpleFeature>(BATCH_SIZE);
+            List<Future<Geometry[]>> results = new ArrayList<Future<Geometry[]>>(BATCH_SIZE);
+            while (it.hasNext()) {
+                final SimpleFeature feature = it.next();
+                batch.add(feature);
+                results.add(executor.submit(new Callable<Geometry[]>() {
+
+                    @Override
+                    public Geometry[] call() throws Exception {
+                        Geometry geometry = (Geometry) feature.getDefaultGeometry();
+                        Geometry[] generalized = new Geometry[levelDistances.length];
+                        for (int i = 0; i < levelDistances.length; i++) {
+                            generalized[i] = simplify(geometry, levelDistances[i]);
+                        }
+                        return generalized;
+                    }
+                }));
+                if (batch.size() == BATCH_SIZE) {
+                    write(batch, results, writers, mapping);
+                }
+            }
+            write(batch, results, writers, mapping);
+
+            for (FeatureWriter<SimpleFeatureType, SimpleFeature> w : writers) {
+                w.close();
+            }
+            writers.clear();
+            transaction.commit();
+            committed = true;
+        } finally {
+            it.close();
+            executor.shutdownNow();
+            for (FeatureWriter<SimpleFeatureType, SimpleFeature> w : writers) {
+                try {
+                    w.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Failed to close the feature writer", e);
+                }
+            }
+            // roll back on any failure, not just I/O ones, auto commit cannot be rolled back
+            if (!committed && transaction != Transaction.AUTO_COMMIT) {
+                try {
+                    transaction.rollback();
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Failed to roll back the generalized levels", e);
+                }
+            }
+            transaction.close();
+        }
+    }
+
+    private void write(List<SimpleFeature> batch, List<Future<Geometry[]>> results,
+            List<FeatureWriter<SimpleFeatureType, SimpleFeature>> writers, int[] mapping)
+            throws IOException {
+        for (int i = 0; i < batch.size(); i++) {
+            SimpleFeature feature = batch.get(i);
+            Geometry[] generalized;
+            try {
+                generalized = results.get(i).get();
+            } catch (InterruptedException e) {
+                throw new IOException("Interrupted while generalizing the geometries", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to generalize " + feature.getID(), e.getCause());
+            }
+            for (int j = 0; j < writers.size(); j++) {
+                FeatureWriter<SimpleFeatureType, SimpleFeature> w = writers.get(j);
+                SimpleFeature target = w.next();
+                for (int k = 0; k < mapping.length; k++) {
+                    if (mapping[k] >= 0) {
+                        target.setAttribute(mapping[k], feature.getAttribute(k));
+                    }
+                }
+                target.setDefaultGeometry(generalized[j]);
+                w.write();
+            }
+        }
+        batch.clear();
+        results.clear();
+    }
+
+    /**
+     * Maps the source attributes to the target ones. The target store might have renamed or
+     * moved them (e.g., shape files always use "the_geom" as the first attribute, and truncate
+     * names to ten chars), so the non geometric attributes are matched by position.
+     *
+     * @param sourceType
+     * @param targetType
+     * @return The target index for each source attribute, or -1 for the default geometry
+     */
+    static int[] getAttributeMapping(SimpleFeatureType sourceType, SimpleFeatureType targetType) {
+        GeometryDescriptor sourceGeometry = sourceType.getGeometryDescriptor();
+        GeometryDescriptor targetGeometry = targetType.getGeometryDescriptor();
+        List<Integer> targetIndexes = new ArrayList<Integer>();
+        for (int i = 0; i < targetType.getAttributeCount(); i++) {
+            if (targetType.getDescriptor(i) != targetGeometry) {
+                targetIndexes.add(i);
+            }
+        }
+
+        int[] mapping = new int[sourceType.getAttributeCount()];
+        int next = 0;
+        for (int i = 0; i < mapping.length; i++) {
+            AttributeDescriptor ad = sourceType.getDescriptor(i);
+            if (ad == sourceGeometry || next >= targetIndexes.size()) {
+                mapping[i] = -1;
+            } else {
+                mapping[i] = targetIndexes.get(next++);
+            }
+        }
+        return mapping;
+    }
+
+    private void writeParameters(Map<String, Serializable> params, File file) throws IOException {
+        Properties properties = new Properties();
+        for (Map.Entry<String, Serializable> entry : params.entrySet()) {
+            if (entry.getValue() != null) {
+                properties.put(entry.getKey(), entry.getValue().toString());
+            }
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            properties.store(out, null);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes the configuration in the format read by
+     * {@link org.geotools.data.gen.info.GeneralizationInfosProviderImpl}
+     *
+     * @param infos
+     * @param file
+     * @throws IOException
+     */
+    static void writeConfig(GeneralizationInfos infos, File file) throws IOException {
+        try {
+            Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                    .newDocument();
+            Element root = doc.createElement("GeneralizationInfos");
+            root.setAttribute("version", "1.0");
+            setAttribute(root, "dataSourceName", infos.getDataSourceName());
+            setAttribute(root, "dataSourceNameSpace", infos.getDataSourceNameSpace());
+            doc.appendChild(root);
+            for (GeneralizationInfo info : infos.getGeneralizationInfoCollection()) {
+                Element infoElement = doc.createElement("GeneralizationInfo");
+                setAttribute(infoElement, "dataSourceName", info.getDataSourceName());
+                setAttribute(infoElement, "dataSourceNameSpace", info.getDataSourceNameSpace());
+                setAttribute(infoElement, "featureName", info.getFeatureName());
+                setAttribute(infoElement, "baseFeatureName", info.getBaseFeatureName());
+                setAttribute(infoElement, "geomPropertyName", info.getGeomPropertyName());
+                root.appendChild(infoElement);
+                for (Generalization gen : info.getGeneralizations()) {
+                    Element genElement = doc.createElement("Generalization");
+                    setAttribute(genElement, "dataSourceName", gen.getDataSourceName());
+                    setAttribute(genElement, "dataSourceNameSpace", gen.getDataSourceNameSpace());
+                    setAttribute(genElement, "distance", String.valueOf(gen.getDistance()));
+                    setAttribute(genElement, "featureName", gen.getFeatureName());
+                    setAttribute(genElement, "geomPropertyName", gen.getGeomPropertyName());
+                    infoElement.appendChild(genElement);
+                }
+            }
+
+            Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+            OutputStream out = new FileOutputStream(file);
+            try {
+                transformer.transform(new DOMSource(doc), new StreamResult(out));
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to write the generalization config to " + file, e);
+        }
+    }
+
+    private static void setAttribute(Element element, String name, String value) {
+        if (value != null) {
+            element.setAttribute(name, value);
+        }
+    }
+}
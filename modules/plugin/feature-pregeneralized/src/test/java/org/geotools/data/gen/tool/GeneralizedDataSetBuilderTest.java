@@ -0,0 +1,151 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.gen.tool;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.geotools.TestData;
+import org.geotools.data.Query;
+import org.geotools.data.gen.DSFinderRepository;
+import org.geotools.data.gen.PreGeneralizedDataStore;
+import org.geotools.data.gen.info.GeneralizationInfo;
+import org.geotools.data.gen.info.GeneralizationInfos;
+import org.geotools.data.gen.info.GeneralizationInfosProviderImpl;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.factory.Hints;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.io.WKTReader;
+
+/**
+ *
+ *
+ * @source $URL$
+ */
+public class GeneralizedDataSetBuilderTest {
+
+    ShapefileDataStore base;
+
+    File baseFile;
+
+    @Before
+    public void setUp() throws Exception {
+        baseFile = TestData.file("shapes/streams.shp");
+        base = new ShapefileDataStore(baseFile.toURI().toURL());
+    }
+
+    @After
+    public void tearDown() {
+        base.dispose();
+    }
+
+    private int countPoints(SimpleFeatureSource fs, Query q) throws Exception {
+        int points = 0;
+        SimpleFeatureIterator it = fs.getFeatures(q).features();
+        try {
+            while (it.hasNext()) {
+                SimpleFeature f = it.next();
+                points += ((Geometry) f.getDefaultGeometry()).getNumPoints();
+            }
+        } finally {
+            it.close();
+        }
+        return points;
+    }
+
+    @Test
+    public void testBuildShapefiles() throws Exception {
+        File target = new File("target" + File.separator + "builder");
+        SimpleFeatureSource source = base.getFeatureSource();
+        GeneralizedDataSetBuilder builder = new GeneralizedDataSetBuilder(source, target);
+        builder.setBaseDataSourceName(baseFile.getAbsolutePath());
+        builder.setFeatureName("GenStreams");
+        builder.setDistances(5, 20);
+        builder.setThreads(2);
+        GeneralizationInfos infos = builder.build();
+
+        // the config is valid and can be read back
+        assertTrue(builder.getConfigFile().exists());
+        GeneralizationInfos read = new GeneralizationInfosProviderImpl()
+                .getGeneralizationInfos(builder.getConfigFile().getAbsolutePath());
+        GeneralizationInfo info = read.getGeneralizationInfoForFeatureName("GenStreams");
+        assertNotNull(info);
+        assertEquals("streams", info.getBaseFeatureName());
+        assertEquals(2, info.getGeneralizations().size());
+        assertEquals(infos.getFeatureNames(), read.getFeatureNames());
+
+        // and the pre-generalized store picks the levels based on the distance hint
+        PreGeneralizedDataStore ds = new PreGeneralizedDataStore(read, new DSFinderRepository());
+        try {
+            SimpleFeatureSource fs = ds.getFeatureSource("GenStreams");
+            assertEquals(source.getCount(Query.ALL), fs.getCount(Query.ALL));
+            Query q = new Query("GenStreams");
+            q.getHints().put(Hints.GEOMETRY_DISTANCE, 1.0);
+            int full = countPoints(fs, q);
+            q.getHints().put(Hints.GEOMETRY_DISTANCE, 5.0);
+            int level5 = countPoints(fs, q);
+            q.getHints().put(Hints.GEOMETRY_DISTANCE, 25.0);
+            int level20 = countPoints(fs, q);
+            assertEquals(countPoints(source, Query.ALL), full);
+            assertTrue(level5 < full);
+            assertTrue(level20 < level5);
+        } finally {
+            ds.dispose();
+        }
+    }
+
+    @Test
+    public void testComputeDistances() throws Exception {
+        GeneralizedDataSetBuilder builder = new GeneralizedDataSetBuilder(
+                base.getFeatureSource(), new File("target"));
+        builder.setLevels(3);
+        double[] distances = builder.computeDistances();
+        assertEquals(3, distances.length);
+        assertTrue(distances[0] > 0);
+        assertEquals(distances[0] * 2, distances[1], 1e-9);
+        assertEquals(distances[1] * 2, distances[2], 1e-9);
+    }
+
+    @Test
+    public void testAutoSimplification() throws Exception {
+        GeneralizedDataSetBuilder builder = new GeneralizedDataSetBuilder(
+                base.getFeatureSource(), new File("target"));
+        Polygon polygon = (Polygon) new WKTReader().read(
+                "POLYGON((0 0, 10 0, 10 10, 0 10, 0 0), (1 1, 2 1, 2 2, 1 2, 1 1))");
+
+        // large tolerance, Douglas-Peucker would collapse the hole, topology is preserved
+        builder.setSimplification(GeneralizedDataSetBuilder.Simplification.AUTO);
+        Geometry simplified = builder.simplify(polygon, 5);
+        assertTrue(simplified.isValid());
+        assertFalse(simplified.isEmpty());
+
+        // points are never touched
+        Geometry point = new GeometryFactory().createPoint(polygon.getCentroid()
+                .getCoordinate());
+        assertSame(point, builder.simplify(point, 5));
+    }
+}
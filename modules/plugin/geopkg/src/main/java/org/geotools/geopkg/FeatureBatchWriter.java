@@ -0,0 +1,107 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.geopkg;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.geotools.factory.Hints;
+import org.geotools.jdbc.JDBCDataStore;
+import org.geotools.jdbc.PreparedStatementSQLDialect;
+import org.geotools.util.Converters;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Bulk loads features into a feature table, used by {@link GeoPackage#bulkLoad}.
+ * <p>
+ * The attribute values are extracted by name on the calling thread, and encoded and inserted by
+ * the writer thread, using the same encoding as the GeoPackage data store.
+ * </p>
+ */
+class FeatureBatchWriter extends SQLiteBatchWriter<Object[]> {
+
+    final PreparedStatementSQLDialect dialect;
+
+    final List<AttributeDescriptor> attributes;
+
+    FeatureBatchWriter(DataSource dataSource, JDBCDataStore dataStore, SimpleFeatureType schema) {
+        super(dataSource, insertSQL(schema));
+        this.dialect = (PreparedStatementSQLDialect) dataStore.getSQLDialect();
+        this.attributes = schema.getAttributeDescriptors();
+    }
+
+    static String insertSQL(SimpleFeatureType schema) {
+        StringBuilder sql = new StringBuilder("INSERT INTO \"");
+        sql.append(schema.getTypeName()).append("\" (");
+        StringBuilder values = new StringBuilder();
+        for (AttributeDescriptor ad : schema.getAttributeDescriptors()) {
+            sql.append("\"").append(ad.getLocalName()).append("\",");
+            values.append("?,");
+        }
+        sql.setLength(sql.length() - 1);
+        values.setLength(values.length() - 1);
+        return sql.append(") VALUES (").append(values).append(")").toString();
+    }
+
+    /**
+     * Queues the feature for writing, picking its values by attribute name.
+     */
+    void write(SimpleFeature feature) throws IOException {
+        Object[] values = new Object[attributes.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = feature.getAttribute(attributes.get(i).getLocalName());
+        }
+        write(values);
+    }
+
+    @Override
+    protected void bind(PreparedStatement ps, Object[] values) throws SQLException {
+        for (int i = 0; i < values.length; i++) {
+            AttributeDescriptor ad = attributes.get(i);
+            Class<?> binding = ad.getType().getBinding();
+            Object value = values[i];
+            if (ad instanceof GeometryDescriptor) {
+                dialect.setGeometryValue((Geometry) value, dimension(ad), srid(ad), binding, ps,
+                        i + 1);
+            } else {
+                if (value != null && !binding.isInstance(value)) {
+                    value = Converters.convert(value, binding);
+                }
+                dialect.setValue(value, binding, ps, i + 1, ps.getConnection());
+            }
+        }
+    }
+
+    static int srid(AttributeDescriptor ad) {
+        Integer srid = (Integer) ad.getUserData().get(JDBCDataStore.JDBC_NATIVE_SRID);
+        return srid != null ? srid : -1;
+    }
+
+    static int dimension(AttributeDescriptor ad) {
+        Integer dimension = (Integer) ad.getUserData().get(Hints.COORDINATE_DIMENSION);
+        return dimension != null ? dimension : 2;
+    }
+}
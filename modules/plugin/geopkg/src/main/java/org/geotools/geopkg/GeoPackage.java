@@ -62,6 +62,7 @@ import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.geopkg.geom.GeoPkgGeomReader;
 import org.geotools.geopkg.geom.GeoPkgGeomWriter;
 import org.geotools.geopkg.geom.GeometryFunction;
+import org.geotools.geopkg.geom.IntersectsFunction;
 import org.geotools.jdbc.JDBCDataStore;
 import org.geotools.jdbc.JDBCFeatureStore;
 import org.geotools.jdbc.PrimaryKey;
@@ -310,6 +311,9 @@ public class GeoPackage {
                 return reader.getHeader().getFlags().isEmpty();
             }
         });
+
+        //intersects
+        Function.create(cx, "ST_Intersects", new IntersectsFunction());
     }
 
     /**
@@ -684,6 +688,51 @@ public class GeoPackage {
         entry.init(e);
     }
 
+    /**
+     * Bulk loads a new feature dataset into the geopackage.
+     * <p>
+     * Unlike {@link #add(FeatureEntry, SimpleFeatureCollection)} the features are inserted
+     * directly with a single prepared statement, in batches and large transactions, with the
+     * database synchronization turned off for the duration of the load. When requested, the
+     * spatial index is created and filled once, after all the features have been loaded.
+     * </p>
+     *
+     * @param entry Contains metadata about the feature entry.
+     * @param collection The simple feature collection to add to the geopackage.
+     * @param spatialIndex Whether to create the spatial index of the new feature table.
+     *
+     * @throws IOException Any errors occurring while adding the new feature dataset.
+     */
+    public void bulkLoad(FeatureEntry entry, SimpleFeatureCollection collection,
+            boolean spatialIndex) throws IOException {
+        FeatureEntry e = new FeatureEntry();
+        e.init(entry);
+
+        if (e.getBounds() == null) {
+            e.setBounds(collection.getBounds());
+        }
+
+        create(e, collection.getSchema());
+
+        JDBCDataStore dataStore = dataStore();
+        FeatureBatchWriter w = new FeatureBatchWriter(connPool, dataStore,
+                dataStore.getSchema(e.getTableName()));
+        SimpleFeatureIterator it = collection.features();
+        try {
+            while (it.hasNext()) {
+                w.write(it.next());
+            }
+        } finally {
+            it.close();
+            w.close();
+        }
+
+        if (spatialIndex) {
+            createSpatialIndex(e);
+        }
+        entry.init(e);
+    }
+
     /**
      * Adds a new feature dataset to the geopackage.
      *
@@ -963,7 +1012,8 @@ public class GeoPackage {
     public void createSpatialIndex(FeatureEntry e) throws IOException {
         Map<String, String> properties = new HashMap<String, String>();
         
-        PrimaryKey pk = ((JDBCFeatureStore) (dataStore.getFeatureSource(e.getTableName()))).getPrimaryKey();
+        JDBCFeatureStore fs = (JDBCFeatureStore) dataStore.getFeatureSource(e.getTableName());
+        PrimaryKey pk = fs.getPrimaryKey();
         if (pk.getColumns().size() != 1) {
             throw new IOException("Spatial index only supported for primary key of single column.");
         }
@@ -980,6 +1030,8 @@ public class GeoPackage {
             } finally {
                 cx.close();
             }
+            // the cached feature type does not know about the index yet
+            fs.getState().flush();
             
         } catch (SQLException ex) {            
             throw new IOException(ex);            
@@ -1222,6 +1274,20 @@ public class GeoPackage {
         }
     }
 
+    /**
+     * Returns a writer for bulk loading tiles into a tile layer.
+     * <p>
+     * The writer is thread safe, tiles are written in batches by a single background thread,
+     * which makes it much faster than {@link #add(TileEntry, Tile)} when storing a large number
+     * of tiles. The writer must be closed when done.
+     * </p>
+     *
+     * @param entry The tile metadata entry.
+     */
+    public TileWriter bulkWriter(TileEntry entry) {
+        return new TileWriter(connPool, entry);
+    }
+
     /**
      * Retrieve tiles within certain zooms and column/row boundaries
      * 
@@ -18,8 +18,11 @@ package org.geotools.geopkg;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
 
+import javax.sql.DataSource;
+
 import org.apache.commons.dbcp.BasicDataSource;
 import org.geotools.geopkg.geom.GeoPkgGeomWriter;
 import org.geotools.jdbc.JDBCDataStore;
@@ -125,6 +128,21 @@ public class GeoPkgDataStoreFactory extends JDBCDataStoreFactory {
         parameters.put(USER.key, USER);
         //replace dbtype
         parameters.put(DBTYPE.key, DBTYPE);
+        //the connections are always pooled by DBCP, see createDataSource(Map, SQLDialect)
+        parameters.remove(CONNECTION_POOL.key);
+        parameters.remove(CONNECTION_LEAK_THRESHOLD.key);
+    }
+
+    /**
+     * The SQLite connections need the driver specific properties set up in
+     * {@link #createDataSource(Map)}, which the concurrent pool does not carry over, so the
+     * {@link #CONNECTION_POOL} parameter is ignored and DBCP is always used.
+     */
+    @Override
+    protected DataSource createDataSource(Map params, SQLDialect dialect) throws IOException {
+        Map dbcpParams = new HashMap(params);
+        dbcpParams.remove(CONNECTION_POOL.key);
+        return super.createDataSource(dbcpParams, dialect);
     }
 
     @Override
@@ -23,6 +23,7 @@ import static org.geotools.geopkg.GeoPackage.SPATIAL_REF_SYS;
 
 import java.io.IOException;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -31,10 +32,13 @@ import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.sql.Date;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 
 import org.geotools.geometry.jts.Geometries;
+import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.geopkg.Entry.DataType;
 import org.geotools.geopkg.geom.GeoPkgGeomReader;
 import org.geotools.geopkg.geom.GeoPkgGeomWriter;
@@ -43,6 +47,7 @@ import org.geotools.jdbc.PreparedFilterToSQL;
 import org.geotools.jdbc.PreparedStatementSQLDialect;
 import org.geotools.referencing.CRS;
 import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
 import org.opengis.feature.type.GeometryDescriptor;
 import org.opengis.feature.type.PropertyDescriptor;
 import org.opengis.referencing.FactoryException;
@@ -61,7 +66,11 @@ import com.vividsolutions.jts.geom.GeometryFactory;
  */
 public class GeoPkgDialect extends PreparedStatementSQLDialect {
    
-    
+    /**
+     * Key of the geometry descriptor user data holding the name of the R-tree spatial index
+     * table, if any
+     */
+    public static final String GEOPKG_SPATIAL_INDEX = "org.geotools.geopkg.spatialIndex";
 
     protected GeoPkgGeomWriter.Configuration geomWriterConfig;
     
@@ -303,6 +312,113 @@ public class GeoPkgDialect extends PreparedStatementSQLDialect {
         }
     }
 
+    @Override
+    public void postCreateFeatureType(SimpleFeatureType featureType, DatabaseMetaData metadata,
+            String schemaName, Connection cx) throws SQLException {
+        // figure out if the table has a spatial index and mark the feature type as so
+        for (AttributeDescriptor ad : featureType.getAttributeDescriptors()) {
+            if (!(ad instanceof GeometryDescriptor)) {
+                continue;
+            }
+
+            GeometryDescriptor gd = (GeometryDescriptor) ad;
+            String idxTableName = "rtree_" + featureType.getTypeName() + "_" + gd.getLocalName();
+            PreparedStatement ps = cx.prepareStatement(
+                    "SELECT name FROM sqlite_master WHERE type='table' AND name=?");
+            try {
+                ps.setString(1, idxTableName);
+                ResultSet rs = ps.executeQuery();
+                try {
+                    if (rs.next()) {
+                        gd.getUserData().put(GEOPKG_SPATIAL_INDEX, idxTableName);
+                    }
+                } finally {
+                    dataStore.closeSafe(rs);
+                }
+            } finally {
+                dataStore.closeSafe(ps);
+            }
+        }
+    }
+
+    @Override
+    public int getEstimatedCount(String schema, SimpleFeatureType featureType, Connection cx)
+            throws SQLException, IOException {
+        // the row count is the first number of the statistics ANALYZE collects, if it was run
+        PreparedStatement ps = cx.prepareStatement(
+                "SELECT name FROM sqlite_master WHERE type='table' AND name='sqlite_stat1'");
+        try {
+            ResultSet rs = ps.executeQuery();
+            try {
+                if (!rs.next()) {
+                    return -1;
+                }
+            } finally {
+                dataStore.closeSafe(rs);
+            }
+        } finally {
+            dataStore.closeSafe(ps);
+        }
+
+        ps = cx.prepareStatement("SELECT stat FROM sqlite_stat1 WHERE tbl = ?");
+        try {
+            ps.setString(1, featureType.getTypeName());
+            ResultSet rs = ps.executeQuery();
+            try {
+                if (rs.next() && rs.getString(1) != null) {
+                    String stat = rs.getString(1).trim();
+                    int space = stat.indexOf(' ');
+                    return Integer.parseInt(space > 0 ? stat.substring(0, space) : stat);
+                }
+            } catch (NumberFormatException e) {
+                LOGGER.log(Level.FINE, "Unexpected statistics for " + featureType.getTypeName(),
+                        e);
+            } finally {
+                dataStore.closeSafe(rs);
+            }
+        } finally {
+            dataStore.closeSafe(ps);
+        }
+        return -1;
+    }
+
+    @Override
+    public List<ReferencedEnvelope> getEstimatedBounds(String schema,
+            SimpleFeatureType featureType, Connection cx) throws SQLException, IOException {
+        // the extent recorded in the contents table, maintained by the writers
+        if (featureType.getGeometryDescriptor() == null) {
+            return null;
+        }
+        String sql = format("SELECT min_x, min_y, max_x, max_y FROM %s WHERE table_name = ?",
+                GEOPACKAGE_CONTENTS);
+        PreparedStatement ps = cx.prepareStatement(sql);
+        try {
+            ps.setString(1, featureType.getTypeName());
+            ResultSet rs = ps.executeQuery();
+            try {
+                if (rs.next()) {
+                    double minx = rs.getDouble(1);
+                    boolean isNull = rs.wasNull();
+                    double miny = rs.getDouble(2);
+                    isNull |= rs.wasNull();
+                    double maxx = rs.getDouble(3);
+                    isNull |= rs.wasNull();
+                    double maxy = rs.getDouble(4);
+                    isNull |= rs.wasNull();
+                    if (!isNull) {
+                        return Collections.singletonList(new ReferencedEnvelope(minx, maxx, miny,
+                                maxy, featureType.getCoordinateReferenceSystem()));
+                    }
+                }
+            } finally {
+                dataStore.closeSafe(rs);
+            }
+        } finally {
+            dataStore.closeSafe(ps);
+        }
+        return null;
+    }
+
     @Override
     public void postDropTable(String schemaName, SimpleFeatureType featureType, Connection cx) throws SQLException {
         super.postDropTable(schemaName, featureType, cx);
@@ -22,11 +22,20 @@ import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.Date;
 
+import org.geotools.filter.FilterCapabilities;
+import org.geotools.geopkg.geom.GeoPkgGeomWriter;
 import org.geotools.jdbc.PreparedFilterToSQL;
 import org.geotools.jdbc.PreparedStatementSQLDialect;
+import org.opengis.filter.expression.Expression;
 import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.spatial.BBOX;
+import org.opengis.filter.spatial.BinarySpatialOperator;
+import org.opengis.filter.spatial.Intersects;
 
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.WKBWriter;
 
 /**
  * @author ian
@@ -53,7 +62,81 @@ public class GeoPkgFilterToSQL extends PreparedFilterToSQL {
         // TODO Auto-generated constructor stub
     }
 
-    
+    @Override
+    protected FilterCapabilities createFilterCapabilities() {
+        FilterCapabilities caps = super.createFilterCapabilities();
+        caps.addType(BBOX.class);
+        caps.addType(Intersects.class);
+        return caps;
+    }
+
+    @Override
+    protected void visitLiteralGeometry(Literal expression) throws IOException {
+        // only used when prepared statements are disabled, encode the geometry as a blob literal
+        Geometry g = (Geometry) evaluateLiteral(expression, Geometry.class);
+        int dimension = currentDimension != null ? currentDimension : 2;
+        if (currentSRID != null) {
+            g.setSRID(currentSRID);
+        }
+        byte[] bytes = new GeoPkgGeomWriter(dimension).write(g);
+        out.write("X'" + WKBWriter.toHex(bytes) + "'");
+    }
+
+    @Override
+    protected Object visitBinarySpatialOperator(BinarySpatialOperator filter,
+            PropertyName property, Literal geometry, boolean swapped, Object extraData) {
+        try {
+            // BBOX and Intersects are the only operators declared in the capabilities,
+            // both are symmetric, so the swapped flag does not matter
+            Geometry g = (Geometry) evaluateLiteral(geometry, Geometry.class);
+            String spatialIndex = currentGeometry != null ? (String) currentGeometry
+                    .getUserData().get(GeoPkgDialect.GEOPKG_SPATIAL_INDEX) : null;
+            if (spatialIndex != null) {
+                // the R-tree clause embeds the envelope of the literal, cannot be reused
+                // as a template for other filters
+                setTemplateSafe(false);
+            }
+            if (spatialIndex != null && g != null && !g.isEmpty() && primaryKey != null
+                    && primaryKey.getColumns().size() == 1) {
+                // use the R-tree to quickly select the candidates by envelope
+                Envelope e = g.getEnvelopeInternal();
+                String pk = primaryKey.getColumns().get(0).getName();
+                out.write(fieldEncoder.encode(escapeName(pk)));
+                out.write(" IN (SELECT id FROM " + escapeName(spatialIndex) + " WHERE ");
+                out.write("minx <= " + e.getMaxX() + " AND ");
+                out.write("maxx >= " + e.getMinX() + " AND ");
+                out.write("miny <= " + e.getMaxY() + " AND ");
+                out.write("maxy >= " + e.getMinY());
+                out.write(") AND ");
+            }
+            // the function compares the envelopes in the geometry headers first, and
+            // decodes the geometries only if necessary
+            out.write("ST_Intersects(");
+            property.accept(this, extraData);
+            out.write(", ");
+            geometry.accept(this, Geometry.class);
+            out.write(") = 1");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return extraData;
+    }
+
+    @Override
+    protected Object visitBinarySpatialOperator(BinarySpatialOperator filter, Expression e1,
+            Expression e2, Object extraData) {
+        try {
+            out.write("ST_Intersects(");
+            e1.accept(this, extraData);
+            out.write(", ");
+            e2.accept(this, extraData);
+            out.write(") = 1");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return extraData;
+    }
+
     @Override
     public Object visit(Literal expression, Object context) throws RuntimeException {
         if(!isPrepareEnabled())
@@ -0,0 +1,54 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.geopkg;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.geotools.sql.BatchWriter;
+
+/**
+ * Base class for the GeoPackage bulk writers, turns off the database synchronization and keeps
+ * the rollback journal in memory for the duration of the load, restoring the original settings
+ * at the end.
+ */
+abstract class SQLiteBatchWriter<T> extends BatchWriter<T> {
+
+    String synchronous;
+
+    String journalMode;
+
+    SQLiteBatchWriter(DataSource dataSource, String sql) {
+        super(dataSource, sql);
+    }
+
+    @Override
+    protected void beforeLoad(Connection cx) throws SQLException {
+        synchronous = queryValue(cx, "PRAGMA synchronous");
+        journalMode = queryValue(cx, "PRAGMA journal_mode");
+        execute(cx, "PRAGMA synchronous=OFF");
+        execute(cx, "PRAGMA journal_mode=MEMORY");
+    }
+
+    @Override
+    protected void afterLoad(Connection cx) throws SQLException {
+        execute(cx, "PRAGMA synchronous=" + synchronous);
+        execute(cx, "PRAGMA journal_mode=" + journalMode);
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.geopkg;
+
+import static java.lang.String.format;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+/**
+ * The TileWriter bulk loads tiles into a tile layer inside a GeoPackage, obtained with
+ * {@link GeoPackage#bulkWriter(TileEntry)}.
+ * <p>
+ * Tiles can be written concurrently by several producers, they are inserted by a single thread
+ * reusing the same prepared statement, in large transactions. The writer must be closed when
+ * done.
+ * </p>
+ */
+public class TileWriter extends SQLiteBatchWriter<Tile> {
+
+    TileWriter(DataSource dataSource, TileEntry entry) {
+        super(dataSource, format("INSERT INTO %s (zoom_level, tile_column, tile_row, tile_data)"
+                + " VALUES (?,?,?,?)", entry.getTableName()));
+    }
+
+    @Override
+    protected void bind(PreparedStatement ps, Tile tile) throws SQLException {
+        ps.setInt(1, tile.getZoom());
+        ps.setInt(2, tile.getColumn());
+        ps.setInt(3, tile.getRow());
+        ps.setBytes(4, tile.getData());
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.geopkg.geom;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.sqlite.Function;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * An sqlite function testing if two Geopackage Geometry BLOBs intersect.
+ * <p>
+ * The envelopes stored in the geometry headers are compared first, and the geometries are
+ * decoded only when the envelopes alone cannot provide the answer. The second argument is
+ * usually a query constant, so its decoded form is cached across invocations.
+ */
+public class IntersectsFunction extends Function {
+
+    byte[] lastBytes;
+
+    Geometry lastGeometry;
+
+    Envelope lastEnvelope;
+
+    boolean lastRectangle;
+
+    @Override
+    protected void xFunc() throws SQLException {
+        if (args() != 2) {
+            throw new SQLException("ST_Intersects expects two arguments.");
+        }
+
+        byte[] first = value_blob(0);
+        byte[] second = value_blob(1);
+        if (first == null || second == null) {
+            result();
+            return;
+        }
+
+        try {
+            result(intersects(first, second) ? 1 : 0);
+        } catch (IOException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    boolean intersects(byte[] first, byte[] second) throws IOException {
+        if (!Arrays.equals(lastBytes, second)) {
+            GeoPkgGeomReader reader = new GeoPkgGeomReader(second);
+            lastGeometry = reader.getHeader().getFlags().isEmpty() ? null : reader.get();
+            lastEnvelope = lastGeometry != null ? lastGeometry.getEnvelopeInternal() : null;
+            lastRectangle = lastGeometry != null && lastGeometry.isRectangle();
+            lastBytes = second;
+        }
+        if (lastGeometry == null) {
+            return false;
+        }
+
+        GeoPkgGeomReader reader = new GeoPkgGeomReader(first);
+        if (reader.getHeader().getFlags().isEmpty()) {
+            return false;
+        }
+        Envelope envelope = reader.getEnvelope();
+        if (!envelope.intersects(lastEnvelope)) {
+            return false;
+        }
+        if (lastRectangle && lastEnvelope.contains(envelope)) {
+            return true;
+        }
+        return reader.get().intersects(lastGeometry);
+    }
+}
@@ -32,16 +32,23 @@ import java.sql.Statement;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 
 import org.apache.commons.io.FileUtils;
 import org.geotools.TestData;
 import org.geotools.data.DataUtilities;
 import org.geotools.data.DefaultTransaction;
+import org.geotools.data.Query;
 import org.geotools.data.Transaction;
 import org.geotools.data.memory.MemoryFeatureCollection;
 import org.geotools.data.shapefile.ShapefileDataStore;
@@ -55,6 +62,8 @@ import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.geometry.jts.Geometries;
 import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.jdbc.JDBCFeatureStore;
+import org.geotools.jdbc.PreparedStatementSQLDialect;
 import org.geotools.referencing.CRS;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.geotools.sql.SqlUtil;
@@ -66,7 +75,9 @@ import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
 import org.opengis.feature.type.PropertyDescriptor;
+import org.opengis.filter.Filter;
 import org.opengis.filter.FilterFactory;
+import org.opengis.filter.FilterFactory2;
 
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Envelope;
@@ -74,6 +85,7 @@ import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.PrecisionModel;
+import com.vividsolutions.jts.io.WKTReader;
 
 public class GeoPackageTest {
 
@@ -500,6 +512,135 @@ public class GeoPackageTest {
         }
     }
 
+    @Test
+    public void testSpatialIndexFilter() throws Exception {
+        FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
+
+        ShapefileDataStore shp = new ShapefileDataStore(setUpShapefile());
+
+        FeatureEntry entry = new FeatureEntry();
+        geopkg.add(entry, shp.getFeatureSource(), null);
+
+        Filter bbox = ff.bbox("the_geom", 590230.0, 4915038.0, 590234.0, 4915040.0, null);
+        Filter bigBox = ff.bbox("the_geom", 590000.0, 4914000.0, 600000.0, 4920000.0, null);
+        Geometry triangle = new WKTReader().read("POLYGON((590000 4914000, 600000 4914000, "
+                + "590000 4920000, 590000 4914000))");
+        Filter intersects = ff.intersects(ff.property("the_geom"), ff.literal(triangle));
+        Filter[] filters = new Filter[] { bbox, bigBox, intersects };
+
+        // no index, the filters are evaluated by the sqlite function
+        for (Filter filter : filters) {
+            assertEquals(readIds(shp, filter), readIds(entry, filter));
+        }
+        assertEquals(Collections.singleton("bugsites.1"), readIds(entry, bbox));
+
+        geopkg.createSpatialIndex(entry);
+        SimpleFeatureType schema = geopkg.dataStore().getSchema(entry.getTableName());
+        assertEquals("rtree_bugsites_the_geom", schema.getGeometryDescriptor().getUserData()
+                .get(GeoPkgDialect.GEOPKG_SPATIAL_INDEX));
+
+        // with the index the results are the same
+        for (Filter filter : filters) {
+            assertEquals(readIds(shp, filter), readIds(entry, filter));
+        }
+
+        // and the filter is encoded against the index
+        GeoPkgFilterToSQL toSQL = new GeoPkgFilterToSQL(
+                (PreparedStatementSQLDialect) geopkg.dataStore().getSQLDialect());
+        toSQL.setFeatureType(schema);
+        toSQL.setPrimaryKey(((JDBCFeatureStore) geopkg.dataStore().getFeatureSource(
+                entry.getTableName())).getPrimaryKey());
+        String sql = toSQL.encodeToString(bbox);
+        assertTrue(sql, sql.contains("rtree_bugsites_the_geom"));
+        assertTrue(sql, sql.contains("ST_Intersects"));
+    }
+
+    @Test
+    public void testSpatialIndexFilterTemplateCache() throws Exception {
+        FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
+
+        ShapefileDataStore shp = new ShapefileDataStore(setUpShapefile());
+
+        FeatureEntry entry = new FeatureEntry();
+        geopkg.add(entry, shp.getFeatureSource(), null);
+        geopkg.createSpatialIndex(entry);
+        geopkg.dataStore().setSQLTemplateCacheSize(10);
+
+        // same shape, different envelopes, the R-tree clause must not be reused
+        Filter bbox = ff.bbox("the_geom", 590230.0, 4915038.0, 590234.0, 4915040.0, null);
+        Filter otherBox = ff.bbox("the_geom", 590000.0, 4914000.0, 600000.0, 4920000.0, null);
+        assertEquals(Collections.singleton("bugsites.1"), readIds(entry, bbox));
+        Set<String> expected = readIds(shp, otherBox);
+        assertTrue(expected.size() > 1);
+        assertEquals(expected, readIds(entry, otherBox));
+        assertEquals(Collections.singleton("bugsites.1"), readIds(entry, bbox));
+
+        // the encoder flags the R-tree clause as not reusable
+        SimpleFeatureType schema = geopkg.dataStore().getSchema(entry.getTableName());
+        GeoPkgFilterToSQL toSQL = new GeoPkgFilterToSQL(
+                (PreparedStatementSQLDialect) geopkg.dataStore().getSQLDialect());
+        toSQL.setFeatureType(schema);
+        toSQL.setPrimaryKey(((JDBCFeatureStore) geopkg.dataStore().getFeatureSource(
+                entry.getTableName())).getPrimaryKey());
+        toSQL.encodeToString(bbox);
+        assertFalse(toSQL.isTemplateSafe());
+    }
+
+    @Test
+    public void testBulkLoad() throws Exception {
+        ShapefileDataStore shp = new ShapefileDataStore(setUpShapefile());
+
+        FeatureEntry entry = new FeatureEntry();
+        geopkg.bulkLoad(entry, shp.getFeatureSource().getFeatures(), true);
+
+        assertTableExists("bugsites");
+        assertFeatureEntry(entry);
+
+        SimpleFeatureReader re = Features.simple(shp.getFeatureReader());
+        SimpleFeatureReader ra = geopkg.reader(entry, null, null);
+        while (re.hasNext()) {
+            assertTrue(ra.hasNext());
+            assertSimilar(re.next(), ra.next());
+        }
+        assertFalse(ra.hasNext());
+        re.close();
+        ra.close();
+
+        // the spatial index has been filled at the end of the load
+        SimpleFeatureType schema = geopkg.dataStore().getSchema(entry.getTableName());
+        assertEquals("rtree_bugsites_the_geom", schema.getGeometryDescriptor().getUserData()
+                .get(GeoPkgDialect.GEOPKG_SPATIAL_INDEX));
+        try (Connection cx = geopkg.getDataSource().getConnection();
+                Statement st = cx.createStatement();
+                ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM rtree_bugsites_the_geom")) {
+            assertTrue(rs.next());
+            assertEquals(shp.getFeatureSource().getCount(Query.ALL), rs.getInt(1));
+        }
+        Filter bbox = CommonFactoryFinder.getFilterFactory().bbox("the_geom", 590230.0,
+                4915038.0, 590234.0, 4915040.0, null);
+        assertEquals(readIds(shp, bbox), readIds(entry, bbox));
+    }
+
+    Set<String> readIds(FeatureEntry entry, Filter filter) throws IOException {
+        Set<String> ids = new HashSet<String>();
+        try (SimpleFeatureReader sfr = geopkg.reader(entry, filter, null)) {
+            while (sfr.hasNext()) {
+                ids.add(sfr.next().getID());
+            }
+        }
+        return ids;
+    }
+
+    Set<String> readIds(ShapefileDataStore shp, Filter filter) throws IOException {
+        Set<String> ids = new HashSet<String>();
+        try (SimpleFeatureIterator it = shp.getFeatureSource().getFeatures(filter).features()) {
+            while (it.hasNext()) {
+                ids.add(it.next().getID());
+            }
+        }
+        return ids;
+    }
+
     @Test
     public void testCreateTileEntry() throws Exception {
         TileEntry e = new TileEntry();
@@ -527,6 +668,56 @@ public class GeoPackageTest {
         }
     }
     
+    @Test
+    public void testBulkTileWriter() throws Exception {
+        TileEntry e = new TileEntry();
+        e.setTableName("foo");
+        e.setBounds(new ReferencedEnvelope(-180,180,-90,90,DefaultGeographicCRS.WGS84));
+        e.getTileMatricies().add(new TileMatrix(0, 1, 1, 256, 256, 0.1, 0.1));
+        e.getTileMatricies().add(new TileMatrix(1, 2, 2, 256, 256, 0.1, 0.1));
+        e.getTileMatricies().add(new TileMatrix(2, 4, 4, 256, 256, 0.1, 0.1));
+        e.getTileMatricies().add(new TileMatrix(3, 8, 8, 256, 256, 0.1, 0.1));
+        geopkg.create(e);
+
+        // one producer per zoom level
+        final TileWriter writer = geopkg.bulkWriter(e);
+        writer.setBatchSize(5);
+        writer.setCommitSize(20);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int z = 0; z < 4; z++) {
+            final int zoom = z;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    int size = 1 << zoom;
+                    for (int c = 0; c < size; c++) {
+                        for (int r = 0; r < size; r++) {
+                            writer.write(new Tile(zoom, c, r, new byte[] { (byte) zoom,
+                                    (byte) c, (byte) r }));
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        writer.close();
+        assertEquals(1 + 4 + 16 + 64, writer.getCount());
+
+        List<Tile> tiles = new ArrayList<Tile>();
+        tiles.add(new Tile(2, 1, 3, new byte[] { 2, 1, 3 }));
+        try (TileReader r = geopkg.reader(e, 2, 2, 1, 1, 3, 3)) {
+            assertTiles(tiles, r);
+        }
+        for (int z = 0; z < 4; z++) {
+            assertEquals((1 << z) - 1, geopkg.getTileBound(e, z, true, true));
+        }
+    }
+
     @Test
     public void testIndependentTileMatrix() throws Exception {
         TileEntry e = new TileEntry();
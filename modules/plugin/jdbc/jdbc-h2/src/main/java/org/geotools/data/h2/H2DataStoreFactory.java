@@ -146,6 +146,9 @@ public class H2DataStoreFactory extends JDBCDataStoreFactory {
         dataSource.setDriverClassName("org.h2.Driver");
         dataSource.setPoolPreparedStatements(false);
 
+        if (CONCURRENT_POOL.equalsIgnoreCase((String) CONNECTION_POOL.lookUp(params))) {
+            return createConcurrentDataSource(params, dataSource);
+        }
         return new DBCPDataSource(dataSource);
     }
     
@@ -26,9 +26,11 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.logging.Level;
 
+import org.geotools.factory.Hints;
 import org.geotools.geometry.jts.Geometries;
 import org.geotools.jdbc.JDBCDataStore;
 import org.geotools.jdbc.SQLDialect;
@@ -385,6 +387,12 @@ public class H2Dialect extends SQLDialect {
         sql.append(")");
     }
 
+    @Override
+    protected void addSupportedHints(Set<Hints.Key> hints) {
+        // the screen map is decimated with the geodb envelope functions
+        hints.add(Hints.SCREENMAP);
+    }
+
     @Override
     public Envelope decodeGeometryEnvelope(ResultSet rs, int column,
             Connection cx) throws SQLException, IOException {
@@ -26,6 +26,7 @@ import junit.framework.TestCase;
 
 import org.apache.commons.dbcp.BasicDataSource;
 import org.geotools.data.DataStore;
+import org.geotools.data.jdbc.datasource.ConcurrentDataSource;
 import org.geotools.data.jdbc.datasource.ManageableDataSource;
 import org.geotools.jdbc.JDBCDataStore;
 import org.geotools.jdbc.JDBCDataStoreFactory;
@@ -76,6 +77,24 @@ public class H2DataStoreFactoryTest extends TestCase {
         }
     }
 
+    public void testConcurrentPool() throws Exception {
+        Map clonedParams = new HashMap(params);
+        clonedParams.put(JDBCDataStoreFactory.CONNECTION_POOL.key,
+                JDBCDataStoreFactory.CONCURRENT_POOL);
+        JDBCDataStore ds = factory.createDataStore(clonedParams);
+        try {
+            assertTrue(ds.getDataSource() instanceof ConcurrentDataSource);
+            ConcurrentDataSource pool = (ConcurrentDataSource) ds.getDataSource();
+            ds.getTypeNames();
+            ds.getTypeNames();
+            assertEquals(0, pool.getNumActive());
+            assertEquals(1, pool.getCreatedCount());
+            assertNotNull(pool.getObjectName());
+        } finally {
+            ds.dispose();
+        }
+    }
+
     public void testTCP() throws Exception {
         HashMap params = new HashMap();
         params.put(H2DataStoreFactory.HOST.key, "localhost");
@@ -397,6 +397,10 @@ public class OracleFilterToSQL extends PreparedFilterToSQL {
             Geometry eval = e.evaluate(filter, Geometry.class);
             // Oracle cannot deal with filters using geometries that span beyond the whole world
             // in case the 
+            if (dialect != null && isCurrentGeometryGeodetic()) {
+                // the encoding depends on the geometry extent
+                setTemplateSafe(false);
+            }
             if (dialect != null && isCurrentGeometryGeodetic() &&
                     !WORLD.contains(eval.getEnvelopeInternal())) {
                 Geometry result = eval.intersection(JTS.toGeometry(WORLD));
@@ -22,6 +22,7 @@ package org.geotools.data.oracle.sdo;
 import java.lang.reflect.Array;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -49,6 +50,7 @@ import com.vividsolutions.jts.geom.MultiPoint;
 import com.vividsolutions.jts.geom.MultiPolygon;
 import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequenceFactory;
 
 
 /**
@@ -2375,6 +2377,12 @@ public final class SDO {
                     point);
             elemInfo = new int[] { 1, ETYPE.POINT, 1 };
         } else {
+            // straight edged geometries are built directly from the ordinates
+            Geometry linear = createLinear(gf, GTYPE, SRID, elemInfo, ordinates);
+            if (linear != null) {
+                return linear;
+            }
+
             int element = 0;
             int etype = ETYPE(elemInfo, element);
             if (etype == 0) {
@@ -2405,6 +2413,191 @@ public final class SDO {
         return create(gf, GTYPE, SRID, elemInfo, 0, coords, -1);
     }
 
+    /**
+     * Decodes the straight edged geometries without measures directly from the ordinate array.
+     * 
+     * <p>
+     * Each element gets its own coordinate sequence, built from its range of the ordinate array
+     * without going through {@link Coordinate} objects when the factory uses packed or lite
+     * sequences, and the element info is walked in place. Everything else (curves, rectangles,
+     * circles, compound elements, measures, collections and solids) returns <code>null</code>,
+     * leaving it to the general decoder.
+     * </p>
+     *
+     * @param gf Used to construct returned Geometry
+     * @param GTYPE Encoding of <b>D</b>imension, <b>L</b>RS and <b>TT</b>ype
+     * @param SRID Spatial Reference System
+     * @param elemInfo Interpretation of ordinates
+     * @param ordinates The ordinates, D per coordinate
+     *
+     * @return Geometry as encoded, or null if the encoding is not a simple linear one
+     */
+    static Geometry createLinear(GeometryFactory gf, final int GTYPE, final int SRID,
+            int[] elemInfo, double[] ordinates) {
+        final int D = D(GTYPE);
+        if (L(GTYPE) != 0 || (D != 2 && D != 3) || elemInfo == null || ordinates == null
+                || elemInfo.length < 3 || elemInfo.length % 3 != 0 || ordinates.length % D != 0) {
+            return null;
+        }
+        // validate all the triplets before building anything, so that the general decoder
+        // can take over with no work lost
+        final int triplets = elemInfo.length / 3;
+        final int type = TT(GTYPE);
+        int previous = 0;
+        for (int i = 0; i < triplets; i++) {
+            final int STARTING_OFFSET = elemInfo[i * 3];
+            final int etype = elemInfo[i * 3 + 1];
+            final int INTERPRETATION = elemInfo[i * 3 + 2];
+            if (STARTING_OFFSET <= previous || STARTING_OFFSET > ordinates.length
+                    || (STARTING_OFFSET - 1) % D != 0) {
+                return null;
+            }
+            previous = STARTING_OFFSET;
+            boolean expected;
+            switch (type) {
+            case TT.POINT:
+            case TT.MULTIPOINT:
+                expected = triplets == 1 && etype == ETYPE.POINT && INTERPRETATION >= 1;
+                break;
+            case TT.LINE:
+                expected = triplets == 1 && etype == ETYPE.LINE;
+                break;
+            case TT.MULTILINE:
+                expected = etype == ETYPE.LINE;
+                break;
+            case TT.POLYGON:
+                expected = i == 0 ? etype == ETYPE.POLYGON_EXTERIOR
+                        : etype == ETYPE.POLYGON_INTERIOR;
+                break;
+            case TT.MULTIPOLYGON:
+                expected = etype == ETYPE.POLYGON_EXTERIOR
+                        || (i > 0 && etype == ETYPE.POLYGON_INTERIOR);
+                break;
+            default:
+                expected = false;
+            }
+            if (!expected || (etype != ETYPE.POINT && INTERPRETATION != 1)) {
+                return null;
+            }
+        }
+
+        final int size = ordinates.length / D;
+        final int start = (elemInfo[0] - 1) / D;
+        Geometry geometry;
+        switch (type) {
+        case TT.POINT:
+            if (elemInfo[2] != 1 || start + 1 != size) {
+                return null;
+            }
+            geometry = gf.createPoint(sequence(gf, ordinates, D, start, size));
+            break;
+        case TT.MULTIPOINT:
+            if (start + elemInfo[2] > size) {
+                return null;
+            }
+            geometry = gf.createMultiPoint(sequence(gf, ordinates, D, start, start + elemInfo[2]));
+            break;
+        case TT.LINE:
+            geometry = gf.createLineString(sequence(gf, ordinates, D, start, size));
+            break;
+        case TT.MULTILINE:
+            LineString[] lines = new LineString[triplets];
+            for (int i = 0; i < triplets; i++) {
+                lines[i] = gf.createLineString(elementSequence(gf, elemInfo, i, ordinates, D));
+                lines[i].setSRID(SRID);
+            }
+            geometry = gf.createMultiLineString(lines);
+            break;
+        case TT.POLYGON:
+            geometry = createLinearPolygon(gf, SRID, elemInfo, 0, triplets, ordinates, D);
+            break;
+        case TT.MULTIPOLYGON:
+            int count = 0;
+            for (int i = 0; i < triplets; i++) {
+                if (elemInfo[i * 3 + 1] == ETYPE.POLYGON_EXTERIOR) {
+                    count++;
+                }
+            }
+            Polygon[] polygons = new Polygon[count];
+            for (int i = 0, p = 0; i < triplets; p++) {
+                int next = i + 1;
+                while (next < triplets && elemInfo[next * 3 + 1] == ETYPE.POLYGON_INTERIOR) {
+                    next++;
+                }
+                polygons[p] = createLinearPolygon(gf, SRID, elemInfo, i, next, ordinates, D);
+                i = next;
+            }
+            geometry = gf.createMultiPolygon(polygons);
+            break;
+        default:
+            return null;
+        }
+        geometry.setSRID(SRID);
+
+        return geometry;
+    }
+
+    /**
+     * Builds the polygon of the exterior ring triplet <code>first</code>, followed by interior
+     * ring triplets up to <code>end</code> (exclusive)
+     */
+    private static Polygon createLinearPolygon(GeometryFactory gf, final int SRID,
+            int[] elemInfo, int first, int end, double[] ordinates, int D) {
+        LinearRing shell = createStraightRing(gf, SRID, elemInfo, first, ordinates, D);
+        LinearRing[] holes = new LinearRing[end - first - 1];
+        for (int i = 0; i < holes.length; i++) {
+            holes[i] = createStraightRing(gf, SRID, elemInfo, first + i + 1, ordinates, D);
+        }
+        Polygon polygon = gf.createPolygon(shell, holes);
+        polygon.setSRID(SRID);
+        return polygon;
+    }
+
+    private static LinearRing createStraightRing(GeometryFactory gf, final int SRID,
+            int[] elemInfo, int triplet, double[] ordinates, int D) {
+        CoordinateSequence sequence = CoordinateSequences.ensureValidRing(
+                gf.getCoordinateSequenceFactory(),
+                elementSequence(gf, elemInfo, triplet, ordinates, D));
+        LinearRing ring = gf.createLinearRing(sequence);
+        ring.setSRID(SRID);
+        return ring;
+    }
+
+    /**
+     * The sequence of the coordinates of an element, from its starting offset to the one of
+     * the next element, or the end of the ordinates
+     */
+    private static CoordinateSequence elementSequence(GeometryFactory gf, int[] elemInfo,
+            int triplet, double[] ordinates, int D) {
+        int start = (elemInfo[triplet * 3] - 1) / D;
+        int end = (triplet + 1) * 3 < elemInfo.length ? (elemInfo[(triplet + 1) * 3] - 1) / D
+                : ordinates.length / D;
+        return sequence(gf, ordinates, D, start, end);
+    }
+
+    /**
+     * Builds a sequence out of the coordinates from start (inclusive) to end (exclusive), with
+     * D ordinates each
+     */
+    private static CoordinateSequence sequence(GeometryFactory gf, double[] ordinates, int D,
+            int start, int end) {
+        CoordinateSequenceFactory f = gf.getCoordinateSequenceFactory();
+        if (f instanceof PackedCoordinateSequenceFactory) {
+            return ((PackedCoordinateSequenceFactory) f)
+                    .create(Arrays.copyOfRange(ordinates, start * D, end * D), D);
+        } else if (f instanceof LiteCoordinateSequenceFactory) {
+            return ((LiteCoordinateSequenceFactory) f)
+                    .create(Arrays.copyOfRange(ordinates, start * D, end * D), D);
+        }
+        CoordinateSequence cs = f.create(end - start, D);
+        for (int i = start, j = 0; i < end; i++, j++) {
+            for (int d = 0; d < D; d++) {
+                cs.setOrdinate(j, d, ordinates[i * D + d]);
+            }
+        }
+        return cs;
+    }
+
     /**
      * Consturct geometry with SDO encoded information over a CoordinateList.
      * 
@@ -0,0 +1,114 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ */
+package org.geotools.data.oracle.sdo;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.logging.Logger;
+
+import org.geotools.data.oracle.sdo.MDSYS.SDO_GEOMETRY;
+import org.geotools.geometry.jts.LiteCoordinateSequenceFactory;
+import org.geotools.util.logging.Logging;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequenceFactory;
+
+/**
+ * Compares the direct decoding of straight edged geometries in {@link SDO#create} against the
+ * general decoder, which builds a coordinate sequence for the whole ordinate array and then
+ * splits it by element. Uses {@link MDSYS} stand-ins, no Oracle instance is needed. The timings
+ * are logged, the test only checks both decoders return the same geometries. Run with the stress
+ * profile.
+ *
+ * @source $URL$
+ */
+public class SDOCreateStressTest {
+
+    static final Logger LOGGER = Logging.getLogger(SDOCreateStressTest.class);
+
+    static final int POLYGONS = 10;
+
+    static final int POINTS = 200;
+
+    static final int LOOPS = 2000;
+
+    @Test
+    public void testDirectAgainstGeneral() throws Exception {
+        SDO_GEOMETRY oraGeom = createMultiPolygon();
+        GeometryFactory[] factories = new GeometryFactory[] { new GeometryFactory(),
+                new GeometryFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY),
+                new GeometryFactory(new LiteCoordinateSequenceFactory()) };
+        for (GeometryFactory gf : factories) {
+            assertTrue(general(oraGeom, gf).equalsExact(direct(oraGeom, gf)));
+
+            // warm up both decoders before timing them
+            for (int i = 0; i < LOOPS; i++) {
+                general(oraGeom, gf);
+                direct(oraGeom, gf);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOPS; i++) {
+                general(oraGeom, gf);
+            }
+            long generalTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < LOOPS; i++) {
+                direct(oraGeom, gf);
+            }
+            long directTime = System.nanoTime() - start;
+            assertTrue(general(oraGeom, gf).equalsExact(direct(oraGeom, gf)));
+
+            LOGGER.info("Decoding " + LOOPS + " multipolygons of " + POLYGONS * POINTS
+                    + " points with " + gf.getCoordinateSequenceFactory().getClass().getSimpleName()
+                    + ", general: " + generalTime / 1000000 + "ms, direct: "
+                    + directTime / 1000000 + "ms");
+        }
+    }
+
+    Geometry general(SDO_GEOMETRY g, GeometryFactory gf) {
+        return SDO.create(gf, g.gType, g.srid, g.elemInfo, 0,
+                SDO.coordinates(gf.getCoordinateSequenceFactory(), g.gType, g.ordinates), -1);
+    }
+
+    Geometry direct(SDO_GEOMETRY g, GeometryFactory gf) {
+        return SDO.create(gf, g.gType, g.srid, g.ptType, g.elemInfo, g.ordinates);
+    }
+
+    /**
+     * A multipolygon of closed circles, the way SDO_GEOMETRY would store it
+     */
+    SDO_GEOMETRY createMultiPolygon() {
+        int[] elemInfo = new int[POLYGONS * 3];
+        double[] ordinates = new double[POLYGONS * POINTS * 2];
+        int o = 0;
+        for (int p = 0; p < POLYGONS; p++) {
+            elemInfo[p * 3] = o + 1;
+            elemInfo[p * 3 + 1] = ETYPE.POLYGON_EXTERIOR;
+            elemInfo[p * 3 + 2] = 1;
+            for (int i = 0; i < POINTS; i++) {
+                // the last point closes the ring
+                double angle = 2 * Math.PI * (i % (POINTS - 1)) / (POINTS - 1);
+                ordinates[o++] = p * 3000 + 1000 * Math.cos(angle);
+                ordinates[o++] = 1000 * Math.sin(angle);
+            }
+        }
+        return MDSYS.SDO_GEOMETRY(2007, 4326, MDSYS.NULL, elemInfo, ordinates);
+    }
+}
@@ -20,11 +20,20 @@ package org.geotools.data.oracle.sdo;
 import org.geotools.data.oracle.sdo.MDSYS.SDO_GEOMETRY;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import org.geotools.geometry.jts.LiteCoordinateSequence;
+import org.geotools.geometry.jts.LiteCoordinateSequenceFactory;
+
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequence;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequenceFactory;
 import com.vividsolutions.jts.io.ParseException;
 import com.vividsolutions.jts.io.WKTReader;
 
@@ -262,6 +271,84 @@ public class SDOCreateTest {
                       "GEOMETRYCOLLECTION (POINT (1 1), LINESTRING (1 2, 2 1), POLYGON ((2 2, 3 2, 3 3, 2 3, 2 2)), POLYGON ((5 1, 9 5, 5 5, 5 1), (5 3, 6 4, 6 3, 5 3)))");
     }
 
+    @Test
+    public void testPackedMultiPolygonWithHole() throws Exception {
+        SDO_GEOMETRY oraGeom = MDSYS.SDO_GEOMETRY(3007, 8307, NULL,
+                MDSYS.SDO_ELEM_INFO_ARRAY(1, 1003, 1, 16, 2003, 1, 31, 1003, 1),
+                MDSYS.SDO_ORDINATE_ARRAY(0, 0, 1, 10, 0, 1, 10, 10, 1, 0, 10, 1, 0, 0, 1,
+                        2, 2, 2, 2, 4, 2, 4, 4, 2, 4, 2, 2, 2, 2, 2,
+                        20, 20, 3, 30, 20, 3, 30, 30, 3, 20, 20, 3));
+        GeometryFactory gf = new GeometryFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
+        Geometry geometry = create(oraGeom, gf);
+        assertTrue(geometry.equalsExact(new WKTReader().read(
+                "MULTIPOLYGON (((0 0, 10 0, 10 10, 0 10, 0 0), (2 2, 2 4, 4 4, 4 2, 2 2)), ((20 20, 30 20, 30 30, 20 20)))")));
+        assertEquals(8307, geometry.getSRID());
+        Polygon polygon = (Polygon) geometry.getGeometryN(0);
+        assertTrue(polygon.getInteriorRingN(0).getCoordinateSequence() instanceof PackedCoordinateSequence.Double);
+        assertEquals(3, polygon.getExteriorRing().getCoordinateSequence().getDimension());
+        assertEquals(2, polygon.getInteriorRingN(0).getCoordinateN(1).z, 0d);
+        assertEquals(3, geometry.getGeometryN(1).getCoordinates()[2].z, 0d);
+    }
+
+    @Test
+    public void testLiteMultiLineString() throws Exception {
+        SDO_GEOMETRY oraGeom = MDSYS.SDO_GEOMETRY(2006, NULL, NULL,
+                MDSYS.SDO_ELEM_INFO_ARRAY(1, 2, 1, 5, 2, 1),
+                MDSYS.SDO_ORDINATE_ARRAY(0, 0, 50, 50, 10, 10, 150, 150, 200, 100));
+        Geometry geometry = create(oraGeom, new GeometryFactory(new LiteCoordinateSequenceFactory()));
+        assertTrue(geometry.equalsExact(new WKTReader().read(
+                "MULTILINESTRING ((0 0, 50 50), (10 10, 150 150, 200 100))")));
+        LineString line = (LineString) geometry.getGeometryN(1);
+        assertTrue(line.getCoordinateSequence() instanceof LiteCoordinateSequence);
+        assertEquals(3, line.getNumPoints());
+    }
+
+    @Test
+    public void testLinearMatchesGeneralDecoder() throws Exception {
+        SDO_GEOMETRY[] geometries = new SDO_GEOMETRY[] {
+                MDSYS.SDO_GEOMETRY(2001, NULL, NULL, MDSYS.SDO_ELEM_INFO_ARRAY(1, 1, 1),
+                        MDSYS.SDO_ORDINATE_ARRAY(50, 50)),
+                MDSYS.SDO_GEOMETRY(3005, NULL, NULL, MDSYS.SDO_ELEM_INFO_ARRAY(1, 1, 2),
+                        MDSYS.SDO_ORDINATE_ARRAY(50, 50, 5, 100, 200, 300)),
+                MDSYS.SDO_GEOMETRY(3002, NULL, NULL, MDSYS.SDO_ELEM_INFO_ARRAY(1, 2, 1),
+                        MDSYS.SDO_ORDINATE_ARRAY(0, 0, 0, 50, 50, 100)),
+                MDSYS.SDO_GEOMETRY(2003, NULL, NULL, MDSYS.SDO_ELEM_INFO_ARRAY(1, 1003, 1),
+                        MDSYS.SDO_ORDINATE_ARRAY(0, 0, 50, 0, 0, 0)),
+                MDSYS.SDO_GEOMETRY(2007, NULL, NULL,
+                        MDSYS.SDO_ELEM_INFO_ARRAY(1, 1003, 1, 11, 2003, 1, 21, 1003, 1),
+                        MDSYS.SDO_ORDINATE_ARRAY(0, 0, 10, 0, 10, 10, 0, 10, 0, 0, 2, 2, 2, 4,
+                                4, 4, 4, 2, 2, 2, 20, 20, 30, 20, 30, 30, 20, 20)) };
+        GeometryFactory gf = new GeometryFactory();
+        for (SDO_GEOMETRY g : geometries) {
+            Geometry linear = SDO.createLinear(gf, g.gType, g.srid, g.elemInfo, g.ordinates);
+            Geometry general = SDO.create(gf, g.gType, g.srid, g.elemInfo, 0,
+                    SDO.coordinates(gf.getCoordinateSequenceFactory(), g.gType, g.ordinates), -1);
+            assertNotNull(linear);
+            assertTrue(general + " / " + linear, general.equalsExact(linear));
+            assertEquals(general.getCoordinate().z, linear.getCoordinate().z, 0d);
+        }
+    }
+
+    @Test
+    public void testLinearFallback() throws Exception {
+        GeometryFactory gf = new GeometryFactory();
+        // arcs
+        assertNull(SDO.createLinear(gf, 2002, NULL, MDSYS.SDO_ELEM_INFO_ARRAY(1, 2, 2),
+                MDSYS.SDO_ORDINATE_ARRAY(0, 0, 1, 1, 2, 0)));
+        // rectangle
+        assertNull(SDO.createLinear(gf, 2003, NULL, MDSYS.SDO_ELEM_INFO_ARRAY(1, 1003, 3),
+                MDSYS.SDO_ORDINATE_ARRAY(0, 0, 1, 1)));
+        // measures
+        assertNull(SDO.createLinear(gf, 3302, NULL, MDSYS.SDO_ELEM_INFO_ARRAY(1, 2, 1),
+                MDSYS.SDO_ORDINATE_ARRAY(1, 1, 20, 2, 2, 30)));
+        // rings of unknown orientation
+        assertNull(SDO.createLinear(gf, 2007, NULL, MDSYS.SDO_ELEM_INFO_ARRAY(1, 3, 1, 9, 3, 1),
+                MDSYS.SDO_ORDINATE_ARRAY(0, 0, 1, 0, 1, 1, 0, 0, 5, 5, 6, 5, 6, 6, 5, 5)));
+        // offsets out of the ordinates
+        assertNull(SDO.createLinear(gf, 2006, NULL, MDSYS.SDO_ELEM_INFO_ARRAY(1, 2, 1, 9, 2, 1),
+                MDSYS.SDO_ORDINATE_ARRAY(0, 0, 1, 1)));
+    }
+
     // =======================================================
     void checkValue(SDO_GEOMETRY oraGeom, String wkt) {
         checkValue(oraGeom, -1, wkt);
@@ -52,6 +52,7 @@ import org.geotools.filter.function.math.FilterFunction_ceil;
 import org.geotools.filter.function.math.FilterFunction_floor;
 import org.geotools.geometry.jts.JTS;
 import org.geotools.jdbc.JDBCDataStore;
+import org.geotools.jdbc.PreparedFilterToSQL;
 import org.geotools.jdbc.SQLDialect;
 import org.opengis.feature.type.AttributeDescriptor;
 import org.opengis.filter.expression.Expression;
@@ -259,6 +260,10 @@ class FilterToSqlHelper {
 
         // if geography case, sanitize geometry first
         if(isCurrentGeography()) {
+            // the encoding depends on the geometry extent
+            if(delegate instanceof PreparedFilterToSQL) {
+                ((PreparedFilterToSQL) delegate).setTemplateSafe(false);
+            }
             geometry = clipToWorld(geometry);
             if(isWorld(geometry)) {
                 // nothing to filter in this case
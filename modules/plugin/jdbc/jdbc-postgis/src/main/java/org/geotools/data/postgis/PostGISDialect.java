@@ -19,6 +19,7 @@ package org.geotools.data.postgis;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Savepoint;
@@ -178,6 +179,8 @@ public class PostGISDialect extends BasicSQLDialect {
     
     boolean simplifyEnabled = true;
     
+    boolean screenMapEnabled = true;
+    
     Version version, pgsqlVersion;
 
     public boolean isLooseBBOXEnabled() {
@@ -229,6 +232,20 @@ public class PostGISDialect extends BasicSQLDialect {
         this.simplifyEnabled = simplifyEnabled;
     }
 
+    public boolean isScreenMapEnabled() {
+        return screenMapEnabled;
+    }
+
+    /**
+     * Enables/disables keeping a single feature per pixel, among those smaller than a pixel,
+     * when the Query contains a screen map hint
+     *
+     * @see PostgisNGDataStoreFactory#SCREENMAP
+     */
+    public void setScreenMapEnabled(boolean screenMapEnabled) {
+        this.screenMapEnabled = screenMapEnabled;
+    }
+
 
     @Override
     public void initializeConnection(Connection cx) throws SQLException {
@@ -368,6 +385,18 @@ public class PostGISDialect extends BasicSQLDialect {
         sql.append("ST_AsText(" + getForce2DFunction() + "(ST_Envelope(");
         sql.append("ST_Extent(\"" + geometryColumn + "\"::geometry))))");
     }
+
+    @Override
+    public void encodeGeometryEnvelopeOrdinate(GeometryDescriptor gatt, int ordinate,
+            boolean max, StringBuffer sql) {
+        sql.append(ordinate == 0 ? "ST_X" : "ST_Y").append(max ? "Max(" : "Min(");
+        encodeColumnName(null, gatt.getLocalName(), sql);
+        // the envelope functions do not take geographies
+        if ("geography".equals(gatt.getUserData().get(JDBCDataStore.JDBC_NATIVE_TYPENAME))) {
+            sql.append("::geometry");
+        }
+        sql.append(")");
+    }
     
     @Override
     public List<ReferencedEnvelope> getOptimizedBounds(String schema, SimpleFeatureType featureType,
@@ -375,6 +404,12 @@ public class PostGISDialect extends BasicSQLDialect {
         if (!estimatedExtentsEnabled)
             return null;
 
+        return getEstimatedBounds(schema, featureType, cx);
+    }
+
+    @Override
+    public List<ReferencedEnvelope> getEstimatedBounds(String schema, SimpleFeatureType featureType,
+            Connection cx) throws SQLException, IOException {
         String tableName = featureType.getTypeName();
         if (dataStore.getVirtualTables().get(tableName) != null) {
             return null;
@@ -438,6 +473,56 @@ public class PostGISDialect extends BasicSQLDialect {
         return result;
     }
 
+    @Override
+    public int getEstimatedCount(String schema, SimpleFeatureType featureType, Connection cx)
+            throws SQLException, IOException {
+        String tableName = featureType.getTypeName();
+        if (dataStore.getVirtualTables().get(tableName) != null) {
+            return -1;
+        }
+
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        Savepoint savePoint = null;
+        try {
+            if(!cx.getAutoCommit()) {
+                savePoint = cx.setSavepoint();
+            }
+            // use the row count estimate of the planner statistics
+            StringBuffer table = new StringBuffer();
+            if(schema != null) {
+                encodeSchemaName(schema, table);
+                table.append(".");
+            }
+            encodeTableName(tableName, table);
+            String sql = "select reltuples from pg_class where oid = ?::regclass";
+            LOGGER.log(Level.FINE, "Estimating count: {0} [{1}]", new Object[] { sql, table });
+            ps = cx.prepareStatement(sql);
+            ps.setString(1, table.toString());
+            rs = ps.executeQuery();
+            if (rs.next()) {
+                // -1 means the table has not been analyzed yet
+                long count = Math.round(rs.getDouble(1));
+                if (count >= 0 && count <= Integer.MAX_VALUE) {
+                    return (int) count;
+                }
+            }
+            return -1;
+        } catch(SQLException e) {
+            if(savePoint != null) {
+                cx.rollback(savePoint);
+            }
+            LOGGER.log(Level.WARNING, "Failed to read the estimated count of " + tableName, e);
+            return -1;
+        } finally {
+            if(savePoint != null) {
+                cx.releaseSavepoint(savePoint);
+            }
+            dataStore.closeSafe(rs);
+            dataStore.closeSafe(ps);
+        }
+    }
+
     @Override
     public Envelope decodeGeometryEnvelope(ResultSet rs, int column,
             Connection cx) throws SQLException, IOException {
@@ -810,6 +895,12 @@ public class PostGISDialect extends BasicSQLDialect {
         return true;
     }
     
+    @Override
+    public boolean isAutoGeneratedValueConnectionScoped() {
+        // currval is local to the session
+        return true;
+    }
+
     @Override
     public Object getLastAutoGeneratedValue(String schemaName, String tableName, String columnName,
             Connection cx) throws SQLException {
@@ -1231,6 +1322,9 @@ public class PostGISDialect extends BasicSQLDialect {
         if(isSimplifyEnabled()) {
             hints.add(Hints.GEOMETRY_SIMPLIFICATION);
         }
+        if(isScreenMapEnabled()) {
+            hints.add(Hints.SCREENMAP);
+        }
     }
 
     /**
@@ -22,9 +22,12 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.geotools.factory.Hints;
+import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.jdbc.ColumnMetadata;
 import org.geotools.jdbc.JDBCDataStore;
 import org.geotools.jdbc.PreparedFilterToSQL;
@@ -101,6 +104,21 @@ public class PostGISPSDialect extends PreparedStatementSQLDialect {
         delegate.encodeGeometryEnvelope(tableName, geometryColumn, sql);
     }
 
+    @Override
+    public void encodeGeometryEnvelopeOrdinate(GeometryDescriptor gatt, int ordinate,
+            boolean max, StringBuffer sql) {
+        delegate.encodeGeometryEnvelopeOrdinate(gatt, ordinate, max, sql);
+    }
+
+    @Override
+    protected void addSupportedHints(Set<Hints.Key> hints) {
+        // geometry simplification is not supported, encodeGeometryColumnSimplified is not
+        // implemented by the prepared statement dialect
+        if (delegate.isScreenMapEnabled()) {
+            hints.add(Hints.SCREENMAP);
+        }
+    }
+
 
     public void encodePrimaryKey(String column, StringBuffer sql) {
         delegate.encodePrimaryKey(column, sql);
@@ -128,6 +146,11 @@ public class PostGISPSDialect extends PreparedStatementSQLDialect {
         return delegate.lookupGeneratedValuesPostInsert();
     }
 
+    @Override
+    public boolean isAutoGeneratedValueConnectionScoped() {
+        return delegate.isAutoGeneratedValueConnectionScoped();
+    }
+
     public Object getNextAutoGeneratedValue(String schemaName,
             String tableName, String columnName, Connection cx)
             throws SQLException {
@@ -260,4 +283,16 @@ public class PostGISPSDialect extends PreparedStatementSQLDialect {
             Connection cx) throws SQLException {
         return delegate.getGeometryDimension(schemaName, tableName, columnName, cx);
     }
+
+    @Override
+    public List<ReferencedEnvelope> getEstimatedBounds(String schema,
+            SimpleFeatureType featureType, Connection cx) throws SQLException, IOException {
+        return delegate.getEstimatedBounds(schema, featureType, cx);
+    }
+
+    @Override
+    public int getEstimatedCount(String schema, SimpleFeatureType featureType, Connection cx)
+            throws SQLException, IOException {
+        return delegate.getEstimatedCount(schema, featureType, cx);
+    }
 }
@@ -16,10 +16,16 @@
  */
 package org.geotools.data.postgis.ps;
 
+import org.geotools.data.Query;
 import org.geotools.data.postgis.PostgisDataStoreAPITestSetup;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.factory.Hints;
 import org.geotools.jdbc.JDBCDataStoreAPIOnlineTest;
 import org.geotools.jdbc.JDBCDataStoreAPITestSetup;
 
+import com.vividsolutions.jts.geom.Geometry;
+
 /**
  * 
  *
@@ -36,4 +42,23 @@ public class PostgisDataStoreAPIOnlineTest extends JDBCDataStoreAPIOnlineTest {
     public void testGetFeatureWriterConcurrency() throws Exception {
         // postgis will lock indefinitely, won't throw an exception
     }
+
+    public void testSimplificationHint() throws Exception {
+        SimpleFeatureSource fs = dataStore.getFeatureSource(tname("simplify_polygon"));
+        // the prepared statement dialect cannot encode simplified geometries
+        assertFalse(fs.getSupportedHints().contains(Hints.GEOMETRY_SIMPLIFICATION));
+
+        // the hint is ignored, the geometries are returned as is
+        Query query = new Query();
+        query.setHints(new Hints(Hints.GEOMETRY_SIMPLIFICATION, 10d));
+        SimpleFeatureIterator iterator = fs.getFeatures(query).features();
+        try {
+            assertTrue(iterator.hasNext());
+            Geometry geometry = (Geometry) iterator.next().getDefaultGeometry();
+            assertNotNull(geometry);
+            assertFalse(geometry.isEmpty());
+        } finally {
+            iterator.close();
+        }
+    }
 }
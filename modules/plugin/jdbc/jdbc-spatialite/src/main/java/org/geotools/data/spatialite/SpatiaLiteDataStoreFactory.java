@@ -20,8 +20,11 @@ import java.io.File;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.HashMap;
 import java.util.Map;
 
+import javax.sql.DataSource;
+
 import org.apache.commons.dbcp.BasicDataSource;
 import org.geotools.jdbc.JDBCDataStore;
 import org.geotools.jdbc.JDBCDataStoreFactory;
@@ -119,6 +122,21 @@ public class SpatiaLiteDataStoreFactory extends JDBCDataStoreFactory {
         //add additional parameters
         parameters.put(DBTYPE.key, DBTYPE);
 
+        //the connections are always pooled by DBCP, see createDataSource(Map, SQLDialect)
+        parameters.remove(CONNECTION_POOL.key);
+        parameters.remove(CONNECTION_LEAK_THRESHOLD.key);
+    }
+
+    /**
+     * The SpatiaLite connections need the driver specific properties and initialization done in
+     * {@link #createDataSource(Map)}, which the concurrent pool does not carry over, so the
+     * {@link #CONNECTION_POOL} parameter is ignored and DBCP is always used.
+     */
+    @Override
+    protected DataSource createDataSource(Map params, SQLDialect dialect) throws IOException {
+        Map dbcpParams = new HashMap(params);
+        dbcpParams.remove(CONNECTION_POOL.key);
+        return super.createDataSource(dbcpParams, dialect);
     }
     
     @Override
@@ -47,9 +47,9 @@ public class SQLServerDataStoreFactory extends JDBCDataStoreFactory {
     public static final Param GEOMETRY_METADATA_TABLE = new Param("Geometry metadata table", String.class,
             "The optional table containing geometry metadata (geometry type and srid). Can be expressed as 'schema.name' or just 'name'", false);
 
-    /** parameter for using WKB or Sql server binary directly. Setting to true will use WKB */
+    /** parameter for using WKB or Sql server binary directly. Setting to false will use WKB */
     public static final Param NATIVE_SERIALIZATION = new Param("Use native geometry serialization", Boolean.class,
-            "Use native SQL Server serialization, or WKB serialization.", false, Boolean.FALSE);
+            "Use native SQL Server serialization, or WKB serialization. Geography columns always use WKB.", false, Boolean.TRUE);
 
     /** parameter for forcing the usage of spatial indexes in queries via sql hints */
     public static final Param FORCE_SPATIAL_INDEX = new Param("Force spatial index usage via hints", Boolean.class,
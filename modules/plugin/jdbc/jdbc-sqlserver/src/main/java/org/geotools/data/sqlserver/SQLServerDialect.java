@@ -95,7 +95,17 @@ public class SQLServerDialect extends BasicSQLDialect {
 
     private Boolean useOffsetLimit = false;
 
-    private Boolean useNativeSerialization = false;
+    private Boolean useNativeSerialization = true;
+
+    /**
+     * The native binary readers, one per thread so that their ordinate buffers can be reused
+     * across the rows
+     */
+    private final ThreadLocal<SqlServerBinaryReader> binaryReaders = new ThreadLocal<SqlServerBinaryReader>() {
+        protected SqlServerBinaryReader initialValue() {
+            return new SqlServerBinaryReader();
+        }
+    };
 
     private Boolean forceSpatialIndexes = false;
 
@@ -514,7 +524,7 @@ public class SQLServerDialect extends BasicSQLDialect {
     public void encodeGeometryColumn(GeometryDescriptor gatt, String prefix,
             int srid, Hints hints, StringBuffer sql) {
         encodeColumnName( prefix, gatt.getLocalName(), sql );
-        if (!useNativeSerialization) {
+        if (!isNativeSerialization(gatt)) {
             sql.append( ".STAsBinary()");
         }
     }
@@ -543,9 +553,11 @@ public class SQLServerDialect extends BasicSQLDialect {
         if(bytes == null) {
             return null;
         }
-        if (useNativeSerialization) {
+        if (isNativeSerialization(descriptor)) {
             try {
-                return new SqlServerBinaryReader(factory).read(bytes);
+                SqlServerBinaryReader reader = binaryReaders.get();
+                reader.setGeometryFactory(factory);
+                return reader.read(bytes);
             } catch ( IOException e ) {
                 throw (IOException) new IOException().initCause( e );
             }
@@ -558,6 +570,20 @@ public class SQLServerDialect extends BasicSQLDialect {
         }
     }
 
+    /**
+     * Returns true if the geometry column is read in the native SQL Server serialization. Only
+     * the geometry type is, the geography one stores latitude before longitude and is read as
+     * WKB.
+     */
+    boolean isNativeSerialization(GeometryDescriptor descriptor) {
+        if (!useNativeSerialization) {
+            return false;
+        }
+        Object typeName = descriptor == null ? null
+                : descriptor.getUserData().get(JDBCDataStore.JDBC_NATIVE_TYPENAME);
+        return !"geography".equalsIgnoreCase((String) typeName);
+    }
+
     Geometry decodeGeometry( String s, GeometryFactory factory ) throws IOException {
         if ( s == null ) {
             return null;
@@ -1,6 +1,5 @@
 package org.geotools.data.sqlserver.reader;
 
-import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.CoordinateSequence;
 
 /**
@@ -14,7 +13,8 @@ class SqlServerBinary {
 
     private int srid;
     private int numberOfPoints;
-    private Coordinate[] coordinates;
+    private double[] xy;
+    private double[] z;
     private Shape[] shapes;
     private Figure[] figures;
     private CoordinateSequence[] sequences;
@@ -61,12 +61,35 @@ class SqlServerBinary {
         this.numberOfPoints = numberOfPoints;
     }
 
-    public Coordinate[] getCoordinates() {
-        return coordinates;
+    /**
+     * The x and y ordinates of the points, interleaved. The array can be longer than twice the
+     * number of points, as it is reused across geometries.
+     */
+    public double[] getXY() {
+        return xy;
     }
 
-    public void setCoordinates(Coordinate[] coordinates) {
-        this.coordinates = coordinates;
+    public void setXY(double[] xy) {
+        this.xy = xy;
+    }
+
+    /**
+     * The z values of the points, or null if the geometry has none. The array can be longer than
+     * the number of points.
+     */
+    public double[] getZ() {
+        return z;
+    }
+
+    public void setZ(double[] z) {
+        this.z = z;
+    }
+
+    /**
+     * Checks if two points have the same x and y
+     */
+    public boolean equals2D(int point1, int point2) {
+        return xy[point1 * 2] == xy[point2 * 2] && xy[point1 * 2 + 1] == xy[point2 * 2 + 1];
     }
 
     public void setShapes(Shape[] shapes) {
@@ -1,18 +1,28 @@
 package org.geotools.data.sqlserver.reader;
 
 import com.vividsolutions.jts.geom.*;
-import com.vividsolutions.jts.io.ByteArrayInStream;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequenceFactory;
 import com.vividsolutions.jts.io.ByteOrderDataInStream;
 import com.vividsolutions.jts.io.ByteOrderValues;
 import com.vividsolutions.jts.io.InStream;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
+import org.geotools.geometry.jts.LiteCoordinateSequenceFactory;
+
 /**
  * Decode Sql Server binary format to JTS
+ * <p>
+ * The ordinates are read in bulk into primitive buffers, which are reused across the
+ * {@link #read(byte[])} calls, and the coordinate sequences are built straight from them, without
+ * going through {@link Coordinate} objects when the geometry factory uses packed sequences.
+ * A reader instance is hence not thread safe.
+ * </p>
  *
  * @author Anders Bakkevold, Bouvet
  *
@@ -21,8 +31,11 @@ import java.util.List;
 public class SqlServerBinaryReader {
 
     private ByteOrderDataInStream dis = new ByteOrderDataInStream();
+    private ByteBuffer buffer;
     private GeometryFactory gf = new GeometryFactory();
     private SqlServerBinary binary;
+    private double[] xyBuffer = new double[0];
+    private double[] zBuffer = new double[0];
 
     public SqlServerBinaryReader() {
         this.gf = new GeometryFactory();
@@ -32,13 +45,34 @@ public class SqlServerBinaryReader {
         this.gf = gf;
     }
 
+    /**
+     * Sets the factory used to build the geometries, allowing the reader and its buffers to be
+     * reused with a different factory
+     */
+    public void setGeometryFactory(GeometryFactory gf) {
+        this.gf = gf;
+    }
+
     public Geometry read(byte[] bytes) throws IOException {
-        this.binary = new SqlServerBinary();
-        return read(new ByteArrayInStream(bytes));
+        this.buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            return readGeometry();
+        } catch (BufferUnderflowException e) {
+            throw new SqlServerBinaryParseException("Unexpected end of the geometry binary");
+        } finally {
+            this.buffer = null;
+        }
     }
 
     public Geometry read(InStream is) throws IOException {
-        parse(is);
+        dis.setInStream(is);
+        dis.setOrder(ByteOrderValues.LITTLE_ENDIAN);
+        return readGeometry();
+    }
+
+    private Geometry readGeometry() throws IOException {
+        this.binary = new SqlServerBinary();
+        parse();
         readCoordinateSequences();
         Type type = getTypeFromBinary();
         Geometry geometry = decode(0, type);
@@ -125,16 +159,15 @@ public class SqlServerBinaryReader {
 
     private Geometry decodePoint(int shapeIndex) {
         Shape shape = binary.getShapes()[shapeIndex];
-        Coordinate coordinate;
+        CoordinateSequence sequence;
         if (binary.isSinglePoint()) {
-            coordinate = binary.getCoordinates()[0];
-        }  else if (shape.getParentOffset() != -1) {
-            Figure figure = binary.getFigure(shape.getFigureOffset());
-            coordinate = binary.getCoordinates()[figure.getPointOffset()];
+            sequence = binary.getSequence(0);
+        } else if (shape.getFigureOffset() != -1) {
+            sequence = binary.getSequence(shape.getFigureOffset());
         } else {
-            coordinate = null;
+            sequence = null;
         }
-        return gf.createPoint(coordinate);
+        return gf.createPoint(sequence);
     }
 
     private Geometry decodeGeometryCollection(int shapeIndex) throws SqlServerBinaryParseException {
@@ -163,27 +196,67 @@ public class SqlServerBinaryReader {
         CoordinateSequence[] sequences = new CoordinateSequence[figures.length];
         for (int i = 0; i < figures.length; i++) {
             int figurePointOffset = figures[i].getPointOffset();
-            int nextPointOffset = figures.length >= i+2 ? figures[i+1].getPointOffset() : binary.getCoordinates().length;
-            Coordinate[] coordinates = Arrays.copyOfRange(binary.getCoordinates(), figurePointOffset, nextPointOffset);
+            int nextPointOffset = figures.length >= i+2 ? figures[i+1].getPointOffset() : binary.getNumberOfPoints();
             int attribute = figures[i].getAttribute();
-            if ((attribute == 0 || attribute == 2) && !coordinates[0].equals(coordinates[coordinates.length-1]) ) {
-                coordinates = Arrays.copyOf(coordinates, coordinates.length + 1);
-                coordinates[coordinates.length-1] = coordinates[0];
-            }
-            sequences[i] = gf.getCoordinateSequenceFactory().create(coordinates);
+            boolean close = (attribute == 0 || attribute == 2)
+                    && nextPointOffset > figurePointOffset
+                    && !binary.equals2D(figurePointOffset, nextPointOffset - 1);
+            sequences[i] = createSequence(figurePointOffset, nextPointOffset, close);
         }
         binary.setSequences(sequences);
     }
 
-    private void parse(InStream is) throws IOException {
-        dis.setInStream(is);
-        dis.setOrder(ByteOrderValues.LITTLE_ENDIAN);
-        binary.setSrid(dis.readInt());
-        byte version = dis.readByte();
+    /**
+     * Builds the sequence of the points between start (inclusive) and end (exclusive), repeating
+     * the first point at the end if the ring needs to be closed
+     */
+    private CoordinateSequence createSequence(int start, int end, boolean close) {
+        int size = end - start + (close ? 1 : 0);
+        int dimension = binary.hasZ() ? 3 : 2;
+        double[] xy = binary.getXY();
+        double[] z = binary.getZ();
+        CoordinateSequenceFactory csf = gf.getCoordinateSequenceFactory();
+        if (csf instanceof PackedCoordinateSequenceFactory
+                || csf instanceof LiteCoordinateSequenceFactory) {
+            double[] ordinates = new double[size * dimension];
+            if (dimension == 2) {
+                System.arraycopy(xy, start * 2, ordinates, 0, (end - start) * 2);
+            } else {
+                for (int i = start, j = 0; i < end; i++) {
+                    ordinates[j++] = xy[i * 2];
+                    ordinates[j++] = xy[i * 2 + 1];
+                    ordinates[j++] = z[i];
+                }
+            }
+            if (close) {
+                System.arraycopy(ordinates, 0, ordinates, (size - 1) * dimension, dimension);
+            }
+            if (csf instanceof PackedCoordinateSequenceFactory) {
+                return ((PackedCoordinateSequenceFactory) csf).create(ordinates, dimension);
+            } else {
+                return ((LiteCoordinateSequenceFactory) csf).create(ordinates, dimension);
+            }
+        }
+
+        CoordinateSequence sequence = csf.create(size, dimension);
+        for (int i = 0; i < size; i++) {
+            int point = (close && i == size - 1) ? start : start + i;
+            sequence.setOrdinate(i, CoordinateSequence.X, xy[point * 2]);
+            sequence.setOrdinate(i, CoordinateSequence.Y, xy[point * 2 + 1]);
+            if (dimension == 3) {
+                sequence.setOrdinate(i, CoordinateSequence.Z, z[point]);
+            }
+        }
+        return sequence;
+    }
+
+    private void parse() throws IOException {
+        binary.setSrid(readInt());
+        byte version = readByte();
         if (version != 1) {
             throw new SqlServerBinaryParseException("Unsupported version (only supports version 1): " + version);
         }
-        binary.setSerializationProperties(dis.readByte());
+        binary.setSerializationProperties(readByte());
 
         readNumberOfPoints();
         readCoordinates();
@@ -208,26 +281,32 @@ public class SqlServerBinaryReader {
         } else if (binary.hasSingleLineSegment()) {
             binary.setNumberOfPoints(2);
         } else {
-            binary.setNumberOfPoints(dis.readInt());
+            int numberOfPoints = readInt();
+            if (numberOfPoints < 0) {
+                throw new SqlServerBinaryParseException("Invalid number of points: " + numberOfPoints);
+            }
+            binary.setNumberOfPoints(numberOfPoints);
         }
     }
 
     private void readCoordinates() throws IOException {
-        Coordinate[] coordinates = new Coordinate[binary.getNumberOfPoints()];
-        for(int i = 0; i<binary.getNumberOfPoints(); i++) {
-            coordinates[i] = readCoordinate();
+        int count = binary.getNumberOfPoints() * 2;
+        checkRemaining(count);
+        if (xyBuffer.length < count) {
+            xyBuffer = new double[count];
         }
-        binary.setCoordinates(coordinates);
+        readDoubles(xyBuffer, count);
+        binary.setXY(xyBuffer);
     }
 
     private void readShapes() throws IOException {
         int numberOfShapes;Shape[] shapesMetadata;
-        numberOfShapes = dis.readInt();
+        numberOfShapes = readInt();
         shapesMetadata = new Shape[numberOfShapes];
         for (int i = 0; i < numberOfShapes; i++) {
-            int parentOffset = dis.readInt();
-            int figureOffset = dis.readInt();
-            int shapeType =  dis.readByte();
+            int parentOffset = readInt();
+            int figureOffset = readInt();
+            int shapeType =  readByte();
             shapesMetadata[i] = new Shape(parentOffset, figureOffset, shapeType);
         }
         binary.setShapes(shapesMetadata);
@@ -235,11 +314,11 @@ public class SqlServerBinaryReader {
 
     private void readFigures() throws IOException {
         int numberOfFigures;Figure[] figuresMetadata;
-        numberOfFigures = dis.readInt();
+        numberOfFigures = readInt();
         figuresMetadata = new Figure[numberOfFigures];
         for (int i = 0; i < numberOfFigures; i++) {
-            byte figureAttribute = dis.readByte();
-            int figurePointOffset = dis.readInt();
+            byte figureAttribute = readByte();
+            int figurePointOffset = readInt();
             figuresMetadata[i] = new Figure(figureAttribute,figurePointOffset);
         }
         binary.setFigures(figuresMetadata);
@@ -248,21 +327,55 @@ public class SqlServerBinaryReader {
     private void readMValues() throws IOException {
         //measure values are currently discarded, as they cannot be represented in a JTS Geometry
         if (binary.hasM()) {
-            for (int i = 0; i < binary.getNumberOfPoints(); i++) {
-                dis.readDouble();
+            if (buffer != null) {
+                checkRemaining(binary.getNumberOfPoints());
+                buffer.position(buffer.position() + binary.getNumberOfPoints() * 8);
+            } else {
+                for (int i = 0; i < binary.getNumberOfPoints(); i++) {
+                    dis.readDouble();
+                }
             }
         }
     }
 
     private void readZValues() throws IOException {
         if (binary.hasZ()) {
-            for (int i = 0; i < binary.getNumberOfPoints(); i++) {
-                binary.getCoordinates()[i].z = dis.readDouble();
+            int count = binary.getNumberOfPoints();
+            checkRemaining(count);
+            if (zBuffer.length < count) {
+                zBuffer = new double[count];
             }
+            readDoubles(zBuffer, count);
+            binary.setZ(zBuffer);
         }
     }
 
-    private Coordinate readCoordinate() throws IOException {
-        return new Coordinate(dis.readDouble(), dis.readDouble());
+    /**
+     * Checks the binary holds the given number of doubles before allocating space for them, so
+     * that a corrupted point count fails fast
+     */
+    private void checkRemaining(int doubles) {
+        if (buffer != null && doubles * 8L > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+    }
+
+    private void readDoubles(double[] target, int count) throws IOException {
+        if (buffer != null) {
+            buffer.asDoubleBuffer().get(target, 0, count);
+            buffer.position(buffer.position() + count * 8);
+        } else {
+            for (int i = 0; i < count; i++) {
+                target[i] = dis.readDouble();
+            }
+        }
+    }
+
+    private int readInt() throws IOException {
+        return buffer != null ? buffer.getInt() : dis.readInt();
+    }
+
+    private byte readByte() throws IOException {
+        return buffer != null ? buffer.get() : dis.readByte();
     }
 }
@@ -0,0 +1,127 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.sqlserver.reader;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequenceFactory;
+import com.vividsolutions.jts.io.WKBReader;
+import com.vividsolutions.jts.io.WKBWriter;
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.logging.Logger;
+
+import org.geotools.util.logging.Logging;
+
+/**
+ * Compares the decoding of the native SQL Server serialization against the decoding of the WKB
+ * returned by <code>STAsBinary()</code>, over the same polygon. The timings are logged, the test
+ * only checks both paths return the same geometry. Run with the stress profile.
+ *
+ * @source $URL$
+ */
+public class SQLServerBinaryReaderStressTest extends TestCase {
+
+    static final Logger LOGGER = Logging.getLogger(SQLServerBinaryReaderStressTest.class);
+
+    static final int POINTS = 1000;
+
+    static final int LOOPS = 2000;
+
+    public void testNativeAgainstWKB() throws Exception {
+        Polygon polygon = createPolygon();
+        byte[] wkb = new WKBWriter().write(polygon);
+        byte[] nativeBytes = toNative(polygon);
+
+        GeometryFactory packed = new GeometryFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
+        GeometryFactory array = new GeometryFactory();
+        SqlServerBinaryReader nativeReader = new SqlServerBinaryReader(packed);
+        assertTrue(polygon.equalsExact(nativeReader.read(nativeBytes)));
+        assertTrue(polygon.equalsExact(new WKBReader(array).read(wkb)));
+
+        // warm up both paths before timing them
+        for (int i = 0; i < LOOPS; i++) {
+            nativeReader.read(nativeBytes);
+            new WKBReader(array).read(wkb);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            new WKBReader(array).read(wkb);
+        }
+        long wkbTime = System.nanoTime() - start;
+
+        nativeReader.setGeometryFactory(array);
+        start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            nativeReader.read(nativeBytes);
+        }
+        long nativeArrayTime = System.nanoTime() - start;
+
+        nativeReader.setGeometryFactory(packed);
+        start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            nativeReader.read(nativeBytes);
+        }
+        long nativePackedTime = System.nanoTime() - start;
+        assertTrue(polygon.equalsExact(nativeReader.read(nativeBytes)));
+
+        LOGGER.info("Decoding " + LOOPS + " polygons of " + POINTS + " points, WKB: "
+                + wkbTime / 1000000 + "ms, native: " + nativeArrayTime / 1000000
+                + "ms, native packed: " + nativePackedTime / 1000000 + "ms");
+    }
+
+    Polygon createPolygon() {
+        Coordinate[] coordinates = new Coordinate[POINTS + 1];
+        for (int i = 0; i < POINTS; i++) {
+            double angle = 2 * Math.PI * i / POINTS;
+            coordinates[i] = new Coordinate(500000 + 1000 * Math.cos(angle),
+                    6000000 + 1000 * Math.sin(angle));
+        }
+        coordinates[POINTS] = coordinates[0];
+        GeometryFactory factory = new GeometryFactory();
+        LinearRing shell = factory.createLinearRing(coordinates);
+        Polygon polygon = factory.createPolygon(shell, null);
+        polygon.setSRID(32632);
+        return polygon;
+    }
+
+    /**
+     * Encodes a single ring polygon in the SQL Server serialization, version 1
+     */
+    byte[] toNative(Polygon polygon) {
+        Coordinate[] coordinates = polygon.getExteriorRing().getCoordinates();
+        ByteBuffer buffer = ByteBuffer.allocate(6 + 4 + coordinates.length * 16 + 4 + 5 + 4 + 9)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(polygon.getSRID());
+        // version and properties, valid
+        buffer.put((byte) 1).put((byte) 4);
+        buffer.putInt(coordinates.length);
+        for (Coordinate c : coordinates) {
+            buffer.putDouble(c.x).putDouble(c.y);
+        }
+        // one exterior ring figure
+        buffer.putInt(1).put((byte) 2).putInt(0);
+        // one polygon shape
+        buffer.putInt(1).putInt(-1).putInt(0).put((byte) 3);
+        return buffer.array();
+    }
+}
@@ -2,13 +2,22 @@ package org.geotools.data.sqlserver.reader;
 
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Polygon;
 import com.vividsolutions.jts.geom.PrecisionModel;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequence;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequenceFactory;
+import com.vividsolutions.jts.io.ByteArrayInStream;
 import com.vividsolutions.jts.io.ParseException;
 import com.vividsolutions.jts.io.WKBReader;
 import com.vividsolutions.jts.io.WKTReader;
 import junit.framework.TestCase;
 
 import java.io.IOException;
+import java.util.Arrays;
+
+import org.geotools.geometry.jts.LiteCoordinateSequence;
+import org.geotools.geometry.jts.LiteCoordinateSequenceFactory;
 
 /**
  * Binary test data have been produced by executing this query in SQL Server, and then removing the prefix '0x':
@@ -103,6 +112,62 @@ public class SQLServerBinaryReaderTest extends TestCase {
         testGeometry(binary,wkt,25832);
     }
 
+    public void testPackedSequences() throws Exception {
+        String wkt = "GEOMETRYCOLLECTION (POINT (4 0), LINESTRING (4 2, 5 3), POLYGON ((0 0, 3 0, 3 3, 0 3, 0 0),(1 1, 1 2, 2 2, 2 1, 1 1)))";
+        String binary = "0000000001040D0000000000000000001040000000000000000000000000000010400000000000000040000000000000144000000000000008400000000000000000000000000000000000000000000008400000000000000000000000000000084000000000000008400000000000000000000000000000084000000000000000000000000000000000000000000000F03F000000000000F03F000000000000F03F0000000000000040000000000000004000000000000000400000000000000040000000000000F03F000000000000F03F000000000000F03F04000000010000000001010000000203000000000800000004000000FFFFFFFF0000000007000000000000000001000000000100000002000000000200000003";
+        GeometryFactory factory = new GeometryFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
+        Geometry geometry = new SqlServerBinaryReader(factory).read(WKBReader.hexToBytes(binary));
+        assertEquals(new WKTReader().read(wkt), geometry);
+        LineString line = (LineString) geometry.getGeometryN(1);
+        assertTrue(line.getCoordinateSequence() instanceof PackedCoordinateSequence.Double);
+        Polygon polygon = (Polygon) geometry.getGeometryN(2);
+        assertTrue(polygon.getInteriorRingN(0).getCoordinateSequence() instanceof PackedCoordinateSequence.Double);
+    }
+
+    public void testLiteSequencesWithZ() throws Exception {
+        String binary = "E61000000105030000000000000000000000000000000000F03F0000000000000840000000000000004000000000000010400000000000001440000000000000F03F0000000000000040000000000000F8FF01000000010000000001000000FFFFFFFF0000000002";
+        GeometryFactory factory = new GeometryFactory(new LiteCoordinateSequenceFactory());
+        LineString line = (LineString) new SqlServerBinaryReader(factory).read(WKBReader.hexToBytes(binary));
+        assertTrue(line.getCoordinateSequence() instanceof LiteCoordinateSequence);
+        assertEquals(3, line.getCoordinateSequence().getDimension());
+        assertEquals(3.0, line.getCoordinateN(1).x, 0);
+        assertEquals(2.0, line.getCoordinateN(1).y, 0);
+        assertEquals(2.0, line.getCoordinateN(1).z, 0);
+        assertTrue(Double.isNaN(line.getCoordinateN(2).z));
+    }
+
+    public void testReaderReuse() throws Exception {
+        // a big geometry first, so that the smaller ones are read in larger buffers
+        SqlServerBinaryReader reader = new SqlServerBinaryReader(
+                new GeometryFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY));
+        Geometry multiPolygon = reader.read(WKBReader.hexToBytes("000000000104090000000000000000003E40000000000000344000000000000024400000000000004440000000000080464000000000000044400000000000003E4000000000000034400000000000002E4000000000000014400000000000004440000000000000244000000000000024400000000000003440000000000000144000000000000024400000000000002E400000000000001440020000000200000000020400000003000000FFFFFFFF0000000006000000000000000003000000000100000003"));
+        Geometry point = reader.read(WKBReader.hexToBytes("E6100000010C00000000000014400000000000002440"));
+        Geometry line = reader.read(WKBReader.hexToBytes("0000000001140000000000001440000000000000244000000000000024400000000000002440"));
+
+        WKTReader wktReader = new WKTReader();
+        assertEquals(wktReader.read("MULTIPOLYGON (((30 20, 10 40, 45 40, 30 20)),((15 5, 40 10, 10 20, 5 10, 15 5)))"), multiPolygon);
+        assertEquals(wktReader.read("POINT (5 10)"), point);
+        assertEquals(wktReader.read("LINESTRING (5 10, 10 10)"), line);
+        assertEquals(2, ((LineString) line).getCoordinateSequence().size());
+    }
+
+    public void testInStream() throws Exception {
+        byte[] bytes = WKBReader.hexToBytes("797F00000104050000000000000080C024C1000000000845574100000000607224C1000000000845574100000000607224C100000000443B57410000000080C024C100000000443B57410000000080C024C1000000000845574101000000020000000001000000FFFFFFFF0000000003");
+        Geometry geometry = new SqlServerBinaryReader().read(new ByteArrayInStream(bytes));
+        assertEquals(new WKTReader().read("POLYGON ((-680000 6100000, -670000 6100000, -670000 6090000, -680000 6090000, -680000 6100000))"), geometry);
+        assertEquals(32633, geometry.getSRID());
+    }
+
+    public void testTruncated() throws Exception {
+        byte[] bytes = WKBReader.hexToBytes("797F00000104050000000000000080C024C1000000000845574100000000607224C1000000000845574100000000607224C100000000443B57410000000080C024C100000000443B57410000000080C024C1000000000845574101000000020000000001000000FFFFFFFF0000000003");
+        try {
+            new SqlServerBinaryReader().read(Arrays.copyOf(bytes, 40));
+            fail("The binary is truncated");
+        } catch (SqlServerBinaryParseException e) {
+            // fine
+        }
+    }
+
     private Geometry testGeometry(String geometryBinary, String geometryWKT) throws Exception {
         WKTReader readerWkt = new WKTReader((new GeometryFactory(new PrecisionModel(), 0)));
         return testGeometry(geometryBinary, geometryWKT, readerWkt);
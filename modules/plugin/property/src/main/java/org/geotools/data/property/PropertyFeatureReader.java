@@ -16,20 +16,28 @@
  */
 package org.geotools.data.property;
 
-import java.io.BufferedReader;
+import java.io.CharArrayReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.geotools.data.DataSourceException;
 import org.geotools.data.DataUtilities;
 import org.geotools.data.FeatureReader;
+import org.geotools.factory.GeoTools;
 import org.geotools.feature.SchemaException;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.geometry.jts.WKTReader2;
+import org.geotools.util.Converter;
+import org.geotools.util.ConverterFactory;
 import org.geotools.util.Converters;
 import org.geotools.util.logging.Logging;
 import org.opengis.feature.simple.SimpleFeature;
@@ -85,48 +93,122 @@ import com.vividsolutions.jts.io.ParseException;
  */
 public class PropertyFeatureReader implements FeatureReader<SimpleFeatureType, SimpleFeature> {
     private static final Logger LOGGER = Logging.getLogger("org.geotools.data.property");
-    BufferedReader reader;
+    Reader reader;
     SimpleFeatureType type;
-    String line;
-    String next;
-    String[] text;
     String fid;
 
     WKTReader2 wktReader;
-    
+
+    /** Characters read from the file and not yet consumed */
+    char[] buffer = new char[8192];
+    int bufferPosition;
+    int bufferLimit;
+
+    /** Number of characters consumed from the file */
+    long position;
+
+    /** The current logical line, with continuations joined and escapes processed */
+    char[] line = new char[256];
+    int lineLength;
+
+    /** Whether {@link #line} holds a line not returned by {@link #next()} yet */
+    boolean pending;
+
+    /** Whether {@link #line} holds the line of the last feature returned by {@link #next()} */
+    boolean current;
+
+    /**
+     * Position in the file of the first character of the current line, of the character
+     * following its content and of the first character after its line terminator
+     */
+    long lineStart;
+    long lineEnd;
+    long lineNext;
+
+    /** Value boundaries in {@link #line} */
+    int[] starts;
+    int[] ends;
+
+    /** Per attribute parsing helpers */
+    Class<?>[] bindings;
+    boolean[] geometries;
+    CoordinateReferenceSystem[] crs;
+    Converter[][] converters;
+
     public PropertyFeatureReader(String namespace, File file) throws IOException {
         this(namespace, file, null);
     }
 
     public PropertyFeatureReader(String namespace, File file, GeometryFactory geometryFactory)
             throws IOException {
-        reader = new BufferedReader(new FileReader(file));
+        reader = new FileReader(file);
         
         // read until "_=";
-        while ((line = reader.readLine()) != null) {
-            if (line.startsWith("_="))
-                break;
+        String typeSpec = null;
+        while (typeSpec == null && scanLine()) {
+            if (lineLength >= 2 && line[0] == '_' && line[1] == '=') {
+                typeSpec = new String(line, 2, lineLength - 2);
+            }
         }
-        
-        if ((line == null) || !line.startsWith("_=")) {
+        pending = false;
+        if (typeSpec == null) {
+            reader.close();
             throw new IOException("Property file schema not available found");
         }
-        String typeSpec = line.substring(2);
         String name = file.getName();
         String typeName = name.substring(0,name.lastIndexOf('.'));
         try {
             type = DataUtilities.createType(namespace, typeName, typeSpec);
         } catch (SchemaException e) {
+            reader.close();
             throw new DataSourceException(typeName + " schema not available", e);
         }
-        line = null;
-        next = null;
 
         if (geometryFactory == null) {
             wktReader = new WKTReader2();
         } else {
             wktReader = new WKTReader2(geometryFactory);
         }
+
+        int count = type.getAttributeCount();
+        starts = new int[count];
+        ends = new int[count];
+        bindings = new Class<?>[count];
+        geometries = new boolean[count];
+        crs = new CoordinateReferenceSystem[count];
+        converters = new Converter[count][];
+        Set<ConverterFactory> factories = null;
+        for (int i = 0; i < count; i++) {
+            AttributeDescriptor descriptor = type.getDescriptor(i);
+            bindings[i] = descriptor.getType().getBinding();
+            geometries[i] = descriptor instanceof GeometryDescriptor;
+            if (descriptor.getType() instanceof GeometryType) {
+                crs[i] = ((GeometryType) descriptor.getType()).getCoordinateReferenceSystem();
+            }
+            if (bindings[i].isAssignableFrom(String.class)) {
+                converters[i] = new Converter[0];
+            } else {
+                if (factories == null) {
+                    factories = Converters.getConverterFactories(GeoTools.getDefaultHints());
+                }
+                converters[i] = converters(factories, bindings[i]);
+            }
+        }
+    }
+
+    /**
+     * The converters from String to the target binding, in the same order
+     * {@link Converters#convert(Object, Class)} would try them
+     */
+    static Converter[] converters(Set<ConverterFactory> factories, Class<?> binding) {
+        List<Converter> result = new ArrayList<Converter>();
+        for (ConverterFactory factory : factories) {
+            Converter converter = factory.createConverter(String.class, binding, null);
+            if (converter != null) {
+                result.add(converter);
+            }
+        }
+        return result.toArray(new Converter[result.size()]);
     }
     
     public SimpleFeatureType getFeatureType() {
@@ -143,15 +225,9 @@ public class PropertyFeatureReader implements FeatureReader<SimpleFeatureType, S
      */
     public SimpleFeature next() throws IOException, NoSuchElementException {
         if (hasNext()) {
-            line = next;
-            next = null;
-            
-            int split = line.indexOf('=');
-            fid = line.substring(0, split);
-            text = line.substring(split + 1).split("\\|", -1);// use -1 as limit to include empty trailing spaces
-            if (type.getAttributeCount() != text.length)
-                throw new DataSourceException("Format error: expected " + type.getAttributeCount()
-                        + " attributes, but found " + text.length + ". [" + line + "]");
+            pending = false;
+            split();
+            current = true;
         } else {
             throw new NoSuchElementException();
         }
@@ -168,6 +244,56 @@ public class PropertyFeatureReader implements FeatureReader<SimpleFeatureType, S
         }
         return SimpleFeatureBuilder.build(type, values, fid);
     }
+
+    /**
+     * Skips the next feature without parsing it, useful to count features.
+     * 
+     * @return <code>false</code> if there are no more features
+     */
+    boolean skip() throws IOException {
+        if (!hasNext()) {
+            return false;
+        }
+        pending = false;
+        current = false;
+        return true;
+    }
+
+    /**
+     * Locates the feature id and the attribute values in the current line
+     */
+    void split() throws IOException {
+        int split = -1;
+        for (int i = 0; i < lineLength; i++) {
+            if (line[i] == '=') {
+                split = i;
+                break;
+            }
+        }
+        if (split == -1) {
+            throw new DataSourceException("Format error: no feature id found. ["
+                    + new String(line, 0, lineLength) + "]");
+        }
+        fid = new String(line, 0, split);
+
+        int count = type.getAttributeCount();
+        int found = 0;
+        int start = split + 1;
+        for (int i = start; i <= lineLength; i++) {
+            if (i == lineLength || line[i] == '|') {
+                if (found < count) {
+                    starts[found] = start;
+                    ends[found] = i;
+                }
+                found++;
+                start = i + 1;
+            }
+        }
+        if (count != found)
+            throw new DataSourceException("Format error: expected " + count
+                    + " attributes, but found " + found + ". [" + new String(line, 0, lineLength)
+                    + "]");
+    }
     
     /**
      * Read attribute in position marked by <code>index</code>.
@@ -180,58 +306,65 @@ public class PropertyFeatureReader implements FeatureReader<SimpleFeatureType, S
      * @throws ArrayIndexOutOfBoundsException
      */
     public Object read(int index) throws IOException, ArrayIndexOutOfBoundsException {
-        if (line == null) {
+        if (!current) {
             throw new IOException("No content available - did you remeber to call next?");
         }
         
-        AttributeDescriptor attType = type.getDescriptor(index);
-        
-        String stringValue = null;
-        try {
-            // read the value
-            stringValue = text[index];
-        } catch (RuntimeException e1) {
-            e1.printStackTrace();
-            stringValue = null;
-        }
+        int start = starts[index];
+        int length = ends[index] - start;
         // check for special <null> flag
-        if ("<null>".equals(stringValue)) {
-            stringValue = null;
-        }
-        if (stringValue == null) {
-            if (attType.isNillable()) {
-                return null; // it was an explicit "<null>"
-            }
+        if (isNull(start, length)) {
+            return null;
         }
         Object value = null;
         
         // Use of Converters to convert from String to requested java binding
-        if(attType instanceof GeometryDescriptor && stringValue != null && !stringValue.isEmpty()) {
+        if (geometries[index] && length > 0) {
             try {
-                Geometry geometry = wktReader.read(stringValue);
-                value = Converters.convert(geometry, attType.getType().getBinding());
+                Geometry geometry = wktReader.read(new CharArrayReader(line, start, length));
+                value = Converters.convert(geometry, bindings[index]);
             } catch (ParseException e) {
                 // to be consistent with converters
                 value = null;
             }
         } else {
-            value = Converters.convert(stringValue, attType.getType().getBinding());
+            value = convert(index, new String(line, start, length));
         }
         
-        if (attType.getType() instanceof GeometryType) {
+        if (crs[index] != null) {
             // this is to be passed on in the geometry objects so the srs name gets encoded
-            CoordinateReferenceSystem crs = ((GeometryType) attType.getType())
-                    .getCoordinateReferenceSystem();
-            if (crs != null) {
-                // must be geometry, but check anyway
-                if (value != null && value instanceof Geometry) {
-                    ((Geometry) value).setUserData(crs);
-                }
+            if (value instanceof Geometry) {
+                ((Geometry) value).setUserData(crs[index]);
             }
         }
         return value;
     }
 
+    boolean isNull(int start, int length) {
+        return length == 6 && line[start] == '<' && line[start + 1] == 'n'
+                && line[start + 2] == 'u' && line[start + 3] == 'l' && line[start + 4] == 'l'
+                && line[start + 5] == '>';
+    }
+
+    Object convert(int index, String text) {
+        Class<?> binding = bindings[index];
+        if (binding.isAssignableFrom(String.class)) {
+            return text;
+        }
+        for (Converter converter : converters[index]) {
+            try {
+                Object converted = converter.convert(text, binding);
+                if (converted != null) {
+                    return converted;
+                }
+            } catch (Exception e) {
+                LOGGER.log(Level.FINER, "Error applying the converter " + converter.getClass()
+                        + " on (" + text + "," + binding + ")", e);
+            }
+        }
+        return null;
+    }
+
     /**
      * Check if additional content is available.
      * 
@@ -239,63 +372,128 @@ public class PropertyFeatureReader implements FeatureReader<SimpleFeatureType, S
      * @throws IOException
      */
     public boolean hasNext() throws IOException {
-        if (next != null) {
+        if (pending) {
             return true;
         }
-        next = readLine();
-        return next != null;
+        if (reader == null) {
+            return false;
+        }
+        current = false;
+        return scanLine();
     }
-    
-    String readLine() throws IOException {
-        StringBuilder buffer = new StringBuilder();
+
+    /**
+     * Scans the next logical line into {@link #line}, skipping comments and blank lines, joining
+     * continuation lines and processing escapes, as described in {@link Properties#load(Reader)}.
+     * 
+     * @return <code>false</code> if the end of the file has been reached
+     */
+    boolean scanLine() throws IOException {
+        lineLength = 0;
+        boolean continuation = false;
         while (true) {
-            String txt = reader.readLine();
-            if (txt == null) {
-                break;
+            long start = position;
+            int c = read();
+            // trim leading white space
+            while (c != -1 && c != '\n' && c != '\r' && Character.isWhitespace(c)) {
+                c = read();
+            }
+            if (!continuation) {
+                if (c == -1) {
+                    return false;
+                }
+                if (c == '#' || c == '!' || c == '\n' || c == '\r') {
+                    // comment or blank line
+                    while (c != -1 && c != '\n' && c != '\r') {
+                        c = read();
+                    }
+                    skipLineFeed(c);
+                    continue;
+                }
+                lineStart = start;
             }
-            if (txt.startsWith("#") || txt.startsWith("!")) {
-                continue; // skip content
+            int contentStart = lineLength;
+            while (c != -1 && c != '\n' && c != '\r') {
+                append((char) c);
+                c = read();
             }
-            txt = trimLeft(txt);
-            if (txt.endsWith("\\")) {
-                buffer.append(txt.substring(0, txt.length() - 1));
-                buffer.append("\n");
-                continue;
+            lineEnd = c == -1 ? position : position - 1;
+            skipLineFeed(c);
+            lineNext = position;
+            if (lineLength > contentStart && line[lineLength - 1] == '\\') {
+                line[lineLength - 1] = '\n';
+                continuation = true;
             } else {
-                buffer.append(txt);
                 break;
             }
         }
-        if (buffer.length() == 0) {
-            return null; // there is no line
+        unescape();
+        pending = true;
+        return true;
+    }
+
+    /**
+     * Replaces the \n, \r and \t escapes with the characters they represent
+     */
+    void unescape() {
+        int length = 0;
+        for (int i = 0; i < lineLength; i++) {
+            char ch = line[i];
+            if (ch == '\\' && i + 1 < lineLength) {
+                char escaped = line[i + 1];
+                if (escaped == 'n') {
+                    ch = '\n';
+                    i++;
+                } else if (escaped == 'r') {
+                    ch = '\r';
+                    i++;
+                } else if (escaped == 't') {
+                    ch = '\t';
+                    i++;
+                }
+            }
+            line[length++] = ch;
         }
-        String raw = buffer.toString();
-        raw = raw.replace("\\n", "\n");
-        raw = raw.replace("\\r", "\r");
-        raw = raw.replace("\\t", "\t");
-        return raw;
+        lineLength = length;
     }
-    
+
+    void append(char c) {
+        if (lineLength == line.length) {
+            char[] grown = new char[line.length * 2];
+            System.arraycopy(line, 0, grown, 0, lineLength);
+            line = grown;
+        }
+        line[lineLength++] = c;
+    }
+
     /**
-     * Trim leading white space as described Properties.
-     * 
-     * @see Properties#load(java.io.Reader)
-     * @param txt
-     * @return txt leading whitespace removed
+     * Consumes the \n following a \r, if any
      */
-    String trimLeft(String txt) {
-        // trim
-        int start = 0;
-        WHITESPACE: for (int i = 0; i < txt.length(); i++) {
-            char ch = txt.charAt(i);
-            if (Character.isWhitespace(ch)) {
-                continue;
-            } else {
-                start = i;
-                break WHITESPACE;
+    void skipLineFeed(int c) throws IOException {
+        if (c == '\r' && fill() && buffer[bufferPosition] == '\n') {
+            bufferPosition++;
+            position++;
+        }
+    }
+
+    int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        position++;
+        return buffer[bufferPosition++];
+    }
+
+    boolean fill() throws IOException {
+        while (bufferPosition >= bufferLimit) {
+            int read = reader.read(buffer, 0, buffer.length);
+            if (read < 0) {
+                return false;
             }
+            bufferPosition = 0;
+            bufferLimit = read;
         }
-        return txt.substring(start);
+        return true;
     }
     
     /**
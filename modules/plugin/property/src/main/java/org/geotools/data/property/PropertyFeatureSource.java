@@ -101,10 +101,10 @@ public class PropertyFeatureSource extends ContentFeatureSource {
     protected int getCountInternal(Query query) throws IOException {
         if (query.getFilter() == Filter.INCLUDE) { //filtering not implemented
             int count = 0;
-            FeatureReader<SimpleFeatureType, SimpleFeature> featureReader = getReaderInternal(query);
+            // no need to parse the features to count them
+            PropertyFeatureReader featureReader = (PropertyFeatureReader) getReaderInternal(query);
             try {
-                while (featureReader.hasNext()) {
-                    featureReader.next();
+                while (featureReader.skip()) {
                     count++;
                 }
             } finally {
@@ -16,12 +16,16 @@
  */
 package org.geotools.data.property;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
 import java.nio.channels.FileChannel;
 
 import org.geotools.data.DataSourceException;
@@ -44,6 +48,13 @@ import com.vividsolutions.jts.io.WKTWriter;
 
 /**
  * Uses PropertyAttributeWriter to generate a property file on disk.
+ * <p>
+ * The property file is only rewritten when existing features are updated or removed, in which
+ * case the unchanged content is copied as is to a temporary file, without parsing it, and the
+ * modified lines are replaced. The original file is replaced by the temporary one on close.
+ * New features are appended at the end of the existing file, which is truncated back to its
+ * original length if the append fails.
+ * </p>
  *
  * @author Jody Garnett
  * @author Torben Barsballe (Boundless)
@@ -66,6 +77,23 @@ public class PropertyFeatureWriter implements FeatureWriter<SimpleFeatureType, S
     SimpleFeature origional = null;
     SimpleFeature live = null;
     private ContentState state;
+
+    /** Position of the line of the current feature in the original file */
+    long lineStart;
+    long lineEnd;
+    long lineNext;
+
+    /** The original file, copied to the rewritten one up to {@link #copied} */
+    Reader source;
+    long copied;
+
+    /** Whether the output does not end with a line separator */
+    boolean openLine;
+
+    /** Length of the original file before new features were appended to it, -1 if none were */
+    long appendStart = -1;
+
+    boolean closed;
     
     public PropertyFeatureWriter(ContentFeatureSource source, ContentState contentState, Query query, boolean append) throws IOException {
         this.state = contentState;
@@ -81,12 +109,6 @@ public class PropertyFeatureWriter implements FeatureWriter<SimpleFeatureType, S
         // start reading
         delegate = new PropertyFeatureReader(namespaceURI, read );
         type = delegate.getFeatureType();
-        
-        // open writer
-        writer = new BufferedWriter(new FileWriter(write));
-        // write header
-        writer.write("_=");
-        writer.write(DataUtilities.encodeType(type));
     }
     // constructor end
     
@@ -98,18 +120,22 @@ public class PropertyFeatureWriter implements FeatureWriter<SimpleFeatureType, S
     
     // hasNext start
     public boolean hasNext() throws IOException {
-        if (writer == null) {
+        if (closed) {
             return false; //writer has been closed
         }
         if (live != null && origional != null) {
             // we have returned something to the user,
-            // and it has not been writen out or removed
-            //
-            writeImplementation(origional);
+            // and it has not been writen out or removed,
+            // it stays as is
             origional = null;
             live = null;
         }
-        return delegate.hasNext();
+        if (delegate != null && !delegate.hasNext()) {
+            // done reading, make sure appended content is not read back
+            delegate.close();
+            delegate = null;
+        }
+        return delegate != null;
     }
     // hasNext end
     
@@ -118,8 +144,6 @@ public class PropertyFeatureWriter implements FeatureWriter<SimpleFeatureType, S
         if (writer == null) {
             throw new IOException("Writer has been closed");
         }
-        writer.newLine();
-        writer.flush();
         String fid = f.getID();
         if( Boolean.TRUE.equals( f.getUserData().get(Hints.USE_PROVIDED_FID) ) ){
             if( f.getUserData().containsKey(Hints.PROVIDED_FID)){
@@ -131,7 +155,128 @@ public class PropertyFeatureWriter implements FeatureWriter<SimpleFeatureType, S
             Object value = f.getAttribute(i);
             write(i, value );            
         }
+        openLine = true;
+    }
+
+    /**
+     * Replaces the line of the current feature with the given one, or removes it if the feature
+     * is <code>null</code>, starting the rewrite of the file if necessary
+     */
+    private void replace(SimpleFeature f) throws IOException {
+        startRewrite();
+        copy(lineStart);
+        skip(f == null ? lineNext : lineEnd);
+        if (f != null) {
+            writeImplementation(f);
+        }
+    }
+
+    /**
+     * Adds a new feature at the end of the file
+     */
+    private void append(SimpleFeature f) throws IOException {
+        if (source != null) {
+            // the file is being rewritten, add at the end of the copy
+            copy(Long.MAX_VALUE);
+        } else if (appendStart < 0) {
+            appendStart = read.length();
+            openLine = !endsWithLineSeparator(read);
+            writer = new BufferedWriter(new FileWriter(read, true));
+        }
+        if (writer == null) {
+            throw new IOException("Writer has been closed");
+        }
+        try {
+            if (openLine) {
+                writer.newLine();
+            }
+            writeImplementation(f);
+        } catch (IOException | RuntimeException e) {
+            if (source == null) {
+                discardAppended(e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Removes the features appended to the original file, truncating it back to its original
+     * length. The writer is closed, further appends will fail.
+     */
+    private void discardAppended(Exception cause) {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            // the content is dropped anyways
+        }
+        writer = null;
+        try {
+            RandomAccessFile raf = new RandomAccessFile(read, "rw");
+            try {
+                raf.setLength(appendStart);
+            } finally {
+                raf.close();
+            }
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
     }
+
+    /**
+     * Opens the original file for copying and the temporary file for writing, if not done already
+     */
+    private void startRewrite() throws IOException {
+        if (source == null) {
+            source = new BufferedReader(new FileReader(read));
+            writer = new BufferedWriter(new FileWriter(write));
+            copied = 0;
+        }
+    }
+
+    /**
+     * Copies the original file to the rewritten one, up to the specified position
+     */
+    private void copy(long position) throws IOException {
+        char[] buffer = new char[8192];
+        while (copied < position) {
+            int read = source.read(buffer, 0, (int) Math.min(buffer.length, position - copied));
+            if (read < 0) {
+                break;
+            }
+            writer.write(buffer, 0, read);
+            char last = buffer[read - 1];
+            openLine = last != '\n' && last != '\r';
+            copied += read;
+        }
+    }
+
+    /**
+     * Skips the original file content up to the specified position
+     */
+    private void skip(long position) throws IOException {
+        while (copied < position) {
+            long skipped = source.skip(position - copied);
+            if (skipped <= 0) {
+                break;
+            }
+            copied += skipped;
+        }
+    }
+
+    static boolean endsWithLineSeparator(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            if (raf.length() == 0) {
+                return true;
+            }
+            raf.seek(raf.length() - 1);
+            int last = raf.read();
+            return last == '\n' || last == '\r';
+        } finally {
+            raf.close();
+        }
+    }
+
     public void writeFeatureID(String fid) throws IOException {
         if (writer == null) {
             throw new IOException("Writer has been closed");
@@ -166,21 +311,18 @@ public class PropertyFeatureWriter implements FeatureWriter<SimpleFeatureType, S
     
     // next start
     public SimpleFeature next() throws IOException {
-        if (writer == null) {
+        if (closed) {
             throw new IOException("Writer has been closed");
         }
         String fid = null;
         try {
             if (hasNext()) {
-                delegate.next(); // grab next line
-                
-                fid = delegate.fid;
-                Object values[] = new Object[type.getAttributeCount()];
-                for (int i = 0; i < type.getAttributeCount(); i++) {
-                    values[i] = delegate.read(i);
-                }
+                origional = delegate.next(); // grab next line
+                fid = origional.getID();
+                lineStart = delegate.lineStart;
+                lineEnd = delegate.lineEnd;
+                lineNext = delegate.lineNext;
                 
-                origional = SimpleFeatureBuilder.build(type, values, fid);
                 live = SimpleFeatureBuilder.copy(origional);
                 return live;
             } else {
@@ -204,18 +346,17 @@ public class PropertyFeatureWriter implements FeatureWriter<SimpleFeatureType, S
         if (live == null) {
             throw new IOException("No current feature to write");
         }
-        if (live.equals(origional)) {
-            writeImplementation(origional);
-        } else {
-            writeImplementation(live);
+        if (!live.equals(origional)) {
             //String typeName = live.getFeatureType().getTypeName();
             //Transaction autoCommit = Transaction.AUTO_COMMIT;
             if (origional != null) {
+                replace(live);
                 ReferencedEnvelope bounds = ReferencedEnvelope.reference(live.getBounds());
                 bounds.include(origional.getBounds());
                 state.fireFeatureUpdated(featureSource, live, bounds);
                 //store.listenerManager.fireFeaturesChanged(typeName, autoCommit, bounds, false);
             } else {
+                append(live);
                 state.fireFeatureAdded(featureSource, live);
                 // store.listenerManager.fireFeaturesAdded(typeName, autoCommit, ReferencedEnvelope.reference(live.getBounds()), false);
             }
@@ -233,6 +374,7 @@ public class PropertyFeatureWriter implements FeatureWriter<SimpleFeatureType, S
         if (origional != null) {
             //String typeName = live.getFeatureType().getTypeName();
             //Transaction autoCommit = Transaction.AUTO_COMMIT;
+            replace(null);
             state.fireFeatureRemoved(featureSource,origional);
             //store.listenerManager.fireFeaturesRemoved(typeName, autoCommit,ReferencedEnvelope.reference(origional.getBounds()), false);
         }
@@ -243,21 +385,37 @@ public class PropertyFeatureWriter implements FeatureWriter<SimpleFeatureType, S
     
     // close start
     public void close() throws IOException {
-        if (writer == null) {
+        if (closed) {
             throw new IOException("writer already closed");
         }
-        // write out remaining contents from reader
-        // if applicable
-        while (delegate.hasNext()) {
-            delegate.next(); // advance
-            writer.newLine();
-            writer.flush();
-            echoLine(delegate.line); // echo unchanged
+        closed = true;
+        if (delegate != null) {
+            delegate.close();
+            delegate = null;
         }
+        if (source == null) {
+            // nothing rewritten, new features (if any) have been appended to the original file
+            write.delete();
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    discardAppended(e);
+                    throw e;
+                }
+                writer = null;
+            }
+            read = null;
+            write = null;
+            store = null;
+            return;
+        }
+        // write out remaining contents of the original file
+        copy(Long.MAX_VALUE);
         writer.close();
-        delegate.close();
+        source.close();
         writer = null;
-        delegate = null;
+        source = null;
         read.delete();
         
         if (write.exists() && !write.renameTo(read)) {
@@ -283,14 +441,5 @@ public class PropertyFeatureWriter implements FeatureWriter<SimpleFeatureType, S
         write = null;
         store = null;
     }
-    public void echoLine(String line) throws IOException {
-        if (writer == null) {
-            throw new IOException("Writer has been closed");
-        }
-        if (line == null) {
-            return;
-        }
-        writer.write(line);
-    }
     // close end
 }
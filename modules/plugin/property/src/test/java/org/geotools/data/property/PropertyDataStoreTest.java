@@ -66,6 +66,8 @@ import org.opengis.filter.identity.FeatureId;
 import org.opengis.filter.sort.SortBy;
 import org.opengis.filter.sort.SortOrder;
 
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.CoordinateSequence;
 import com.vividsolutions.jts.geom.CoordinateSequenceFactory;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
@@ -426,7 +428,100 @@ public class PropertyDataStoreTest extends TestCase {
         writer.close();
         assertEquals( 5, count( "road" ));
     }
-    
+
+    public void testWriterAppendKeepsContent() throws Exception {
+        File file = new File(store.dir, "road.properties");
+        String before = new String(Files.readAllBytes(file.toPath()));
+
+        SimpleFeatureType ROAD = store.getSchema("road");
+        SimpleFeatureStore road = (SimpleFeatureStore) store.getFeatureSource("road");
+        road.addFeatures(DataUtilities.collection(SimpleFeatureBuilder.build(ROAD,
+                new Object[] { new Integer(6), "chris", new WKTReader2().read("POINT(6 6)") },
+                "fid6")));
+
+        // the new feature has been appended, the rest of the file is untouched
+        String after = new String(Files.readAllBytes(file.toPath()));
+        assertTrue(after.startsWith(before));
+        assertTrue(after.substring(before.length()).trim().endsWith("=6|chris|POINT (6 6)"));
+        assertEquals(6, count("road"));
+        assertEquals(6, road.getCount(Query.ALL));
+    }
+
+    public void testWriterAppendFailureRestoresFile() throws Exception {
+        File file = new File(store.dir, "road.properties");
+        byte[] before = Files.readAllBytes(file.toPath());
+
+        FeatureWriter<SimpleFeatureType, SimpleFeature> writer = store.getFeatureWriterAppend(
+                "road", Transaction.AUTO_COMMIT);
+        try {
+            SimpleFeature feature = writer.next();
+            feature.setAttribute("id", new Integer(6));
+            feature.setAttribute("name", "chris");
+            writer.write();
+
+            feature = writer.next();
+            feature.setAttribute("id", new Integer(7));
+            feature.setAttribute("name", "ben");
+            GeometryFactory gf = new GeometryFactory();
+            feature.setAttribute("geom", new Point(gf.getCoordinateSequenceFactory().create(
+                    new Coordinate[] { new Coordinate(7, 7) }), gf) {
+                @Override
+                public Coordinate getCoordinate() {
+                    throw new IllegalStateException("cannot be written");
+                }
+
+                @Override
+                public CoordinateSequence getCoordinateSequence() {
+                    throw new IllegalStateException("cannot be written");
+                }
+            });
+            try {
+                writer.write();
+                fail("The write should have failed");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        } finally {
+            writer.close();
+        }
+
+        // the file is back to its original content
+        assertTrue(Arrays.equals(before, Files.readAllBytes(file.toPath())));
+        assertEquals(5, count("road"));
+    }
+
+    public void testWriterUpdateKeepsComments() throws Exception {
+        File file = new File(store.dir, "comments.properties");
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+        writer.write("# a comment"); writer.newLine();
+        writer.write("_=id:Integer,name:String"); writer.newLine();
+        writer.write("fid1=1|jody"); writer.newLine();
+        writer.newLine();
+        writer.write("! another comment"); writer.newLine();
+        writer.write("fid2=2|brent \\"); writer.newLine();
+        writer.write("  andrea"); writer.newLine();
+        writer.write("fid3=3|dave");
+        writer.close();
+
+        SimpleFeatureStore comments = (SimpleFeatureStore) store.getFeatureSource("comments");
+        assertEquals(3, comments.getCount(Query.ALL));
+        comments.modifyFeatures("name", "changed", ff.id(ff.featureId("fid2")));
+        comments.removeFeatures(ff.id(ff.featureId("fid3")));
+
+        List<String> lines = Files.readAllLines(file.toPath());
+        assertEquals(Arrays.asList("# a comment", "_=id:Integer,name:String", "fid1=1|jody", "",
+                "! another comment", "fid2=2|changed"), lines);
+
+        SimpleFeatureIterator it = comments.getFeatures().features();
+        try {
+            assertEquals("jody", it.next().getAttribute("name"));
+            assertEquals("changed", it.next().getAttribute("name"));
+            assertFalse(it.hasNext());
+        } finally {
+            it.close();
+        }
+    }
+
     public void testGetFeatureSource() throws Exception {
         SimpleFeatureSource road = store.getFeatureSource( "road" );
         SimpleFeatureCollection features = road.getFeatures();
@@ -0,0 +1,170 @@
+package org.geotools.data.directory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.geotools.data.DataStore;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.Query;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.data.simple.SimpleFeatureStore;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * Checks the incremental updates, the persisted metadata and the open store
+ * limit of the directory store
+ *
+ * @source $URL$
+ */
+public class DirectoryMetadataTest extends DirectoryTestSupport {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    AtomicInteger opened = new AtomicInteger();
+
+    @Override
+    FileStoreFactory getFileStoreFactory() {
+        final FileStoreFactory delegate = super.getFileStoreFactory();
+        return new FileStoreFactory() {
+
+            public DataStore getDataStore(File file) throws IOException {
+                DataStore store = delegate.getDataStore(file);
+                if (store != null) {
+                    opened.incrementAndGet();
+                }
+                return store;
+            }
+        };
+    }
+
+    @Test
+    public void testIncrementalChanges() throws Exception {
+        File f = copyShapefiles("shapes/bugsites.shp");
+        tempDir = f.getParentFile();
+        DirectoryTypeCache cache = new DirectoryTypeCache(tempDir, getFileStoreFactory());
+        assertTrue(cache.watcher instanceof WatchServiceDirectoryWatcher);
+        assertEquals(new HashSet<String>(Arrays.asList("bugsites")), cache.getTypeNames());
+        assertEquals(1, opened.get());
+
+        // the watcher reports the new files, only those get looked at
+        copyShapefiles("shapes/archsites.shp");
+        assertTrue(cache.watcher.isStale());
+        Set<File> changes = cache.watcher.getChanges();
+        assertNotNull(changes);
+        assertTrue(changes.contains(new File(tempDir, "archsites.shp")));
+        assertFalse(changes.contains(new File(tempDir, "bugsites.shp")));
+        cache.watcher.mark();
+        cache.refreshFiles(changes);
+        assertEquals(new HashSet<String>(Arrays.asList("bugsites", "archsites")),
+                cache.ftCache.keySet());
+        assertEquals(2, opened.get());
+
+        // removal
+        assertTrue(new File(tempDir, "archsites.shp").delete());
+        assertEquals(new HashSet<String>(Arrays.asList("bugsites")), cache.getTypeNames());
+        assertEquals(2, opened.get());
+        cache.dispose();
+    }
+
+    @Test
+    public void testPersistedMetadata() throws Exception {
+        copyShapefiles("shapes/archsites.shp");
+        File f = copyShapefiles("shapes/bugsites.shp");
+        tempDir = f.getParentFile();
+        File metadata = new File(folder.getRoot(), "directory.metadata");
+
+        DirectoryDataStore store = new DirectoryDataStore(tempDir, getFileStoreFactory());
+        store.setMetadataFile(metadata);
+        assertEquals(2, store.getTypeNames().length);
+        SimpleFeatureSource source = store.getFeatureSource("archsites");
+        int count = source.getCount(Query.ALL);
+        ReferencedEnvelope bounds = source.getBounds();
+        assertTrue(count > 0);
+        assertEquals(count, store.getDataStore("archsites").getFeatureSource("archsites")
+                .getCount(Query.ALL));
+        store.dispose();
+        assertTrue(metadata.exists());
+
+        // a restart does not need to open the stores to list the types
+        opened.set(0);
+        store = new DirectoryDataStore(tempDir, getFileStoreFactory());
+        store.setMetadataFile(metadata);
+        assertEquals(new HashSet<String>(Arrays.asList("bugsites", "archsites")),
+                new HashSet<String>(Arrays.asList(store.getTypeNames())));
+        assertEquals(0, opened.get());
+        assertEquals(Integer.valueOf(count), store.cache.getCount("archsites"));
+        assertEquals(bounds, store.cache.getBounds("archsites"));
+        assertNull(store.cache.getCount("bugsites"));
+        assertEquals(0, opened.get());
+
+        // schemas are looked up once
+        SimpleFeatureType schema = store.getSchema("archsites");
+        assertEquals(1, opened.get());
+        assertSame(schema, store.getSchema("archsites"));
+        store.dispose();
+    }
+
+    @Test
+    public void testStatisticsFollowChanges() throws Exception {
+        File f = copyShapefiles("shapes/archsites.shp");
+        tempDir = f.getParentFile();
+        DirectoryDataStore store = new DirectoryDataStore(tempDir, getFileStoreFactory());
+        SimpleFeatureStore fs = (SimpleFeatureStore) store.getFeatureSource("archsites");
+        int count = fs.getCount(Query.ALL);
+        assertEquals(Integer.valueOf(count), store.cache.getCount("archsites"));
+
+        // give the os some time, the file last modification time has a os
+        // specific resolution
+        Thread.sleep(1000);
+        SimpleFeature feature = SimpleFeatureBuilder.template(fs.getSchema(), null);
+        fs.addFeatures(DataUtilities.collection(feature));
+        assertEquals(count + 1, fs.getCount(Query.ALL));
+        store.dispose();
+    }
+
+    @Test
+    public void testMaxOpenStores() throws Exception {
+        copyShapefiles("shapes/archsites.shp");
+        File f = copyShapefiles("shapes/bugsites.shp");
+        tempDir = f.getParentFile();
+        DirectoryDataStore store = new DirectoryDataStore(tempDir, getFileStoreFactory());
+        store.setMaxOpenStores(1);
+        assertEquals(2, store.getTypeNames().length);
+        assertEquals(2, opened.get());
+
+        DataStore archsites = store.getDataStore("archsites");
+        assertSame(archsites, store.getDataStore("archsites"));
+        DirectoryTypeCache.FileEntry entry = store.cache.ftCache.get("archsites");
+        assertNotNull(entry.getStore(false));
+
+        // using the other store closes the least recently used one
+        store.getDataStore("bugsites");
+        assertNull(entry.getStore(false));
+        assertEquals(1, store.cache.openStores.size());
+
+        // and it gets opened again on demand
+        opened.set(0);
+        assertTrue(store.getSchema("archsites").getAttributeCount() > 0);
+        assertEquals(1, opened.get());
+        assertNotNull(entry.getStore(false));
+        store.dispose();
+    }
+}
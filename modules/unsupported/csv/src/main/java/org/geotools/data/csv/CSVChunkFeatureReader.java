@@ -0,0 +1,215 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ * 	  (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.csv;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.input.BoundedInputStream;
+import org.geotools.data.FeatureReader;
+import org.geotools.data.csv.CSVIndex.Chunk;
+import org.geotools.data.csv.parse.CSVStrategy;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.geometry.BoundingBox;
+
+import com.csvreader.CsvReader;
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Reads the features of a set of {@link CSVIndex} chunks, in file order.
+ * <p>
+ * When a fork join pool is provided the chunks are parsed concurrently, a few chunks ahead of
+ * the one being returned, otherwise they are parsed one after the other by the calling thread.
+ * Feature ids are the same as the ones assigned by a sequential read of the whole file.
+ * </p>
+ */
+public class CSVChunkFeatureReader implements FeatureReader<SimpleFeatureType, SimpleFeature> {
+
+    static final Logger LOGGER = Logging.getLogger(CSVChunkFeatureReader.class);
+
+    final CSVStrategy csvStrategy;
+
+    final File file;
+
+    final Charset charset = Charset.defaultCharset();
+
+    final List<Chunk> chunks;
+
+    final ForkJoinPool pool;
+
+    final boolean computeBounds;
+
+    final int window;
+
+    int nextChunk;
+
+    final Deque<Future<List<SimpleFeature>>> pending = new ArrayDeque<Future<List<SimpleFeature>>>();
+
+    Iterator<SimpleFeature> current = Collections.<SimpleFeature> emptyList().iterator();
+
+    boolean closed;
+
+    /**
+     * Builds a new reader.
+     *
+     * @param csvStrategy The strategy decoding the records
+     * @param file The CSV file
+     * @param chunks The chunks to read
+     * @param pool The pool parsing the chunks, or null to parse them in the calling thread
+     * @param computeBounds Whether to compute the bounds of each chunk while reading it
+     */
+    public CSVChunkFeatureReader(CSVStrategy csvStrategy, File file, List<Chunk> chunks,
+            ForkJoinPool pool, boolean computeBounds) {
+        this.csvStrategy = csvStrategy;
+        this.file = file;
+        this.chunks = chunks;
+        this.pool = pool;
+        this.computeBounds = computeBounds;
+        this.window = pool != null ? pool.getParallelism() * 2 : 0;
+    }
+
+    @Override
+    public SimpleFeatureType getFeatureType() {
+        return csvStrategy.getFeatureType();
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        if (closed) {
+            return false;
+        }
+        while (!current.hasNext()) {
+            if (pool == null) {
+                if (nextChunk >= chunks.size()) {
+                    return false;
+                }
+                current = parse(chunks.get(nextChunk++)).iterator();
+                continue;
+            }
+            while (nextChunk < chunks.size() && pending.size() < window) {
+                final Chunk chunk = chunks.get(nextChunk++);
+                pending.add(pool.submit(new Callable<List<SimpleFeature>>() {
+                    @Override
+                    public List<SimpleFeature> call() throws Exception {
+                        return parse(chunk);
+                    }
+                }));
+            }
+            if (pending.isEmpty()) {
+                return false;
+            }
+            current = get(pending.poll()).iterator();
+        }
+        return true;
+    }
+
+    List<SimpleFeature> get(Future<List<SimpleFeature>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + file, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Failed to read " + file, cause);
+        }
+    }
+
+    /**
+     * Parses all the records of a chunk
+     */
+    List<SimpleFeature> parse(Chunk chunk) throws IOException {
+        List<SimpleFeature> features = new ArrayList<SimpleFeature>(chunk.count);
+        Envelope bounds = computeBounds ? new Envelope() : null;
+        FileInputStream in = new FileInputStream(file);
+        CsvReader csvReader = null;
+        try {
+            in.getChannel().position(chunk.offset);
+            csvReader = new CsvReader(new InputStreamReader(new BoundedInputStream(in,
+                    chunk.length), charset));
+            long record = chunk.firstRecord;
+            while (csvReader.readRecord()) {
+                // same ids as CSVIterator
+                SimpleFeature feature = csvStrategy.decode(CSVStrategy.RECORD_ID_PREFIX + (++record),
+                        csvReader.getValues());
+                features.add(feature);
+                if (bounds != null) {
+                    BoundingBox featureBounds = feature.getBounds();
+                    if (featureBounds != null && !featureBounds.isEmpty()) {
+                        bounds.expandToInclude(ReferencedEnvelope.reference(featureBounds));
+                    }
+                }
+            }
+        } finally {
+            if (csvReader != null) {
+                csvReader.close();
+            } else {
+                in.close();
+            }
+        }
+        if (features.size() != chunk.count) {
+            LOGGER.warning("Expected " + chunk.count + " records at offset " + chunk.offset
+                    + " of " + file + " but found " + features.size()
+                    + ", feature ids might be inaccurate");
+        }
+        if (bounds != null) {
+            chunk.bounds = bounds;
+        }
+        return features;
+    }
+
+    @Override
+    public SimpleFeature next() throws IOException, NoSuchElementException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        for (Future<List<SimpleFeature>> future : pending) {
+            future.cancel(false);
+        }
+        pending.clear();
+        current = Collections.<SimpleFeature> emptyList().iterator();
+    }
+}
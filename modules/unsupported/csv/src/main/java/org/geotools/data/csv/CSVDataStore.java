@@ -17,9 +17,13 @@
  */
 package org.geotools.data.csv;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.geotools.data.FeatureReader;
 import org.geotools.data.FeatureWriter;
@@ -32,6 +36,7 @@ import org.geotools.data.store.ContentDataStore;
 import org.geotools.data.store.ContentEntry;
 import org.geotools.data.store.ContentFeatureSource;
 import org.geotools.feature.NameImpl;
+import org.geotools.util.logging.Logging;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.Name;
@@ -39,10 +44,20 @@ import org.opengis.filter.Filter;
 
 public class CSVDataStore extends ContentDataStore implements FileDataStore {
 
+    static final Logger LOGGER = Logging.getLogger(CSVDataStore.class);
+
     private final CSVStrategy csvStrategy;
 
     private final CSVFileState csvFileState;
 
+    private boolean parallel;
+
+    private boolean indexed;
+
+    private long chunkSize = CSVIndex.DEFAULT_CHUNK_SIZE;
+
+    private CSVIndex index;
+
     public CSVDataStore(CSVFileState csvFileState, CSVStrategy csvStrategy) {
         this.csvFileState = csvFileState;
         this.csvStrategy = csvStrategy;
@@ -112,6 +127,107 @@ public class CSVDataStore extends ContentDataStore implements FileDataStore {
     public CSVStrategy getCSVStrategy() {
         return csvStrategy;
     }
+
+    /**
+     * Whether the file is read in chunks parsed concurrently on the common fork join pool
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Whether a sidecar index with the bounds of each chunk is built and used to skip the chunks
+     * not matching the query
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    public void setIndexed(boolean indexed) {
+        this.indexed = indexed;
+    }
+
+    /**
+     * Approximate size in bytes of the chunks the file is split into when reading in parallel
+     * or building the index
+     */
+    public long getChunkSize() {
+        return chunkSize;
+    }
+
+    public synchronized void setChunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+        this.index = null;
+    }
+
+    /**
+     * Whether the file is read in chunks rather than sequentially
+     */
+    boolean isChunked() {
+        return (parallel || indexed) && csvFileState.getFile() != null;
+    }
+
+    /**
+     * The index of the file chunks, scanned, loaded from the sidecar file or built as needed
+     */
+    synchronized CSVIndex getIndex() throws IOException {
+        File file = csvFileState.getFile();
+        if (index != null && index.isValid(file)) {
+            return index;
+        }
+        CSVIndex result = null;
+        if (indexed) {
+            try {
+                result = CSVIndex.read(file);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to read the index of " + file
+                        + ", rebuilding it", e);
+            }
+        }
+        if (result == null) {
+            result = CSVIndex.scan(file, chunkSize);
+            if (indexed) {
+                // a full read computes the chunk bounds
+                CSVChunkFeatureReader reader = new CSVChunkFeatureReader(csvStrategy, file,
+                        result.chunks, getPool(), true);
+                try {
+                    while (reader.hasNext()) {
+                        reader.next();
+                    }
+                } finally {
+                    reader.close();
+                }
+                try {
+                    result.write(file);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Failed to save the index of " + file, e);
+                }
+            }
+        }
+        index = result;
+        return result;
+    }
+
+    /**
+     * A reader over the chunks that might contain features matching the filter, the filter
+     * itself is not applied
+     */
+    CSVChunkFeatureReader getChunkReader(Filter filter) throws IOException {
+        CSVIndex index = getIndex();
+        return new CSVChunkFeatureReader(csvStrategy, csvFileState.getFile(), index.select(
+                filter, csvStrategy.getFeatureIdPrefix()), getPool(), false);
+    }
+
+    /**
+     * The pool parsing the chunks, or null if they are to be parsed sequentially
+     */
+    ForkJoinPool getPool() {
+        return parallel ? ForkJoinPool.commonPool() : null;
+    }
     
     @Override
     public void createSchema(SimpleFeatureType featureType) throws IOException {
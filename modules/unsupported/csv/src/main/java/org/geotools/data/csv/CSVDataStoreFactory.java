@@ -65,8 +65,16 @@ public class CSVDataStoreFactory implements FileDataStoreFactorySpi {
     public static final Param WKTP = new Param("wktField", String.class,
             "WKT field. Assumes a CSVSpecifiedWKTStrategy", false);
 
+    public static final Param PARALLELP = new Param("parallel", Boolean.class,
+            "Read the file in chunks parsed in parallel", false, Boolean.FALSE, new KVP(
+                    Param.LEVEL, "advanced"));
+
+    public static final Param INDEXP = new Param("index", Boolean.class,
+            "Build a sidecar index of the file chunks bounds, to only read the relevant ones",
+            false, Boolean.FALSE, new KVP(Param.LEVEL, "advanced"));
+
     public static final Param[] parametersInfo = new Param[] { FILE_PARAM, NAMESPACEP, STRATEGYP,
-            LATFIELDP, LnGFIELDP, WKTP };
+            LATFIELDP, LnGFIELDP, WKTP, PARALLELP, INDEXP };
 
     @Override
     public String getDisplayName() {
@@ -187,6 +195,8 @@ public class CSVDataStoreFactory implements FileDataStoreFactorySpi {
         if (namespace != null) {
             store.setNamespaceURI(namespace.toString());
         }
+        store.setParallel(Boolean.TRUE.equals(PARALLELP.lookUp(params)));
+        store.setIndexed(Boolean.TRUE.equals(INDEXP.lookUp(params)));
         store.setDataStoreFactory(this);
         store.setGeometryFactory(new GeometryFactory());
         store.setFeatureTypeFactory(new FeatureTypeFactoryImpl());
@@ -27,6 +27,9 @@ import org.geotools.data.store.ContentFeatureSource;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+
+import com.vividsolutions.jts.geom.Envelope;
 
 @SuppressWarnings("unchecked")
 public class CSVFeatureSource extends ContentFeatureSource {
@@ -52,6 +55,14 @@ public class CSVFeatureSource extends ContentFeatureSource {
     }
 
     protected ReferencedEnvelope getBoundsInternal(Query query) throws IOException {
+        CSVDataStore dataStore = getDataStore();
+        if (dataStore.isIndexed() && dataStore.isChunked() && isAll(query)) {
+            Envelope indexBounds = dataStore.getIndex().getBounds();
+            if (indexBounds != null) {
+                return new ReferencedEnvelope(indexBounds, getSchema()
+                        .getCoordinateReferenceSystem());
+            }
+        }
         ReferencedEnvelope bounds = new ReferencedEnvelope(getSchema()
                 .getCoordinateReferenceSystem());
         FeatureReader<SimpleFeatureType, SimpleFeature> featureReader = getReader(query);
@@ -67,6 +78,11 @@ public class CSVFeatureSource extends ContentFeatureSource {
     }
 
     protected int getCountInternal(Query query) throws IOException {
+        CSVDataStore dataStore = getDataStore();
+        if (dataStore.isChunked()) {
+            // the index knows the number of records, a filter requires reading them
+            return isAll(query) ? (int) dataStore.getIndex().getRecordCount() : -1;
+        }
         FeatureReader<SimpleFeatureType, SimpleFeature> featureReader = getReaderInternal(query);
         int n = 0;
         try {
@@ -82,9 +98,16 @@ public class CSVFeatureSource extends ContentFeatureSource {
     protected FeatureReader<SimpleFeatureType, SimpleFeature> getReaderInternal(Query query)
             throws IOException {
         CSVDataStore dataStore = getDataStore();
+        if (dataStore.isChunked()) {
+            return dataStore.getChunkReader(query.getFilter());
+        }
         return new CSVFeatureReader(dataStore.getCSVStrategy(), query);
     }
 
+    private boolean isAll(Query query) {
+        return query.getFilter() == null || query.getFilter() == Filter.INCLUDE;
+    }
+
     protected SimpleFeatureType buildFeatureType() throws IOException {
         return getDataStore().getSchema();
     }
@@ -0,0 +1,408 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ * 	  (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.csv;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FilenameUtils;
+import org.geotools.filter.visitor.ExtractBoundsFilterVisitor;
+import org.opengis.filter.Filter;
+import org.opengis.filter.Id;
+import org.opengis.filter.identity.Identifier;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Splits a CSV file in chunks of whole records, that can be parsed independently.
+ * <p>
+ * Chunk boundaries are found with a single pass over the file bytes that tracks the quoting
+ * state, so that new lines inside quoted values are never mistaken for record ends. The same
+ * rules as {@link com.csvreader.CsvReader} are used: comma delimiter, double quote text
+ * qualifier, doubled quotes as escapes and empty lines skipped. The scan works on bytes, it
+ * assumes an ASCII compatible encoding such as UTF-8 or ISO-8859-1.
+ * </p>
+ * <p>
+ * The index knows the number of records in each chunk, so the position of a record in the file
+ * can be found without parsing it. Optionally it also holds the bounds of the features of each
+ * chunk, for spatial pruning. An index with bounds can be saved in a sidecar file next to the
+ * CSV file, it is considered out of date when the CSV file size or modification time change.
+ * </p>
+ */
+public class CSVIndex {
+
+    /** Default size of a chunk, in bytes */
+    public static final long DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    static final int MAGIC = 0x43535649; // CSVI
+
+    static final int VERSION = 1;
+
+    /**
+     * A range of whole records in the file.
+     */
+    public static class Chunk {
+
+        final long offset;
+
+        final long length;
+
+        final long firstRecord;
+
+        final int count;
+
+        /** Bounds of the chunk features, empty if none has a geometry */
+        volatile Envelope bounds;
+
+        Chunk(long offset, long length, long firstRecord, int count) {
+            this.offset = offset;
+            this.length = length;
+            this.firstRecord = firstRecord;
+            this.count = count;
+        }
+
+        /** Position of the chunk first byte in the file */
+        public long getOffset() {
+            return offset;
+        }
+
+        /** Length of the chunk in bytes */
+        public long getLength() {
+            return length;
+        }
+
+        /** Zero based number of the first record of the chunk, the header excluded */
+        public long getFirstRecord() {
+            return firstRecord;
+        }
+
+        /** Number of records in the chunk */
+        public int getCount() {
+            return count;
+        }
+
+        /** Bounds of the chunk features, or null if not computed */
+        public Envelope getBounds() {
+            return bounds;
+        }
+    }
+
+    final long fileLength;
+
+    final long lastModified;
+
+    final List<Chunk> chunks;
+
+    CSVIndex(long fileLength, long lastModified, List<Chunk> chunks) {
+        this.fileLength = fileLength;
+        this.lastModified = lastModified;
+        this.chunks = chunks;
+    }
+
+    /**
+     * The sidecar file holding the index of a CSV file.
+     */
+    public static File getIndexFile(File csvFile) {
+        return new File(csvFile.getParentFile(), FilenameUtils.getBaseName(csvFile.getName())
+                + ".idx");
+    }
+
+    /**
+     * Splits the file in chunks of about <code>chunkSize</code> bytes, the header excluded.
+     */
+    public static CSVIndex scan(File file, long chunkSize) throws IOException {
+        long fileLength = file.length();
+        long lastModified = file.lastModified();
+        List<Chunk> chunks = new ArrayList<Chunk>();
+
+        final int FIELD_START = 0, UNQUOTED = 1, QUOTED = 2, QUOTE_IN_QUOTED = 3;
+        int state = FIELD_START;
+        boolean content = false;
+        boolean header = true;
+        long records = 0;
+        long chunkStart = 0;
+        int chunkCount = 0;
+        long position = 0;
+
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++, position++) {
+                    byte b = buffer[i];
+                    boolean lineEnd = false;
+                    switch (state) {
+                    case FIELD_START:
+                        if (b == '\n' || b == '\r') {
+                            lineEnd = true;
+                        } else {
+                            content = true;
+                            if (b == '"') {
+                                state = QUOTED;
+                            } else if (b != ',' && b != ' ' && b != '\t') {
+                                state = UNQUOTED;
+                            }
+                        }
+                        break;
+                    case UNQUOTED:
+                        if (b == ',') {
+                            state = FIELD_START;
+                        } else if (b == '\n' || b == '\r') {
+                            lineEnd = true;
+                        }
+                        break;
+                    case QUOTED:
+                        if (b == '"') {
+                            state = QUOTE_IN_QUOTED;
+                        }
+                        break;
+                    case QUOTE_IN_QUOTED:
+                        if (b == '"') {
+                            state = QUOTED; // escaped quote
+                        } else if (b == ',') {
+                            state = FIELD_START;
+                        } else if (b == '\n' || b == '\r') {
+                            lineEnd = true;
+                        } else {
+                            state = UNQUOTED;
+                        }
+                        break;
+                    }
+                    if (lineEnd) {
+                        state = FIELD_START;
+                        if (content) {
+                            content = false;
+                            long end = position + 1;
+                            if (header) {
+                                header = false;
+                                chunkStart = end;
+                            } else {
+                                chunkCount++;
+                                if (end - chunkStart >= chunkSize) {
+                                    chunks.add(new Chunk(chunkStart, end - chunkStart, records,
+                                            chunkCount));
+                                    records += chunkCount;
+                                    chunkStart = end;
+                                    chunkCount = 0;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            in.close();
+        }
+        if (content && !header) {
+            // last record without a line terminator
+            chunkCount++;
+        }
+        if (chunkCount > 0) {
+            chunks.add(new Chunk(chunkStart, position - chunkStart, records, chunkCount));
+        }
+        return new CSVIndex(fileLength, lastModified, chunks);
+    }
+
+    /**
+     * Reads the index from its sidecar file.
+     *
+     * @return The index, or <code>null</code> if the sidecar file is missing or out of date
+     */
+    public static CSVIndex read(File csvFile) throws IOException {
+        File indexFile = getIndexFile(csvFile);
+        if (!indexFile.exists()) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(
+                indexFile)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            long fileLength = in.readLong();
+            long lastModified = in.readLong();
+            if (fileLength != csvFile.length() || lastModified != csvFile.lastModified()) {
+                return null;
+            }
+            int size = in.readInt();
+            List<Chunk> chunks = new ArrayList<Chunk>(size);
+            for (int i = 0; i < size; i++) {
+                Chunk chunk = new Chunk(in.readLong(), in.readLong(), in.readLong(),
+                        in.readInt());
+                if (in.readBoolean()) {
+                    chunk.bounds = new Envelope(in.readDouble(), in.readDouble(),
+                            in.readDouble(), in.readDouble());
+                } else {
+                    chunk.bounds = new Envelope();
+                }
+                chunks.add(chunk);
+            }
+            return new CSVIndex(fileLength, lastModified, chunks);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Saves the index in its sidecar file. The chunk bounds must have been computed.
+     */
+    public void write(File csvFile) throws IOException {
+        if (!hasBounds()) {
+            throw new IllegalStateException("Chunk bounds have not been computed");
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(getIndexFile(csvFile))));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fileLength);
+            out.writeLong(lastModified);
+            out.writeInt(chunks.size());
+            for (Chunk chunk : chunks) {
+                out.writeLong(chunk.offset);
+                out.writeLong(chunk.length);
+                out.writeLong(chunk.firstRecord);
+                out.writeInt(chunk.count);
+                Envelope bounds = chunk.bounds;
+                out.writeBoolean(!bounds.isNull());
+                if (!bounds.isNull()) {
+                    out.writeDouble(bounds.getMinX());
+                    out.writeDouble(bounds.getMaxX());
+                    out.writeDouble(bounds.getMinY());
+                    out.writeDouble(bounds.getMaxY());
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Whether the index still describes the file
+     */
+    public boolean isValid(File file) {
+        return fileLength == file.length() && lastModified == file.lastModified();
+    }
+
+    /**
+     * Whether the bounds of all the chunks are known
+     */
+    public boolean hasBounds() {
+        for (Chunk chunk : chunks) {
+            if (chunk.bounds == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public List<Chunk> getChunks() {
+        return Collections.unmodifiableList(chunks);
+    }
+
+    /**
+     * Total number of records in the file, the header excluded
+     */
+    public long getRecordCount() {
+        long count = 0;
+        for (Chunk chunk : chunks) {
+            count += chunk.count;
+        }
+        return count;
+    }
+
+    /**
+     * Bounds of all the features, or null if not computed
+     */
+    public Envelope getBounds() {
+        if (!hasBounds()) {
+            return null;
+        }
+        Envelope bounds = new Envelope();
+        for (Chunk chunk : chunks) {
+            bounds.expandToInclude(chunk.bounds);
+        }
+        return bounds;
+    }
+
+    /**
+     * The chunks that might contain features matching the filter. Feature id filters are
+     * answered by locating the records, spatial filters by comparing with the chunk bounds when
+     * known.
+     *
+     * @param filter The filter
+     * @param idPrefix The prefix of the feature ids, followed by the record number
+     */
+    public List<Chunk> select(Filter filter, String idPrefix) {
+        if (filter == null || filter == Filter.INCLUDE) {
+            return chunks;
+        }
+        if (filter instanceof Id) {
+            TreeSet<Long> records = new TreeSet<Long>();
+            for (Identifier id : ((Id) filter).getIdentifiers()) {
+                String fid = String.valueOf(id.getID());
+                if (!fid.startsWith(idPrefix)) {
+                    return chunks;
+                }
+                try {
+                    // feature ids are one based
+                    records.add(Long.parseLong(fid.substring(idPrefix.length())) - 1);
+                } catch (NumberFormatException e) {
+                    return chunks;
+                }
+            }
+            List<Chunk> result = new ArrayList<Chunk>();
+            for (Chunk chunk : chunks) {
+                Long record = records.ceiling(chunk.firstRecord);
+                if (record != null && record < chunk.firstRecord + chunk.count) {
+                    result.add(chunk);
+                }
+            }
+            return result;
+        }
+        if (hasBounds()) {
+            Envelope envelope = (Envelope) filter.accept(
+                    ExtractBoundsFilterVisitor.BOUNDS_VISITOR, null);
+            if (envelope == null || envelope.isNull()) {
+                return Collections.emptyList();
+            }
+            if (Double.isInfinite(envelope.getWidth()) || Double.isInfinite(envelope.getHeight())) {
+                return chunks;
+            }
+            List<Chunk> result = new ArrayList<Chunk>();
+            for (Chunk chunk : chunks) {
+                if (chunk.bounds.intersects(envelope)) {
+                    result.add(chunk);
+                }
+            }
+            return result;
+        }
+        return chunks;
+    }
+}
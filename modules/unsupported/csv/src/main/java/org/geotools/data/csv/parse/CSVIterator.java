@@ -44,7 +44,7 @@ public class CSVIterator implements Iterator<SimpleFeature> {
     }
 
     private SimpleFeature buildFeature(String[] csvRecord) {
-        String id = "fid" + idx;
+        String id = CSVStrategy.RECORD_ID_PREFIX + idx;
         SimpleFeature feature = csvStrategy.decode(id, csvRecord);
         idx++;
         return feature;
@@ -32,6 +32,9 @@ import com.csvreader.CsvReader;
 
 public abstract class CSVStrategy {
 
+    /** The prefix of the record ids passed to {@link #decode}, followed by the record number */
+    public static final String RECORD_ID_PREFIX = "fid";
+
     protected final CSVFileState csvFileState;
 
     public CSVStrategy(CSVFileState csvFileState) {
@@ -50,6 +53,14 @@ public abstract class CSVStrategy {
     
     public abstract String[] encode(SimpleFeature feature);
 
+    /**
+     * Returns the prefix of the ids of the decoded features, followed by the one based record
+     * number
+     */
+    public String getFeatureIdPrefix() {
+        return csvFileState.getTypeName() + "-" + RECORD_ID_PREFIX;
+    }
+
     protected volatile SimpleFeatureType featureType = null;
 
     public SimpleFeatureType getFeatureType() {
@@ -0,0 +1,200 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geotools.data.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.geotools.data.FeatureReader;
+import org.geotools.data.Query;
+import org.geotools.data.csv.parse.CSVLatLonStrategy;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+
+public class CSVIndexTest {
+
+    static final FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(folder.getRoot(), "points.csv");
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write("LAT,LON,NAME,NUMBER\n");
+            writeRows(writer, 0, 2000);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Rows with quoted new lines, delimiters and quotes, blank lines and mixed line terminators.
+     * The longitude grows with the row number, so chunks cover separate areas.
+     */
+    void writeRows(Writer writer, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            double lat = (i % 180) - 90;
+            double lon = i * 0.1 - 180;
+            String name;
+            if (i % 7 == 0) {
+                name = "\"multi\nline, " + i + "\"";
+            } else if (i % 11 == 0) {
+                name = "\"quoted \"\"name\"\" " + i + "\"";
+            } else {
+                name = "name " + i;
+            }
+            writer.write(lat + "," + lon + "," + name + "," + i);
+            writer.write(i % 5 == 0 ? "\r\n" : "\n");
+            if (i % 97 == 0) {
+                writer.write("\n");
+            }
+        }
+    }
+
+    CSVDataStore store(boolean parallel, boolean indexed) {
+        CSVFileState state = new CSVFileState(file);
+        CSVDataStore store = new CSVDataStore(state, new CSVLatLonStrategy(state));
+        store.setParallel(parallel);
+        store.setIndexed(indexed);
+        store.setChunkSize(4096);
+        return store;
+    }
+
+    List<String> read(FeatureReader<SimpleFeatureType, SimpleFeature> reader)
+            throws IOException {
+        List<String> result = new ArrayList<String>();
+        try {
+            while (reader.hasNext()) {
+                SimpleFeature feature = reader.next();
+                result.add(feature.getID() + feature.getAttributes());
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+
+    List<String> read(SimpleFeatureSource source, Filter filter) throws IOException {
+        List<String> result = new ArrayList<String>();
+        SimpleFeatureIterator it = source.getFeatures(filter).features();
+        try {
+            while (it.hasNext()) {
+                SimpleFeature feature = it.next();
+                result.add(feature.getID() + feature.getAttributes());
+            }
+        } finally {
+            it.close();
+        }
+        return result;
+    }
+
+    @Test
+    public void testScan() throws IOException {
+        CSVIndex index = CSVIndex.scan(file, 4096);
+        assertTrue(index.getChunks().size() > 10);
+        assertEquals(2000, index.getRecordCount());
+        long record = 0;
+        for (CSVIndex.Chunk chunk : index.getChunks()) {
+            assertEquals(record, chunk.getFirstRecord());
+            record += chunk.getCount();
+        }
+        assertFalse(index.hasBounds());
+    }
+
+    @Test
+    public void testParallelRead() throws IOException {
+        List<String> expected = read(store(false, false).getFeatureReader());
+        assertEquals(2000, expected.size());
+        CSVDataStore parallel = store(true, false);
+        assertEquals(expected, read(parallel.getFeatureReader()));
+        assertEquals(2000, parallel.getFeatureSource().getCount(Query.ALL));
+        assertFalse(CSVIndex.getIndexFile(file).exists());
+    }
+
+    @Test
+    public void testIndex() throws IOException {
+        SimpleFeatureSource sequential = store(false, false).getFeatureSource();
+        CSVDataStore indexed = store(true, true);
+        SimpleFeatureSource source = indexed.getFeatureSource();
+
+        Filter bbox = ff.bbox("location", -160, -90, -150, 90, null);
+        List<String> expected = read(sequential, bbox);
+        assertEquals(101, expected.size());
+        assertEquals(expected, read(source, bbox));
+        assertTrue(CSVIndex.getIndexFile(file).exists());
+
+        CSVIndex index = indexed.getIndex();
+        String prefix = new CSVLatLonStrategy(new CSVFileState(file)).getFeatureIdPrefix();
+        assertTrue(index.hasBounds());
+        assertTrue(index.select(bbox, prefix).size() < index.getChunks().size() / 4);
+        assertEquals(sequential.getBounds(), source.getBounds());
+
+        // lookup by id only reads the chunk containing the record
+        String fid = null;
+        SimpleFeatureIterator it = sequential.getFeatures().features();
+        try {
+            for (int i = 0; i < 1500; i++) {
+                fid = it.next().getID();
+            }
+        } finally {
+            it.close();
+        }
+        assertTrue(fid.startsWith(prefix));
+        Filter id = ff.id(ff.featureId(fid));
+        assertEquals(1, index.select(id, prefix).size());
+        assertEquals(read(sequential, id), read(source, id));
+        assertEquals(1, read(source, id).size());
+
+        // a new store picks up the saved index
+        CSVIndex saved = CSVIndex.read(file);
+        assertEquals(index.getChunks().size(), saved.getChunks().size());
+        assertEquals(index.getBounds(), saved.getBounds());
+    }
+
+    @Test
+    public void testStaleIndex() throws IOException {
+        CSVDataStore indexed = store(false, true);
+        assertEquals(2000, indexed.getFeatureSource().getCount(Query.ALL));
+
+        Writer writer = new FileWriter(file, true);
+        try {
+            writeRows(writer, 2000, 2100);
+        } finally {
+            writer.close();
+        }
+        // make sure the modification is noticed even on file systems with coarse timestamps
+        file.setLastModified(file.lastModified() + 2000);
+        assertEquals(null, CSVIndex.read(file));
+
+        assertEquals(2100, indexed.getFeatureSource().getCount(Query.ALL));
+        assertEquals(read(store(false, false).getFeatureReader()),
+                read(indexed.getFeatureReader()));
+        ReferencedEnvelope bounds = indexed.getFeatureSource().getBounds();
+        assertEquals(2099 * 0.1 - 180, bounds.getMaxX(), 1e-6);
+    }
+}
@@ -21,6 +21,7 @@ import org.geotools.data.store.ContentDataStore;
 import org.geotools.data.store.ContentEntry;
 import org.geotools.data.store.ContentFeatureSource;
 import org.geotools.feature.NameImpl;
+import org.geotools.util.logging.Logging;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.Name;
 
@@ -30,15 +31,25 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class GeobufDataStore extends ContentDataStore {
 
+    private static final Logger LOGGER = Logging.getLogger("org.geotools.data.geobuf");
+
     private File file;
 
     private int precision = 6;
 
     private int dimension = 2;
 
+    private boolean lazy;
+
+    private boolean indexed;
+
+    private GeobufIndex index;
+
     public GeobufDataStore(File file, int precision, int dimension) {
         this.file = file;
         this.precision = precision;
@@ -49,6 +60,53 @@ public class GeobufDataStore extends ContentDataStore {
         return file;
     }
 
+    /**
+     * Whether the features are read lazily with a {@link GeobufLazyFeatureReader}, decoding
+     * only the properties the queries need, instead of parsing the whole file
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    /**
+     * Whether the lazy reader uses a {@link GeobufIndex}, saved in a sidecar file and rebuilt
+     * when the file changes
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    public void setIndexed(boolean indexed) {
+        this.indexed = indexed;
+    }
+
+    /**
+     * The index of the file, read from the sidecar file or built when missing or out of date.
+     *
+     * @return The index, or null if the store is not indexed or the file does not exist
+     */
+    protected synchronized GeobufIndex getIndex() throws IOException {
+        if (!indexed || !file.exists()) {
+            return null;
+        }
+        if (index == null || !index.isValid(file)) {
+            index = GeobufIndex.read(file);
+            if (index == null) {
+                index = GeobufIndex.build(file, precision, dimension);
+                try {
+                    index.write(file);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Could not save the index of " + file, e);
+                }
+            }
+        }
+        return index;
+    }
+
     @Override
     protected List<Name> createTypeNames() throws IOException {
         String name = file.getName();
@@ -91,7 +149,18 @@ public class GeobufDataStore extends ContentDataStore {
     }
 
     protected SimpleFeatureType getFeatureType() throws IOException {
-        if (file.exists()) {
+        if (file.exists() && lazy) {
+            // the feature type only depends on the first feature
+            GeobufScanner scanner = new GeobufScanner(precision, dimension);
+            try {
+                scanner.open(file);
+                GeobufFeatureType geobufFeatureType = new GeobufFeatureType(precision, dimension);
+                return geobufFeatureType.getFeatureType(createTypeNames().get(0).getLocalPart(),
+                        scanner.readSample());
+            } finally {
+                scanner.close();
+            }
+        } else if (file.exists()) {
             FileInputStream in = new FileInputStream(file);
             try {
                 GeobufFeatureType geobufFeatureType = new GeobufFeatureType(precision, dimension);
@@ -41,6 +41,14 @@ public class GeobufDataStoreFactory implements DataStoreFactorySpi {
     public static final Param DIMENSION_PARAM = new Param("dimension", Integer.class, "The geometry dimension",
             false, 2, new KVP("precision", "2"));
 
+    public static final Param LAZY_PARAM = new Param("lazy", Boolean.class,
+            "Read the features one at a time, decoding only the properties the query needs",
+            false, Boolean.FALSE, new KVP(Param.LEVEL, "advanced"));
+
+    public static final Param INDEX_PARAM = new Param("index", Boolean.class,
+            "Read lazily using a sidecar index of the feature offsets and bounds",
+            false, Boolean.FALSE, new KVP(Param.LEVEL, "advanced"));
+
     public GeobufDataStoreFactory() {
     }
 
@@ -56,9 +64,9 @@ public class GeobufDataStoreFactory implements DataStoreFactorySpi {
             dimension = 2;
         }
         if (file.isDirectory()) {
-            return new GeobufDirectoryDataStore(file, precision, dimension);
+            return configure(new GeobufDirectoryDataStore(file, precision, dimension), map);
         } else {
-            return new GeobufDataStore(file, precision, dimension);
+            return configure(new GeobufDataStore(file, precision, dimension), map);
         }
     }
 
@@ -74,15 +82,29 @@ public class GeobufDataStoreFactory implements DataStoreFactorySpi {
             dimension = 2;
         }
         if (file.isDirectory()) {
-            return new GeobufDirectoryDataStore(file, precision, dimension);
+            return configure(new GeobufDirectoryDataStore(file, precision, dimension), map);
         } else {
             if (file.exists()) {
                 LOGGER.warning("File already exists: " + file);
             }
-            return new GeobufDataStore(file, precision, dimension);
+            return configure(new GeobufDataStore(file, precision, dimension), map);
         }
     }
 
+    private DataStore configure(GeobufDataStore store, Map<String, Serializable> map) throws IOException {
+        boolean indexed = Boolean.TRUE.equals(INDEX_PARAM.lookUp(map));
+        store.setLazy(indexed || Boolean.TRUE.equals(LAZY_PARAM.lookUp(map)));
+        store.setIndexed(indexed);
+        return store;
+    }
+
+    private DataStore configure(GeobufDirectoryDataStore store, Map<String, Serializable> map) throws IOException {
+        boolean indexed = Boolean.TRUE.equals(INDEX_PARAM.lookUp(map));
+        store.setLazy(indexed || Boolean.TRUE.equals(LAZY_PARAM.lookUp(map)));
+        store.setIndexed(indexed);
+        return store;
+    }
+
     @Override
     public String getDisplayName() {
         return "Geobuf";
@@ -95,7 +117,7 @@ public class GeobufDataStoreFactory implements DataStoreFactorySpi {
 
     @Override
     public Param[] getParametersInfo() {
-        return new Param[]{FILE_PARAM, PRECISION_PARAM, DIMENSION_PARAM};
+        return new Param[]{FILE_PARAM, PRECISION_PARAM, DIMENSION_PARAM, LAZY_PARAM, INDEX_PARAM};
     }
 
     @Override
@@ -35,6 +35,10 @@ public class GeobufDirectoryDataStore extends ContentDataStore {
 
     private int dimension = 2;
 
+    private boolean lazy;
+
+    private boolean indexed;
+
     public GeobufDirectoryDataStore(File directory, int precision, int dimension) {
         this.directory = directory;
         this.precision = precision;
@@ -45,6 +49,28 @@ public class GeobufDirectoryDataStore extends ContentDataStore {
         return directory;
     }
 
+    /**
+     * @see GeobufDataStore#isLazy()
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    /**
+     * @see GeobufDataStore#isIndexed()
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    public void setIndexed(boolean indexed) {
+        this.indexed = indexed;
+    }
+
     @Override
     public void removeSchema(Name typeName) throws IOException {
         this.removeSchema(typeName.getLocalPart());
@@ -64,7 +90,10 @@ public class GeobufDirectoryDataStore extends ContentDataStore {
 
     protected GeobufDataStore getDataStore(String name) {
         File file = new File(directory, name + ".pbf");
-        return new GeobufDataStore(file, precision, dimension);
+        GeobufDataStore dataStore = new GeobufDataStore(file, precision, dimension);
+        dataStore.setLazy(lazy);
+        dataStore.setIndexed(indexed);
+        return dataStore;
     }
 
     @Override
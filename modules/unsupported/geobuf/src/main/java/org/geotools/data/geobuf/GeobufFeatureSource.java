@@ -16,6 +16,8 @@
  */
 package org.geotools.data.geobuf;
 
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
 import org.geotools.data.DataStore;
 import org.geotools.data.FeatureReader;
 import org.geotools.data.Query;
@@ -25,6 +27,7 @@ import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.opengis.feature.FeatureVisitor;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
 
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -54,11 +57,45 @@ public class GeobufFeatureSource extends ContentFeatureSource {
 
     @Override
     protected FeatureReader<SimpleFeatureType, SimpleFeature> getReaderInternal(Query query) throws IOException {
+        GeobufDataStore dataStore = getDataStore();
+        if (dataStore.isLazy()) {
+            return new GeobufLazyFeatureReader(getState(), query, dataStore.getFile(), precision, dimension,
+                    dataStore.getIndex());
+        }
         return new GeobufFeatureReader(getState(), query, precision, dimension);
     }
 
     @Override
     protected ReferencedEnvelope getBoundsInternal(Query query) throws IOException {
+        GeobufDataStore dataStore = getDataStore();
+        if (dataStore.isLazy()) {
+            if (query.getFilter() != null && query.getFilter() != Filter.INCLUDE) {
+                return null;
+            }
+            GeobufIndex index = dataStore.getIndex();
+            if (index != null) {
+                // a null envelope if there are no geometries
+                Envelope env = index.getBounds();
+                return new ReferencedEnvelope(env, getSchema().getCoordinateReferenceSystem());
+            }
+            // decode the geometries only
+            ReferencedEnvelope bounds = new ReferencedEnvelope(getSchema().getCoordinateReferenceSystem());
+            GeobufScanner scanner = new GeobufScanner(precision, dimension);
+            try {
+                scanner.open(dataStore.getFile());
+                while (scanner.next()) {
+                    Geometry g = scanner.getDataType() == Geobuf.Data.DataTypeCase.GEOMETRY
+                            ? scanner.readGeometry(scanner.getStream())
+                            : scanner.readFeatureGeometry(scanner.getStream());
+                    if (g != null) {
+                        bounds.expandToInclude(g.getEnvelopeInternal());
+                    }
+                }
+            } finally {
+                scanner.close();
+            }
+            return bounds;
+        }
         InputStream in = new FileInputStream(getDataStore().getFile());
         try {
             GeobufFeatureCollection geobufFeatureCollection = new GeobufFeatureCollection();
@@ -70,6 +107,28 @@ public class GeobufFeatureSource extends ContentFeatureSource {
 
     @Override
     protected int getCountInternal(Query query) throws IOException {
+        GeobufDataStore dataStore = getDataStore();
+        if (dataStore.isLazy()) {
+            if (query.getFilter() != null && query.getFilter() != Filter.INCLUDE) {
+                return -1;
+            }
+            GeobufIndex index = dataStore.getIndex();
+            if (index != null) {
+                return index.size();
+            }
+            // skip over the features without decoding them
+            int count = 0;
+            GeobufScanner scanner = new GeobufScanner(precision, dimension);
+            try {
+                scanner.open(dataStore.getFile());
+                while (scanner.next()) {
+                    count++;
+                }
+            } finally {
+                scanner.close();
+            }
+            return count;
+        }
         InputStream in = new FileInputStream(getDataStore().getFile());
         try {
             GeobufFeatureCollection geobufFeatureCollection = new GeobufFeatureCollection();
@@ -154,5 +154,7 @@ public class GeobufFeatureWriter implements FeatureWriter<SimpleFeatureType, Sim
         }
         Files.copy(temp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
         temp.delete();
+        // the index no longer matches the file
+        GeobufIndex.getIndexFile(this.file).delete();
     }
 }
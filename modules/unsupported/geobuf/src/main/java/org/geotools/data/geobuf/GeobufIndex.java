@@ -0,0 +1,328 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.geobuf;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import org.geotools.filter.visitor.ExtractBoundsFilterVisitor;
+import org.opengis.filter.Filter;
+import org.opengis.filter.Id;
+import org.opengis.filter.identity.Identifier;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * The byte offset, size and bounds of each feature of a Geobuf file, kept in columns.
+ * <p>
+ * The index lets the lazy reader jump to the features a spatial or feature id filter might
+ * match, and answers the count and bounds of the whole file without reading it. It is saved in
+ * a sidecar file next to the Geobuf file, and considered out of date when the Geobuf file size
+ * or modification time change.
+ * </p>
+ */
+public class GeobufIndex {
+
+    static final int MAGIC = 0x47425849; // GBXI
+
+    static final int VERSION = 1;
+
+    final long fileLength;
+
+    final long lastModified;
+
+    final Geobuf.Data.DataTypeCase dataType;
+
+    final List<String> keys;
+
+    final long[] offsets;
+
+    final int[] lengths;
+
+    /** minx, maxx, miny, maxy of each feature, NaN when the feature has no geometry */
+    final double[] bounds;
+
+    GeobufIndex(long fileLength, long lastModified, Geobuf.Data.DataTypeCase dataType,
+            List<String> keys, long[] offsets, int[] lengths, double[] bounds) {
+        this.fileLength = fileLength;
+        this.lastModified = lastModified;
+        this.dataType = dataType;
+        this.keys = keys;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.bounds = bounds;
+    }
+
+    /**
+     * The sidecar file holding the index of a Geobuf file.
+     */
+    public static File getIndexFile(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return new File(file.getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + ".idx");
+    }
+
+    /**
+     * Scans the Geobuf file, decoding only the feature geometries.
+     */
+    public static GeobufIndex build(File file, int precision, int dimension) throws IOException {
+        long fileLength = file.length();
+        long lastModified = file.lastModified();
+        GeobufScanner scanner = new GeobufScanner(precision, dimension);
+        try {
+            scanner.open(file);
+            int size = 0;
+            long[] offsets = new long[1024];
+            int[] lengths = new int[1024];
+            double[] bounds = new double[4096];
+            while (scanner.next()) {
+                if (size == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, size * 2);
+                    lengths = Arrays.copyOf(lengths, size * 2);
+                    bounds = Arrays.copyOf(bounds, size * 8);
+                }
+                offsets[size] = scanner.getOffset();
+                lengths[size] = scanner.getLength();
+                Geometry geometry;
+                if (scanner.getDataType() == Geobuf.Data.DataTypeCase.GEOMETRY) {
+                    geometry = scanner.readGeometry(scanner.getStream());
+                } else {
+                    geometry = scanner.readFeatureGeometry(scanner.getStream());
+                }
+                Envelope envelope = geometry == null ? new Envelope() : geometry
+                        .getEnvelopeInternal();
+                if (envelope.isNull()) {
+                    Arrays.fill(bounds, size * 4, size * 4 + 4, Double.NaN);
+                } else {
+                    bounds[size * 4] = envelope.getMinX();
+                    bounds[size * 4 + 1] = envelope.getMaxX();
+                    bounds[size * 4 + 2] = envelope.getMinY();
+                    bounds[size * 4 + 3] = envelope.getMaxY();
+                }
+                size++;
+            }
+            return new GeobufIndex(fileLength, lastModified, scanner.getDataType(),
+                    new ArrayList<String>(scanner.getKeys()), Arrays.copyOf(offsets, size),
+                    Arrays.copyOf(lengths, size), Arrays.copyOf(bounds, size * 4));
+        } finally {
+            scanner.close();
+        }
+    }
+
+    /**
+     * Reads the index from its sidecar file.
+     *
+     * @return The index, or <code>null</code> if the sidecar file is missing or out of date
+     */
+    public static GeobufIndex read(File file) throws IOException {
+        File indexFile = getIndexFile(file);
+        if (!indexFile.exists()) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(
+                indexFile)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            long fileLength = in.readLong();
+            long lastModified = in.readLong();
+            if (fileLength != file.length() || lastModified != file.lastModified()) {
+                return null;
+            }
+            Geobuf.Data.DataTypeCase dataType = Geobuf.Data.DataTypeCase.valueOf(in.readUTF());
+            int keyCount = in.readInt();
+            List<String> keys = new ArrayList<String>(keyCount);
+            for (int i = 0; i < keyCount; i++) {
+                keys.add(in.readUTF());
+            }
+            int size = in.readInt();
+            long[] offsets = new long[size];
+            int[] lengths = new int[size];
+            double[] bounds = new double[size * 4];
+            for (int i = 0; i < size; i++) {
+                offsets[i] = in.readLong();
+            }
+            for (int i = 0; i < size; i++) {
+                lengths[i] = in.readInt();
+            }
+            for (int i = 0; i < bounds.length; i++) {
+                bounds[i] = in.readDouble();
+            }
+            return new GeobufIndex(fileLength, lastModified, dataType, keys, offsets, lengths,
+                    bounds);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Saves the index in its sidecar file.
+     */
+    public void write(File file) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(getIndexFile(file))));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fileLength);
+            out.writeLong(lastModified);
+            out.writeUTF(dataType.name());
+            out.writeInt(keys.size());
+            for (String key : keys) {
+                out.writeUTF(key);
+            }
+            out.writeInt(offsets.length);
+            for (long offset : offsets) {
+                out.writeLong(offset);
+            }
+            for (int length : lengths) {
+                out.writeInt(length);
+            }
+            for (double value : bounds) {
+                out.writeDouble(value);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Whether the index still describes the file
+     */
+    public boolean isValid(File file) {
+        return fileLength == file.length() && lastModified == file.lastModified();
+    }
+
+    /**
+     * What the file holds: a feature collection, a single feature or a single geometry
+     */
+    public Geobuf.Data.DataTypeCase getDataType() {
+        return dataType;
+    }
+
+    /**
+     * The property keys, in the order of the feature values
+     */
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    /**
+     * Number of features in the file
+     */
+    public int size() {
+        return offsets.length;
+    }
+
+    public long getOffset(int feature) {
+        return offsets[feature];
+    }
+
+    public int getLength(int feature) {
+        return lengths[feature];
+    }
+
+    /**
+     * Bounds of a feature, empty if it has no geometry
+     */
+    public Envelope getBounds(int feature) {
+        int i = feature * 4;
+        if (Double.isNaN(bounds[i])) {
+            return new Envelope();
+        }
+        return new Envelope(bounds[i], bounds[i + 1], bounds[i + 2], bounds[i + 3]);
+    }
+
+    /**
+     * Bounds of all the features
+     */
+    public Envelope getBounds() {
+        Envelope envelope = new Envelope();
+        for (int i = 0; i < offsets.length; i++) {
+            envelope.expandToInclude(getBounds(i));
+        }
+        return envelope;
+    }
+
+    /**
+     * The features that might match the filter, in file order. Feature id filters are answered
+     * by locating the features, spatial filters by comparing with the feature bounds.
+     */
+    public int[] select(Filter filter) {
+        if (filter == null || filter == Filter.INCLUDE) {
+            return all();
+        }
+        if (filter instanceof Id) {
+            TreeSet<Integer> features = new TreeSet<Integer>();
+            for (Identifier id : ((Id) filter).getIdentifiers()) {
+                try {
+                    // feature ids are the position in the file, as GeobufFeature builds them
+                    int feature = Integer.parseInt(String.valueOf(id.getID()));
+                    if (feature >= 0 && feature < offsets.length) {
+                        features.add(feature);
+                    }
+                } catch (NumberFormatException e) {
+                    return all();
+                }
+            }
+            int[] result = new int[features.size()];
+            int i = 0;
+            for (Integer feature : features) {
+                result[i++] = feature;
+            }
+            return result;
+        }
+        Envelope envelope = (Envelope) filter.accept(ExtractBoundsFilterVisitor.BOUNDS_VISITOR,
+                null);
+        if (envelope == null || envelope.isNull()) {
+            return new int[0];
+        }
+        if (Double.isInfinite(envelope.getWidth()) || Double.isInfinite(envelope.getHeight())) {
+            return all();
+        }
+        int[] result = new int[offsets.length];
+        int count = 0;
+        for (int i = 0; i < offsets.length; i++) {
+            int b = i * 4;
+            // NaN bounds never intersect
+            if (bounds[b] <= envelope.getMaxX() && bounds[b + 1] >= envelope.getMinX()
+                    && bounds[b + 2] <= envelope.getMaxY() && bounds[b + 3] >= envelope.getMinY()) {
+                result[count++] = i;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private int[] all() {
+        int[] result = new int[offsets.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = i;
+        }
+        return result;
+    }
+}
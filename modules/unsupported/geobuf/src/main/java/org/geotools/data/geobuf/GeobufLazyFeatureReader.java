@@ -0,0 +1,274 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.geobuf;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.FeatureReader;
+import org.geotools.data.Query;
+import org.geotools.data.store.ContentState;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.filter.visitor.ExtractBoundsFilterVisitor;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.Id;
+import org.opengis.filter.identity.Identifier;
+import org.opengis.filter.sort.SortBy;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Reads a Geobuf file one feature at a time with a {@link GeobufScanner}, instead of parsing
+ * the whole file in memory like {@link GeobufFeatureReader}.
+ * <p>
+ * Only the attributes the query needs (the requested properties, and the ones used by the
+ * filter and the sorting) are decoded, the others are skipped on the wire and left empty, the
+ * feature source retyping removes them. Features whose geometry does not intersect the filter
+ * bounds are skipped before their properties are decoded.
+ * </p>
+ * <p>
+ * When a {@link GeobufIndex} is available only the features it selects are read, seeking
+ * directly to them.
+ * </p>
+ */
+public class GeobufLazyFeatureReader implements FeatureReader<SimpleFeatureType, SimpleFeature> {
+
+    private ContentState state;
+
+    private GeobufScanner scanner;
+
+    private SimpleFeatureBuilder featureBuilder;
+
+    private SimpleFeature nextFeature;
+
+    private Geobuf.Data.DataTypeCase dataType;
+
+    /** Attribute of each feature value, -1 when not needed */
+    private int[] valueAttributes;
+
+    /** The geometry attribute, -1 when not needed */
+    private int geometryAttribute = -1;
+
+    /** Bounds the geometries must intersect, null if any geometry will do */
+    private Envelope bounds;
+
+    /** The feature ids the filter selects, null if not a feature id filter */
+    private Set<Integer> ids;
+
+    // index access
+    private FileChannel channel;
+
+    private GeobufIndex index;
+
+    private int[] selected;
+
+    private int position;
+
+    private byte[] buffer = new byte[1024];
+
+    public GeobufLazyFeatureReader(ContentState state, Query query, File file, int precision,
+            int dimension, GeobufIndex index) throws IOException {
+        this.state = state;
+        SimpleFeatureType featureType = state.getFeatureType();
+        this.featureBuilder = new SimpleFeatureBuilder(featureType);
+        this.scanner = new GeobufScanner(precision, dimension);
+        Filter filter = query.getFilter() == null ? Filter.INCLUDE : query.getFilter();
+        List<String> keys;
+        if (index != null) {
+            this.index = index;
+            this.selected = index.select(filter);
+            this.dataType = index.getDataType();
+            keys = index.getKeys();
+            this.channel = new RandomAccessFile(file, "r").getChannel();
+        } else {
+            scanner.open(file);
+            this.dataType = scanner.getDataType();
+            keys = scanner.getKeys();
+            this.ids = getIds(filter);
+            this.bounds = getBounds(filter);
+        }
+
+        // the attributes needed for the query
+        Set<String> names = null;
+        if (query.getPropertyNames() != Query.ALL_NAMES) {
+            names = new HashSet<String>(Arrays.asList(query.getPropertyNames()));
+            names.addAll(Arrays.asList(DataUtilities.attributeNames(filter, featureType)));
+            if (query.getSortBy() != null) {
+                for (SortBy sortBy : query.getSortBy()) {
+                    if (sortBy.getPropertyName() != null) {
+                        names.add(sortBy.getPropertyName().getPropertyName());
+                    }
+                }
+            }
+        }
+        if (featureType.getGeometryDescriptor() != null) {
+            String name = featureType.getGeometryDescriptor().getLocalName();
+            if (names == null || names.contains(name) || bounds != null) {
+                geometryAttribute = featureType.indexOf(name);
+            }
+        }
+        valueAttributes = new int[keys.size()];
+        for (int i = 0; i < valueAttributes.length; i++) {
+            String key = keys.get(i);
+            valueAttributes[i] = names == null || names.contains(key) ? featureType.indexOf(key)
+                    : -1;
+        }
+    }
+
+    private Set<Integer> getIds(Filter filter) {
+        if (!(filter instanceof Id)) {
+            return null;
+        }
+        Set<Integer> result = new HashSet<Integer>();
+        for (Identifier id : ((Id) filter).getIdentifiers()) {
+            try {
+                result.add(Integer.valueOf(String.valueOf(id.getID())));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    private Envelope getBounds(Filter filter) {
+        if (filter == Filter.INCLUDE || filter instanceof Id) {
+            return null;
+        }
+        Envelope envelope = (Envelope) filter.accept(ExtractBoundsFilterVisitor.BOUNDS_VISITOR,
+                null);
+        if (envelope == null || envelope.isNull() || Double.isInfinite(envelope.getWidth())
+                || Double.isInfinite(envelope.getHeight())) {
+            return null;
+        }
+        return envelope;
+    }
+
+    @Override
+    public SimpleFeatureType getFeatureType() {
+        return state.getFeatureType();
+    }
+
+    @Override
+    public SimpleFeature next() throws IOException, IllegalArgumentException,
+            NoSuchElementException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        SimpleFeature feature = nextFeature;
+        nextFeature = null;
+        return feature;
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        if (nextFeature != null) {
+            return true;
+        }
+        if (index != null) {
+            while (nextFeature == null && selected != null && position < selected.length) {
+                int feature = selected[position++];
+                nextFeature = readFeature(read(feature), feature);
+            }
+        } else {
+            while (nextFeature == null && scanner.next()) {
+                if (ids == null || ids.contains(scanner.getIndex())) {
+                    nextFeature = readFeature(scanner.getStream(), scanner.getIndex());
+                }
+            }
+        }
+        return nextFeature != null;
+    }
+
+    /**
+     * Reads the bytes of an indexed feature
+     */
+    private CodedInputStream read(int feature) throws IOException {
+        int length = index.getLength(feature);
+        if (buffer.length < length) {
+            buffer = new byte[Math.max(length, buffer.length * 2)];
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, length);
+        long offset = index.getOffset(feature);
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, offset + bytes.position()) < 0) {
+                throw new IOException("Unexpected end of file reading feature " + feature);
+            }
+        }
+        return CodedInputStream.newInstance(buffer, 0, length);
+    }
+
+    /**
+     * Decodes the needed fields of a feature
+     *
+     * @return The feature, or null if its geometry is out of the filter bounds
+     */
+    private SimpleFeature readFeature(CodedInputStream in, int feature) throws IOException {
+        if (dataType == Geobuf.Data.DataTypeCase.GEOMETRY) {
+            if (geometryAttribute >= 0) {
+                featureBuilder.set(geometryAttribute, scanner.readGeometry(in));
+            }
+            return featureBuilder.buildFeature(String.valueOf(feature));
+        }
+        int value = 0;
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            int field = WireFormat.getTagFieldNumber(tag);
+            if (field == GeobufScanner.FEATURE_GEOMETRY && geometryAttribute >= 0) {
+                Geometry geometry = scanner.readGeometryMessage(in);
+                if (bounds != null
+                        && (geometry == null || !bounds.intersects(geometry.getEnvelopeInternal()))) {
+                    featureBuilder.reset();
+                    return null;
+                }
+                featureBuilder.set(geometryAttribute, geometry);
+            } else if (field == GeobufScanner.FEATURE_VALUES) {
+                if (value < valueAttributes.length && valueAttributes[value] >= 0) {
+                    featureBuilder.set(valueAttributes[value], scanner.readValueMessage(in));
+                } else {
+                    in.skipField(tag);
+                }
+                value++;
+            } else {
+                in.skipField(tag);
+            }
+        }
+        return featureBuilder.buildFeature(String.valueOf(feature));
+    }
+
+    @Override
+    public void close() throws IOException {
+        scanner.close();
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+}
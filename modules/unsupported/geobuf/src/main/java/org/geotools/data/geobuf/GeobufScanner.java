@@ -0,0 +1,515 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.geobuf;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequence;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequenceFactory;
+import org.geotools.geometry.jts.JTSFactoryFinder;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Walks a Geobuf file one feature at a time, straight on the protobuf wire format, without
+ * building the generated {@link Geobuf} messages.
+ * <p>
+ * The scanner reads the header (the property keys) and then moves from feature to feature,
+ * keeping track of the byte offset of each one. The current feature can be decoded field by
+ * field, skipping the ones that are not needed, and geometries are decoded directly into packed
+ * coordinate sequences. The decoding rules are the same as {@link GeobufGeometry} and
+ * {@link GeobufFeature}, including the configured precision and dimension taking precedence
+ * over the ones found in the file.
+ * </p>
+ */
+public class GeobufScanner {
+
+    /** Data field holding the property keys */
+    static final int DATA_KEYS = 1;
+
+    static final int DATA_FEATURE_COLLECTION = 4;
+
+    static final int DATA_FEATURE = 5;
+
+    static final int DATA_GEOMETRY = 6;
+
+    static final int FEATURE_COLLECTION_FEATURES = 1;
+
+    static final int FEATURE_GEOMETRY = 1;
+
+    static final int FEATURE_VALUES = 13;
+
+    static final int GEOMETRY_TYPE = 1;
+
+    static final int GEOMETRY_LENGTHS = 2;
+
+    static final int GEOMETRY_COORDS = 3;
+
+    static final int GEOMETRY_GEOMETRIES = 4;
+
+    static final int COLLECTION = Geobuf.Data.Geometry.Type.GEOMETRYCOLLECTION_VALUE;
+
+    private final int dimension;
+
+    private final double maxNumberOfDecimalPlaces;
+
+    private final GeometryFactory geometryFactory;
+
+    private InputStream input;
+
+    private CodedInputStream in;
+
+    private final List<String> keys = new ArrayList<String>();
+
+    private Geobuf.Data.DataTypeCase dataType = Geobuf.Data.DataTypeCase.DATATYPE_NOT_SET;
+
+    /** Absolute position of the stream, updated between features */
+    private long position;
+
+    /** End of the feature collection, or of the single feature or geometry */
+    private long end;
+
+    private int index = -1;
+
+    private long offset;
+
+    private int length;
+
+    private int oldLimit = -1;
+
+    // buffers reused from one geometry to the next
+    private long[] coords = new long[256];
+
+    private int coordCount;
+
+    private int[] lengths = new int[16];
+
+    private int lengthCount;
+
+    public GeobufScanner(int precision, int dimension) {
+        this(precision, dimension, JTSFactoryFinder.getGeometryFactory(null));
+    }
+
+    public GeobufScanner(int precision, int dimension, GeometryFactory geometryFactory) {
+        this.dimension = dimension;
+        this.maxNumberOfDecimalPlaces = Math.pow(10, precision);
+        this.geometryFactory = new GeometryFactory(geometryFactory.getPrecisionModel(),
+                geometryFactory.getSRID(), PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
+    }
+
+    /**
+     * Opens the file and reads its header, up to the first feature
+     */
+    public void open(File file) throws IOException {
+        input = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+        in = CodedInputStream.newInstance(input);
+        in.setSizeLimit(Integer.MAX_VALUE);
+        position = 0;
+        end = 0;
+        while (true) {
+            in.resetSizeCounter();
+            int tag = in.readTag();
+            if (tag == 0) {
+                break;
+            }
+            int field = WireFormat.getTagFieldNumber(tag);
+            if (field == DATA_KEYS) {
+                keys.add(in.readString());
+            } else if (field == DATA_FEATURE_COLLECTION || field == DATA_FEATURE
+                    || field == DATA_GEOMETRY) {
+                long size = in.readRawVarint64();
+                position += in.getTotalBytesRead();
+                end = position + size;
+                if (field == DATA_FEATURE_COLLECTION) {
+                    dataType = Geobuf.Data.DataTypeCase.FEATURE_COLLECTION;
+                } else {
+                    dataType = field == DATA_FEATURE ? Geobuf.Data.DataTypeCase.FEATURE
+                            : Geobuf.Data.DataTypeCase.GEOMETRY;
+                    offset = position;
+                    length = (int) size;
+                    in.resetSizeCounter();
+                }
+                return;
+            } else {
+                in.skipField(tag);
+            }
+            position += in.getTotalBytesRead();
+        }
+    }
+
+    /**
+     * The property keys, in the order of the feature values
+     */
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    /**
+     * What the file holds: a feature collection, a single feature or a single geometry
+     */
+    public Geobuf.Data.DataTypeCase getDataType() {
+        return dataType;
+    }
+
+    /**
+     * Moves to the next feature, skipping whatever was not read of the current one. Once this
+     * method returned true the feature can be read from {@link #getStream()}, which ends with
+     * it.
+     *
+     * @return false when there are no more features
+     */
+    public boolean next() throws IOException {
+        finishFeature();
+        if (dataType == Geobuf.Data.DataTypeCase.FEATURE_COLLECTION) {
+            while (position < end) {
+                in.resetSizeCounter();
+                int tag = in.readTag();
+                if (tag == 0) {
+                    return false;
+                }
+                if (WireFormat.getTagFieldNumber(tag) == FEATURE_COLLECTION_FEATURES
+                        && WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+                    length = in.readRawVarint32();
+                    offset = position + in.getTotalBytesRead();
+                    oldLimit = in.pushLimit(length);
+                    index++;
+                    return true;
+                }
+                in.skipField(tag);
+                position += in.getTotalBytesRead();
+            }
+            return false;
+        } else if (dataType != Geobuf.Data.DataTypeCase.DATATYPE_NOT_SET && index < 0) {
+            oldLimit = in.pushLimit(length);
+            index++;
+            return true;
+        }
+        return false;
+    }
+
+    private void finishFeature() throws IOException {
+        if (oldLimit != -1) {
+            in.skipRawBytes(in.getBytesUntilLimit());
+            in.popLimit(oldLimit);
+            oldLimit = -1;
+            position += in.getTotalBytesRead();
+        }
+    }
+
+    /**
+     * The stream positioned on the current feature, a Feature message, or a Geometry one when
+     * the file holds a single geometry
+     */
+    public CodedInputStream getStream() {
+        return in;
+    }
+
+    /**
+     * Position of the current feature in the file collection
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Byte offset of the current feature message in the file
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Size of the current feature message, in bytes
+     */
+    public int getLength() {
+        return length;
+    }
+
+    public void close() throws IOException {
+        if (input != null) {
+            input.close();
+            input = null;
+        }
+    }
+
+    /**
+     * Reads the header and the first feature as a {@link Geobuf.Data} message, which is enough
+     * for {@link GeobufFeatureType} to build the feature type. To be called right after
+     * {@link #open(File)}.
+     */
+    public Geobuf.Data readSample() throws IOException {
+        Geobuf.Data.Builder dataBuilder = Geobuf.Data.newBuilder();
+        dataBuilder.addAllKeys(keys);
+        if (dataType == Geobuf.Data.DataTypeCase.FEATURE_COLLECTION) {
+            Geobuf.Data.FeatureCollection.Builder featureCollectionBuilder = Geobuf.Data.FeatureCollection
+                    .newBuilder();
+            if (next()) {
+                featureCollectionBuilder.addFeatures(Geobuf.Data.Feature.parseFrom(in
+                        .readRawBytes(length)));
+            }
+            dataBuilder.setFeatureCollection(featureCollectionBuilder.build());
+        } else if (dataType == Geobuf.Data.DataTypeCase.FEATURE && next()) {
+            dataBuilder.setFeature(Geobuf.Data.Feature.parseFrom(in.readRawBytes(length)));
+        } else if (dataType == Geobuf.Data.DataTypeCase.GEOMETRY && next()) {
+            dataBuilder.setGeometry(Geobuf.Data.Geometry.parseFrom(in.readRawBytes(length)));
+        }
+        return dataBuilder.build();
+    }
+
+    /**
+     * Reads the geometry of a Feature message, skipping the other fields
+     *
+     * @return The geometry, or null if the feature has none
+     */
+    public Geometry readFeatureGeometry(CodedInputStream in) throws IOException {
+        Geometry geometry = null;
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            if (WireFormat.getTagFieldNumber(tag) == FEATURE_GEOMETRY) {
+                geometry = readGeometryMessage(in);
+            } else {
+                in.skipField(tag);
+            }
+        }
+        return geometry;
+    }
+
+    /**
+     * Reads a length delimited Geometry message
+     */
+    public Geometry readGeometryMessage(CodedInputStream in) throws IOException {
+        int limit = in.pushLimit(in.readRawVarint32());
+        Geometry geometry = readGeometry(in);
+        in.popLimit(limit);
+        return geometry;
+    }
+
+    /**
+     * Reads a length delimited Value message
+     *
+     * @return The value as {@link GeobufFeature} decodes it
+     */
+    public Object readValueMessage(CodedInputStream in) throws IOException {
+        int limit = in.pushLimit(in.readRawVarint32());
+        Object value = null;
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+            case 1:
+            case 6:
+                value = in.readString();
+                break;
+            case 2:
+                value = in.readDouble();
+                break;
+            case 3:
+            case 4:
+                value = in.readUInt64();
+                break;
+            case 5:
+                value = in.readBool();
+                break;
+            default:
+                in.skipField(tag);
+            }
+        }
+        in.popLimit(limit);
+        return value;
+    }
+
+    /**
+     * Reads the fields of a Geometry message, up to the end of the stream or the current limit
+     */
+    public Geometry readGeometry(CodedInputStream in) throws IOException {
+        int type = 0;
+        List<Geometry> geometries = null;
+        coordCount = 0;
+        lengthCount = 0;
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            int field = WireFormat.getTagFieldNumber(tag);
+            boolean packed = WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED;
+            if (field == GEOMETRY_TYPE) {
+                type = in.readEnum();
+            } else if (field == GEOMETRY_LENGTHS && type != COLLECTION) {
+                if (packed) {
+                    int limit = in.pushLimit(in.readRawVarint32());
+                    while (in.getBytesUntilLimit() > 0) {
+                        addLength(in.readUInt32());
+                    }
+                    in.popLimit(limit);
+                } else {
+                    addLength(in.readUInt32());
+                }
+            } else if (field == GEOMETRY_COORDS && type != COLLECTION) {
+                if (packed) {
+                    int limit = in.pushLimit(in.readRawVarint32());
+                    while (in.getBytesUntilLimit() > 0) {
+                        addCoord(in.readSInt64());
+                    }
+                    in.popLimit(limit);
+                } else {
+                    addCoord(in.readSInt64());
+                }
+            } else if (field == GEOMETRY_GEOMETRIES && type == COLLECTION) {
+                if (geometries == null) {
+                    geometries = new ArrayList<Geometry>();
+                }
+                Geometry geometry = readGeometryMessage(in);
+                if (geometry != null && geometry.getClass() == GeometryCollection.class) {
+                    // nested collections are flattened, like GeobufGeometry does
+                    for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                        geometries.add(geometry.getGeometryN(i));
+                    }
+                } else if (geometry != null) {
+                    geometries.add(geometry);
+                }
+            } else {
+                in.skipField(tag);
+            }
+        }
+        return createGeometry(type, geometries);
+    }
+
+    private void addLength(int value) {
+        if (lengthCount == lengths.length) {
+            lengths = Arrays.copyOf(lengths, lengths.length * 2);
+        }
+        lengths[lengthCount++] = value;
+    }
+
+    private void addCoord(long value) {
+        if (coordCount == coords.length) {
+            coords = Arrays.copyOf(coords, coords.length * 2);
+        }
+        coords[coordCount++] = value;
+    }
+
+    private Geometry createGeometry(int type, List<Geometry> geometries) {
+        switch (type) {
+        case Geobuf.Data.Geometry.Type.POINT_VALUE:
+            return geometryFactory.createPoint(sequence(0, 1, false));
+        case Geobuf.Data.Geometry.Type.LINESTRING_VALUE:
+            return geometryFactory.createLineString(sequence(0, coordCount / dimension, false));
+        case Geobuf.Data.Geometry.Type.POLYGON_VALUE:
+            return geometryFactory.createPolygon(geometryFactory.createLinearRing(sequence(0,
+                    coordCount / dimension, true)), null);
+        case Geobuf.Data.Geometry.Type.MULTIPOINT_VALUE:
+            return geometryFactory.createMultiPoint(sequence(0, coordCount / dimension, false));
+        case Geobuf.Data.Geometry.Type.MULTILINESTRING_VALUE: {
+            if (lengthCount == 0) {
+                return geometryFactory.createMultiLineString(new LineString[] { geometryFactory
+                        .createLineString(sequence(0, coordCount / dimension, false)) });
+            }
+            LineString[] lines = new LineString[lengthCount];
+            int start = 0;
+            for (int i = 0; i < lengthCount; i++) {
+                lines[i] = geometryFactory.createLineString(sequence(start, lengths[i], false));
+                start += lengths[i] * dimension;
+            }
+            return geometryFactory.createMultiLineString(lines);
+        }
+        case Geobuf.Data.Geometry.Type.MULTIPOLYGON_VALUE: {
+            if (lengthCount == 0) {
+                LinearRing shell = geometryFactory.createLinearRing(sequence(0, coordCount
+                        / dimension, true));
+                return geometryFactory.createMultiPolygon(new Polygon[] { geometryFactory
+                        .createPolygon(shell, null) });
+            }
+            int l = 0;
+            int numberOfPolygons = lengths[l++];
+            Polygon[] polygons = new Polygon[numberOfPolygons];
+            int start = 0;
+            for (int p = 0; p < numberOfPolygons; p++) {
+                int numberOfRings = lengths[l++];
+                LinearRing[] rings = new LinearRing[numberOfRings];
+                for (int r = 0; r < numberOfRings; r++) {
+                    int numberOfCoordinates = lengths[l++];
+                    rings[r] = geometryFactory.createLinearRing(sequence(start,
+                            numberOfCoordinates, true));
+                    start += numberOfCoordinates * dimension;
+                }
+                polygons[p] = geometryFactory.createPolygon(rings[0],
+                        Arrays.copyOfRange(rings, 1, rings.length));
+            }
+            return geometryFactory.createMultiPolygon(polygons);
+        }
+        case Geobuf.Data.Geometry.Type.GEOMETRYCOLLECTION_VALUE:
+            return geometryFactory.createGeometryCollection(geometries == null ? new Geometry[0]
+                    : geometries.toArray(new Geometry[geometries.size()]));
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Decodes delta encoded coordinates into a packed sequence, closing it when a ring is
+     * required and the first and last coordinates differ.
+     *
+     * @param start Position of the first ordinate in the coordinate buffer
+     * @param count Number of coordinates
+     */
+    private CoordinateSequence sequence(int start, int count, boolean ring) {
+        int size = ring && !isRing(start, count) ? count + 1 : count;
+        double[] ordinates = new double[size * dimension];
+        int c = start;
+        int o = 0;
+        long[] sums = new long[dimension];
+        for (int i = 0; i < count; i++) {
+            for (int k = 0; k < dimension; k++) {
+                sums[k] += coords[c++];
+                ordinates[o++] = sums[k] / maxNumberOfDecimalPlaces;
+            }
+        }
+        if (size > count) {
+            System.arraycopy(ordinates, 0, ordinates, o, dimension);
+        }
+        return new PackedCoordinateSequence.Double(ordinates, dimension);
+    }
+
+    /**
+     * Same as {@link com.vividsolutions.jts.geom.CoordinateArrays#isRing} on the encoded
+     * coordinates: the deltas after the first coordinate sum up to zero when the first and last
+     * coordinates are equal
+     */
+    private boolean isRing(int start, int count) {
+        if (count < 4) {
+            return false;
+        }
+        long dx = 0;
+        long dy = 0;
+        for (int c = start + dimension; c < start + count * dimension; c += dimension) {
+            dx += coords[c];
+            dy += coords[c + 1];
+        }
+        return dx == 0 && dy == 0;
+    }
+}
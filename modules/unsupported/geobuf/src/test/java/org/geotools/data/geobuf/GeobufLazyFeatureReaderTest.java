@@ -0,0 +1,228 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.geobuf;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequence;
+import org.geotools.data.DataStore;
+import org.geotools.data.DataStoreFinder;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.Query;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.data.simple.SimpleFeatureStore;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+
+import java.io.File;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class GeobufLazyFeatureReaderTest {
+
+    private static final String[] NAMES = {"points", "lines", "polygons", "multipoints", "multilinestrings",
+            "multipolygons", "geometrycollections"};
+
+    private final FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File getFile(String name) {
+        return DataUtilities.urlToFile(getClass().getClassLoader().getResource("org/geotools/data/geobuf/" + name + ".pbf"));
+    }
+
+    private File copy(String name) throws Exception {
+        File file = new File(temporaryFolder.getRoot(), name + ".pbf");
+        Files.copy(getFile(name).toPath(), file.toPath());
+        return file;
+    }
+
+    private DataStore getDataStore(File file, boolean lazy, boolean index) throws Exception {
+        Map<String, Serializable> params = new HashMap<>();
+        params.put("file", file);
+        params.put("lazy", lazy);
+        params.put("index", index);
+        return DataStoreFinder.getDataStore(params);
+    }
+
+    private List<SimpleFeature> read(SimpleFeatureCollection featureCollection) {
+        List<SimpleFeature> features = new ArrayList<>();
+        SimpleFeatureIterator it = featureCollection.features();
+        try {
+            while (it.hasNext()) {
+                features.add(it.next());
+            }
+        } finally {
+            it.close();
+        }
+        return features;
+    }
+
+    @Test
+    public void readSameFeatures() throws Exception {
+        for (String name : NAMES) {
+            File file = getFile(name);
+            DataStore store = getDataStore(file, false, false);
+            DataStore lazyStore = getDataStore(file, true, false);
+            SimpleFeatureSource featureSource = store.getFeatureSource(name);
+            SimpleFeatureSource lazySource = lazyStore.getFeatureSource(name);
+            assertEquals(featureSource.getSchema(), lazySource.getSchema());
+            assertEquals(featureSource.getCount(Query.ALL), lazySource.getCount(Query.ALL));
+            assertEquals(featureSource.getBounds(), lazySource.getBounds());
+
+            List<SimpleFeature> features = read(featureSource.getFeatures());
+            List<SimpleFeature> lazyFeatures = read(lazySource.getFeatures());
+            assertEquals(features.size(), lazyFeatures.size());
+            for (int i = 0; i < features.size(); i++) {
+                SimpleFeature feature = features.get(i);
+                SimpleFeature lazyFeature = lazyFeatures.get(i);
+                assertEquals(feature.getID(), lazyFeature.getID());
+                assertEquals(feature.getAttributes().size(), lazyFeature.getAttributeCount());
+                Geometry geometry = (Geometry) feature.getDefaultGeometry();
+                Geometry lazyGeometry = (Geometry) lazyFeature.getDefaultGeometry();
+                assertTrue(name, geometry.equalsExact(lazyGeometry));
+                for (int j = 1; j < feature.getAttributeCount(); j++) {
+                    assertEquals(feature.getAttribute(j), lazyFeature.getAttribute(j));
+                }
+            }
+            store.dispose();
+            lazyStore.dispose();
+        }
+    }
+
+    @Test
+    public void packedCoordinates() throws Exception {
+        DataStore store = getDataStore(getFile("lines"), true, false);
+        SimpleFeatureSource featureSource = store.getFeatureSource("lines");
+        SimpleFeature feature = read(featureSource.getFeatures()).get(0);
+        Geometry geometry = (Geometry) feature.getDefaultGeometry();
+        assertTrue(geometry.getFactory().getCoordinateSequenceFactory().create(new Coordinate[0])
+                instanceof PackedCoordinateSequence);
+        store.dispose();
+    }
+
+    @Test
+    public void readProperties() throws Exception {
+        DataStore store = getDataStore(getFile("points"), true, false);
+        SimpleFeatureSource featureSource = store.getFeatureSource("points");
+        Query query = new Query("points", Filter.INCLUDE, new String[]{"name"});
+        List<SimpleFeature> features = read(featureSource.getFeatures(query));
+        assertEquals(2, features.size());
+        assertEquals(1, features.get(0).getAttributeCount());
+        assertEquals("number 1", features.get(0).getAttribute("name"));
+        assertEquals("number 2", features.get(1).getAttribute("name"));
+
+        // the filter properties are decoded too
+        query = new Query("points", ff.equals(ff.property("id"), ff.literal(2)), new String[]{"name"});
+        features = read(featureSource.getFeatures(query));
+        assertEquals(1, features.size());
+        assertEquals("number 2", features.get(0).getAttribute("name"));
+        store.dispose();
+    }
+
+    @Test
+    public void readFiltered() throws Exception {
+        for (boolean index : new boolean[]{false, true}) {
+            File file = copy("polygons");
+            DataStore store = getDataStore(file, true, index);
+            SimpleFeatureSource featureSource = store.getFeatureSource("polygons");
+
+            Filter bbox = ff.bbox("geom", 10, 60, 30, 70, null);
+            List<SimpleFeature> features = read(featureSource.getFeatures(bbox));
+            assertEquals(1, features.size());
+            assertEquals("2", features.get(0).getID());
+            assertEquals("name 3", features.get(0).getAttribute("name"));
+
+            Filter ids = ff.id(Collections.singleton(ff.featureId("3")));
+            features = read(featureSource.getFeatures(ids));
+            assertEquals(1, features.size());
+            assertEquals("name 4", features.get(0).getAttribute("name"));
+
+            assertEquals(1, featureSource.getFeatures(bbox).size());
+            assertEquals(index, GeobufIndex.getIndexFile(file).exists());
+            store.dispose();
+            file.delete();
+            GeobufIndex.getIndexFile(file).delete();
+        }
+    }
+
+    @Test
+    public void boundsWithoutGeometries() throws Exception {
+        for (boolean index : new boolean[]{false, true}) {
+            File file = temporaryFolder.newFile("nogeom.pbf");
+            DataStore store = getDataStore(file, true, index);
+            SimpleFeatureType featureType = DataUtilities.createType("nogeom", "geom:Point,name:String");
+            store.createSchema(featureType);
+            SimpleFeatureStore featureStore = (SimpleFeatureStore) store.getFeatureSource("nogeom");
+            SimpleFeature feature = SimpleFeatureBuilder.build(featureType, new Object[]{null, "none"}, null);
+            featureStore.addFeatures(DataUtilities.collection(feature));
+            assertEquals(1, featureStore.getCount(Query.ALL));
+            assertTrue(featureStore.getBounds().isNull());
+            assertEquals(index, GeobufIndex.getIndexFile(file).exists());
+            store.dispose();
+            file.delete();
+            GeobufIndex.getIndexFile(file).delete();
+        }
+    }
+
+    @Test
+    public void index() throws Exception {
+        File file = copy("points");
+        DataStore store = getDataStore(file, true, true);
+        SimpleFeatureStore featureStore = (SimpleFeatureStore) store.getFeatureSource("points");
+        assertEquals(2, featureStore.getCount(Query.ALL));
+        File indexFile = GeobufIndex.getIndexFile(file);
+        assertTrue(indexFile.exists());
+
+        GeobufIndex index = GeobufIndex.read(file);
+        assertNotNull(index);
+        assertEquals(2, index.size());
+        assertEquals(-92.460937, index.getBounds().getMinX(), 1e-9);
+        assertEquals(49.61071, index.getBounds().getMaxY(), 1e-9);
+        assertArrayEquals(new int[]{1}, index.select(ff.bbox("geom", -100, 30, -80, 45, null)));
+
+        // writing invalidates the index
+        SimpleFeature feature = SimpleFeatureBuilder.build(featureStore.getSchema(), new Object[]{
+                JTSFactoryFinder.getGeometryFactory().createPoint(new Coordinate(1, 2)), 3, "number 3"}, null);
+        featureStore.addFeatures(DataUtilities.collection(feature));
+        assertNull(GeobufIndex.read(file));
+        assertEquals(3, featureStore.getCount(Query.ALL));
+        assertEquals(3, GeobufIndex.read(file).size());
+        List<SimpleFeature> features = read(featureStore.getFeatures(ff.bbox("geom", 0, 0, 5, 5, null)));
+        assertEquals(1, features.size());
+        assertEquals("2", features.get(0).getID());
+        store.dispose();
+    }
+}
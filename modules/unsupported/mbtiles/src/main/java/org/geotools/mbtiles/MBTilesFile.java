@@ -295,6 +295,18 @@ public class MBTilesFile implements AutoCloseable {
         }
     }
 
+    /**
+     * Returns a writer for bulk loading tiles.
+     * <p>
+     * The writer is thread safe, tiles are written in batches by a single background thread,
+     * which makes it much faster than {@link #saveTile(MBTilesTile)} when storing a large number
+     * of tiles. The writer must be closed when done.
+     * </p>
+     */
+    public MBTilesTileWriter bulkWriter() {
+        return new MBTilesTileWriter(this);
+    }
+
     /**
      * Store a grid
      * 
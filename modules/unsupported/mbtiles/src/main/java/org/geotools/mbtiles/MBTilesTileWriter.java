@@ -0,0 +1,106 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.mbtiles;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.geotools.sql.BatchWriter;
+
+/**
+ * Bulk tile writer for a {@link MBTilesFile}, obtained with {@link MBTilesFile#bulkWriter()}.
+ * <p>
+ * Tiles can be written concurrently by several producers, they are inserted by a single thread
+ * reusing the same prepared statement, in large transactions. During the load the database
+ * synchronization is turned off and the rollback journal is kept in memory (or disabled, if the
+ * file was opened with journal disabled). The min and max zoom metadata are updated once, when
+ * the writer is closed.
+ * </p>
+ * <p>
+ * Unlike {@link MBTilesFile#saveTile(MBTilesTile)} tiles without data are not supported.
+ * </p>
+ */
+public class MBTilesTileWriter extends BatchWriter<MBTilesTile> {
+
+    final MBTilesFile file;
+
+    String synchronous;
+
+    String journalMode;
+
+    MBTilesTileWriter(MBTilesFile file) {
+        super(file.connPool, format("INSERT OR REPLACE INTO %s VALUES (?,?,?,?)",
+                file.TABLE_TILES));
+        this.file = file;
+    }
+
+    @Override
+    public void write(MBTilesTile tile) throws IOException {
+        if (tile != null && tile.getData() == null) {
+            throw new IllegalArgumentException("Bulk writer does not support tiles without data");
+        }
+        super.write(tile);
+    }
+
+    @Override
+    protected void bind(PreparedStatement ps, MBTilesTile tile) throws SQLException {
+        ps.setLong(1, tile.getZoomLevel());
+        ps.setLong(2, tile.getTileColumn());
+        ps.setLong(3, tile.getTileRow());
+        ps.setBytes(4, tile.getData());
+    }
+
+    @Override
+    protected void beforeLoad(Connection cx) throws SQLException {
+        synchronous = queryValue(cx, "PRAGMA synchronous");
+        journalMode = queryValue(cx, "PRAGMA journal_mode");
+        execute(cx, "PRAGMA synchronous=OFF");
+        execute(cx, file.disableJournal ? MBTilesFile.PRAGMA_JOURNAL_MODE_OFF
+                : "PRAGMA journal_mode=MEMORY");
+    }
+
+    @Override
+    protected void afterLoad(Connection cx) throws SQLException {
+        execute(cx, "PRAGMA synchronous=" + synchronous);
+        if (!file.disableJournal) {
+            execute(cx, "PRAGMA journal_mode=" + journalMode);
+        }
+        if (getCount() > 0) {
+            Statement st = cx.createStatement();
+            try {
+                ResultSet rs = st.executeQuery(format(
+                        "SELECT MIN(zoom_level), MAX(zoom_level) FROM %s", file.TABLE_TILES));
+                try {
+                    if (rs.next()) {
+                        file.saveMetaDataEntry(file.MD_MINZOOM, rs.getString(1), cx);
+                        file.saveMetaDataEntry(file.MD_MAXZOOM, rs.getString(2), cx);
+                    }
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                st.close();
+            }
+        }
+    }
+}
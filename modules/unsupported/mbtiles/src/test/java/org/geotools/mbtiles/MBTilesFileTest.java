@@ -8,7 +8,13 @@ import static org.junit.Assert.assertTrue;
 import java.io.File;
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -163,6 +169,51 @@ public class MBTilesFileTest {
         file.close();   
     }
     
+    @Test
+    public void testMBTilesBulkWriter() throws Exception {
+        final MBTilesFile file = new MBTilesFile();
+        file.init();
+
+        final MBTilesTileWriter writer = file.bulkWriter();
+        writer.setBatchSize(7);
+        writer.setCommitSize(50);
+
+        // several producers, one per zoom level
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int z = 2; z < 6; z++) {
+            final int zoom = z;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (int i = 0; i < 100; i++) {
+                        MBTilesTile tile = new MBTilesTile(zoom, i % 10, i / 10);
+                        tile.setData(("tile " + zoom + "/" + i).getBytes());
+                        writer.write(tile);
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        writer.close();
+
+        assertEquals(400, writer.getCount());
+        assertEquals(400, file.numberOfTiles());
+        assertEquals(100, file.numberOfTiles(3));
+        assertTrue(Arrays.equals("tile 4/23".getBytes(), file.loadTile(4, 3, 2).getData()));
+
+        // zoom levels are updated once at the end
+        MBTilesMetadata metadata = file.loadMetaData();
+        assertEquals(2, metadata.getMinZoom());
+        assertEquals(5, metadata.getMaxZoom());
+
+        file.close();
+    }
+
     @Test
     public void testMBTilesGrid() throws IOException, SQLException {
         
@@ -0,0 +1,692 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.tile.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.imageio.ImageIO;
+
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.tile.ImageLoader;
+import org.geotools.tile.Tile;
+import org.geotools.tile.TileFactory;
+import org.geotools.tile.TileService;
+import org.geotools.tile.impl.ZoomLevel;
+import org.geotools.util.logging.Logging;
+
+/**
+ * <p>
+ * A two tiered tile image cache. Decoded images are kept in a heap cache, the
+ * least recently used ones being dropped when the images exceed the memory
+ * budget. The encoded bytes, as downloaded, are kept in a disk cache, again
+ * dropping the least recently used files when the directory exceeds its size
+ * limit. The disk cache is optional and survives restarts.
+ * </p>
+ * <p>
+ * Concurrent requests for the same tile are coalesced, only one of them hits
+ * the disk or the network and the others wait for its result. Visible tiles
+ * can be loaded concurrently with {@link #loadImages(Collection)}, and the
+ * neighbours and the next zoom level of a set of tiles can be loaded in the
+ * background with {@link #prefetch(Collection, TileService)}. Prefetching runs
+ * on a bounded queue, the oldest requests are dropped when the user moves
+ * faster than the tiles are loaded.
+ * </p>
+ * <p>
+ * Plug the cache into tiles with {@link Tile#setImageLoader(ImageLoader)}, or
+ * into a {@link TileLayer} with {@link TileLayer#setTileCache(TileCache)}.
+ * Remember some tile services do not allow their tiles to be stored locally.
+ * </p>
+ *
+ * @since 18
+ * @source $URL$
+ */
+public class TileCache implements ImageLoader {
+
+    private static final Logger LOGGER = Logging.getLogger(TileCache.class
+            .getPackage().getName());
+
+    /** Default heap budget for decoded images, 64MB */
+    public static final long DEFAULT_MEMORY_SIZE = 64 * 1024 * 1024;
+
+    /** Default disk budget for encoded tiles, 256MB */
+    public static final long DEFAULT_DISK_SIZE = 256 * 1024 * 1024;
+
+    /** Default number of threads loading tiles */
+    public static final int DEFAULT_THREADS = 4;
+
+    /** Default number of queued prefetch requests */
+    public static final int DEFAULT_PREFETCH_QUEUE = 256;
+
+    static final String EXTENSION = ".tile";
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final File cacheDirectory;
+
+    private final long maxMemory;
+
+    private final long maxDiskSize;
+
+    /** Decoded images, in access order */
+    private final LinkedHashMap<String, BufferedImage> images = new LinkedHashMap<String, BufferedImage>(
+            16, 0.75f, true);
+
+    private long memoryUsage;
+
+    /** Sizes of the files in the disk cache, by file name, in access order */
+    private final LinkedHashMap<String, Long> files = new LinkedHashMap<String, Long>(
+            16, 0.75f, true);
+
+    private long diskUsage;
+
+    private final ConcurrentHashMap<String, FutureTask<BufferedImage>> loading = new ConcurrentHashMap<String, FutureTask<BufferedImage>>();
+
+    private final ExecutorService loader;
+
+    private final ThreadPoolExecutor prefetcher;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+
+    private final AtomicLong diskHits = new AtomicLong();
+
+    private final AtomicLong downloads = new AtomicLong();
+
+    private volatile boolean disposed;
+
+    /**
+     * Creates a cache with the default memory and disk budgets.
+     *
+     * @param cacheDirectory the directory of the disk cache, or null to only
+     *        cache in memory
+     */
+    public TileCache(File cacheDirectory) {
+        this(cacheDirectory, DEFAULT_MEMORY_SIZE, DEFAULT_DISK_SIZE,
+                DEFAULT_THREADS, DEFAULT_PREFETCH_QUEUE);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param cacheDirectory the directory of the disk cache, or null to only
+     *        cache in memory
+     * @param maxMemory the maximum size of the decoded images, in bytes
+     * @param maxDiskSize the maximum size of the disk cache, in bytes
+     * @param threads the number of threads loading the tiles, and the number
+     *        of threads prefetching them
+     * @param prefetchQueue the maximum number of queued prefetch requests
+     */
+    public TileCache(File cacheDirectory, long maxMemory, long maxDiskSize,
+            int threads, int prefetchQueue) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be >= 1");
+        }
+        this.cacheDirectory = cacheDirectory;
+        this.maxMemory = maxMemory;
+        this.maxDiskSize = maxDiskSize;
+        if (cacheDirectory != null) {
+            if (!cacheDirectory.isDirectory() && !cacheDirectory.mkdirs()) {
+                throw new IllegalArgumentException("Cannot create directory "
+                        + cacheDirectory);
+            }
+            scanDirectory();
+        }
+        this.loader = Executors.newFixedThreadPool(threads,
+                new DaemonThreadFactory("tile-loader"));
+        this.prefetcher = new ThreadPoolExecutor(threads, threads, 30,
+                TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(
+                        prefetchQueue), new DaemonThreadFactory(
+                        "tile-prefetcher"),
+                new ThreadPoolExecutor.DiscardOldestPolicy());
+        this.prefetcher.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Picks up the files left by a previous session, oldest first.
+     */
+    private void scanDirectory() {
+        File[] cached = cacheDirectory.listFiles();
+        if (cached == null) {
+            return;
+        }
+        Arrays.sort(cached, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                return Long.compare(f1.lastModified(), f2.lastModified());
+            }
+        });
+        synchronized (files) {
+            for (File file : cached) {
+                String name = file.getName();
+                if (file.isFile() && name.endsWith(EXTENSION)) {
+                    files.put(
+                            name.substring(0,
+                                    name.length() - EXTENSION.length()),
+                            file.length());
+                    diskUsage += file.length();
+                }
+            }
+        }
+        evictFiles();
+    }
+
+    @Override
+    public BufferedImage loadImageTileImage(Tile tile) throws IOException {
+        final String key = tile.getId();
+        BufferedImage image = getFromMemory(key);
+        if (image != null) {
+            memoryHits.incrementAndGet();
+            return image;
+        }
+
+        FutureTask<BufferedImage> task = new FutureTask<BufferedImage>(
+                new TileLoad(tile));
+        FutureTask<BufferedImage> running = loading.putIfAbsent(key, task);
+        if (running == null) {
+            try {
+                task.run();
+            } finally {
+                loading.remove(key, task);
+            }
+            running = task;
+        }
+        return get(running, tile);
+    }
+
+    private BufferedImage get(Future<BufferedImage> future, Tile tile)
+            throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading " + tile.getId(),
+                    e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to load " + tile.getId(), cause);
+        }
+    }
+
+    /**
+     * Loads a tile image from the disk cache or the network, and caches it.
+     */
+    private class TileLoad implements Callable<BufferedImage> {
+
+        private final Tile tile;
+
+        TileLoad(Tile tile) {
+            this.tile = tile;
+        }
+
+        @Override
+        public BufferedImage call() throws IOException {
+            String key = tile.getId();
+            // might have been loaded while we were waiting
+            BufferedImage image = getFromMemory(key);
+            if (image != null) {
+                memoryHits.incrementAndGet();
+                return image;
+            }
+            byte[] bytes = readFromDisk(key);
+            if (bytes != null) {
+                diskHits.incrementAndGet();
+            } else {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine("Loading " + key + " from " + tile.getUrl());
+                }
+                bytes = download(tile);
+                downloads.incrementAndGet();
+            }
+            image = ImageIO.read(new ByteArrayInputStream(bytes));
+            if (image == null) {
+                throw new IOException("Unsupported image format for tile "
+                        + key + " at " + tile.getUrl());
+            }
+            writeToDisk(key, bytes);
+            putInMemory(key, image);
+            return image;
+        }
+    }
+
+    private byte[] download(Tile tile) throws IOException {
+        InputStream in = tile.getUrl().openStream();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Loads the images of the tiles concurrently, and waits for all of them.
+     * Tiles failing to load get their error image, as with
+     * {@link Tile#getBufferedImage()}.
+     *
+     * @throws IllegalStateException if the cache has been disposed
+     */
+    public void loadImages(Collection<Tile> tiles) {
+        checkNotDisposed();
+        List<Future<?>> futures = new ArrayList<Future<?>>(tiles.size());
+        for (final Tile tile : tiles) {
+            tile.setImageLoader(this);
+            futures.add(loader.submit(new Runnable() {
+                @Override
+                public void run() {
+                    tile.getBufferedImage();
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.WARNING, "Failed to load tiles", e.getCause());
+        }
+    }
+
+    /**
+     * Loads in the background the tiles around the given ones, and the tiles
+     * of the next zoom level covering them, so that panning and zooming in
+     * find them in the cache. Tiles already in memory are skipped.
+     *
+     * @param tiles the visible tiles, all at the same zoom level
+     * @param service the service the tiles belong to
+     * @throws IllegalStateException if the cache has been disposed
+     */
+    public void prefetch(Collection<Tile> tiles, TileService service) {
+        checkNotDisposed();
+        if (tiles.isEmpty()) {
+            return;
+        }
+        Set<String> visible = new LinkedHashSet<String>();
+        for (Tile tile : tiles) {
+            visible.add(tile.getId());
+        }
+
+        TileFactory factory = service.getTileFactory();
+        Map<String, Tile> targets = new LinkedHashMap<String, Tile>();
+        // neighbours first, then the next zoom level
+        for (Tile tile : tiles) {
+            ReferencedEnvelope extent = tile.getExtent();
+            double dx = extent.getWidth() / 100;
+            double dy = extent.getHeight() / 100;
+            ZoomLevel zoomLevel = tile.getTileIdentifier().getZoomLevel();
+            addTarget(targets, visible, factory.findTileAtCoordinate(
+                    extent.getMinX() - dx, extent.getMedian(1), zoomLevel,
+                    service));
+            addTarget(targets, visible, factory.findTileAtCoordinate(
+                    extent.getMaxX() + dx, extent.getMedian(1), zoomLevel,
+                    service));
+            addTarget(targets, visible, factory.findTileAtCoordinate(
+                    extent.getMedian(0), extent.getMaxY() + dy, zoomLevel,
+                    service));
+            addTarget(targets, visible, factory.findTileAtCoordinate(
+                    extent.getMedian(0), extent.getMinY() - dy, zoomLevel,
+                    service));
+        }
+        for (Tile tile : tiles) {
+            int z = tile.getTileIdentifier().getZ() + 1;
+            if (z > service.getMaxZoomLevel()) {
+                continue;
+            }
+            ZoomLevel zoomLevel = factory.getZoomLevel(z, service);
+            ReferencedEnvelope extent = tile.getExtent();
+            double[] xs = {
+                    extent.getMinX() + extent.getWidth() / 4,
+                    extent.getMaxX() - extent.getWidth() / 4 };
+            double[] ys = {
+                    extent.getMaxY() - extent.getHeight() / 4,
+                    extent.getMinY() + extent.getHeight() / 4 };
+            for (double y : ys) {
+                for (double x : xs) {
+                    addTarget(targets, visible,
+                            factory.findTileAtCoordinate(x, y, zoomLevel,
+                                    service));
+                }
+            }
+        }
+
+        for (final Tile tile : targets.values()) {
+            prefetcher.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (isInMemory(tile.getId())) {
+                        return;
+                    }
+                    try {
+                        loadImageTileImage(tile);
+                    } catch (IOException e) {
+                        LOGGER.log(Level.FINE, "Failed to prefetch "
+                                + tile.getId(), e);
+                    }
+                }
+            });
+        }
+    }
+
+    private void addTarget(Map<String, Tile> targets, Set<String> visible,
+            Tile tile) {
+        String key = tile.getId();
+        if (!visible.contains(key) && !targets.containsKey(key)
+                && !isInMemory(key)) {
+            targets.put(key, tile);
+        }
+    }
+
+    // memory tier
+
+    private BufferedImage getFromMemory(String key) {
+        synchronized (images) {
+            return images.get(key);
+        }
+    }
+
+    /**
+     * Returns true if the image of the tile with the given id is in memory.
+     */
+    public boolean isInMemory(String tileId) {
+        synchronized (images) {
+            return images.containsKey(tileId);
+        }
+    }
+
+    private void putInMemory(String key, BufferedImage image) {
+        long size = estimateSize(image);
+        if (size > maxMemory) {
+            return;
+        }
+        synchronized (images) {
+            BufferedImage previous = images.put(key, image);
+            if (previous != null) {
+                memoryUsage -= estimateSize(previous);
+            }
+            memoryUsage += size;
+            Iterator<BufferedImage> it = images.values().iterator();
+            while (memoryUsage > maxMemory && it.hasNext()) {
+                memoryUsage -= estimateSize(it.next());
+                it.remove();
+            }
+        }
+    }
+
+    static long estimateSize(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks()
+                * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    /**
+     * Drops all the decoded images, the disk cache is left untouched.
+     */
+    public void clearMemory() {
+        synchronized (images) {
+            images.clear();
+            memoryUsage = 0;
+        }
+    }
+
+    // disk tier
+
+    /**
+     * Turns a tile id into a safe file name, keeping letters, digits, dots,
+     * dashes and underscores, and escaping the other characters as %XX
+     * sequences of their UTF-8 bytes, so that different ids never map to the
+     * same file and no id can point outside of the cache directory.
+     */
+    static String toFileName(String key) {
+        StringBuilder sb = new StringBuilder(key.length());
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                    || (c >= '0' && c <= '9') || c == '.' || c == '-'
+                    || c == '_') {
+                sb.append(c);
+            } else {
+                sb.append('%').append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            }
+        }
+        return sb.toString();
+    }
+
+    private File getFile(String name) {
+        return new File(cacheDirectory, name + EXTENSION);
+    }
+
+    private byte[] readFromDisk(String key) throws IOException {
+        if (cacheDirectory == null) {
+            return null;
+        }
+        String name = toFileName(key);
+        synchronized (files) {
+            if (files.get(name) == null) {
+                return null;
+            }
+        }
+        File file = getFile(name);
+        byte[] bytes;
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                bytes = new byte[(int) file.length()];
+                int offset = 0;
+                int read;
+                while (offset < bytes.length
+                        && (read = in.read(bytes, offset, bytes.length
+                                - offset)) != -1) {
+                    offset += read;
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            // removed behind our back
+            LOGGER.log(Level.FINE, "Failed to read " + file, e);
+            removeFile(name);
+            return null;
+        }
+        // keep the access order across sessions
+        file.setLastModified(System.currentTimeMillis());
+        return bytes;
+    }
+
+    private void writeToDisk(String key, byte[] bytes) {
+        if (cacheDirectory == null || bytes.length > maxDiskSize) {
+            return;
+        }
+        String name = toFileName(key);
+        synchronized (files) {
+            if (files.containsKey(name)) {
+                return;
+            }
+        }
+        File file = getFile(name);
+        try {
+            File temp = File.createTempFile("tile", ".tmp", cacheDirectory);
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(bytes);
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(file)) {
+                file.delete();
+                if (!temp.renameTo(file)) {
+                    temp.delete();
+                    throw new IOException("Cannot rename " + temp + " to "
+                            + file);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to cache tile " + key, e);
+            return;
+        }
+        synchronized (files) {
+            Long previous = files.put(name, (long) bytes.length);
+            if (previous != null) {
+                diskUsage -= previous;
+            }
+            diskUsage += bytes.length;
+        }
+        evictFiles();
+    }
+
+    private void removeFile(String name) {
+        synchronized (files) {
+            Long size = files.remove(name);
+            if (size != null) {
+                diskUsage -= size;
+            }
+        }
+    }
+
+    private void evictFiles() {
+        synchronized (files) {
+            Iterator<Map.Entry<String, Long>> it = files.entrySet().iterator();
+            while (diskUsage > maxDiskSize && it.hasNext()) {
+                Map.Entry<String, Long> entry = it.next();
+                getFile(entry.getKey()).delete();
+                diskUsage -= entry.getValue();
+                it.remove();
+            }
+        }
+    }
+
+    // statistics
+
+    /**
+     * @return the estimated size of the decoded images in memory, in bytes
+     */
+    public long getMemoryUsage() {
+        synchronized (images) {
+            return memoryUsage;
+        }
+    }
+
+    /**
+     * @return the size of the disk cache, in bytes
+     */
+    public long getDiskUsage() {
+        synchronized (files) {
+            return diskUsage;
+        }
+    }
+
+    /**
+     * @return the number of images found in memory
+     */
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    /**
+     * @return the number of images found on disk
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    /**
+     * @return the number of images downloaded from the tile service
+     */
+    public long getDownloads() {
+        return downloads.get();
+    }
+
+    /**
+     * Stops the loading and prefetching threads. Afterwards the cache can
+     * only load tiles one by one, as the {@link ImageLoader} of a tile,
+     * {@link #loadImages(Collection)} and
+     * {@link #prefetch(Collection, TileService)} throw an
+     * {@link IllegalStateException}.
+     */
+    public void dispose() {
+        disposed = true;
+        loader.shutdownNow();
+        prefetcher.shutdownNow();
+    }
+
+    private void checkNotDisposed() {
+        if (disposed) {
+            throw new IllegalStateException("The tile cache has been disposed");
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + "-"
+                    + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -64,11 +64,33 @@ public class TileLayer extends DirectLayer {
 
     private GridCoverage2D coverage;
 
+    private TileCache tileCache;
+
     public TileLayer(TileService service) {
         super();
         this.service = service;
     }
 
+    public TileLayer(TileService service, TileCache tileCache) {
+        this(service);
+        this.tileCache = tileCache;
+    }
+
+    public TileCache getTileCache() {
+        return this.tileCache;
+    }
+
+    /**
+     * Sets the cache used to load the tile images. When set, the visible tiles
+     * are loaded concurrently and the surrounding ones are prefetched after
+     * each drawing.
+     *
+     * @param tileCache the cache, or null to load the tiles one by one
+     */
+    public void setTileCache(TileCache tileCache) {
+        this.tileCache = tileCache;
+    }
+
     public GridCoverage2D getCoverage() {
         return this.coverage;
     }
@@ -95,7 +117,13 @@ public class TileLayer extends DirectLayer {
         BufferedImage mosaickedImage = createImage(viewport.getScreenArea());
         Graphics2D g2d = mosaickedImage.createGraphics();
         long t = System.currentTimeMillis();
+        if (tileCache != null) {
+            tileCache.loadImages(tiles);
+        }
         renderTiles(tiles, g2d, viewportExtent, viewport.getWorldToScreen());
+        if (tileCache != null) {
+            tileCache.prefetch(tiles, service);
+        }
 
         // System.out.println("Sync: " + (System.currentTimeMillis() - t));
 
@@ -0,0 +1,296 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2017, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.tile.util;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import org.geotools.tile.Tile;
+import org.geotools.tile.TileService;
+import org.geotools.tile.impl.WebMercatorZoomLevel;
+import org.geotools.tile.impl.osm.OSMService;
+import org.geotools.tile.impl.osm.OSMTile;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class TileCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+
+    private TileService service;
+
+    private byte[] png;
+
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<String, AtomicInteger>();
+
+    private volatile CountDownLatch gate;
+
+    private final List<TileCache> caches = new ArrayList<TileCache>();
+
+    @Before
+    public void setUp() throws IOException {
+        BufferedImage image = new BufferedImage(256, 256,
+                BufferedImage.TYPE_INT_ARGB);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", bytes);
+        png = bytes.toByteArray();
+
+        // a local stand in for the tile server
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                AtomicInteger count = new AtomicInteger();
+                AtomicInteger previous = requests.putIfAbsent(path, count);
+                (previous != null ? previous : count).incrementAndGet();
+                CountDownLatch latch = gate;
+                if (latch != null) {
+                    try {
+                        latch.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                exchange.getResponseHeaders().set("Content-Type", "image/png");
+                exchange.sendResponseHeaders(200, png.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(png);
+                out.close();
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        service = new OSMService("Test", "http://localhost:"
+                + server.getAddress().getPort() + "/");
+    }
+
+    @After
+    public void tearDown() {
+        for (TileCache cache : caches) {
+            cache.dispose();
+        }
+        server.stop(0);
+    }
+
+    private TileCache cache(File directory, long maxMemory, long maxDiskSize) {
+        TileCache cache = new TileCache(directory, maxMemory, maxDiskSize, 4,
+                100);
+        caches.add(cache);
+        return cache;
+    }
+
+    private Tile tile(int z, int x, int y) {
+        return new OSMTile(x, y, new WebMercatorZoomLevel(z), service);
+    }
+
+    private int requests(String path) {
+        AtomicInteger count = requests.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    private int totalRequests() {
+        int total = 0;
+        for (AtomicInteger count : requests.values()) {
+            total += count.get();
+        }
+        return total;
+    }
+
+    @Test
+    public void testMemoryAndDisk() throws Exception {
+        File directory = folder.newFolder("tiles");
+        TileCache cache = cache(directory, TileCache.DEFAULT_MEMORY_SIZE,
+                TileCache.DEFAULT_DISK_SIZE);
+
+        BufferedImage image = cache.loadImageTileImage(tile(5, 16, 10));
+        Assert.assertEquals(256, image.getWidth());
+        Assert.assertSame(image, cache.loadImageTileImage(tile(5, 16, 10)));
+        Assert.assertEquals(1, cache.getDownloads());
+        Assert.assertEquals(1, cache.getMemoryHits());
+        Assert.assertEquals(png.length, cache.getDiskUsage());
+
+        // a new cache on the same directory finds the tile on disk
+        TileCache other = cache(directory, TileCache.DEFAULT_MEMORY_SIZE,
+                TileCache.DEFAULT_DISK_SIZE);
+        Assert.assertEquals(png.length, other.getDiskUsage());
+        other.loadImageTileImage(tile(5, 16, 10));
+        Assert.assertEquals(0, other.getDownloads());
+        Assert.assertEquals(1, other.getDiskHits());
+        Assert.assertEquals(1, requests("/5/16/10.png"));
+    }
+
+    @Test
+    public void testLimits() throws Exception {
+        File directory = folder.newFolder("tiles");
+        long imageSize = 256 * 256 * 4;
+        TileCache cache = cache(directory, imageSize * 2, png.length * 2);
+
+        for (int x = 0; x < 4; x++) {
+            cache.loadImageTileImage(tile(5, x, 10));
+        }
+        Assert.assertEquals(imageSize * 2, cache.getMemoryUsage());
+        Assert.assertFalse(cache.isInMemory(tile(5, 0, 10).getId()));
+        Assert.assertTrue(cache.isInMemory(tile(5, 3, 10).getId()));
+
+        Assert.assertEquals(png.length * 2, cache.getDiskUsage());
+        Assert.assertEquals(2, directory.list().length);
+
+        // the least recently used tile is gone from both tiers
+        cache.clearMemory();
+        cache.loadImageTileImage(tile(5, 0, 10));
+        Assert.assertEquals(2, requests("/5/0/10.png"));
+        cache.loadImageTileImage(tile(5, 3, 10));
+        Assert.assertEquals(1, requests("/5/3/10.png"));
+        Assert.assertEquals(1, cache.getDiskHits());
+    }
+
+    @Test
+    public void testConcurrentRequestsCoalesced() throws Exception {
+        final TileCache cache = cache(null, TileCache.DEFAULT_MEMORY_SIZE,
+                TileCache.DEFAULT_DISK_SIZE);
+        gate = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<BufferedImage>> futures = new ArrayList<Future<BufferedImage>>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<BufferedImage>() {
+                    @Override
+                    public BufferedImage call() throws Exception {
+                        return cache.loadImageTileImage(tile(7, 64, 40));
+                    }
+                }));
+            }
+            // wait for the first request to reach the server, then release it
+            long timeout = System.currentTimeMillis() + 10000;
+            while (requests("/7/64/40.png") == 0
+                    && System.currentTimeMillis() < timeout) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(100);
+            gate.countDown();
+
+            BufferedImage image = futures.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<BufferedImage> future : futures) {
+                Assert.assertSame(image, future.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(1, requests("/7/64/40.png"));
+        Assert.assertEquals(1, cache.getDownloads());
+    }
+
+    @Test
+    public void testLoadImagesAndPrefetch() throws Exception {
+        TileCache cache = cache(folder.newFolder("tiles"),
+                TileCache.DEFAULT_MEMORY_SIZE, TileCache.DEFAULT_DISK_SIZE);
+
+        List<Tile> tiles = new ArrayList<Tile>();
+        for (int x = 16; x <= 17; x++) {
+            for (int y = 10; y <= 11; y++) {
+                tiles.add(tile(5, x, y));
+            }
+        }
+        cache.loadImages(tiles);
+        Assert.assertEquals(4, cache.getDownloads());
+        for (Tile tile : tiles) {
+            Assert.assertEquals(Tile.RenderState.RENDERED,
+                    tile.getRenderState());
+        }
+
+        // 8 neighbours sharing a side with the block, 16 tiles one level below
+        cache.prefetch(tiles, service);
+        long timeout = System.currentTimeMillis() + 10000;
+        while (cache.getDownloads() < 28
+                && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(28, cache.getDownloads());
+        Assert.assertTrue(cache.isInMemory(tile(5, 15, 10).getId()));
+        Assert.assertTrue(cache.isInMemory(tile(5, 17, 12).getId()));
+        Assert.assertTrue(cache.isInMemory(tile(6, 32, 20).getId()));
+        Assert.assertTrue(cache.isInMemory(tile(6, 35, 23).getId()));
+        Assert.assertFalse(cache.isInMemory(tile(5, 15, 9).getId()));
+
+        // prefetching again has nothing left to do
+        cache.prefetch(tiles, service);
+        Thread.sleep(100);
+        Assert.assertEquals(28, totalRequests());
+    }
+
+    @Test
+    public void testFileNames() throws Exception {
+        Assert.assertEquals("OSM_5_16_10", TileCache.toFileName("OSM_5_16_10"));
+        Assert.assertEquals("..%2F..%2Fetc%2Fpasswd",
+                TileCache.toFileName("../../etc/passwd"));
+        Assert.assertEquals("a%3Ab%25c%C3%A8", TileCache.toFileName("a:b%c\u00e8"));
+    }
+
+    @Test
+    public void testDispose() throws Exception {
+        TileCache cache = cache(null, TileCache.DEFAULT_MEMORY_SIZE,
+                TileCache.DEFAULT_DISK_SIZE);
+        cache.dispose();
+        List<Tile> tiles = new ArrayList<Tile>();
+        tiles.add(tile(5, 16, 10));
+        try {
+            cache.loadImages(tiles);
+            Assert.fail("Loading tiles on a disposed cache should fail");
+        } catch (IllegalStateException e) {
+            // fine
+        }
+        try {
+            cache.prefetch(tiles, service);
+            Assert.fail("Prefetching tiles on a disposed cache should fail");
+        } catch (IllegalStateException e) {
+            // fine
+        }
+        // tiles can still be loaded one by one
+        Assert.assertNotNull(cache.loadImageTileImage(tile(5, 16, 10)));
+    }
+}